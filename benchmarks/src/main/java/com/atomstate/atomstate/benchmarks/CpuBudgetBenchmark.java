@@ -0,0 +1,92 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.benchmarks;
+
+import com.atomstate.atomstate.common.utils.CpuBudget;
+import com.atomstate.atomstate.common.utils.CpuPermit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures acquire/release throughput and tail latency of {@link CpuBudget}
+ * under contention.
+ *
+ * <p>Run {@link #main(String[])} to sweep the thread count from 1 to 128 in
+ * both throughput and sample-time mode; the sample-time results report the
+ * p99/p99.9 latency of a single acquire/release pair. A single configuration
+ * can also be run through the JMH command line, e.g.
+ * {@code java -jar target/benchmarks.jar CpuBudgetBenchmark -t 32}.</p>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CpuBudgetBenchmark {
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32, 64, 128};
+
+    /**
+     * The number of CPUs each request asks for.
+     */
+    @Param({"1", "4"})
+    public int cpusPerRequest;
+
+    private CpuBudget budget;
+
+    @Setup
+    public void setUp() {
+        budget = new CpuBudget(CpuBudget.getNumCpus());
+    }
+
+    /**
+     * The allocation-free hot path used per search request.
+     */
+    @Benchmark
+    public int primitiveAcquireRelease() {
+        int granted = budget.tryAcquireCpus(1, cpusPerRequest);
+        if (granted > 0) {
+            budget.releaseCpus(granted);
+        }
+        return granted;
+    }
+
+    /**
+     * The permit-based path used by long-running jobs.
+     */
+    @Benchmark
+    public boolean permitAcquireRelease() {
+        Optional<CpuPermit> permit = budget.tryAcquire(1, cpusPerRequest);
+        permit.ifPresent(CpuPermit::close);
+        return permit.isPresent();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : THREAD_COUNTS) {
+            Options options = new OptionsBuilder()
+                    .include(CpuBudgetBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .mode(Mode.Throughput)
+                    .mode(Mode.SampleTime)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
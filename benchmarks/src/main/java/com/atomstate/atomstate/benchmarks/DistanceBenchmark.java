@@ -0,0 +1,120 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.benchmarks;
+
+import com.atomstate.atomstate.vectors.DistanceKernel;
+import com.atomstate.atomstate.vectors.DistanceKernels;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the vectorized distance kernel with the scalar loops.
+ *
+ * <p>Each benchmark computes one distance between a query and a stored vector,
+ * either on heap arrays or with the stored vector in off-heap memory. Run
+ * {@link #main(String[])} or
+ * {@code java --enable-preview --add-modules jdk.incubator.vector -jar target/benchmarks.jar DistanceBenchmark}.</p>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "--add-modules", "jdk.incubator.vector"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DistanceBenchmark {
+
+    /**
+     * The number of dimensions of the vectors.
+     */
+    @Param({"128", "384", "768", "1536"})
+    public int dimension;
+
+    /**
+     * The kernel under test.
+     */
+    @Param({"scalar", "simd"})
+    public String kernelName;
+
+    private DistanceKernel kernel;
+    private float[] query;
+    private float[] stored;
+    private Arena arena;
+    private MemorySegment segment;
+
+    @Setup
+    public void setUp() {
+        kernel = "simd".equals(kernelName) ? DistanceKernels.vectorized().orElseThrow() : DistanceKernels.scalar();
+        Random random = new Random(42);
+        query = new float[dimension];
+        stored = new float[dimension];
+        arena = Arena.ofConfined();
+        segment = arena.allocate((long) dimension * Float.BYTES, 64);
+        for (int i = 0; i < dimension; i++) {
+            query[i] = random.nextFloat();
+            stored[i] = random.nextFloat();
+            segment.setAtIndex(DistanceKernel.FLOAT, i, stored[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        arena.close();
+    }
+
+    @Benchmark
+    public float dot() {
+        return kernel.dot(query, 0, stored, 0, dimension);
+    }
+
+    @Benchmark
+    public float cosine() {
+        return kernel.cosine(query, 0, stored, 0, dimension);
+    }
+
+    @Benchmark
+    public float squaredEuclid() {
+        return kernel.squaredEuclid(query, 0, stored, 0, dimension);
+    }
+
+    @Benchmark
+    public float manhattan() {
+        return kernel.manhattan(query, 0, stored, 0, dimension);
+    }
+
+    @Benchmark
+    public float dotOffHeap() {
+        return kernel.dot(query, 0, segment, 0, dimension);
+    }
+
+    @Benchmark
+    public float squaredEuclidOffHeap() {
+        return kernel.squaredEuclid(query, 0, segment, 0, dimension);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(DistanceBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
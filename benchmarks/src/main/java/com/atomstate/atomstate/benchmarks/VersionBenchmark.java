@@ -0,0 +1,119 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.benchmarks;
+
+import com.atomstate.atomstate.common.utils.Version;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares parsing and comparing {@link Version}s as done on every segment,
+ * snapshot and message header against the split-based parsing and the
+ * field-by-field comparison {@link Version} used before it was packed.
+ *
+ * <p>Run with {@code -prof gc} to see that {@link Version#parse(CharSequence)}
+ * of a known version allocates nothing, while the legacy parse allocates a
+ * pattern, an array and three strings per call.</p>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class VersionBenchmark {
+
+    /**
+     * The version string to parse.
+     */
+    @Param({"1.0.0", "12.345.6789"})
+    public String text;
+
+    private Version current;
+    private Version other;
+
+    @Setup
+    public void setUp() {
+        current = Version.parse(text);
+        other = new Version(current.getMajor(), current.getMinor(), current.getPatch() + 1);
+    }
+
+    /**
+     * The parse this class used before, kept for comparison.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public int[] legacyParse() {
+        String[] parts = text.split("\\.");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Invalid version string: " + text);
+        }
+        return new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2])};
+    }
+
+    /**
+     * The allocation-free parse returning a cached instance.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public Version parse() {
+        return Version.parse(text);
+    }
+
+    /**
+     * The field-by-field comparison this class used before, kept for comparison.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public int legacyCompareTo() {
+        if (current.getMajor() != other.getMajor()) {
+            return Integer.compare(current.getMajor(), other.getMajor());
+        }
+        if (current.getMinor() != other.getMinor()) {
+            return Integer.compare(current.getMinor(), other.getMinor());
+        }
+        return Integer.compare(current.getPatch(), other.getPatch());
+    }
+
+    /**
+     * The comparison of packed versions.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public int compareTo() {
+        return current.compareTo(other);
+    }
+
+    /**
+     * The compatibility check of a header against the running version.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public boolean isCompatibleWith() {
+        return current.isCompatibleWith(other);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(VersionBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Adjusts the CPU limit of a background budget at runtime from the observed
+ * search latency, instead of leaving a fixed number of CPUs unallocated, see
+ * {@link Default#defaultCpuBudgetUnallocated(int)}.
+ *
+ * <p>Every adjustment samples the search p99 latency and the progress of
+ * background jobs and takes an AIMD step within the bounds of the
+ * {@link CpuControllerConfig}: above the latency target the limit is cut
+ * multiplicatively, so a daytime spike is relieved within one or two steps.
+ * Below the target the limit grows additively, but only while background jobs
+ * make progress and use all CPUs they are given, so an idle night of
+ * rebuilds gets all the CPUs, while a quiet background does not build up
+ * headroom it would take back at once. Latency between 80% of the target
+ * and the target leaves the limit as it is, which keeps the limit from
+ * oscillating around the target.</p>
+ *
+ * <p>The limit is changed through {@link CpuBudget#setLimit(int)}, which is
+ * safe while permits are held: jobs keep their CPUs until they give the
+ * reclaimed ones back between units of work.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ *     {@code CpuBudget optimizer = node.newChild(CpuPriority.OPTIMIZER, new CpuShare(0, 8));}
+ *     {@code AdaptiveCpuController controller = new AdaptiveCpuController(optimizer, CpuControllerConfig.of(1, 8),}
+ *             {@code () -> searchLatency.getValueAtPercentile(99), optimizedSegments::sum);}
+ *     {@code controller.start(scheduler, Default.CPU_CONTROLLER_INTERVAL);}
+ * </pre>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class AdaptiveCpuController {
+    private static final Logger logger = LogManager.getLogger(AdaptiveCpuController.class);
+    // Below this share of the target latency the background may grow
+    private static final double HOLD_BAND = 0.8;
+    private final CpuBudget background;
+    private final CpuControllerConfig config;
+    private final LongSupplier searchP99Nanos;
+    private final LongSupplier progress;
+    private long lastProgress;
+
+    /**
+     * Initializes a controller and moves the limit of the background budget
+     * into the configured bounds.
+     *
+     * @param background     the budget of the background work
+     * @param config         the bounds and steps of the controller
+     * @param searchP99Nanos supplies the recent search p99 latency in nanoseconds
+     * @param progress       supplies a counter of completed background work,
+     *                       e.g. processed segments or points, that only grows
+     * @throws IllegalArgumentException if the upper bound exceeds what the
+     *                                  background budget can be given
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public AdaptiveCpuController(CpuBudget background, CpuControllerConfig config, LongSupplier searchP99Nanos,
+                                 LongSupplier progress) {
+        this.background = background;
+        this.config = config;
+        this.searchP99Nanos = searchP99Nanos;
+        this.progress = progress;
+        this.lastProgress = progress.getAsLong();
+        int limit = background.getCpuBudget();
+        int clamped = Math.min(Math.max(limit, config.minCpus()), config.maxCpus());
+        if (clamped != limit) {
+            background.setLimit(clamped);
+        }
+    }
+
+    /**
+     * Samples latency and progress and takes one step.
+     *
+     * @return the new limit of the background budget
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public synchronized int adjust() {
+        int limit = background.getCpuBudget();
+        long p99 = searchP99Nanos.getAsLong();
+        long done = progress.getAsLong();
+        boolean progressed = done > lastProgress;
+        lastProgress = done;
+
+        long target = config.targetSearchP99().toNanos();
+        int next = limit;
+        if (p99 > target) {
+            next = (int) (limit * config.decreaseFactor());
+        } else if (p99 <= target * HOLD_BAND && progressed && isSaturated()) {
+            next = limit + config.increaseStep();
+        }
+        next = Math.min(Math.max(next, config.minCpus()), config.maxCpus());
+        if (next != limit) {
+            background.setLimit(next);
+            logger.debug("Background CPU limit of {} changed from {} to {}: searchP99={}ns",
+                    background.getName(), limit, next, p99);
+        }
+        return next;
+    }
+
+    /**
+     * Periodically adjusts the limit of the background budget.
+     *
+     * @param scheduler the scheduler to run the adjustments on
+     * @param interval  the time between two adjustments
+     * @return the scheduled adjustment, which can be cancelled to stop
+     * controlling the budget
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public ScheduledFuture<?> start(ScheduledExecutorService scheduler, Duration interval) {
+        long millis = interval.toMillis();
+        return scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                adjust();
+            } catch (RuntimeException e) {
+                logger.error("Failed to adjust the background CPU limit of {}", background.getName(), e);
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Checks whether the background work is held back by its limit, i.e. it
+     * uses all CPUs it may hold or has callers queued.
+     *
+     * @return {@code true} if more CPUs would be used; {@code false} otherwise
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private boolean isSaturated() {
+        CpuBudgetStats stats = background.getStats();
+        return stats.used() >= stats.cpuBudget() || stats.queued() > 0;
+    }
+}
@@ -13,17 +13,43 @@ package com.atomstate.atomstate.common.utils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.Semaphore;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * The {@code CpuBudget} class manages a budget for CPU permits using a semaphore.
+ * The {@code CpuBudget} class manages a budget for CPU permits.
  * This allows for tracking and controlling the allocation of CPU resources in a
  * concurrent environment, ensuring that a specified budget is adhered to.
  *
  * <p>Instances of this class can be used to acquire CPU permits while keeping
- * track of the remaining budget. The class logs actions and warnings related
- * to the CPU permit acquisition process.</p>
+ * track of the remaining budget. The remaining budget is a single atomic
+ * counter, so non-blocking acquisition and release never take a lock; only
+ * callers that queue for CPUs go through the FIFO wait queue. Failed
+ * acquisitions are reported through rate-limited warnings rather than one log
+ * line per call.</p>
+ *
+ * <p>A budget can be split into child budgets per {@link CpuPriority} class,
+ * each with a guaranteed reservation and a maximum share, see
+ * {@link #newChild(CpuPriority, CpuShare)}. Latency-sensitive search then
+ * keeps its reserved CPUs no matter how much background work is queued.</p>
+ *
+ * <p>Children can be split further, e.g. into one weighted child per
+ * collection with {@link #newChild(String, CpuShare)}, which forms a tree of
+ * budgets under the node budget. Every budget reports its usage through
+ * {@link #getStats()}.</p>
  *
  * <p>Example usage:</p>
  * <pre>
@@ -40,6 +66,23 @@ import java.util.concurrent.Semaphore;
  *         {@code System.out.println("Failed to acquire CPUs.");}
  *     }
  *
+ *     // Wait up to a second for 2 CPUs and return them when done
+ *     {@code try (CpuPermit held = cpuBudget.acquire(2, Duration.ofSeconds(1)).orElseThrow()) {}
+ *         // Run the job on held.numCpus() threads
+ *     {@code }}
+ *
+ *     // Take between 2 and 6 CPUs and hand 1 back later
+ *     {@code CpuPermit elastic = cpuBudget.tryAcquire(2, 6).orElseThrow();}
+ *     {@code elastic.shrink(1);}
+ *
+ *     // Reserve 2 CPUs for search and cap snapshots at 4 CPUs
+ *     {@code CpuBudget search = cpuBudget.newChild(CpuPriority.SEARCH, new CpuShare(2, 10));}
+ *     {@code CpuBudget snapshot = cpuBudget.newChild(CpuPriority.SNAPSHOT, new CpuShare(0, 4));}
+ *
+ *     // Give one collection twice the weight of another within the search class
+ *     {@code CpuBudget products = search.newChild("products", new CpuShare(0, 10, 2));}
+ *     {@code CpuBudget reviews = search.newChild("reviews", new CpuShare(0, 10, 1));}
+ *
  *     // Check if budget allows acquiring 6 CPUs
  *     {@code boolean hasBudget = cpuBudget.hasBudget(6);}
  *     {@code System.out.println("Has budget for 6 CPUs: " + hasBudget);}
@@ -52,8 +95,34 @@ import java.util.concurrent.Semaphore;
 
 public class CpuBudget {
     private static final Logger logger = LogManager.getLogger(CpuBudget.class);
-    private final Semaphore semaphore;
-    private final int cpuBudget;
+    private static final Duration DIAGNOSTICS_INTERVAL = Duration.ofSeconds(10);
+    private static final long AVAILABLE_MASK = 0xFFFF_FFFFL;
+    private static final int UNCLASSED_RANK = CpuPriority.values().length;
+    private final RateLimitedLogger diagnostics = new RateLimitedLogger(logger, DIAGNOSTICS_INTERVAL);
+    private static final String ROOT_NAME = "node";
+    private final String name;
+    private final CpuBudget parent;
+    private final CpuBudget root;
+    private final CpuPriority priority;
+    private final CpuShare share;
+    // Sorted from the highest to the lowest priority
+    private final List<CpuBudget> children = new CopyOnWriteArrayList<>();
+    private final Set<CpuPermit> permits = ConcurrentHashMap.newKeySet();
+    // Available CPUs in the low 32 bits, unmet reservations of the children in the high 32 bits
+    private final AtomicLong state;
+    private final ReentrantLock nodeLock = new ReentrantLock();
+    // The wait queues of the whole tree are guarded by the lock of the root
+    private final ReentrantLock lock = new ReentrantLock();
+    private final WaitQueue<CpuPermit> waiters = new WaitQueue<>(CpuPermit::close);
+    private final AtomicIntegerArray queuedByPriority = new AtomicIntegerArray(UNCLASSED_RANK);
+    private final LongAdder granted = new LongAdder();
+    private final LongAdder denied = new LongAdder();
+    private final LatencyHistogram waitTimes = new LatencyHistogram();
+    private volatile int queued;
+    private volatile int subtreeQueued;
+    private volatile int treeQueued;
+    private volatile int cpuBudget;
+    private volatile boolean detached;
 
     /**
      * Initializes a {@code CpuBudget} with a specified CPU budget.
@@ -63,49 +132,1042 @@ public class CpuBudget {
      * @since 1.0.0
      */
     public CpuBudget(int cpuBudget) {
-        this.cpuBudget = cpuBudget;
-        this.semaphore = new Semaphore(cpuBudget);
+        this(ROOT_NAME, null, null, null, cpuBudget);
         logger.info("CpuBudget initialized with {} CPUs.", cpuBudget);
     }
 
+    /**
+     * Initializes the root {@code CpuBudget} of a node from a CPU budget
+     * parameter, see {@link #getCpuBudget(int)}.
+     *
+     * @param cpuBudgetParam the parameter specifying the desired CPU budget
+     * @return the node budget
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static CpuBudget forNode(int cpuBudgetParam) {
+        return new CpuBudget(getCpuBudget(cpuBudgetParam));
+    }
+
+    /**
+     * Initializes a {@code CpuBudget} that is either a root budget or a child
+     * drawing its CPUs from a parent budget.
+     *
+     * @param name      the name of the budget
+     * @param parent    the parent budget, or {@code null} for a root budget
+     * @param priority  the priority class of the budget, or {@code null} if unclassed
+     * @param share     the share of the parent budget, or {@code null} for a root budget
+     * @param cpuBudget the maximum number of CPUs held through this budget
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private CpuBudget(String name, CpuBudget parent, CpuPriority priority, CpuShare share, int cpuBudget) {
+        this.name = name;
+        this.parent = parent;
+        this.root = parent == null ? this : parent.root;
+        this.priority = priority;
+        this.share = share;
+        this.cpuBudget = cpuBudget;
+        this.state = new AtomicLong(pack(cpuBudget, 0));
+    }
+
+    /**
+     * Creates a child budget for a priority class that draws its CPUs from
+     * this budget. The child is named after its class.
+     *
+     * <p>The reserved CPUs of the share are kept free for the child: requests
+     * made directly on this budget or through its other children never take
+     * them. Beyond its reservation the child borrows idle capacity up to the
+     * limit of its share. Whenever a child is short of CPUs, permits of lower
+     * priority children that hold borrowed CPUs are asked to give them back,
+     * see {@link CpuPermit#getReclaimRequest()}.</p>
+     *
+     * @param priority the priority class of the child
+     * @param share    the reservation and limit of the child
+     * @return the child budget
+     * @throws IllegalArgumentException if the share exceeds this budget or the
+     *                                  reservations of all children exceed this budget
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public CpuBudget newChild(CpuPriority priority, CpuShare share) {
+        Objects.requireNonNull(priority, "priority");
+        return newChild(priority.name(), priority, share);
+    }
+
+    /**
+     * Creates a named child budget, e.g. for a collection or a shard, that draws
+     * its CPUs from this budget and inherits its priority class.
+     *
+     * <p>Besides the reservation and limit of its share, the child has a weight
+     * among its siblings. Unused shares are redistributed: a child may use idle
+     * capacity up to its limit, but while siblings are queued for CPUs it yields
+     * once it holds more than its weighted fair share, and queued siblings with
+     * the lowest usage relative to their weight are served first.</p>
+     *
+     * @param name  the name of the child
+     * @param share the reservation, limit and weight of the child
+     * @return the child budget
+     * @throws IllegalArgumentException if the share exceeds this budget or the
+     *                                  reservations of all children exceed this budget
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public CpuBudget newChild(String name, CpuShare share) {
+        return newChild(Objects.requireNonNull(name, "name"), priority, share);
+    }
+
+    /**
+     * Creates and registers a child budget.
+     *
+     * @param name     the name of the child
+     * @param priority the priority class of the child
+     * @param share    the share of the child
+     * @return the child budget
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private CpuBudget newChild(String name, CpuPriority priority, CpuShare share) {
+        if (share.limit() > cpuBudget) {
+            throw new IllegalArgumentException("CPU share exceeds budget: limit=" + share.limit() + ", budget=" + cpuBudget);
+        }
+
+        CpuBudget child = new CpuBudget(name, this, priority, share, share.limit());
+        nodeLock.lock();
+        try {
+            int reserved = share.reserved();
+            for (CpuBudget sibling : children) {
+                reserved += sibling.share.reserved();
+            }
+            if (reserved > cpuBudget) {
+                throw new IllegalArgumentException("CPU reservations exceed budget: reserved=" + reserved + ", budget=" + cpuBudget);
+            }
+            int index = 0;
+            while (index < children.size() && children.get(index).rank() <= child.rank()) {
+                index++;
+            }
+            children.add(index, child);
+            state.getAndAdd((long) share.reserved() << 32);
+        } finally {
+            nodeLock.unlock();
+        }
+
+        logger.info("CpuBudget child initialized: name={}, priority={}, reserved={}, limit={}, weight={}",
+                name, priority, share.reserved(), share.limit(), share.weight());
+        return child;
+    }
+
+    /**
+     * Removes an idle child budget, e.g. when its collection is dropped, and
+     * releases its reservation.
+     *
+     * <p>The child and its descendants are detached: acquiring CPUs through
+     * them afterwards fails with an {@code IllegalStateException}, so that a
+     * caller still holding a reference cannot take CPUs from this budget on
+     * behalf of a child it no longer accounts for.</p>
+     *
+     * @param child the child to remove
+     * @throws IllegalArgumentException if the budget is not a child of this budget
+     * @throws IllegalStateException    if the child or one of its descendants
+     *                                  still holds or waits for CPUs
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void removeChild(CpuBudget child) {
+        if (child.parent != this) {
+            throw new IllegalArgumentException("Not a child of budget " + name + ": " + child.name);
+        }
+        // The lock of the root keeps requests from being queued in the subtree meanwhile
+        root.lock.lock();
+        try {
+            child.nodeLock.lock();
+            try {
+                if (child.used() != 0 || child.subtreeQueued != 0) {
+                    throw new IllegalStateException("CpuBudget child is still in use: " + child.name);
+                }
+                nodeLock.lock();
+                try {
+                    if (children.remove(child)) {
+                        state.getAndAdd(-((long) child.share.reserved() << 32));
+                    }
+                } finally {
+                    nodeLock.unlock();
+                }
+                // Takes of the subtree pass through the node lock of the child, see takeFor
+                child.detached = true;
+            } finally {
+                child.nodeLock.unlock();
+            }
+        } finally {
+            root.lock.unlock();
+        }
+        logger.info("CpuBudget child removed: name={}", child.name);
+    }
+
     /**
      * Attempts to acquire a specified number of CPU permits.
      *
      * <p>If the desired number of CPUs is non-positive or exceeds the available
-     * permits, an empty {@code Optional} is returned.</p>
+     * permits, an empty {@code Optional} is returned. The attempt also fails
+     * while other callers of this budget or of a higher priority class are
+     * queued for CPUs, so that queued callers are not starved by callers that
+     * never wait.</p>
      *
      * @param desiredCpus the number of CPUs requested for acquisition
      * @return an {@code Optional<CpuPermit>} containing a permit if successful,
      * or an empty {@code Optional} if the acquisition failed
+     * @throws IllegalStateException if this budget was removed from its parent
      * @author Atomstate
      * @since 1.0.0
      */
     public Optional<CpuPermit> tryAcquire(int desiredCpus) {
-        if (desiredCpus <= 0) {
-            logger.warn("Attempted to acquire non-positive number of CPUs: {}", desiredCpus);
-            return Optional.empty();
+        return tryAcquire(desiredCpus, desiredCpus);
+    }
+
+    /**
+     * Attempts to acquire between a minimum and a desired number of CPU permits,
+     * granting as many of the desired CPUs as are currently available.
+     *
+     * <p>The resulting permit is elastic: its holder can later ask for more CPUs
+     * with {@link CpuPermit#grow(int)} and give CPUs back with
+     * {@link CpuPermit#shrink(int)}. If the minimum is non-positive, exceeds the
+     * desired number of CPUs or is not available, an empty {@code Optional} is
+     * returned.</p>
+     *
+     * @param minCpus     the minimum number of CPUs the caller can work with
+     * @param desiredCpus the number of CPUs the caller would like to use
+     * @return an {@code Optional<CpuPermit>} containing a permit for at least
+     * {@code minCpus} CPUs if successful, or an empty {@code Optional} if the
+     * acquisition failed
+     * @throws IllegalStateException if this budget was removed from its parent
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public Optional<CpuPermit> tryAcquire(int minCpus, int desiredCpus) {
+        int numCpus = tryAcquireCpus(minCpus, desiredCpus);
+        return numCpus == 0 ? Optional.empty() : Optional.of(newPermit(numCpus));
+    }
+
+    /**
+     * Attempts to acquire between a minimum and a desired number of CPUs without
+     * allocating a permit object.
+     *
+     * <p>This is the hot path used per search request: on a root budget it is
+     * lock-free, and it never allocates or logs on success. Failures are
+     * reported through rate-limited diagnostics only. The caller owns the
+     * returned CPUs and must hand exactly that many back through
+     * {@link #releaseCpus(int)}.</p>
+     *
+     * @param minCpus     the minimum number of CPUs the caller can work with
+     * @param desiredCpus the number of CPUs the caller would like to use
+     * @return the number of CPUs acquired, or {@code 0} if the acquisition failed
+     * @throws IllegalStateException if this budget was removed from its parent
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int tryAcquireCpus(int minCpus, int desiredCpus) {
+        checkAttached();
+        if (minCpus <= 0 || minCpus > desiredCpus) {
+            diagnostics.warn("Attempted to acquire invalid range of CPUs: min={}, desired={}", minCpus, desiredCpus);
+            return 0;
+        }
+        if (isBlockedByWaiters()) {
+            denied.increment();
+            diagnostics.warn("Failed to acquire CPUs: requested={}, queued={}", minCpus, root.treeQueued);
+            return 0;
         }
+        int numCpus = take(minCpus, desiredCpus);
+        if (numCpus == 0) {
+            denied.increment();
+            diagnostics.warn("Requested CPUs exceed available permits: requested={}, available={}", minCpus, getAvailableCpus());
+            requestReclaim(minCpus);
+        } else {
+            granted.increment();
+        }
+        return numCpus;
+    }
 
-        // Check if the requested CPUs exceed the available permits
-        if (desiredCpus > semaphore.availablePermits()) {
-            logger.warn("Requested CPUs exceed available permits: requested={}, available={}", desiredCpus, semaphore.availablePermits());
-            return Optional.empty();
+    /**
+     * Returns CPUs acquired through {@link #tryAcquireCpus(int, int)} to this
+     * budget and hands them to queued callers.
+     *
+     * @param numCpus the number of CPUs being returned
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void releaseCpus(int numCpus) {
+        give(null, numCpus);
+        if (root.treeQueued != 0) {
+            WaitQueue.complete(root.drainWaiters());
         }
+    }
 
-        // Proceed to acquire the CPUs
-        int numCpus = Math.min(semaphore.availablePermits(), desiredCpus);
-        if (!semaphore.tryAcquire(numCpus)) {
-            logger.warn("Failed to acquire CPUs: requested={}, available={}", desiredCpus, semaphore.availablePermits());
+    /**
+     * Acquires a specified number of CPU permits, waiting up to the given
+     * timeout for them to become available.
+     *
+     * <p>Waiting callers are served in FIFO order together with the callers of
+     * {@link #acquireAsync(int)}. If the desired number of CPUs is non-positive
+     * or exceeds the total budget, an empty {@code Optional} is returned
+     * immediately, as it is when the budget shrinks below the request while
+     * the caller waits.</p>
+     *
+     * @param desiredCpus the number of CPUs requested for acquisition
+     * @param timeout     the maximum time to wait for the CPUs
+     * @return an {@code Optional<CpuPermit>} containing a permit if successful,
+     * or an empty {@code Optional} if the timeout elapsed first
+     * @throws InterruptedException  if the current thread is interrupted while waiting
+     * @throws IllegalStateException if this budget was removed from its parent
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public Optional<CpuPermit> acquire(int desiredCpus, Duration timeout) throws InterruptedException {
+        if (desiredCpus <= 0 || desiredCpus > capacity()) {
+            logger.warn("Attempted to acquire unsatisfiable number of CPUs: requested={}, budget={}", desiredCpus, capacity());
             return Optional.empty();
         }
 
-        logger.info("Acquired {} CPUs.", numCpus);
-        return Optional.of(new CpuPermit(numCpus));
+        try {
+            CpuPermit permit = WaitQueue.await(acquireAsync(desiredCpus), timeout, CpuPermit::close);
+            if (permit == null) {
+                denied.increment();
+                diagnostics.warn("Timed out acquiring CPUs: requested={}, queued={}", desiredCpus, root.treeQueued);
+                return Optional.empty();
+            }
+            return Optional.of(permit);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IllegalStateException detachedError) {
+                throw detachedError;
+            }
+            if (e.getCause() instanceof IllegalArgumentException) {
+                // The budget shrank below the request while it was queued
+                logger.warn("Attempted to acquire unsatisfiable number of CPUs: requested={}, budget={}", desiredCpus, capacity());
+                return Optional.empty();
+            }
+            throw new IllegalStateException("Unexpected failure acquiring CPUs", e.getCause());
+        }
+    }
+
+    /**
+     * Asynchronously acquires a specified number of CPU permits.
+     *
+     * <p>The returned future completes once the CPUs are granted. Requests of
+     * one budget are served strictly in FIFO order, so a large request at the
+     * head of the queue is not overtaken by smaller ones queued after it.
+     * Across child budgets, queued requests of higher priority classes are
+     * served first. Cancelling the future withdraws the request from the
+     * queue.</p>
+     *
+     * @param desiredCpus the number of CPUs requested for acquisition
+     * @return a future completed with the permit, or completed exceptionally with
+     * an {@code IllegalArgumentException} if the request can never be satisfied,
+     * also when the budget shrinks below it while it is queued, or with an
+     * {@code IllegalStateException} if this budget was removed from its parent
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public CompletableFuture<CpuPermit> acquireAsync(int desiredCpus) {
+        if (desiredCpus <= 0 || desiredCpus > capacity()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException(
+                    "Unsatisfiable number of CPUs: requested=" + desiredCpus + ", budget=" + capacity()));
+        }
+        if (isDetached()) {
+            return CompletableFuture.failedFuture(detachedException());
+        }
+        if (!isBlockedByWaiters() && take(desiredCpus, desiredCpus) != 0) {
+            granted.increment();
+            waitTimes.record(0);
+            return CompletableFuture.completedFuture(newPermit(desiredCpus));
+        }
+
+        WaitQueue<CpuPermit>.Waiter pending;
+        List<WaitQueue<CpuPermit>.Waiter> granted;
+        root.lock.lock();
+        try {
+            if (isDetached()) {
+                // Removed meanwhile, the request would never be served
+                return CompletableFuture.failedFuture(detachedException());
+            }
+            pending = waiters.add(desiredCpus, numCpus -> newPermit((int) numCpus));
+            adjustQueued(1);
+            // CPUs released before the request was queued have not been handed out yet
+            granted = root.drainWaitersLocked();
+        } finally {
+            root.lock.unlock();
+        }
+        WaitQueue.complete(granted);
+
+        if (!pending.future().isDone()) {
+            requestReclaim(desiredCpus);
+        }
+        return pending.onCancel(() -> withdraw(pending)).future();
+    }
+
+    /**
+     * Takes up to the given number of additional CPUs for an elastic permit
+     * without waiting. Nothing is taken while callers that take precedence are
+     * queued.
+     *
+     * @param maxCpus the maximum number of CPUs to take
+     * @return the number of CPUs taken, possibly zero
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    int tryGrow(int maxCpus) {
+        return isBlockedByWaiters() ? 0 : take(1, maxCpus);
+    }
+
+    /**
+     * Returns the CPUs of a closed permit to this budget.
+     *
+     * @param permit  the closed permit
+     * @param numCpus the number of CPUs the permit held
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    void releasePermit(CpuPermit permit, int numCpus) {
+        permits.remove(permit);
+        releaseCpus(numCpus);
+    }
+
+    /**
+     * Creates a permit for CPUs that have already been taken from this budget.
+     * Permits are tracked so that borrowed CPUs, or CPUs beyond a shrunk
+     * budget, can be reclaimed from them.
+     *
+     * @param numCpus the number of CPUs taken
+     * @return the permit
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private CpuPermit newPermit(int numCpus) {
+        CpuPermit permit = new CpuPermit(this, numCpus);
+        permits.add(permit);
+        return permit;
+    }
+
+    /**
+     * Takes between a minimum and a desired number of CPUs for a request made
+     * directly on this budget.
+     *
+     * @param minCpus     the minimum number of CPUs to take
+     * @param desiredCpus the maximum number of CPUs to take
+     * @return the number of CPUs taken, or {@code 0} if the minimum is not available
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private int take(int minCpus, int desiredCpus) {
+        return takeFor(null, minCpus, desiredCpus);
+    }
+
+    /**
+     * Takes between a minimum and a desired number of CPUs for a direct request
+     * or on behalf of a child, keeping the unmet reservations of all other
+     * children free.
+     *
+     * <p>The root updates its state with a compare-and-set loop. A child holds
+     * its node lock while it takes the CPUs from its parent, which keeps its
+     * usage stable while the parent accounts for its reservation.</p>
+     *
+     * @param child       the child taking the CPUs, or {@code null} for a direct request
+     * @param minCpus     the minimum number of CPUs to take
+     * @param desiredCpus the maximum number of CPUs to take
+     * @return the number of CPUs taken, or {@code 0} if the minimum is not available
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private int takeFor(CpuBudget child, int minCpus, int desiredCpus) {
+        if (parent == null) {
+            for (;;) {
+                long current = state.get();
+                int othersUnmet = unmet(current) - unmetReservationOf(child, 0);
+                int numCpus = Math.min(desiredCpus, available(current) - othersUnmet);
+                if (numCpus < minCpus) {
+                    return 0;
+                }
+                long next = pack(available(current) - numCpus, othersUnmet + unmetReservationOf(child, numCpus));
+                if (state.compareAndSet(current, next)) {
+                    return numCpus;
+                }
+            }
+        }
+
+        nodeLock.lock();
+        try {
+            if (detached) {
+                return 0;
+            }
+            long current = state.get();
+            int othersUnmet = unmet(current) - unmetReservationOf(child, 0);
+            int numCpus = Math.min(desiredCpus, available(current) - othersUnmet);
+            if (numCpus < minCpus) {
+                return 0;
+            }
+            numCpus = parent.takeFor(this, minCpus, numCpus);
+            if (numCpus > 0) {
+                state.set(pack(available(current) - numCpus, othersUnmet + unmetReservationOf(child, numCpus)));
+            }
+            return numCpus;
+        } finally {
+            nodeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns CPUs to this budget for a direct request or on behalf of a child.
+     *
+     * @param child   the child returning the CPUs, or {@code null} for a direct request
+     * @param numCpus the number of CPUs being returned
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void give(CpuBudget child, int numCpus) {
+        if (parent == null) {
+            for (;;) {
+                long current = state.get();
+                int othersUnmet = unmet(current) - unmetReservationOf(child, 0);
+                long next = pack(available(current) + numCpus, othersUnmet + unmetReservationOf(child, -numCpus));
+                if (state.compareAndSet(current, next)) {
+                    return;
+                }
+            }
+        }
+
+        nodeLock.lock();
+        try {
+            if (detached) {
+                // Nothing can be held through a removed budget, keep the parent consistent
+                throw detachedException();
+            }
+            long current = state.get();
+            int othersUnmet = unmet(current) - unmetReservationOf(child, 0);
+            parent.give(this, numCpus);
+            state.set(pack(available(current) + numCpus, othersUnmet + unmetReservationOf(child, -numCpus)));
+        } finally {
+            nodeLock.unlock();
+        }
+    }
+
+    /**
+     * Checks whether this budget or one of its ancestors was removed from its
+     * parent.
+     *
+     * @return {@code true} if this budget is detached; {@code false} otherwise
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private boolean isDetached() {
+        for (CpuBudget budget = this; budget != null; budget = budget.parent) {
+            if (budget.detached) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Fails an acquisition on this budget if it was removed from its parent.
+     *
+     * @throws IllegalStateException if this budget is detached
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void checkAttached() {
+        if (isDetached()) {
+            throw detachedException();
+        }
+    }
+
+    /**
+     * Creates the exception acquisitions on a removed budget fail with.
+     *
+     * @return the exception
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private IllegalStateException detachedException() {
+        return new IllegalStateException("CpuBudget was removed from its parent: " + name);
+    }
+
+    /**
+     * Checks whether a request on this budget has to yield to queued requests,
+     * which is the case while this budget or a budget of a higher priority
+     * class has callers queued, or while siblings are queued and this budget
+     * holds more than its weighted fair share.
+     *
+     * @return {@code true} if the request must not barge; {@code false} otherwise
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private boolean isBlockedByWaiters() {
+        if (queued != 0) {
+            return true;
+        }
+        if (root.treeQueued == 0) {
+            return false;
+        }
+        for (int rank = 0; rank < rank(); rank++) {
+            if (root.queuedByPriority.get(rank) != 0) {
+                return true;
+            }
+        }
+        return exceedsFairShare();
+    }
+
+    /**
+     * Checks whether this budget or one of its ancestors holds more than its
+     * weighted fair share while siblings are queued for CPUs. The fair share
+     * is split among the siblings that currently use or wait for CPUs, so the
+     * shares of idle siblings are redistributed.
+     *
+     * @return {@code true} if this budget has to yield to queued siblings;
+     * {@code false} otherwise
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private boolean exceedsFairShare() {
+        if (parent == null) {
+            return false;
+        }
+        if (parent.subtreeQueued > subtreeQueued) {
+            int activeWeight = 0;
+            for (CpuBudget sibling : parent.children) {
+                if (sibling == this || sibling.used() > 0 || sibling.subtreeQueued > 0) {
+                    activeWeight += sibling.share.weight();
+                }
+            }
+            long fairShare = (long) parent.cpuBudget * share.weight() / activeWeight;
+            if (used() >= Math.max(fairShare, share.reserved())) {
+                return true;
+            }
+        }
+        return parent.exceedsFairShare();
+    }
+
+    /**
+     * Asks permits of lower priority siblings to give back the CPUs they
+     * borrowed beyond their reservation, so that this budget can satisfy a
+     * request of the given size.
+     *
+     * @param minCpus the number of CPUs this budget is short of at most
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void requestReclaim(int minCpus) {
+        if (parent == null || priority == null || used() + minCpus > cpuBudget) {
+            // Only the own limit stands in the way, nothing to reclaim from others
+            return;
+        }
+        int deficit = minCpus - getAvailableCpus();
+        if (deficit <= 0) {
+            return;
+        }
+        for (int i = parent.children.size() - 1; i >= 0 && deficit > 0; i--) {
+            CpuBudget sibling = parent.children.get(i);
+            if (sibling.rank() <= rank()) {
+                break;
+            }
+            int borrowed = sibling.used() - sibling.share.reserved();
+            for (CpuPermit permit : sibling.permits) {
+                if (borrowed <= 0 || deficit <= 0) {
+                    break;
+                }
+                int requested = Math.min(Math.min(deficit, borrowed), permit.numCpus());
+                permit.requestReclaim(requested);
+                deficit -= requested;
+                borrowed -= requested;
+            }
+        }
+    }
+
+    /**
+     * Removes a cancelled request from the queue, which may unblock the
+     * requests queued behind it.
+     *
+     * @param pending the cancelled request
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void withdraw(WaitQueue<CpuPermit>.Waiter pending) {
+        List<WaitQueue<CpuPermit>.Waiter> granted;
+        root.lock.lock();
+        try {
+            if (waiters.remove(pending)) {
+                adjustQueued(-1);
+            }
+            granted = root.drainWaitersLocked();
+        } finally {
+            root.lock.unlock();
+        }
+        WaitQueue.complete(granted);
+    }
+
+    /**
+     * Takes CPUs for the queued requests of the whole tree. Must be called on
+     * the root.
+     *
+     * @return the requests whose CPUs have been taken
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private List<WaitQueue<CpuPermit>.Waiter> drainWaiters() {
+        lock.lock();
+        try {
+            return drainWaitersLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes CPUs for the queued requests of the whole tree. Must be called on
+     * the root with its lock held.
+     *
+     * @return the requests whose CPUs have been taken
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private List<WaitQueue<CpuPermit>.Waiter> drainWaitersLocked() {
+        List<WaitQueue<CpuPermit>.Waiter> granted = new ArrayList<>();
+        drainSubtree(granted, false);
+        return granted;
+    }
+
+    /**
+     * Takes CPUs for the queued requests of this budget and its children, the
+     * higher priority classes first and, within a class, the children with the
+     * lowest usage relative to their weight first. Within one budget the
+     * requests at the head of the queue are served while they fit into the
+     * available permits. Must be called with the lock of the root held.
+     *
+     * <p>Once the head of a priority class does not fit, lower classes are
+     * only served out of their own unmet reservation. Otherwise a stream of
+     * small lower priority requests would take every CPU as soon as it is
+     * released and starve a larger request of a higher class forever.</p>
+     *
+     * @param granted      collects the requests whose CPUs have been taken
+     * @param reservedOnly whether requests may only be served out of unmet
+     *                     reservations because a higher class is still waiting
+     * @return {@code true} if a request of this subtree is still waiting;
+     * {@code false} otherwise
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private boolean drainSubtree(List<WaitQueue<CpuPermit>.Waiter> granted, boolean reservedOnly) {
+        if (subtreeQueued == 0) {
+            return false;
+        }
+        int blockedRank = Integer.MAX_VALUE;
+        List<CpuBudget> ordered = drainOrder();
+        int next = 0;
+        while (next < ordered.size() && ordered.get(next).rank() < rank()) {
+            CpuBudget child = ordered.get(next++);
+            if (child.drainSubtree(granted, reservedOnly || child.rank() > blockedRank)) {
+                blockedRank = Math.min(blockedRank, child.rank());
+            }
+        }
+        boolean ownReservedOnly = reservedOnly || rank() > blockedRank;
+        if (queued != 0) {
+            int first = granted.size();
+            int removed = waiters.drain(numCpus -> (!ownReservedOnly || numCpus <= reservedHeadroom())
+                    && take((int) numCpus, (int) numCpus) != 0, granted);
+            adjustQueued(-removed);
+            long now = System.nanoTime();
+            for (int i = first; i < granted.size(); i++) {
+                this.granted.increment();
+                waitTimes.record(now - granted.get(i).queuedAt());
+            }
+            if (!waiters.isEmpty()) {
+                blockedRank = Math.min(blockedRank, rank());
+            }
+        }
+        while (next < ordered.size()) {
+            CpuBudget child = ordered.get(next++);
+            if (child.drainSubtree(granted, reservedOnly || child.rank() > blockedRank)) {
+                blockedRank = Math.min(blockedRank, child.rank());
+            }
+        }
+        return blockedRank != Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns the number of CPUs a queued request of this budget may take
+     * while a higher priority class is waiting, which is the largest unmet
+     * reservation of this budget or one of its ancestors.
+     *
+     * @return the reserved CPUs not in use
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private int reservedHeadroom() {
+        int headroom = 0;
+        for (CpuBudget budget = this; budget.parent != null; budget = budget.parent) {
+            headroom = Math.max(headroom, budget.unmetReservation(0));
+        }
+        return headroom;
+    }
+
+    /**
+     * Orders the children by priority class and, within a class, by their usage
+     * relative to their weight. The usage is captured once up front because it
+     * keeps changing while the children are sorted.
+     *
+     * @return the children in the order their queued requests are served
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private List<CpuBudget> drainOrder() {
+        List<DrainKey> keys = new ArrayList<>(children.size());
+        for (CpuBudget child : children) {
+            keys.add(new DrainKey(child, child.rank(), (double) child.used() / child.share.weight()));
+        }
+        keys.sort(Comparator.comparingInt(DrainKey::rank).thenComparingDouble(DrainKey::usage));
+        List<CpuBudget> ordered = new ArrayList<>(keys.size());
+        for (DrainKey key : keys) {
+            ordered.add(key.budget());
+        }
+        return ordered;
+    }
+
+    /**
+     * Updates the queued counters of this budget and of the root. Must be
+     * called with the lock of the root held.
+     *
+     * @param delta the change in the number of queued requests
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void adjustQueued(int delta) {
+        queued += delta;
+        for (CpuBudget budget = this; budget != null; budget = budget.parent) {
+            budget.subtreeQueued += delta;
+        }
+        root.treeQueued += delta;
+        if (priority != null) {
+            root.queuedByPriority.addAndGet(priority.ordinal(), delta);
+        }
+    }
+
+    /**
+     * Returns the CPUs held through this budget, including those held through
+     * its children.
+     *
+     * @return the number of CPUs in use
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private int used() {
+        return cpuBudget - available(state.get());
+    }
+
+    /**
+     * Returns the part of the reservation of this budget that would be unused
+     * after taking or returning the given number of CPUs.
+     *
+     * @param delta the number of CPUs taken, or returned if negative
+     * @return the unmet reservation
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private int unmetReservation(int delta) {
+        return share == null ? 0 : Math.max(0, share.reserved() - used() - delta);
+    }
+
+    /**
+     * Returns the unmet reservation of a child, or zero for direct requests.
+     *
+     * @param child the child, or {@code null} for a direct request
+     * @param delta the number of CPUs taken, or returned if negative
+     * @return the unmet reservation
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static int unmetReservationOf(CpuBudget child, int delta) {
+        return child == null ? 0 : child.unmetReservation(delta);
+    }
+
+    /**
+     * Returns the number of CPUs a request on behalf of a child could take from
+     * this budget and its ancestors right now.
+     *
+     * @param child the child, or {@code null} for a direct request
+     * @return the number of CPUs available to the request
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private int headroomFor(CpuBudget child) {
+        long current = state.get();
+        int headroom = available(current) - unmet(current) + unmetReservationOf(child, 0);
+        return parent == null ? headroom : Math.min(headroom, parent.headroomFor(this));
+    }
+
+    /**
+     * Returns the rank of the priority class of this budget, lower ranks
+     * being served first. Unclassed budgets rank below every class.
+     *
+     * @return the rank of this budget
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private int rank() {
+        return priority == null ? UNCLASSED_RANK : priority.ordinal();
+    }
+
+    /**
+     * Packs the available CPUs and the unmet reservations of the children into
+     * a single state word.
+     *
+     * @param available the number of available CPUs, negative while over budget
+     * @param unmet     the unmet reservations of the children
+     * @return the packed state
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static long pack(int available, int unmet) {
+        return ((long) unmet << 32) | (available & AVAILABLE_MASK);
+    }
+
+    /**
+     * Extracts the available CPUs from a packed state.
+     *
+     * @param state the packed state
+     * @return the number of available CPUs
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static int available(long state) {
+        return (int) state;
+    }
+
+    /**
+     * Extracts the unmet reservations of the children from a packed state.
+     *
+     * @param state the packed state
+     * @return the unmet reservations
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static int unmet(long state) {
+        return (int) (state >>> 32);
+    }
+
+    /**
+     * Retrieves the number of CPUs a request made directly on this budget could
+     * acquire right now, taking the limits of parent budgets and the
+     * reservations of child budgets into account.
+     *
+     * @return the number of available CPUs
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int getAvailableCpus() {
+        return Math.max(0, headroomFor(null));
+    }
+
+    /**
+     * Retrieves the number of callers currently queued on this budget.
+     *
+     * @return the number of queued callers
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int getQueuedCount() {
+        return queued;
+    }
+
+    /**
+     * Retrieves the name of this budget.
+     *
+     * @return the name of this budget
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Retrieves the child budgets of this budget, from the highest to the lowest
+     * priority class.
+     *
+     * @return an unmodifiable snapshot of the child budgets
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public List<CpuBudget> getChildren() {
+        return List.copyOf(children);
+    }
+
+    /**
+     * Captures the current usage of this budget.
+     *
+     * @return the statistics of this budget
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public CpuBudgetStats getStats() {
+        return new CpuBudgetStats(name, priority, cpuBudget,
+                share == null ? 0 : share.reserved(), share == null ? 1 : share.weight(),
+                used(), getAvailableCpus(), queued, granted.sum(), denied.sum(),
+                waitTimes.getValueAtPercentile(50), waitTimes.getValueAtPercentile(99), waitTimes.getMaxValue());
+    }
+
+    /**
+     * Returns the histogram of the time callers of {@link #acquire(int, Duration)}
+     * and {@link #acquireAsync(int)} on this budget waited until they were
+     * granted CPUs. Callers granted CPUs right away are recorded with no wait.
+     *
+     * @return the live histogram of wait times
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public LatencyHistogram getWaitTimes() {
+        return waitTimes;
+    }
+
+    /**
+     * Captures the current usage of this budget and all of its descendants,
+     * listing every budget before its children.
+     *
+     * @return the statistics of the budget tree
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public List<CpuBudgetStats> getTreeStats() {
+        List<CpuBudgetStats> stats = new ArrayList<>();
+        collectStats(stats);
+        return stats;
+    }
+
+    /**
+     * Adds the statistics of this budget and its descendants to the list.
+     *
+     * @param stats the list to add to
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void collectStats(List<CpuBudgetStats> stats) {
+        stats.add(getStats());
+        for (CpuBudget child : children) {
+            child.collectStats(stats);
+        }
+    }
+
+    /**
+     * Retrieves the priority class of this budget.
+     *
+     * @return the priority class, or {@code null} if this budget is unclassed
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public CpuPriority getPriority() {
+        return priority;
     }
 
     /**
      * Checks if the specified number of CPUs can be acquired without exceeding
-     * the available budget.
+     * the available budget, accepting a partial grant of at least half of them
+     * as {@link #tryAcquire(int, int)} would.
      *
      * @param desiredCpus the number of CPUs to check for budget availability
      * @return {@code true} if the budget allows the acquisition; {@code false} otherwise
@@ -126,7 +1188,7 @@ public class CpuBudget {
      * @since 1.0.0
      */
     private boolean hasExactBudget(int budget) {
-        return semaphore.availablePermits() >= budget;
+        return getAvailableCpus() >= budget;
     }
 
     /**
@@ -143,23 +1205,44 @@ public class CpuBudget {
 
     /**
      * Retrieves the number of CPUs from the environment variable or defaults to
-     * the available processors if the variable is not set or invalid.
+     * the CPUs detected by {@link CpuTopology#system()} if the variable is not
+     * set or invalid.
+     *
+     * <p>The detected CPUs honor the cgroup quota and cpuset of the container,
+     * so that the budget does not oversubscribe the CFS quota of a pod. The
+     * environment variable overrides the detection in both directions.</p>
      *
      * @return the number of CPUs available to the application
      * @author Atomstate
      * @since 1.0.0
      */
     public static int getNumCpus() {
-        String envVar = System.getenv("ATOMSTATE_NUM_CPUS");
+        return resolveNumCpus(System.getenv("ATOMSTATE_NUM_CPUS"), CpuTopology.system().getEffectiveCpus());
+    }
+
+    /**
+     * Resolves the number of CPUs from the value of the environment variable
+     * and the detected CPUs.
+     *
+     * @param envVar       the value of {@code ATOMSTATE_NUM_CPUS}, or {@code null} if not set
+     * @param detectedCpus the number of CPUs detected for the container
+     * @return the number of CPUs available to the application
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    static int resolveNumCpus(String envVar, int detectedCpus) {
         if (envVar != null) {
             try {
-                int numCpus = Integer.parseInt(envVar);
-                return Math.max(numCpus, Runtime.getRuntime().availableProcessors());
+                int numCpus = Integer.parseInt(envVar.trim());
+                if (numCpus > 0) {
+                    return numCpus;
+                }
+                logger.error("Non-positive number of CPUs in environment variable: {}", envVar);
             } catch (NumberFormatException e) {
                 logger.error("Invalid number of CPUs in environment variable: {}", envVar, e);
             }
         }
-        return Runtime.getRuntime().availableProcessors();
+        return detectedCpus;
     }
 
     /**
@@ -207,4 +1290,207 @@ public class CpuBudget {
     public int getCpuBudget() {
         return cpuBudget;
     }
+
+    /**
+     * Changes the CPU budget of a root budget at runtime, e.g. after the
+     * container was resized.
+     *
+     * <p>Resizing is safe while permits are held: when the budget shrinks below
+     * the CPUs in use, the permits held through it and its children are asked
+     * to give back the excess, those of lower priority children first, see
+     * {@link CpuPermit#getReclaimRequest()}. No new CPUs are granted until
+     * enough have been returned. Queued requests larger than the new budget fail, see
+     * {@link #acquireAsync(int)}. When it grows, queued callers are served
+     * right away.</p>
+     *
+     * @param newCpuBudget the new total number of CPUs
+     * @throws IllegalArgumentException if the new budget is not positive
+     * @throws IllegalStateException    if this is a child budget, whose size is
+     *                                  given by its share
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void setCpuBudget(int newCpuBudget) {
+        if (parent != null) {
+            throw new IllegalStateException("Child budgets are sized by their share: " + name);
+        }
+        if (newCpuBudget <= 0) {
+            throw new IllegalArgumentException("Invalid CPU budget: " + newCpuBudget);
+        }
+
+        int previous;
+        nodeLock.lock();
+        try {
+            previous = cpuBudget;
+            int delta = newCpuBudget - previous;
+            for (;;) {
+                long current = state.get();
+                if (state.compareAndSet(current, pack(available(current) + delta, unmet(current)))) {
+                    break;
+                }
+            }
+            cpuBudget = newCpuBudget;
+        } finally {
+            nodeLock.unlock();
+        }
+
+        logger.info("CpuBudget resized from {} to {} CPUs.", previous, newCpuBudget);
+        reclaimExcess(used() - newCpuBudget);
+        if (newCpuBudget < previous && treeQueued != 0) {
+            failUnsatisfiable();
+        } else if (newCpuBudget > previous && treeQueued != 0) {
+            WaitQueue.complete(drainWaiters());
+        }
+    }
+
+    /**
+     * Changes the maximum number of CPUs held through this budget at runtime:
+     * the budget of a root, see {@link #setCpuBudget(int)}, or the limit of a
+     * child, e.g. to give background work more CPUs while search is idle.
+     *
+     * <p>Resizing is safe while permits are held. When a child shrinks below
+     * the CPUs in use, its permits are asked to give back the excess, see
+     * {@link CpuPermit#getReclaimRequest()}, and no new CPUs are granted
+     * through it until enough have been returned. Queued requests larger than
+     * the new limit fail, see {@link #acquireAsync(int)}. The reservation and
+     * weight of a child stay as they are.</p>
+     *
+     * @param newLimit the new maximum number of CPUs
+     * @throws IllegalArgumentException if the new limit is not positive, or, for a
+     *                                  child, below its reservation or above the
+     *                                  budget of its parent
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void setLimit(int newLimit) {
+        if (parent == null) {
+            setCpuBudget(newLimit);
+            return;
+        }
+        if (newLimit <= 0 || newLimit < share.reserved() || newLimit > parent.cpuBudget) {
+            throw new IllegalArgumentException("Invalid CPU limit: limit=" + newLimit + ", reserved="
+                    + share.reserved() + ", parent budget=" + parent.cpuBudget);
+        }
+
+        int previous;
+        nodeLock.lock();
+        try {
+            previous = cpuBudget;
+            long current = state.get();
+            state.set(pack(available(current) + newLimit - previous, unmet(current)));
+            cpuBudget = newLimit;
+        } finally {
+            nodeLock.unlock();
+        }
+
+        logger.info("CpuBudget {} limit changed from {} to {} CPUs.", name, previous, newLimit);
+        reclaimExcess(used() - newLimit);
+        if (newLimit < previous && root.treeQueued != 0) {
+            failUnsatisfiable();
+        } else if (newLimit > previous && root.treeQueued != 0) {
+            WaitQueue.complete(root.drainWaiters());
+        }
+    }
+
+    /**
+     * Asks the permits held through this budget and its descendants to give
+     * back CPUs beyond a shrunk budget or limit, those of the lowest priority
+     * children first and the permits of this budget itself last.
+     *
+     * @param excess the number of CPUs to reclaim
+     * @return the number of CPUs no permit was asked for
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private int reclaimExcess(int excess) {
+        for (int i = children.size() - 1; i >= 0 && excess > 0; i--) {
+            excess = children.get(i).reclaimExcess(excess);
+        }
+        for (CpuPermit permit : permits) {
+            if (excess <= 0) {
+                break;
+            }
+            int requested = Math.min(excess, permit.numCpus());
+            permit.requestReclaim(requested);
+            excess -= requested;
+        }
+        return excess;
+    }
+
+    /**
+     * Fails the queued requests of this budget and its descendants that no
+     * longer fit into the budgets along their path after a shrink, with the
+     * same exception {@link #acquireAsync(int)} fails unsatisfiable requests
+     * with. Requests are served in FIFO order, so an unsatisfiable head would
+     * otherwise block every request queued behind it. The requests behind it
+     * are served right away if they fit.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void failUnsatisfiable() {
+        List<Runnable> failures = new ArrayList<>();
+        List<WaitQueue<CpuPermit>.Waiter> granted;
+        root.lock.lock();
+        try {
+            collectUnsatisfiable(parent == null ? Integer.MAX_VALUE : parent.capacity(), failures);
+            granted = root.drainWaitersLocked();
+        } finally {
+            root.lock.unlock();
+        }
+        failures.forEach(Runnable::run);
+        WaitQueue.complete(granted);
+    }
+
+    /**
+     * Removes the queued requests of this subtree that exceed the budgets
+     * along their path. Must be called with the lock of the root held.
+     *
+     * @param capacity the smallest budget of the ancestors of this budget
+     * @param failures collects the failing of the removed requests, to be run
+     *                 once the lock is released
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void collectUnsatisfiable(int capacity, List<Runnable> failures) {
+        if (subtreeQueued == 0) {
+            return;
+        }
+        int limit = Math.min(capacity, cpuBudget);
+        List<WaitQueue<CpuPermit>.Waiter> removed = new ArrayList<>();
+        adjustQueued(-waiters.removeIf(numCpus -> numCpus > limit, removed));
+        for (WaitQueue<CpuPermit>.Waiter pending : removed) {
+            IllegalArgumentException error = new IllegalArgumentException("Unsatisfiable number of CPUs: requested="
+                    + pending.amount() + ", budget=" + limit);
+            failures.add(() -> pending.future().completeExceptionally(error));
+        }
+        for (CpuBudget child : children) {
+            child.collectUnsatisfiable(limit, failures);
+        }
+    }
+
+    /**
+     * Returns the largest number of CPUs a single request on this budget can
+     * ever be granted, which is the smallest budget along its path to the root.
+     *
+     * @return the capacity of this budget
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private int capacity() {
+        return parent == null ? cpuBudget : Math.min(cpuBudget, parent.capacity());
+    }
+
+
+    /**
+     * The sort key of a child when serving queued requests.
+     *
+     * @param budget the child budget
+     * @param rank   the rank of the priority class of the child
+     * @param usage  the usage of the child relative to its weight
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private record DrainKey(CpuBudget budget, int rank, double usage) {
+    }
 }
\ No newline at end of file
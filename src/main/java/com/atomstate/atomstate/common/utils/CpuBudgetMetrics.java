@@ -0,0 +1,276 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exposes the usage of a {@link CpuBudget} tree over JMX and as periodic JSON
+ * dumps, to tell whether the budget, not the hardware, limits throughput.
+ *
+ * <p>The metrics are read from the counters and wait time histograms the
+ * budgets keep anyway, see {@link CpuBudget#getTreeStats()}, so exposing them
+ * adds no work to acquiring and releasing CPUs. Acquisitions are attributed
+ * to the {@link CpuPriority} class of the budget they were made on.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ *     {@code CpuBudgetMetrics metrics = new CpuBudgetMetrics(nodeBudget);}
+ *     {@code metrics.register();}
+ *     {@code metrics.export(scheduler, Duration.ofSeconds(10), dataDir.resolve("cpu-budget.json"));}
+ * </pre>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class CpuBudgetMetrics implements CpuBudgetMetricsMXBean {
+    private static final Logger logger = LogManager.getLogger(CpuBudgetMetrics.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String DOMAIN = "com.atomstate.atomstate";
+    private static final String UNCLASSED = "UNCLASSED";
+    // Below this share of the hardware the process is not CPU bound
+    private static final double HARDWARE_BOUND_UTILIZATION = 0.8;
+    private final CpuBudget budget;
+    private final ObjectName objectName;
+
+    /**
+     * Initializes the metrics of a budget tree.
+     *
+     * @param budget the root of the budget tree
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public CpuBudgetMetrics(CpuBudget budget) {
+        this.budget = budget;
+        try {
+            this.objectName = new ObjectName(DOMAIN + ":type=CpuBudget,name=" + ObjectName.quote(budget.getName()));
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Invalid budget name for JMX: " + budget.getName(), e);
+        }
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server.
+     *
+     * @return the name the metrics are registered under
+     * @throws IllegalStateException if metrics of a budget of the same name are
+     *                               already registered
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public ObjectName register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register CPU budget metrics as " + objectName, e);
+        }
+        logger.info("CpuBudget metrics registered as {}", objectName);
+        return objectName;
+    }
+
+    /**
+     * Unregisters the metrics from the platform MBean server if they are
+     * registered.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void unregister() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            logger.warn("Failed to unregister CPU budget metrics {}", objectName, e);
+        }
+    }
+
+    /**
+     * Periodically writes the metrics as JSON to a file. Every dump replaces
+     * the file atomically, so readers never see a partial document.
+     *
+     * @param scheduler the scheduler to run the dumps on
+     * @param interval  the time between two dumps
+     * @param file      the file to write
+     * @return the scheduled dump, which can be cancelled to stop exporting
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public ScheduledFuture<?> export(ScheduledExecutorService scheduler, Duration interval, Path file) {
+        long millis = interval.toMillis();
+        return scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                write(file);
+            } catch (IOException | RuntimeException e) {
+                logger.error("Failed to export CPU budget metrics to {}", file, e);
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes the metrics as JSON to a file, replacing it atomically.
+     *
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void write(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(temp, toJson(), StandardCharsets.UTF_8);
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public int getCpuBudget() {
+        return budget.getCpuBudget();
+    }
+
+    @Override
+    public int getHardwareCpus() {
+        return CpuBudget.getNumCpus();
+    }
+
+    @Override
+    public int getCpusInUse() {
+        return budget.getStats().used();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        int queued = 0;
+        for (CpuBudgetStats stats : budget.getTreeStats()) {
+            queued += stats.queued();
+        }
+        return queued;
+    }
+
+    @Override
+    public double getProcessCpus() {
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+            double load = os.getProcessCpuLoad();
+            return load < 0 ? -1 : load * os.getAvailableProcessors();
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean isBudgetBound() {
+        CpuBudgetStats root = budget.getStats();
+        if (root.available() > 0 && getQueueDepth() == 0) {
+            return false;
+        }
+        int hardwareCpus = getHardwareCpus();
+        double processCpus = getProcessCpus();
+        if (processCpus < 0) {
+            return root.cpuBudget() < hardwareCpus;
+        }
+        return processCpus < hardwareCpus * HARDWARE_BOUND_UTILIZATION;
+    }
+
+    @Override
+    public List<CpuBudgetStats> getBudgets() {
+        return budget.getTreeStats();
+    }
+
+    @Override
+    public List<CpuClassStats> getClasses() {
+        CpuPriority[] priorities = CpuPriority.values();
+        int[] used = new int[priorities.length + 1];
+        int[] queued = new int[priorities.length + 1];
+        long[] granted = new long[priorities.length + 1];
+        long[] denied = new long[priorities.length + 1];
+        List<CpuBudgetStats> tree = budget.getTreeStats();
+        for (CpuBudgetStats stats : tree) {
+            int rank = rank(stats.priority());
+            queued[rank] += stats.queued();
+            granted[rank] += stats.granted();
+            denied[rank] += stats.denied();
+        }
+        // Budgets include the CPUs of their children, so a class uses what its top-most budgets use
+        int unclassed = tree.get(0).used();
+        if (budget.getPriority() == null) {
+            for (CpuBudget child : budget.getChildren()) {
+                if (child.getPriority() != null) {
+                    int childUsed = child.getStats().used();
+                    used[rank(child.getPriority())] += childUsed;
+                    unclassed -= childUsed;
+                }
+            }
+        } else {
+            used[rank(budget.getPriority())] = unclassed;
+            unclassed = 0;
+        }
+        used[priorities.length] = Math.max(0, unclassed);
+
+        List<CpuClassStats> classes = new ArrayList<>(priorities.length + 1);
+        for (int rank = 0; rank <= priorities.length; rank++) {
+            String name = rank < priorities.length ? priorities[rank].name() : UNCLASSED;
+            if (rank < priorities.length || granted[rank] + denied[rank] + used[rank] + queued[rank] > 0) {
+                classes.add(new CpuClassStats(name, used[rank], queued[rank], granted[rank], denied[rank]));
+            }
+        }
+        return classes;
+    }
+
+    @Override
+    public String toJson() {
+        ObjectNode root = MAPPER.createObjectNode()
+                .put("timestamp", System.currentTimeMillis())
+                .put("cpuBudget", getCpuBudget())
+                .put("hardwareCpus", getHardwareCpus())
+                .put("processCpus", getProcessCpus())
+                .put("cpusInUse", getCpusInUse())
+                .put("queueDepth", getQueueDepth())
+                .put("budgetBound", isBudgetBound());
+        root.set("classes", MAPPER.valueToTree(getClasses()));
+        root.set("budgets", MAPPER.valueToTree(getBudgets()));
+        try {
+            return MAPPER.writeValueAsString(root);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to render CPU budget metrics", e);
+        }
+    }
+
+    /**
+     * Returns the slot of a priority class in the per-class counters.
+     *
+     * @param priority the priority class, or {@code null} if unclassed
+     * @return the slot, with unclassed budgets last
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static int rank(CpuPriority priority) {
+        return priority == null ? CpuPriority.values().length : priority.ordinal();
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+import java.util.List;
+
+/**
+ * The JMX view of a {@link CpuBudget} tree, see {@link CpuBudgetMetrics}.
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public interface CpuBudgetMetricsMXBean {
+
+    /**
+     * Returns the number of CPUs of the root budget.
+     *
+     * @return the CPU budget
+     * @since 1.0.0
+     */
+    int getCpuBudget();
+
+    /**
+     * Returns the number of CPUs the process may run on.
+     *
+     * @return the number of hardware CPUs
+     * @since 1.0.0
+     */
+    int getHardwareCpus();
+
+    /**
+     * Returns the number of CPUs currently held through the budget.
+     *
+     * @return the number of CPUs in use
+     * @since 1.0.0
+     */
+    int getCpusInUse();
+
+    /**
+     * Returns the number of callers queued anywhere in the budget tree.
+     *
+     * @return the queue depth
+     * @since 1.0.0
+     */
+    int getQueueDepth();
+
+    /**
+     * Returns the number of CPUs the whole process is busy on.
+     *
+     * @return the recent process CPU usage in CPUs, or a negative value if the
+     * platform does not report it
+     * @since 1.0.0
+     */
+    double getProcessCpus();
+
+    /**
+     * Checks whether the budget rather than the hardware limits throughput.
+     *
+     * @return {@code true} if callers are queued or the budget is exhausted
+     * while the process leaves hardware CPUs idle
+     * @since 1.0.0
+     */
+    boolean isBudgetBound();
+
+    /**
+     * Returns the usage of every budget of the tree.
+     *
+     * @return the statistics of the budgets, every budget before its children
+     * @since 1.0.0
+     */
+    List<CpuBudgetStats> getBudgets();
+
+    /**
+     * Returns the usage of the tree per priority class of the callers.
+     *
+     * @return the statistics per class, in priority order
+     * @since 1.0.0
+     */
+    List<CpuClassStats> getClasses();
+
+    /**
+     * Renders all metrics as one JSON document.
+     *
+     * @return the metrics as JSON
+     * @since 1.0.0
+     */
+    String toJson();
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+/**
+ * A point-in-time view of the usage of a {@link CpuBudget}.
+ *
+ * @param name         the name of the budget
+ * @param priority     the priority class of the budget, or {@code null} if unclassed
+ * @param cpuBudget    the maximum number of CPUs held through the budget
+ * @param reserved     the number of CPUs reserved for the budget by its parent
+ * @param weight       the weight of the budget among its siblings
+ * @param used         the number of CPUs currently held through the budget
+ * @param available    the number of CPUs a request on the budget could acquire
+ * @param queued       the number of callers queued on the budget
+ * @param granted      the number of acquisitions granted so far
+ * @param denied       the number of acquisitions denied or timed out so far
+ * @param waitP50Nanos the median time waiting callers took to be granted CPUs
+ * @param waitP99Nanos the 99th percentile of the time waiting callers took to
+ *                     be granted CPUs
+ * @param waitMaxNanos the longest time a waiting caller took to be granted CPUs
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public record CpuBudgetStats(String name, CpuPriority priority, int cpuBudget, int reserved, int weight,
+                             int used, int available, int queued, long granted, long denied,
+                             long waitP50Nanos, long waitP99Nanos, long waitMaxNanos) {
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+/**
+ * A point-in-time view of the usage of all budgets of one {@link CpuPriority}
+ * class in a budget tree.
+ *
+ * @param priority the name of the priority class, or {@code "UNCLASSED"} for
+ *                 budgets without one
+ * @param used     the number of CPUs held by callers of the class
+ * @param queued   the number of callers of the class queued for CPUs
+ * @param granted  the number of acquisitions of the class granted so far
+ * @param denied   the number of acquisitions of the class denied or timed out
+ *                 so far
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public record CpuClassStats(String priority, int used, int queued, long granted, long denied) {
+}
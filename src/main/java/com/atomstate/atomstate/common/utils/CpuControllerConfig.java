@@ -0,0 +1,69 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+import java.time.Duration;
+
+/**
+ * The parameters of an {@link AdaptiveCpuController}.
+ *
+ * <p>The controller keeps the limit of the background budget between
+ * {@code minCpus} and {@code maxCpus}. While search p99 latency stays below
+ * {@code targetSearchP99} and background work is held back by its limit, it
+ * adds {@code increaseStep} CPUs per adjustment; as soon as the latency
+ * exceeds the target it multiplies the limit by {@code decreaseFactor}.</p>
+ *
+ * @param minCpus         the lowest limit of the background budget
+ * @param maxCpus         the highest limit of the background budget
+ * @param targetSearchP99 the search p99 latency to stay below
+ * @param increaseStep    the number of CPUs added per adjustment
+ * @param decreaseFactor  the factor the limit is multiplied with when search
+ *                        latency exceeds the target, between 0 and 1
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public record CpuControllerConfig(int minCpus, int maxCpus, Duration targetSearchP99, int increaseStep,
+                                  double decreaseFactor) {
+    /**
+     * Validates the parameters.
+     *
+     * @throws IllegalArgumentException if the bounds are not positive or out of
+     *                                  order, the target or step is not positive
+     *                                  or the factor is not between 0 and 1
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public CpuControllerConfig {
+        if (minCpus <= 0 || maxCpus < minCpus || targetSearchP99.isNegative() || targetSearchP99.isZero()
+                || increaseStep <= 0 || !(decreaseFactor > 0 && decreaseFactor < 1)) {
+            throw new IllegalArgumentException("Invalid CPU controller config: minCpus=" + minCpus + ", maxCpus="
+                    + maxCpus + ", targetSearchP99=" + targetSearchP99 + ", increaseStep=" + increaseStep
+                    + ", decreaseFactor=" + decreaseFactor);
+        }
+    }
+
+    /**
+     * Creates a config with the given bounds, the target of
+     * {@link Default#CPU_CONTROLLER_TARGET_SEARCH_P99}, steps of one CPU and
+     * halving on latency spikes.
+     *
+     * @param minCpus the lowest limit of the background budget
+     * @param maxCpus the highest limit of the background budget
+     * @return the config
+     * @throws IllegalArgumentException if the bounds are not positive or out of order
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static CpuControllerConfig of(int minCpus, int maxCpus) {
+        return new CpuControllerConfig(minCpus, maxCpus, Default.CPU_CONTROLLER_TARGET_SEARCH_P99, 1, 0.5);
+    }
+}
@@ -10,20 +10,189 @@
 
 package com.atomstate.atomstate.common.utils;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Represents a permit for CPU usage, encapsulating the number of CPUs
  * allocated through the {@code CpuBudget} management system.
  *
- * <p>The {@code CpuPermit} record is a simple data structure used to
- * represent the number of CPUs that have been successfully acquired
- * for a particular operation. This allows for type-safe handling of
- * CPU permits in concurrent environments.</p>
+ * <p>A {@code CpuPermit} is handed out by a {@link CpuBudget} and holds its
+ * CPUs until it is closed. Closing the permit returns the CPUs to the budget
+ * that issued it, which makes them available to the next waiting caller.
+ * Closing is idempotent, so the permit can safely be used in a
+ * try-with-resources block and closed again afterwards.</p>
+ *
+ * <p>Permits are elastic: a long-running job can {@link #grow(int)} its permit
+ * when the budget has spare CPUs and {@link #shrink(int)} it to hand CPUs back
+ * while it keeps running. A permit never shrinks below one CPU; closing it is
+ * the only way to return the last one.</p>
+ *
+ * <p>Permits of a priority class that borrowed CPUs beyond the reservation of
+ * the class may be asked to hand them back when a higher class runs short,
+ * see {@link #getReclaimRequest()}. Long-running jobs should check it between
+ * units of work and {@link #shrink(int)} accordingly.</p>
  *
- * @param numCpus the number of CPUs granted by this permit
+ * <p>Example usage:</p>
+ * <pre>
+ *     {@code try (CpuPermit permit = cpuBudget.acquire(4, Duration.ofSeconds(1)).orElseThrow()) {}
+ *         // Run the job on permit.numCpus() threads
+ *     {@code }}
+ * </pre>
  *
  * @author Atomstate
  * @version 1.0.0
  * @since 1.0.0
  */
-public record CpuPermit(int numCpus) {
-}
\ No newline at end of file
+public final class CpuPermit implements AutoCloseable {
+    private final CpuBudget budget;
+    private final AtomicInteger numCpus;
+    private final AtomicInteger reclaim = new AtomicInteger();
+
+    /**
+     * Creates a permit for CPUs that have already been taken from the budget.
+     *
+     * @param budget  the budget that issued this permit
+     * @param numCpus the number of CPUs granted by this permit
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    CpuPermit(CpuBudget budget, int numCpus) {
+        this.budget = budget;
+        this.numCpus = new AtomicInteger(numCpus);
+    }
+
+    /**
+     * Returns the number of CPUs currently granted by this permit, which is
+     * zero once the permit has been closed.
+     *
+     * @return the number of CPUs granted by this permit
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int numCpus() {
+        return numCpus.get();
+    }
+
+    /**
+     * Checks whether the CPUs of this permit have been returned to the budget.
+     *
+     * @return {@code true} if this permit has been closed; {@code false} otherwise
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public boolean isReleased() {
+        return numCpus.get() == 0;
+    }
+
+    /**
+     * Attempts to add CPUs to this permit without waiting.
+     *
+     * <p>As many of the requested CPUs as are currently available are added,
+     * which may be none at all. A closed permit, or one that has been asked to
+     * give CPUs back, cannot grow.</p>
+     *
+     * @param additionalCpus the number of CPUs to add
+     * @return the number of CPUs actually added
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int grow(int additionalCpus) {
+        if (additionalCpus <= 0 || isReleased() || reclaim.get() > 0) {
+            return 0;
+        }
+        int granted = budget.tryGrow(additionalCpus);
+        if (granted == 0) {
+            return 0;
+        }
+        int current;
+        do {
+            current = numCpus.get();
+            if (current == 0) {
+                // Closed concurrently, the new CPUs must not leak
+                budget.releaseCpus(granted);
+                return 0;
+            }
+        } while (!numCpus.compareAndSet(current, current + granted));
+        return granted;
+    }
+
+    /**
+     * Returns CPUs from this permit to the budget while keeping the permit open.
+     * The permit always keeps at least one CPU.
+     *
+     * @param cpus the number of CPUs to return
+     * @return the number of CPUs actually returned
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int shrink(int cpus) {
+        if (cpus <= 0) {
+            return 0;
+        }
+        int current;
+        int returned;
+        do {
+            current = numCpus.get();
+            returned = Math.min(cpus, current - 1);
+            if (returned <= 0) {
+                return 0;
+            }
+        } while (!numCpus.compareAndSet(current, current - returned));
+        int shrunk = returned;
+        reclaim.updateAndGet(requested -> Math.max(0, requested - shrunk));
+        budget.releaseCpus(returned);
+        return returned;
+    }
+
+    /**
+     * Returns the number of CPUs the budget has asked this permit to give back
+     * because a higher priority class is short of CPUs. The request is reduced
+     * by every {@link #shrink(int)} and dropped when the permit is closed.
+     *
+     * @return the number of CPUs to give back, or {@code 0} if none
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int getReclaimRequest() {
+        return Math.min(reclaim.get(), numCpus.get());
+    }
+
+    /**
+     * Asks this permit to give back at least the given number of CPUs.
+     *
+     * @param cpus the number of CPUs to give back
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    void requestReclaim(int cpus) {
+        reclaim.accumulateAndGet(cpus, Math::max);
+    }
+
+    /**
+     * Returns the CPUs held by this permit to the budget that issued it.
+     * Subsequent calls have no effect.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public void close() {
+        int held = numCpus.getAndSet(0);
+        if (held > 0) {
+            reclaim.set(0);
+            budget.releasePermit(this, held);
+        }
+    }
+
+    /**
+     * Returns a string representation of this permit.
+     *
+     * @return a string representation of this permit
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public String toString() {
+        return "CpuPermit[numCpus=" + numCpus.get() + "]";
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+/**
+ * The classes of work that share a {@link CpuBudget}, ordered from the highest
+ * to the lowest priority.
+ *
+ * <p>When CPUs are scarce, queued requests of a higher class are served first,
+ * and CPUs that lower classes borrowed beyond their reservation are reclaimed
+ * from them on behalf of higher classes.</p>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public enum CpuPriority {
+    /**
+     * Latency-sensitive search requests.
+     *
+     * @since 1.0.0
+     */
+    SEARCH,
+
+    /**
+     * Building vector and payload indexes for newly ingested points.
+     *
+     * @since 1.0.0
+     */
+    INDEXING,
+
+    /**
+     * Background segment optimization such as merges and vacuuming.
+     *
+     * @since 1.0.0
+     */
+    OPTIMIZER,
+
+    /**
+     * Creating and restoring snapshots.
+     *
+     * @since 1.0.0
+     */
+    SNAPSHOT
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+/**
+ * Describes the part of a parent {@link CpuBudget} that a child budget may use.
+ *
+ * <p>The reserved CPUs are guaranteed to the child: the parent never hands
+ * them to anybody else while the child is not using them. Beyond its
+ * reservation the child borrows from the unreserved capacity of the parent,
+ * but never holds more than its limit.</p>
+ *
+ * <p>The weight only matters while siblings compete for CPUs: a child that
+ * holds more than its weighted fair share of the parent then yields to queued
+ * siblings. As long as nobody else is waiting, the child may use idle
+ * capacity up to its limit regardless of its weight.</p>
+ *
+ * @param reserved the number of CPUs guaranteed to the child
+ * @param limit    the maximum number of CPUs the child may hold at once
+ * @param weight   the relative weight of the child among its siblings
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public record CpuShare(int reserved, int limit, int weight) {
+    /**
+     * Validates the share.
+     *
+     * @throws IllegalArgumentException if the reservation is negative, the limit
+     *                                  or weight is not positive or the reservation
+     *                                  exceeds the limit
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public CpuShare {
+        if (reserved < 0 || limit <= 0 || reserved > limit || weight <= 0) {
+            throw new IllegalArgumentException("Invalid CPU share: reserved=" + reserved + ", limit=" + limit + ", weight=" + weight);
+        }
+    }
+
+    /**
+     * Creates a share with the default weight of one.
+     *
+     * @param reserved the number of CPUs guaranteed to the child
+     * @param limit    the maximum number of CPUs the child may hold at once
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public CpuShare(int reserved, int limit) {
+        this(reserved, limit, 1);
+    }
+}
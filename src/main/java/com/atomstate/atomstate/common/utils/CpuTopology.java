@@ -0,0 +1,414 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.BitSet;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+
+/**
+ * Detects how many CPUs the process may actually use, taking container and
+ * cgroup restrictions into account.
+ *
+ * <p>The detector reads the CFS quota and period as well as the cpuset of the
+ * cgroup the process runs in, for both cgroup v1 and v2. The cgroup of the
+ * process is resolved from {@code /proc/self/cgroup} relative to the cgroup
+ * root; if its directory is not visible, e.g. in a container without a cgroup
+ * namespace, the limits at the root are used. With cgroup v2 the tightest
+ * quota of the cgroup and its ancestors applies. A fractional quota is
+ * rounded down, since running one thread per rounded-up CPU makes the kernel
+ * throttle the whole cgroup at the end of every period. The result never
+ * exceeds {@link Runtime#availableProcessors()} and is at least one.</p>
+ *
+ * <p>The cgroup root and the cgroup membership file are configurable so that
+ * tests can point the detector at a fake tree. Vertically resized pods are picked up by {@link #monitor}, which
+ * re-checks the limits periodically.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ *     // Follow vertical pod resizes with the node budget
+ *     {@code CpuBudget node = CpuBudget.forNode(0);}
+ *     {@code CpuTopology.system().monitor(scheduler, Duration.ofSeconds(30),}
+ *         {@code cpus -> node.setCpuBudget(CpuBudget.getCpuBudget(0)));}
+ * </pre>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class CpuTopology {
+    private static final Logger logger = LogManager.getLogger(CpuTopology.class);
+    private static final Path DEFAULT_CGROUP_ROOT = Path.of("/sys/fs/cgroup");
+    private static final Path PROC_SELF_CGROUP = Path.of("/proc/self/cgroup");
+    private static final CpuTopology SYSTEM = new CpuTopology(DEFAULT_CGROUP_ROOT);
+    private static final String UNLIMITED = "max";
+    private final Path cgroupRoot;
+    private final Path procCgroup;
+    private final IntSupplier availableProcessors;
+    private volatile int effectiveCpus;
+
+    /**
+     * Initializes a {@code CpuTopology} reading the cgroup files below the given
+     * root, usually {@code /sys/fs/cgroup}.
+     *
+     * @param cgroupRoot the root of the cgroup file system
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public CpuTopology(Path cgroupRoot) {
+        this(cgroupRoot, Runtime.getRuntime()::availableProcessors);
+    }
+
+    /**
+     * Initializes a {@code CpuTopology} with a custom source for the number of
+     * processors reported by the JVM.
+     *
+     * @param cgroupRoot          the root of the cgroup file system
+     * @param availableProcessors supplies the number of processors reported by the JVM
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    CpuTopology(Path cgroupRoot, IntSupplier availableProcessors) {
+        this(cgroupRoot, PROC_SELF_CGROUP, availableProcessors);
+    }
+
+    /**
+     * Initializes a {@code CpuTopology} with a custom file listing the cgroups
+     * of the process and a custom source for the number of processors.
+     *
+     * @param cgroupRoot          the root of the cgroup file system
+     * @param procCgroup          the cgroup membership file, usually {@code /proc/self/cgroup}
+     * @param availableProcessors supplies the number of processors reported by the JVM
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    CpuTopology(Path cgroupRoot, Path procCgroup, IntSupplier availableProcessors) {
+        this.cgroupRoot = cgroupRoot;
+        this.procCgroup = procCgroup;
+        this.availableProcessors = availableProcessors;
+        this.effectiveCpus = detect().effectiveCpus();
+    }
+
+    /**
+     * Returns the detector for the cgroup the current process runs in.
+     *
+     * @return the system CPU topology
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static CpuTopology system() {
+        return SYSTEM;
+    }
+
+    /**
+     * Reads the current CPU limits of the cgroup.
+     *
+     * @return the detected CPU limits
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public CpuLimits detect() {
+        int processors = availableProcessors.getAsInt();
+        double quotaCpus;
+        int cpusetCpus;
+        if (Files.exists(cgroupRoot.resolve("cgroup.controllers"))) {
+            Path cgroup = resolveCgroup(cgroupRoot, "");
+            quotaCpus = 0;
+            for (Path dir = cgroup; dir != null && dir.startsWith(cgroupRoot); dir = dir.getParent()) {
+                double dirQuota = readQuotaV2(dir.resolve("cpu.max"));
+                if (dirQuota > 0 && (quotaCpus == 0 || dirQuota < quotaCpus)) {
+                    quotaCpus = dirQuota;
+                }
+            }
+            cpusetCpus = readCpuset(cgroup.resolve("cpuset.cpus.effective"));
+        } else {
+            Path cpuMount = Files.isDirectory(cgroupRoot.resolve("cpu"))
+                    ? cgroupRoot.resolve("cpu") : cgroupRoot.resolve("cpu,cpuacct");
+            Path cpuController = resolveCgroup(cpuMount, "cpu");
+            quotaCpus = readQuotaV1(cpuController.resolve("cpu.cfs_quota_us"), cpuController.resolve("cpu.cfs_period_us"));
+            cpusetCpus = readCpuset(resolveCgroup(cgroupRoot.resolve("cpuset"), "cpuset").resolve("cpuset.cpus"));
+        }
+
+        int effective = processors;
+        if (quotaCpus > 0) {
+            effective = Math.min(effective, (int) Math.floor(quotaCpus));
+        }
+        if (cpusetCpus > 0) {
+            effective = Math.min(effective, cpusetCpus);
+        }
+        return new CpuLimits(processors, quotaCpus, cpusetCpus, Math.max(effective, 1));
+    }
+
+    /**
+     * Returns the number of CPUs found by the last detection.
+     *
+     * @return the number of usable CPUs
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int getEffectiveCpus() {
+        return effectiveCpus;
+    }
+
+    /**
+     * Re-reads the CPU limits and remembers the new number of usable CPUs.
+     *
+     * @return {@code true} if the number of usable CPUs changed; {@code false} otherwise
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public boolean refresh() {
+        int previous = effectiveCpus;
+        CpuLimits limits = detect();
+        effectiveCpus = limits.effectiveCpus();
+        if (previous != limits.effectiveCpus()) {
+            logger.info("CPU limits changed from {} to {} CPUs: {}", previous, limits.effectiveCpus(), limits);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Periodically re-checks the CPU limits and notifies the listener with the
+     * new number of usable CPUs whenever it changes.
+     *
+     * @param scheduler the scheduler to run the checks on
+     * @param interval  the time between two checks
+     * @param listener  receives the new number of usable CPUs
+     * @return the scheduled check, which can be cancelled to stop monitoring
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public ScheduledFuture<?> monitor(ScheduledExecutorService scheduler, Duration interval, IntConsumer listener) {
+        long millis = interval.toMillis();
+        return scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                if (refresh()) {
+                    listener.accept(effectiveCpus);
+                }
+            } catch (RuntimeException e) {
+                logger.error("Failed to apply changed CPU limits", e);
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Resolves the directory of the cgroup of the process below a mount point
+     * from the cgroup membership file, whose lines have the form
+     * {@code "id:controllers:path"}.
+     *
+     * @param mount      the mount point of the hierarchy
+     * @param controller the v1 controller of the hierarchy, or an empty string
+     *                   for the unified v2 hierarchy
+     * @return the cgroup directory, or the mount point if the cgroup is unknown
+     * or not visible
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private Path resolveCgroup(Path mount, String controller) {
+        if (!Files.isReadable(procCgroup)) {
+            return mount;
+        }
+        try (var lines = Files.lines(procCgroup, StandardCharsets.US_ASCII)) {
+            for (String line : (Iterable<String>) lines::iterator) {
+                String[] parts = line.split(":", 3);
+                if (parts.length != 3 || !matches(parts[1], controller)) {
+                    continue;
+                }
+                String relative = parts[2].trim();
+                while (relative.startsWith("/")) {
+                    relative = relative.substring(1);
+                }
+                Path cgroup = mount.resolve(relative).normalize();
+                return cgroup.startsWith(mount) && Files.isDirectory(cgroup) ? cgroup : mount;
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to read cgroup membership: {}", procCgroup, e);
+        }
+        return mount;
+    }
+
+    /**
+     * Checks whether a controller list of the cgroup membership file names
+     * the given hierarchy.
+     *
+     * @param controllers the comma-separated controllers, empty for cgroup v2
+     * @param controller  the controller to find, or an empty string for cgroup v2
+     * @return {@code true} if the line belongs to the hierarchy; {@code false} otherwise
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static boolean matches(String controllers, String controller) {
+        if (controller.isEmpty()) {
+            return controllers.isEmpty();
+        }
+        for (String name : controllers.split(",")) {
+            if (name.equals(controller)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads a cgroup v2 {@code cpu.max} file of the form {@code "quota period"},
+     * where the quota may be {@code max}.
+     *
+     * @param cpuMax the file to read
+     * @return the quota in CPUs, or {@code 0} if unlimited or unknown
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static double readQuotaV2(Path cpuMax) {
+        String content = readFirstLine(cpuMax);
+        if (content == null) {
+            return 0;
+        }
+        String[] parts = content.split("\\s+");
+        if (parts.length != 2 || UNLIMITED.equals(parts[0])) {
+            return 0;
+        }
+        return quota(parts[0], parts[1], cpuMax);
+    }
+
+    /**
+     * Reads the cgroup v1 CFS quota and period, where a negative quota means
+     * unlimited.
+     *
+     * @param quotaFile  the {@code cpu.cfs_quota_us} file
+     * @param periodFile the {@code cpu.cfs_period_us} file
+     * @return the quota in CPUs, or {@code 0} if unlimited or unknown
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static double readQuotaV1(Path quotaFile, Path periodFile) {
+        String quota = readFirstLine(quotaFile);
+        String period = readFirstLine(periodFile);
+        if (quota == null || period == null) {
+            return 0;
+        }
+        return quota(quota, period, quotaFile);
+    }
+
+    /**
+     * Converts a quota and period in microseconds into a number of CPUs.
+     *
+     * @param quota  the quota in microseconds
+     * @param period the period in microseconds
+     * @param source the file the values were read from, for diagnostics
+     * @return the quota in CPUs, or {@code 0} if unlimited or invalid
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static double quota(String quota, String period, Path source) {
+        try {
+            long quotaMicros = Long.parseLong(quota.trim());
+            long periodMicros = Long.parseLong(period.trim());
+            if (quotaMicros <= 0 || periodMicros <= 0) {
+                return 0;
+            }
+            return (double) quotaMicros / periodMicros;
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid CPU quota in {}: quota={}, period={}", source, quota, period);
+            return 0;
+        }
+    }
+
+    /**
+     * Reads a cpuset list such as {@code "0-3,6,8-9"}.
+     *
+     * @param cpusetFile the file to read
+     * @return the number of CPUs in the set, or {@code 0} if unknown
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static int readCpuset(Path cpusetFile) {
+        String content = readFirstLine(cpusetFile);
+        if (content == null || content.isBlank()) {
+            return 0;
+        }
+        return parseCpuList(content, cpusetFile);
+    }
+
+    /**
+     * Counts the CPUs of a cpuset list.
+     *
+     * @param cpuList the cpuset list
+     * @param source  the file the list was read from, for diagnostics
+     * @return the number of CPUs in the set, or {@code 0} if invalid
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    static int parseCpuList(String cpuList, Path source) {
+        BitSet cpus = new BitSet();
+        try {
+            for (String range : cpuList.trim().split(",")) {
+                int dash = range.indexOf('-');
+                if (dash < 0) {
+                    cpus.set(Integer.parseInt(range.trim()));
+                } else {
+                    int from = Integer.parseInt(range.substring(0, dash).trim());
+                    int to = Integer.parseInt(range.substring(dash + 1).trim());
+                    cpus.set(from, to + 1);
+                }
+            }
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            logger.warn("Invalid cpuset in {}: {}", source, cpuList);
+            return 0;
+        }
+        return cpus.cardinality();
+    }
+
+    /**
+     * Reads the first line of a cgroup file.
+     *
+     * @param file the file to read
+     * @return the trimmed first line, or {@code null} if the file does not exist
+     * or cannot be read
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static String readFirstLine(Path file) {
+        if (!Files.isReadable(file)) {
+            return null;
+        }
+        try (var lines = Files.lines(file, StandardCharsets.US_ASCII)) {
+            return lines.findFirst().map(String::trim).orElse(null);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to read cgroup file: {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * The CPU limits of the cgroup the process runs in.
+     *
+     * @param availableProcessors the processors reported by the JVM
+     * @param quotaCpus           the CFS quota in CPUs, or {@code 0} if unlimited
+     * @param cpusetCpus          the number of CPUs in the cpuset, or {@code 0} if unrestricted
+     * @param effectiveCpus       the number of CPUs the process should plan for
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public record CpuLimits(int availableProcessors, double quotaCpus, int cpusetCpus, int effectiveCpus) {
+    }
+}
@@ -52,12 +52,143 @@ public class Default {
     public static final Duration CONSENSUS_META_OP_WAIT = Duration.ofSeconds(10);
 
     /**
-     * The maximum number of pooled elements to preserve in memory.
+     * The maximum number of pooled elements to preserve in memory, based on the
+     * CPUs detected for the container.
      *
      * @since 1.0.0
      */
     public static final int POOL_KEEP_LIMIT = Math.min(Math.max(getNumCpus(), 16), 128);
 
+    /**
+     * The share of component values the int8 code range of quantized vectors
+     * covers; the most extreme values outside of it are clamped.
+     *
+     * @since 1.0.0
+     */
+    public static final float QUANTIZATION_QUANTILE = 0.99f;
+
+    /**
+     * The factor by which searches on quantized vectors enlarge their candidate
+     * list before rescoring it against the original vectors.
+     *
+     * @since 1.0.0
+     */
+    public static final double QUANTIZATION_OVERSAMPLING = 2.0;
+
+    /**
+     * The number of bytes in which an {@link IoBudget} paces large sequential
+     * writes.
+     *
+     * @since 1.0.0
+     */
+    public static final int IO_CHUNK_BYTES = 1 << 20;
+
+    /**
+     * The number of points a payload filter may match for a filtered search
+     * to score all of them instead of traversing the graph.
+     *
+     * @since 1.0.0
+     */
+    public static final int FILTER_FULL_SCAN_POINTS = 1000;
+
+    /**
+     * The share of indexed points a payload filter must match for a filtered
+     * search to search the graph without it and drop the few misses.
+     *
+     * @since 1.0.0
+     */
+    public static final double FILTER_UNFILTERED_SELECTIVITY = 0.9;
+
+    /**
+     * The size after which a write-ahead log starts a new segment file.
+     *
+     * @since 1.0.0
+     */
+    public static final long WAL_SEGMENT_BYTES = 64L << 20;
+
+    /**
+     * The time a write-ahead log append waits for further appends to share
+     * its sync.
+     *
+     * @since 1.0.0
+     */
+    public static final Duration WAL_COMMIT_WINDOW = Duration.ofMillis(2);
+
+    /**
+     * The number of bytes per checksummed chunk of a snapshot.
+     *
+     * @since 1.0.0
+     */
+    public static final int SNAPSHOT_CHUNK_BYTES = 4 << 20;
+
+    /**
+     * The search p99 latency above which the adaptive CPU controller takes
+     * CPUs away from background work.
+     *
+     * @since 1.0.0
+     */
+    public static final Duration CPU_CONTROLLER_TARGET_SEARCH_P99 = Duration.ofMillis(50);
+
+    /**
+     * The time between two adjustments of the adaptive CPU controller.
+     *
+     * @since 1.0.0
+     */
+    public static final Duration CPU_CONTROLLER_INTERVAL = Duration.ofSeconds(5);
+
+    /**
+     * The share of deleted points above which a segment is vacuumed.
+     *
+     * @since 1.0.0
+     */
+    public static final double OPTIMIZER_DELETED_THRESHOLD = 0.2;
+
+    /**
+     * The number of segments of a collection above which the smallest ones
+     * are merged, one per CPU so that a search fans out to every CPU once.
+     *
+     * @since 1.0.0
+     */
+    public static final int OPTIMIZER_MAX_SEGMENTS = Math.max(getNumCpus(), 2);
+
+    /**
+     * The number of unindexed points of a segment from which its index is built.
+     *
+     * @since 1.0.0
+     */
+    public static final long OPTIMIZER_INDEXING_THRESHOLD = 20_000;
+
+    /**
+     * The time between two checks of the segment optimizer.
+     *
+     * @since 1.0.0
+     */
+    public static final Duration OPTIMIZER_INTERVAL = Duration.ofSeconds(1);
+
+    /**
+     * The time a request waits for CPUs to enter a CPU-heavy section before
+     * it fails.
+     *
+     * @since 1.0.0
+     */
+    public static final Duration REQUEST_CPU_WAIT = Duration.ofSeconds(1);
+
+    /**
+     * The time a search waits for the memory of a new search context of an
+     * index before it fails.
+     *
+     * @since 1.0.0
+     */
+    public static final Duration SEARCH_MEMORY_WAIT = Duration.ofSeconds(1);
+
+    /**
+     * The time a virtual thread may pin its carrier thread before it is
+     * reported.
+     *
+     * @since 1.0.0
+     */
+    public static final Duration PINNED_THREAD_THRESHOLD = Duration.ofMillis(20);
+
     /**
      * Returns the default CPU budget parameter based on the number of CPUs.
      * <p>
@@ -143,4 +274,74 @@ public class Default {
             return 16;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Determines the default number of threads to be used for HNSW graph building
+     * based on the CPUs detected for the container, see
+     * {@link CpuBudget#getNumCpus()}.
+     *
+     * @return the number of threads to use for HNSW tasks
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static int threadCountForHnsw() {
+        return threadCountForHnsw(getNumCpus());
+    }
+
+    /**
+     * Returns the default share of a CPU budget for a priority class.
+     * <p>
+     * The shares are determined as follows:
+     * <ul>
+     *   <li>{@code SEARCH} reserves a quarter of the budget and may use all of it</li>
+     *   <li>{@code INDEXING} reserves nothing and may use all of the budget</li>
+     *   <li>{@code OPTIMIZER} reserves nothing and may use half of the budget</li>
+     *   <li>{@code SNAPSHOT} reserves nothing and may use a quarter of the budget</li>
+     * </ul>
+     * Every class may use at least one CPU.
+     * </p>
+     *
+     * @param priority  the priority class
+     * @param cpuBudget the CPU budget shared by the classes
+     * @return the default share of the priority class
+     *
+     * <p>Example usage:</p>
+     * <pre>
+     *     // Split a node budget into the default priority classes
+     *     {@code CpuBudget node = new CpuBudget(CpuBudget.getCpuBudget(0));}
+     *     {@code for (CpuPriority priority : CpuPriority.values()) {}
+     *         {@code node.newChild(priority, Default.defaultCpuShare(priority, node.getCpuBudget()));}
+     *     {@code }}
+     * </pre>
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static CpuShare defaultCpuShare(CpuPriority priority, int cpuBudget) {
+        return switch (priority) {
+            case SEARCH -> new CpuShare(cpuBudget / 4, Math.max(cpuBudget, 1));
+            case INDEXING -> new CpuShare(0, Math.max(cpuBudget, 1));
+            case OPTIMIZER -> new CpuShare(0, Math.max(cpuBudget / 2, 1));
+            case SNAPSHOT -> new CpuShare(0, Math.max(cpuBudget / 4, 1));
+        };
+    }
+
+    /**
+     * Returns the default memory budget of a node, which is three quarters of
+     * the combined heap and off-heap limits. The remaining quarter is left for
+     * the many small allocations that do not reserve memory through the budget.
+     *
+     * @param maxHeap   the maximum heap size in bytes
+     * @param maxDirect the maximum off-heap size in bytes
+     * @return the default memory budget in bytes
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static long defaultMemoryBudget(long maxHeap, long maxDirect) {
+        long total = maxHeap + maxDirect;
+        if (total < 0) {
+            // Unlimited heaps report Long.MAX_VALUE
+            total = Long.MAX_VALUE;
+        }
+        return Math.max(total - total / 4, 1);
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code IoBudget} class limits the background disk I/O of a node, the
+ * counterpart of {@link CpuBudget} for flushes, merges and snapshots.
+ *
+ * <p>The budget bounds two things. The number of concurrent operations is
+ * bounded by a fair semaphore, so a burst of flushes queues instead of
+ * interleaving on the disk. The bytes per second of all operations together
+ * are bounded by a token bucket, which paces large sequential writes in
+ * chunks, see {@link IoPermit#write}. Both leave disk bandwidth to the
+ * page-ins of memory-mapped segments on the search path.</p>
+ *
+ * <p>The token bucket is kept as a single timestamp, the time at which the
+ * bytes granted so far are paid off at the configured rate. A request moves
+ * the timestamp forward by its cost and waits until the timestamp is no more
+ * than one chunk ahead of the clock, so an idle budget allows a burst of one
+ * chunk and pacing never takes a lock. Every {@link IoClass} keeps its own
+ * counters, see {@link #getStats()}.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ *     // Allow 2 concurrent operations and 100 MiB per second
+ *     {@code IoBudget ioBudget = new IoBudget(2, 100L << 20);}
+ *
+ *     {@code try (IoPermit permit = ioBudget.acquire(IoClass.SNAPSHOT, Duration.ofMinutes(1)).orElseThrow()) {}
+ *         {@code MappedVectors.write(path, vectors, permit);}
+ *     {@code }}
+ * </pre>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class IoBudget {
+    private static final Logger logger = LogManager.getLogger(IoBudget.class);
+    private static final Duration DIAGNOSTICS_INTERVAL = Duration.ofSeconds(10);
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private final RateLimitedLogger diagnostics = new RateLimitedLogger(logger, DIAGNOSTICS_INTERVAL);
+    private final int maxOperations;
+    private final int chunkBytes;
+    private final Semaphore operations;
+    // The time at which all bytes granted so far are paid off
+    private final AtomicLong paidOffNanos = new AtomicLong(System.nanoTime());
+    private final Counters[] counters = new Counters[IoClass.values().length];
+    private volatile long bytesPerSecond;
+
+    /**
+     * Initializes an {@code IoBudget} that paces writes in chunks of
+     * {@link Default#IO_CHUNK_BYTES} bytes.
+     *
+     * @param maxOperations  the maximum number of concurrent operations
+     * @param bytesPerSecond the maximum rate of all operations together, or
+     *                       {@code 0} for no limit
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public IoBudget(int maxOperations, long bytesPerSecond) {
+        this(maxOperations, bytesPerSecond, Default.IO_CHUNK_BYTES);
+    }
+
+    /**
+     * Initializes an {@code IoBudget}.
+     *
+     * @param maxOperations  the maximum number of concurrent operations
+     * @param bytesPerSecond the maximum rate of all operations together, or
+     *                       {@code 0} for no limit
+     * @param chunkBytes     the number of bytes large writes are paced in, which
+     *                       is also the burst an idle budget allows
+     * @throws IllegalArgumentException if a limit is negative or a size is not positive
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public IoBudget(int maxOperations, long bytesPerSecond, int chunkBytes) {
+        if (maxOperations <= 0 || bytesPerSecond < 0 || chunkBytes <= 0) {
+            throw new IllegalArgumentException("Invalid I/O budget: maxOperations=" + maxOperations
+                    + ", bytesPerSecond=" + bytesPerSecond + ", chunkBytes=" + chunkBytes);
+        }
+        this.maxOperations = maxOperations;
+        this.chunkBytes = chunkBytes;
+        this.bytesPerSecond = bytesPerSecond;
+        this.operations = new Semaphore(maxOperations, true);
+        for (IoClass ioClass : IoClass.values()) {
+            counters[ioClass.ordinal()] = new Counters();
+        }
+        logger.info("IoBudget initialized with {} operations and {} bytes per second.", maxOperations, bytesPerSecond);
+    }
+
+    /**
+     * Attempts to start an operation without waiting.
+     *
+     * <p>The attempt fails while all operation slots are taken or other
+     * callers are queued for one.</p>
+     *
+     * @param ioClass the class of the operation
+     * @return an {@code Optional<IoPermit>} containing a permit if successful,
+     * or an empty {@code Optional} if no operation slot is available
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public Optional<IoPermit> tryAcquire(IoClass ioClass) {
+        if (operations.hasQueuedThreads() || !operations.tryAcquire()) {
+            counters[ioClass.ordinal()].denied.increment();
+            diagnostics.warn("Failed to start I/O operation: active={}, queued={}", maxOperations - operations.availablePermits(), operations.getQueueLength());
+            return Optional.empty();
+        }
+        return Optional.of(newPermit(ioClass));
+    }
+
+    /**
+     * Starts an operation, waiting up to the given timeout for an operation
+     * slot. Waiting callers are served in FIFO order.
+     *
+     * @param ioClass the class of the operation
+     * @param timeout the maximum time to wait for a slot
+     * @return an {@code Optional<IoPermit>} containing a permit if successful,
+     * or an empty {@code Optional} if the timeout elapsed first
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public Optional<IoPermit> acquire(IoClass ioClass, Duration timeout) throws InterruptedException {
+        if (!operations.tryAcquire(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+            counters[ioClass.ordinal()].denied.increment();
+            diagnostics.warn("Timed out starting I/O operation: active={}, queued={}", maxOperations - operations.availablePermits(), operations.getQueueLength());
+            return Optional.empty();
+        }
+        return Optional.of(newPermit(ioClass));
+    }
+
+    /**
+     * Waits until the rate limit allows the given number of bytes and accounts
+     * them to a class.
+     *
+     * @param ioClass the class of the operation
+     * @param bytes   the number of bytes about to be moved
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    void pace(IoClass ioClass, long bytes) throws InterruptedException {
+        if (bytes <= 0) {
+            return;
+        }
+        Counters classCounters = counters[ioClass.ordinal()];
+        classCounters.bytes.add(bytes);
+        long rate = bytesPerSecond;
+        if (rate == 0) {
+            return;
+        }
+        long cost = costNanos(bytes, rate);
+        long burst = costNanos(chunkBytes, rate);
+        long now;
+        long paidOff;
+        long next;
+        do {
+            now = System.nanoTime();
+            paidOff = paidOffNanos.get();
+            next = Math.max(paidOff, now) + cost;
+        } while (!paidOffNanos.compareAndSet(paidOff, next));
+        long wait = next - burst - now;
+        if (wait > 0) {
+            classCounters.pacedNanos.add(wait);
+            Thread.sleep(Duration.ofNanos(wait));
+        }
+    }
+
+    /**
+     * Returns the operation slot of a closed permit.
+     *
+     * @param ioClass the class of the operation
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    void release(IoClass ioClass) {
+        counters[ioClass.ordinal()].active.decrementAndGet();
+        operations.release();
+    }
+
+    /**
+     * Creates a permit for an operation slot that has already been taken.
+     *
+     * @param ioClass the class of the operation
+     * @return the permit
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private IoPermit newPermit(IoClass ioClass) {
+        Counters classCounters = counters[ioClass.ordinal()];
+        classCounters.operations.increment();
+        classCounters.active.incrementAndGet();
+        return new IoPermit(this, ioClass);
+    }
+
+    /**
+     * Computes the time it takes to pay off a number of bytes at a rate.
+     *
+     * @param bytes the number of bytes
+     * @param rate  the number of bytes per second
+     * @return the time in nanoseconds
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static long costNanos(long bytes, long rate) {
+        return (long) ((double) bytes * NANOS_PER_SECOND / rate);
+    }
+
+    /**
+     * Retrieves the maximum number of concurrent operations.
+     *
+     * @return the maximum number of concurrent operations
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int getMaxOperations() {
+        return maxOperations;
+    }
+
+    /**
+     * Retrieves the number of bytes large writes are paced in.
+     *
+     * @return the chunk size in bytes
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int getChunkBytes() {
+        return chunkBytes;
+    }
+
+    /**
+     * Retrieves the maximum rate of all operations together.
+     *
+     * @return the rate limit in bytes per second, or {@code 0} if there is none
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Changes the rate limit at runtime. Running operations are paced at the
+     * new rate from their next chunk on.
+     *
+     * @param newBytesPerSecond the new rate limit in bytes per second, or
+     *                          {@code 0} for no limit
+     * @throws IllegalArgumentException if the rate is negative
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void setBytesPerSecond(long newBytesPerSecond) {
+        if (newBytesPerSecond < 0) {
+            throw new IllegalArgumentException("Invalid I/O rate: " + newBytesPerSecond);
+        }
+        long previous = bytesPerSecond;
+        bytesPerSecond = newBytesPerSecond;
+        // Debt accumulated at the old rate must not stall the new one
+        paidOffNanos.set(System.nanoTime());
+        logger.info("IoBudget rate changed from {} to {} bytes per second.", previous, newBytesPerSecond);
+    }
+
+    /**
+     * Captures the current I/O of a class.
+     *
+     * @param ioClass the class
+     * @return the statistics of the class
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public IoBudgetStats getStats(IoClass ioClass) {
+        Counters classCounters = counters[ioClass.ordinal()];
+        return new IoBudgetStats(ioClass, classCounters.active.get(), classCounters.operations.sum(),
+                classCounters.bytes.sum(), classCounters.pacedNanos.sum(), classCounters.denied.sum());
+    }
+
+    /**
+     * Captures the current I/O of every class.
+     *
+     * @return the statistics of all classes, in the order of {@link IoClass}
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public List<IoBudgetStats> getStats() {
+        List<IoBudgetStats> stats = new ArrayList<>(counters.length);
+        for (IoClass ioClass : IoClass.values()) {
+            stats.add(getStats(ioClass));
+        }
+        return stats;
+    }
+
+    /**
+     * The counters of one I/O class.
+     *
+     * @author Atomstate
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static final class Counters {
+        private final AtomicInteger active = new AtomicInteger();
+        private final LongAdder operations = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder pacedNanos = new LongAdder();
+        private final LongAdder denied = new LongAdder();
+    }
+}
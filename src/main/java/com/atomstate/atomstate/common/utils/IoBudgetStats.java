@@ -0,0 +1,29 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+/**
+ * A point-in-time view of the disk I/O of one class on an {@link IoBudget}.
+ *
+ * @param ioClass    the class of the I/O
+ * @param active     the number of operations of the class currently running
+ * @param operations the number of operations granted so far
+ * @param bytes      the number of bytes paced so far
+ * @param pacedNanos the time operations of the class spent waiting for the rate limit
+ * @param denied     the number of operations denied or timed out so far
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public record IoBudgetStats(IoClass ioClass, int active, long operations, long bytes, long pacedNanos,
+                            long denied) {
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+/**
+ * The classes of background disk I/O that share an {@link IoBudget}.
+ *
+ * <p>Reads of the search path, such as page-ins of memory-mapped segments, do
+ * not go through the budget. Capping the background classes leaves them the
+ * disk bandwidth they need.</p>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public enum IoClass {
+    /**
+     * Writing in-memory segments to disk.
+     *
+     * @since 1.0.0
+     */
+    FLUSH,
+
+    /**
+     * Rewriting segments when they are merged or vacuumed.
+     *
+     * @since 1.0.0
+     */
+    MERGE,
+
+    /**
+     * Creating and restoring snapshots.
+     *
+     * @since 1.0.0
+     */
+    SNAPSHOT
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Represents a running disk I/O operation granted by an {@link IoBudget}.
+ *
+ * <p>The permit holds one of the concurrent operation slots of the budget
+ * until it is closed. The bytes the operation moves are paced by the rate
+ * limit of the budget: {@link #write(WritableByteChannel, ByteBuffer)} splits a
+ * large write into chunks and waits before each chunk until the rate allows
+ * it, while {@link #pace(long)} does the same for I/O the caller performs
+ * itself. Closing is idempotent, so the permit can safely be used in a
+ * try-with-resources block and closed again afterwards.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ *     {@code try (IoPermit permit = ioBudget.acquire(IoClass.FLUSH, Duration.ofSeconds(1)).orElseThrow()) {}
+ *         {@code permit.write(channel, buffer);}
+ *     {@code }}
+ * </pre>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class IoPermit implements AutoCloseable {
+    private final IoBudget budget;
+    private final IoClass ioClass;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    /**
+     * Creates a permit for an operation slot that has already been taken from
+     * the budget.
+     *
+     * @param budget  the budget that issued this permit
+     * @param ioClass the class of the operation
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    IoPermit(IoBudget budget, IoClass ioClass) {
+        this.budget = budget;
+        this.ioClass = ioClass;
+    }
+
+    /**
+     * Returns the class of the operation.
+     *
+     * @return the I/O class
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public IoClass getIoClass() {
+        return ioClass;
+    }
+
+    /**
+     * Checks whether the operation slot of this permit has been returned.
+     *
+     * @return {@code true} if this permit has been closed; {@code false} otherwise
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public boolean isReleased() {
+        return released.get();
+    }
+
+    /**
+     * Waits until the rate limit of the budget allows the given number of
+     * bytes, which the caller then reads or writes itself.
+     *
+     * @param bytes the number of bytes about to be moved
+     * @throws IllegalStateException if the permit has been closed
+     * @throws InterruptedException  if the current thread is interrupted while waiting
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void pace(long bytes) throws InterruptedException {
+        if (released.get()) {
+            throw new IllegalStateException("I/O permit is already released");
+        }
+        budget.pace(ioClass, bytes);
+    }
+
+    /**
+     * Writes all remaining bytes of a buffer to a channel, in chunks of
+     * {@link IoBudget#getChunkBytes()} bytes that are each paced by the rate
+     * limit of the budget.
+     *
+     * @param channel the channel to write to
+     * @param source  the buffer to drain
+     * @return the number of bytes written
+     * @throws IOException           if the channel cannot be written
+     * @throws InterruptedIOException if the current thread is interrupted while
+     *                               waiting; the interrupt status is kept
+     * @throws IllegalStateException if the permit has been closed
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long write(WritableByteChannel channel, ByteBuffer source) throws IOException {
+        int limit = source.limit();
+        long written = 0;
+        try {
+            while (source.position() < limit) {
+                int chunk = Math.min(limit - source.position(), budget.getChunkBytes());
+                pace(chunk);
+                source.limit(source.position() + chunk);
+                while (source.hasRemaining()) {
+                    written += channel.write(source);
+                }
+                source.limit(limit);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException interrupted = new InterruptedIOException("Interrupted while pacing a write");
+            interrupted.bytesTransferred = (int) Math.min(written, Integer.MAX_VALUE);
+            throw interrupted;
+        } finally {
+            source.limit(limit);
+        }
+        return written;
+    }
+
+    /**
+     * Returns the operation slot to the budget that issued this permit.
+     * Subsequent calls have no effect.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public void close() {
+        if (released.compareAndSet(false, true)) {
+            budget.release(ioClass);
+        }
+    }
+
+    /**
+     * Returns a string representation of this permit.
+     *
+     * @return a string representation of this permit
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public String toString() {
+        return "IoPermit[ioClass=" + ioClass + ", released=" + released.get() + "]";
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A concurrent histogram of durations in nanoseconds, laid out like an
+ * HdrHistogram: values below 128 have a bucket each, and every further power
+ * of two is split into 64 linear buckets, so a recorded value is off by less
+ * than 1.6% at any magnitude.
+ *
+ * <p>Recording is a couple of atomic increments on preallocated counters and
+ * never allocates or locks, so it can sit on the hot paths of the budgets.
+ * Values above about two hours are counted as two hours. Reading
+ * percentiles while values are recorded gives a consistent enough view for
+ * metrics, not an exact snapshot.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ *     {@code LatencyHistogram waits = new LatencyHistogram();}
+ *     {@code long start = System.nanoTime();}
+ *     // Wait for something
+ *     {@code waits.record(System.nanoTime() - start);}
+ *     {@code long p99 = waits.getValueAtPercentile(99.0);}
+ * </pre>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    private static final int MAX_SHIFT = 36;
+    private static final long MAX_VALUE = (1L << (MAX_SHIFT + SUB_BUCKET_BITS)) - 1;
+    private final AtomicLongArray counts = new AtomicLongArray(SUB_BUCKETS + MAX_SHIFT * HALF_SUB_BUCKETS);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos the duration in nanoseconds; negative durations, which a
+     *              non-monotonic clock can produce, are recorded as zero
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        counts.incrementAndGet(indexOf(value));
+        totalCount.incrementAndGet();
+        long max = maxValue.get();
+        while (value > max && !maxValue.compareAndSet(max, value)) {
+            max = maxValue.get();
+        }
+    }
+
+    /**
+     * Returns the number of recorded durations.
+     *
+     * @return the number of recorded durations
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long getTotalCount() {
+        return totalCount.get();
+    }
+
+    /**
+     * Returns the longest recorded duration.
+     *
+     * @return the longest duration in nanoseconds, or {@code 0} if nothing was
+     * recorded
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long getMaxValue() {
+        return maxValue.get();
+    }
+
+    /**
+     * Returns the duration that the given percentage of the recorded durations
+     * do not exceed.
+     *
+     * @param percentile the percentage, between 0 and 100
+     * @return the highest duration of the bucket the percentile falls into in
+     * nanoseconds, at most {@link #getMaxValue()}, or {@code 0} if nothing was
+     * recorded
+     * @throws IllegalArgumentException if the percentage is out of range
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("Invalid percentile: " + percentile);
+        }
+        long total = totalCount.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int index = 0; index < counts.length(); index++) {
+            seen += counts.get(index);
+            if (seen >= rank) {
+                return Math.min(highestValueAt(index), maxValue.get());
+            }
+        }
+        return maxValue.get();
+    }
+
+    /**
+     * Clears all recorded durations. Durations recorded concurrently may be
+     * partially kept.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void reset() {
+        for (int index = 0; index < counts.length(); index++) {
+            counts.set(index, 0);
+        }
+        totalCount.set(0);
+        maxValue.set(0);
+    }
+
+    /**
+     * Returns the counter of a value.
+     *
+     * @param value the value, between 0 and {@link #MAX_VALUE}
+     * @return the index of its counter
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (int) (value >>> shift) - HALF_SUB_BUCKETS;
+    }
+
+    /**
+     * Returns the highest value counted by a counter.
+     *
+     * @param index the index of the counter
+     * @return the highest value of its bucket
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static long highestValueAt(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,475 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The {@code MemoryBudget} class manages a budget for memory reservations,
+ * the counterpart of {@link CpuBudget} for the large buffers of index builds
+ * and searches.
+ *
+ * <p>Callers reserve the bytes of a buffer before they allocate it and return
+ * them once the buffer is no longer used, see {@link MemoryPermit}. The
+ * budget does not see the actual allocations; it keeps concurrent jobs from
+ * allocating more than the node can hold at the same time, so that a job
+ * queues for memory instead of running the node out of it. Reservations are
+ * byte-granular.</p>
+ *
+ * <p>The remaining budget is a single atomic counter, so non-blocking
+ * reservations and releases never take a lock; only callers that queue for
+ * memory go through the FIFO wait queue. Failed reservations are reported
+ * through rate-limited warnings rather than one log line per call.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ *     // Initialize the budget of a node from its heap and off-heap limits
+ *     {@code MemoryBudget memoryBudget = MemoryBudget.forNode(0);}
+ *
+ *     // Reserve the memory of a graph and its search contexts while it is in use
+ *     {@code try (HnswIndex index = HnswIndex.create(vectors, HnswConfig.DEFAULT, points, memoryBudget,}
+ *             {@code Duration.ofMinutes(1)).orElseThrow()) {}
+ *         {@code index.build(executor);}
+ *     {@code }}
+ *
+ *     // Skip an optional search buffer if the memory is not available right now
+ *     {@code Optional<MemoryPermit> scratch = memoryBudget.tryAcquire(1 << 20);}
+ * </pre>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class MemoryBudget {
+    private static final Logger logger = LogManager.getLogger(MemoryBudget.class);
+    private static final Duration DIAGNOSTICS_INTERVAL = Duration.ofSeconds(10);
+    private final RateLimitedLogger diagnostics = new RateLimitedLogger(logger, DIAGNOSTICS_INTERVAL);
+    private final AtomicLong available;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final WaitQueue<MemoryPermit> waiters = new WaitQueue<>(MemoryPermit::close);
+    private final LongAdder granted = new LongAdder();
+    private final LongAdder denied = new LongAdder();
+    private volatile int queued;
+    private volatile long memoryBudget;
+
+    /**
+     * Initializes a {@code MemoryBudget} with a specified number of bytes.
+     *
+     * @param memoryBudget the total number of bytes that may be reserved
+     * @throws IllegalArgumentException if the budget is not positive
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public MemoryBudget(long memoryBudget) {
+        if (memoryBudget <= 0) {
+            throw new IllegalArgumentException("Invalid memory budget: " + memoryBudget);
+        }
+        this.memoryBudget = memoryBudget;
+        this.available = new AtomicLong(memoryBudget);
+        logger.info("MemoryBudget initialized with {} bytes.", memoryBudget);
+    }
+
+    /**
+     * Initializes the {@code MemoryBudget} of a node from a memory budget
+     * parameter, see {@link #getMemoryBudget(long)}.
+     *
+     * @param memoryBudgetParam the parameter specifying the desired memory budget
+     * @return the node budget
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static MemoryBudget forNode(long memoryBudgetParam) {
+        return new MemoryBudget(getMemoryBudget(memoryBudgetParam));
+    }
+
+    /**
+     * Attempts to reserve a number of bytes without waiting.
+     *
+     * <p>If the bytes are not available, an empty {@code Optional} is returned.
+     * The attempt also fails while other callers are queued for memory, so that
+     * queued callers are not starved by callers that never wait.</p>
+     *
+     * @param bytes the number of bytes to reserve
+     * @return an {@code Optional<MemoryPermit>} containing a permit if successful,
+     * or an empty {@code Optional} if the reservation failed
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public Optional<MemoryPermit> tryAcquire(long bytes) {
+        if (bytes <= 0) {
+            diagnostics.warn("Attempted to reserve invalid number of bytes: requested={}, budget={}", bytes, memoryBudget);
+            return Optional.empty();
+        }
+        if (queued != 0) {
+            denied.increment();
+            diagnostics.warn("Failed to reserve memory: requested={}, queued={}", bytes, queued);
+            return Optional.empty();
+        }
+        if (!take(bytes)) {
+            denied.increment();
+            diagnostics.warn("Requested memory exceeds available bytes: requested={}, available={}", bytes, getAvailableBytes());
+            return Optional.empty();
+        }
+        granted.increment();
+        return Optional.of(new MemoryPermit(this, bytes));
+    }
+
+    /**
+     * Reserves a number of bytes, waiting up to the given timeout for them to
+     * become available.
+     *
+     * <p>Waiting callers are served in FIFO order together with the callers of
+     * {@link #acquireAsync(long)}. If the number of bytes is non-positive or
+     * exceeds the total budget, an empty {@code Optional} is returned
+     * immediately.</p>
+     *
+     * @param bytes   the number of bytes to reserve
+     * @param timeout the maximum time to wait for the bytes
+     * @return an {@code Optional<MemoryPermit>} containing a permit if successful,
+     * or an empty {@code Optional} if the timeout elapsed first
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public Optional<MemoryPermit> acquire(long bytes, Duration timeout) throws InterruptedException {
+        if (bytes <= 0 || bytes > memoryBudget) {
+            logger.warn("Attempted to reserve unsatisfiable number of bytes: requested={}, budget={}", bytes, memoryBudget);
+            return Optional.empty();
+        }
+
+        try {
+            MemoryPermit permit = WaitQueue.await(acquireAsync(bytes), timeout, MemoryPermit::close);
+            if (permit == null) {
+                denied.increment();
+                diagnostics.warn("Timed out reserving memory: requested={}, queued={}", bytes, queued);
+                return Optional.empty();
+            }
+            return Optional.of(permit);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IllegalArgumentException) {
+                // The budget shrank below the request while it was queued
+                logger.warn("Attempted to reserve unsatisfiable number of bytes: requested={}, budget={}", bytes, memoryBudget);
+                return Optional.empty();
+            }
+            throw new IllegalStateException("Unexpected failure reserving memory", e.getCause());
+        }
+    }
+
+    /**
+     * Asynchronously reserves a number of bytes.
+     *
+     * <p>The returned future completes once the bytes are granted. Requests
+     * are served strictly in FIFO order, so a large request at the head of the
+     * queue is not overtaken by smaller ones queued after it. Cancelling the
+     * future withdraws the request from the queue.</p>
+     *
+     * @param bytes the number of bytes to reserve
+     * @return a future completed with the permit, or completed exceptionally with
+     * an {@code IllegalArgumentException} if the request can never be satisfied
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public CompletableFuture<MemoryPermit> acquireAsync(long bytes) {
+        if (bytes <= 0 || bytes > memoryBudget) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException(
+                    "Unsatisfiable number of bytes: requested=" + bytes + ", budget=" + memoryBudget));
+        }
+        if (queued == 0 && take(bytes)) {
+            granted.increment();
+            return CompletableFuture.completedFuture(new MemoryPermit(this, bytes));
+        }
+
+        WaitQueue<MemoryPermit>.Waiter pending;
+        List<WaitQueue<MemoryPermit>.Waiter> granted;
+        lock.lock();
+        try {
+            pending = waiters.add(bytes, reserved -> new MemoryPermit(this, reserved));
+            queued++;
+            // Bytes released before the request was queued have not been handed out yet
+            granted = drainWaitersLocked();
+        } finally {
+            lock.unlock();
+        }
+        WaitQueue.complete(granted);
+
+        return pending.onCancel(() -> withdraw(pending)).future();
+    }
+
+    /**
+     * Takes additional bytes for a permit without waiting. Nothing is taken
+     * while callers are queued.
+     *
+     * @param bytes the number of bytes to take
+     * @return {@code true} if the bytes were taken; {@code false} otherwise
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    boolean tryGrow(long bytes) {
+        return queued == 0 && take(bytes);
+    }
+
+    /**
+     * Returns bytes to this budget and hands them to queued callers.
+     *
+     * @param bytes the number of bytes being returned
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    void releaseBytes(long bytes) {
+        available.addAndGet(bytes);
+        if (queued != 0) {
+            WaitQueue.complete(drainWaiters());
+        }
+    }
+
+    /**
+     * Takes bytes from the remaining budget if all of them are available.
+     *
+     * @param bytes the number of bytes to take
+     * @return {@code true} if the bytes were taken; {@code false} otherwise
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private boolean take(long bytes) {
+        for (;;) {
+            long current = available.get();
+            if (current < bytes) {
+                return false;
+            }
+            if (available.compareAndSet(current, current - bytes)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Removes a cancelled request from the queue, which may unblock the
+     * requests queued behind it.
+     *
+     * @param pending the cancelled request
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void withdraw(WaitQueue<MemoryPermit>.Waiter pending) {
+        List<WaitQueue<MemoryPermit>.Waiter> granted;
+        lock.lock();
+        try {
+            if (waiters.remove(pending)) {
+                queued--;
+            }
+            granted = drainWaitersLocked();
+        } finally {
+            lock.unlock();
+        }
+        WaitQueue.complete(granted);
+    }
+
+    /**
+     * Takes bytes for the queued requests.
+     *
+     * @return the requests whose bytes have been taken
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private List<WaitQueue<MemoryPermit>.Waiter> drainWaiters() {
+        lock.lock();
+        try {
+            return drainWaitersLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes bytes for the requests at the head of the queue while they fit
+     * into the remaining budget. Must be called with the lock held.
+     *
+     * @return the requests whose bytes have been taken
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private List<WaitQueue<MemoryPermit>.Waiter> drainWaitersLocked() {
+        List<WaitQueue<MemoryPermit>.Waiter> granted = new ArrayList<>();
+        queued -= waiters.drain(this::take, granted);
+        this.granted.add(granted.size());
+        return granted;
+    }
+
+    /**
+     * Retrieves the number of bytes a reservation could get right now.
+     *
+     * @return the number of available bytes
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long getAvailableBytes() {
+        return Math.max(0, available.get());
+    }
+
+    /**
+     * Retrieves the number of bytes currently reserved through this budget.
+     *
+     * @return the number of reserved bytes
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long getUsedBytes() {
+        return memoryBudget - available.get();
+    }
+
+    /**
+     * Retrieves the number of callers currently queued on this budget.
+     *
+     * @return the number of queued callers
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int getQueuedCount() {
+        return queued;
+    }
+
+    /**
+     * Retrieves the number of reservations granted so far.
+     *
+     * @return the number of granted reservations
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long getGrantedCount() {
+        return granted.sum();
+    }
+
+    /**
+     * Retrieves the number of reservations denied or timed out so far.
+     *
+     * @return the number of denied reservations
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long getDeniedCount() {
+        return denied.sum();
+    }
+
+    /**
+     * Retrieves the current memory budget of this instance.
+     *
+     * @return the total number of bytes that may be reserved
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Changes the memory budget at runtime, e.g. after the container was
+     * resized.
+     *
+     * <p>Resizing is safe while permits are held: when the budget shrinks below
+     * the bytes in use, no new bytes are granted until enough permits have been
+     * returned. Queued requests larger than the new budget fail, see
+     * {@link #acquireAsync(long)}. When it grows, queued callers are served
+     * right away.</p>
+     *
+     * @param newMemoryBudget the new total number of bytes
+     * @throws IllegalArgumentException if the new budget is not positive
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void setMemoryBudget(long newMemoryBudget) {
+        if (newMemoryBudget <= 0) {
+            throw new IllegalArgumentException("Invalid memory budget: " + newMemoryBudget);
+        }
+
+        long previous;
+        List<WaitQueue<MemoryPermit>.Waiter> failed = new ArrayList<>();
+        List<WaitQueue<MemoryPermit>.Waiter> granted;
+        lock.lock();
+        try {
+            previous = memoryBudget;
+            available.addAndGet(newMemoryBudget - previous);
+            memoryBudget = newMemoryBudget;
+            queued -= waiters.removeIf(bytes -> bytes > newMemoryBudget, failed);
+            // Requests queued behind a failed one may fit now
+            granted = drainWaitersLocked();
+        } finally {
+            lock.unlock();
+        }
+
+        logger.info("MemoryBudget resized from {} to {} bytes.", previous, newMemoryBudget);
+        for (WaitQueue<MemoryPermit>.Waiter pending : failed) {
+            pending.future().completeExceptionally(new IllegalArgumentException(
+                    "Unsatisfiable number of bytes: requested=" + pending.amount() + ", budget=" + newMemoryBudget));
+        }
+        WaitQueue.complete(granted);
+    }
+
+    /**
+     * Determines the memory budget based on the provided parameter and the
+     * memory limits of the JVM.
+     *
+     * <p>A positive parameter is the budget in bytes. Zero selects the default
+     * budget, see {@link Default#defaultMemoryBudget(long, long)}. A negative
+     * parameter keeps that many bytes of the heap and off-heap limits
+     * unallocated.</p>
+     *
+     * @param memoryBudgetParam the parameter specifying the desired memory budget
+     * @return the final memory budget in bytes
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static long getMemoryBudget(long memoryBudgetParam) {
+        if (memoryBudgetParam > 0) {
+            return memoryBudgetParam;
+        }
+        long maxHeap = Runtime.getRuntime().maxMemory();
+        long maxDirect = getMaxDirectMemory();
+        if (memoryBudgetParam == 0) {
+            return Default.defaultMemoryBudget(maxHeap, maxDirect);
+        }
+        long total = maxHeap + maxDirect < 0 ? Long.MAX_VALUE : maxHeap + maxDirect;
+        return Math.max(total + memoryBudgetParam, 1);
+    }
+
+    /**
+     * Retrieves the maximum number of bytes the JVM allows for direct buffers,
+     * as set by {@code -XX:MaxDirectMemorySize}. Without the option the JVM
+     * allows as much direct memory as heap.
+     *
+     * @return the off-heap limit in bytes
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static long getMaxDirectMemory() {
+        long maxHeap = Runtime.getRuntime().maxMemory();
+        try {
+            HotSpotDiagnosticMXBean diagnostic = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            long maxDirect = Long.parseLong(diagnostic.getVMOption("MaxDirectMemorySize").getValue());
+            return maxDirect > 0 ? maxDirect : maxHeap;
+        } catch (RuntimeException | LinkageError e) {
+            logger.debug("Cannot read MaxDirectMemorySize, assuming the heap size", e);
+            return maxHeap;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Represents a reservation of memory, encapsulating the number of bytes
+ * reserved through the {@code MemoryBudget} management system.
+ *
+ * <p>A {@code MemoryPermit} is handed out by a {@link MemoryBudget} before a
+ * large buffer is allocated and holds its bytes until it is closed, which
+ * should happen once the buffer is no longer reachable. Closing the permit
+ * returns the bytes to the budget that issued it, which makes them available
+ * to the next waiting caller. Closing is idempotent, so the permit can safely
+ * be used in a try-with-resources block and closed again afterwards.</p>
+ *
+ * <p>A job whose buffers grow can {@link #grow(long)} its reservation when the
+ * budget has spare bytes and {@link #shrink(long)} it after freeing part of
+ * them. A permit never shrinks below one byte; closing it is the only way to
+ * return the last one.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ *     {@code try (MemoryPermit permit = memoryBudget.acquire(bytes, Duration.ofSeconds(1)).orElseThrow()) {}
+ *         // Allocate and use buffers of up to permit.bytes() bytes
+ *     {@code }}
+ * </pre>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class MemoryPermit implements AutoCloseable {
+    private final MemoryBudget budget;
+    private final AtomicLong bytes;
+
+    /**
+     * Creates a permit for bytes that have already been taken from the budget.
+     *
+     * @param budget the budget that issued this permit
+     * @param bytes  the number of bytes reserved by this permit
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    MemoryPermit(MemoryBudget budget, long bytes) {
+        this.budget = budget;
+        this.bytes = new AtomicLong(bytes);
+    }
+
+    /**
+     * Returns the number of bytes currently reserved by this permit, which is
+     * zero once the permit has been closed.
+     *
+     * @return the number of bytes reserved by this permit
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long bytes() {
+        return bytes.get();
+    }
+
+    /**
+     * Checks whether the bytes of this permit have been returned to the budget.
+     *
+     * @return {@code true} if this permit has been closed; {@code false} otherwise
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public boolean isReleased() {
+        return bytes.get() == 0;
+    }
+
+    /**
+     * Attempts to add bytes to this permit without waiting. Unlike CPUs, a
+     * part of the requested bytes is of no use to a buffer, so either all of
+     * them are added or none.
+     *
+     * @param additionalBytes the number of bytes to add
+     * @return {@code true} if the bytes were added; {@code false} if they are
+     * not available or the permit is closed
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public boolean grow(long additionalBytes) {
+        if (additionalBytes <= 0 || isReleased() || !budget.tryGrow(additionalBytes)) {
+            return false;
+        }
+        long current;
+        do {
+            current = bytes.get();
+            if (current == 0) {
+                // Closed concurrently, the new bytes must not leak
+                budget.releaseBytes(additionalBytes);
+                return false;
+            }
+        } while (!bytes.compareAndSet(current, current + additionalBytes));
+        return true;
+    }
+
+    /**
+     * Returns bytes from this permit to the budget while keeping the permit
+     * open. The permit always keeps at least one byte.
+     *
+     * @param releasedBytes the number of bytes to return
+     * @return the number of bytes actually returned
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long shrink(long releasedBytes) {
+        if (releasedBytes <= 0) {
+            return 0;
+        }
+        long current;
+        long returned;
+        do {
+            current = bytes.get();
+            returned = Math.min(releasedBytes, current - 1);
+            if (returned <= 0) {
+                return 0;
+            }
+        } while (!bytes.compareAndSet(current, current - returned));
+        budget.releaseBytes(returned);
+        return returned;
+    }
+
+    /**
+     * Returns the bytes reserved by this permit to the budget that issued it.
+     * Subsequent calls have no effect.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public void close() {
+        long held = bytes.getAndSet(0);
+        if (held > 0) {
+            budget.releaseBytes(held);
+        }
+    }
+
+    /**
+     * Returns a string representation of this permit.
+     *
+     * @return a string representation of this permit
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public String toString() {
+        return "MemoryPermit[bytes=" + bytes.get() + "]";
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A pool of reusable scratch objects, such as the visited sets and candidate
+ * heaps of a search, that would otherwise be allocated once per request.
+ *
+ * <p>Idle objects are kept in an array of slots, one object per slot, and the
+ * number of slots is the keep limit of the pool, by default
+ * {@link Default#POOL_KEEP_LIMIT}. An object returned while the slots near
+ * the home slot of the thread are taken is dropped, so the pool never holds
+ * more idle objects than the keep limit. Every thread starts probing at its
+ * own home slot, which spreads concurrent threads over the array and tends to
+ * hand a thread the object it returned last, still warm in its cache.
+ * Borrowing and returning take no lock; both are a few compare-and-set
+ * operations on the slots.</p>
+ *
+ * <p>Objects holding resources, e.g. a reservation of the memory they take,
+ * give them back through the discard function, which is called for every
+ * object the pool drops.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ *     {@code ObjectPool<LongHeapPriorityQueue> heaps = new ObjectPool<>(LongHeapPriorityQueue::new, LongHeapPriorityQueue::clear);}
+ *     {@code LongHeapPriorityQueue heap = heaps.borrow();}
+ *     {@code try {}
+ *         // Use the heap
+ *     {@code } finally {}
+ *         {@code heaps.release(heap);}
+ *     {@code }}
+ * </pre>
+ *
+ * @param <T> the type of the pooled objects
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class ObjectPool<T> {
+    private static final int PROBES = 4;
+    private final Supplier<T> factory;
+    private final Consumer<T> reset;
+    private final Consumer<T> discard;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+    private volatile AtomicReferenceArray<T> slots;
+
+    /**
+     * Initializes an {@code ObjectPool} keeping up to
+     * {@link Default#POOL_KEEP_LIMIT} idle objects.
+     *
+     * @param factory creates a new object when the pool has none
+     * @param reset   clears an object when it is returned
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public ObjectPool(Supplier<T> factory, Consumer<T> reset) {
+        this(factory, reset, Default.POOL_KEEP_LIMIT);
+    }
+
+    /**
+     * Initializes an {@code ObjectPool}.
+     *
+     * @param factory   creates a new object when the pool has none
+     * @param reset     clears an object when it is returned
+     * @param keepLimit the maximum number of idle objects to keep
+     * @throws IllegalArgumentException if the keep limit is not positive
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public ObjectPool(Supplier<T> factory, Consumer<T> reset, int keepLimit) {
+        this(factory, reset, object -> {
+        }, keepLimit);
+    }
+
+    /**
+     * Initializes an {@code ObjectPool} whose objects hold resources.
+     *
+     * @param factory   creates a new object when the pool has none
+     * @param reset     clears an object when it is returned
+     * @param discard   frees the resources of an object the pool drops
+     * @param keepLimit the maximum number of idle objects to keep
+     * @throws IllegalArgumentException if the keep limit is not positive
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public ObjectPool(Supplier<T> factory, Consumer<T> reset, Consumer<T> discard, int keepLimit) {
+        if (keepLimit <= 0) {
+            throw new IllegalArgumentException("Invalid pool keep limit: " + keepLimit);
+        }
+        this.factory = factory;
+        this.reset = reset;
+        this.discard = discard;
+        this.slots = new AtomicReferenceArray<>(keepLimit);
+    }
+
+    /**
+     * Takes an idle object from the pool, or creates a new one if there is
+     * none near the home slot of the calling thread.
+     *
+     * @return an object to be handed back through {@link #release(Object)}
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public T borrow() {
+        T object = poll();
+        return object != null ? object : factory.get();
+    }
+
+    /**
+     * Takes an idle object from the pool without creating one, e.g. when the
+     * caller has to reserve the resources of a new object first.
+     *
+     * @return an object to be handed back through {@link #release(Object)}, or
+     * {@code null} if there is none near the home slot of the calling thread
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public T poll() {
+        AtomicReferenceArray<T> current = slots;
+        int length = current.length();
+        int home = home(length);
+        for (int i = 0; i < Math.min(PROBES, length); i++) {
+            int slot = (home + i) % length;
+            T object = current.get(slot);
+            if (object != null && current.compareAndSet(slot, object, null)) {
+                hits.increment();
+                return object;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Resets an object and returns it to the pool. The object is dropped if
+     * the slots near the home slot of the calling thread are taken. The caller
+     * must not use the object afterwards.
+     *
+     * @param object the object to return
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void release(T object) {
+        reset.accept(object);
+        AtomicReferenceArray<T> current = slots;
+        int length = current.length();
+        int home = home(length);
+        for (int i = 0; i < Math.min(PROBES, length); i++) {
+            int slot = (home + i) % length;
+            if (current.get(slot) == null && current.compareAndSet(slot, null, object)) {
+                if (slots != current && current.compareAndSet(slot, object, null)) {
+                    // Released into slots replaced by setKeepLimit, which no longer sees it
+                    drop(object);
+                }
+                return;
+            }
+        }
+        drop(object);
+    }
+
+    /**
+     * Changes the maximum number of idle objects at runtime. Idle objects
+     * beyond the new limit are dropped.
+     *
+     * @param keepLimit the new maximum number of idle objects
+     * @throws IllegalArgumentException if the keep limit is not positive
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public synchronized void setKeepLimit(int keepLimit) {
+        if (keepLimit <= 0) {
+            throw new IllegalArgumentException("Invalid pool keep limit: " + keepLimit);
+        }
+        AtomicReferenceArray<T> previous = slots;
+        AtomicReferenceArray<T> resized = new AtomicReferenceArray<>(keepLimit);
+        int kept = 0;
+        for (int slot = 0; slot < previous.length(); slot++) {
+            T object = previous.getAndSet(slot, null);
+            if (object != null && kept < keepLimit) {
+                resized.set(kept++, object);
+            } else if (object != null) {
+                drop(object);
+            }
+        }
+        // Objects released into the previous slots from now on are dropped by release
+        slots = resized;
+    }
+
+    /**
+     * Drops all idle objects, e.g. when their owner is closed.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public synchronized void clear() {
+        AtomicReferenceArray<T> current = slots;
+        for (int slot = 0; slot < current.length(); slot++) {
+            T object = current.getAndSet(slot, null);
+            if (object != null) {
+                drop(object);
+            }
+        }
+    }
+
+    /**
+     * Returns the maximum number of idle objects the pool keeps.
+     *
+     * @return the keep limit
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int getKeepLimit() {
+        return slots.length();
+    }
+
+    /**
+     * Captures the current usage of this pool.
+     *
+     * @return the statistics of this pool
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public ObjectPoolStats getStats() {
+        AtomicReferenceArray<T> current = slots;
+        int idle = 0;
+        for (int slot = 0; slot < current.length(); slot++) {
+            if (current.get(slot) != null) {
+                idle++;
+            }
+        }
+        return new ObjectPoolStats(current.length(), idle, hits.sum(), misses.sum(), discarded.sum());
+    }
+
+    /**
+     * Drops an object the pool does not keep.
+     *
+     * @param object the object
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void drop(T object) {
+        discarded.increment();
+        discard.accept(object);
+    }
+
+    /**
+     * Returns the slot the calling thread starts probing at.
+     *
+     * @param length the number of slots
+     * @return the home slot of the calling thread
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static int home(int length) {
+        long hash = Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L;
+        return (int) (((hash >>> 32) * length) >>> 32);
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+/**
+ * A point-in-time view of the usage of an {@link ObjectPool}.
+ *
+ * @param keepLimit the maximum number of idle objects the pool keeps
+ * @param idle      the number of idle objects currently pooled
+ * @param hits      the number of borrows served from the pool so far
+ * @param misses    the number of borrows that created a new object so far
+ * @param discarded the number of returned objects dropped because the pool was full
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public record ObjectPoolStats(int keepLimit, int idle, long hits, long misses, long discarded) {
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reports virtual threads that pin their carrier thread, e.g. by blocking
+ * inside a {@code synchronized} block or a native frame, which takes the
+ * carrier away from all other requests, see {@link RequestExecutor}.
+ *
+ * <p>Pinning is observed through the {@code jdk.VirtualThreadPinned} event
+ * of JDK Flight Recorder, streamed in process, so it costs nothing while no
+ * thread pins. Every pinning longer than the threshold is counted and its
+ * duration recorded; a warning with the stack of the pinned thread is logged
+ * at most every ten seconds.</p>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class PinningMonitor implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(PinningMonitor.class);
+    private static final Duration DIAGNOSTICS_INTERVAL = Duration.ofSeconds(10);
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int MAX_FRAMES = 8;
+    private final RateLimitedLogger diagnostics = new RateLimitedLogger(logger, DIAGNOSTICS_INTERVAL);
+    private final RecordingStream stream;
+    private final LongAdder pinned = new LongAdder();
+    private final LatencyHistogram pinnedTimes = new LatencyHistogram();
+
+    /**
+     * Initializes a {@code PinningMonitor} that reports pinning longer than
+     * {@link Default#PINNED_THREAD_THRESHOLD}.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public PinningMonitor() {
+        this(Default.PINNED_THREAD_THRESHOLD);
+    }
+
+    /**
+     * Initializes a {@code PinningMonitor}.
+     *
+     * @param threshold the time a virtual thread may pin its carrier before
+     *                  it is reported
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public PinningMonitor(Duration threshold) {
+        this.stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::onPinned);
+    }
+
+    /**
+     * Starts reporting pinned threads in the background.
+     *
+     * @throws IllegalStateException if the monitor is already started or closed
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void start() {
+        stream.startAsync();
+    }
+
+    /**
+     * Returns the number of times a virtual thread pinned its carrier for
+     * longer than the threshold.
+     *
+     * @return the number of reported pinnings
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long getPinnedCount() {
+        return pinned.sum();
+    }
+
+    /**
+     * Returns the durations of the reported pinnings.
+     *
+     * @return the histogram of pinned durations in nanoseconds
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public LatencyHistogram getPinnedTimes() {
+        return pinnedTimes;
+    }
+
+    /**
+     * Stops reporting pinned threads.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public void close() {
+        stream.close();
+    }
+
+    /**
+     * Counts and reports a pinning.
+     *
+     * @param event the pinned event
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void onPinned(RecordedEvent event) {
+        long nanos = event.getDuration().toNanos();
+        pinned.increment();
+        pinnedTimes.record(nanos);
+        diagnostics.warn("Virtual thread pinned its carrier for {}us at {}", nanos / 1000,
+                () -> describe(event.getStackTrace()));
+    }
+
+    /**
+     * Formats the top frames of a stack trace.
+     *
+     * @param stackTrace the stack trace, or {@code null} if none was recorded
+     * @return the frames, innermost first
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static String describe(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "unknown location";
+        }
+        List<RecordedFrame> frames = stackTrace.getFrames();
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < Math.min(frames.size(), MAX_FRAMES); i++) {
+            RecordedFrame frame = frames.get(i);
+            builder.append(i == 0 ? "" : " <- ")
+                    .append(frame.getMethod().getType().getName())
+                    .append('.')
+                    .append(frame.getMethod().getName())
+                    .append(':')
+                    .append(frame.getLineNumber());
+        }
+        return builder.toString();
+    }
+}
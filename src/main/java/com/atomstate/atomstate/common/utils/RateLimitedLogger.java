@@ -0,0 +1,148 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Emits a warning at most once per interval and counts the warnings that were
+ * suppressed in between.
+ *
+ * <p>Hot paths such as {@link CpuBudget#tryAcquireCpus(int, int)} run for every
+ * search request, so logging each failure would flood the appender and cost
+ * more than the operation itself. Suppressed calls only bump a counter and do
+ * not allocate; the number of suppressed messages is reported with the next
+ * warning that gets through.</p>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class RateLimitedLogger {
+    private final Logger logger;
+    private final long intervalNanos;
+    private final AtomicLong nextLogNanos;
+    private final LongAdder suppressed = new LongAdder();
+
+    /**
+     * Creates a rate-limited view of the given logger.
+     *
+     * @param logger   the logger to write to
+     * @param interval the minimum time between two warnings
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    RateLimitedLogger(Logger logger, Duration interval) {
+        this.logger = logger;
+        this.intervalNanos = interval.toNanos();
+        this.nextLogNanos = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Logs a warning with two integer parameters unless another warning was
+     * logged within the interval.
+     *
+     * @param message the message pattern with two {@code {}} placeholders
+     * @param first   the first parameter
+     * @param second  the second parameter
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    void warn(String message, int first, int second) {
+        if (!logger.isWarnEnabled() || !tryAcquireSlot()) {
+            return;
+        }
+        long count = suppressed.sumThenReset();
+        if (count > 0) {
+            logger.warn(message + " ({} similar messages suppressed)", first, second, count);
+        } else {
+            logger.warn(message, first, second);
+        }
+    }
+
+    /**
+     * Logs a warning with two long parameters unless another warning was
+     * logged within the interval.
+     *
+     * @param message the message pattern with two {@code {}} placeholders
+     * @param first   the first parameter
+     * @param second  the second parameter
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    void warn(String message, long first, long second) {
+        if (!logger.isWarnEnabled() || !tryAcquireSlot()) {
+            return;
+        }
+        long count = suppressed.sumThenReset();
+        if (count > 0) {
+            logger.warn(message + " ({} similar messages suppressed)", first, second, count);
+        } else {
+            logger.warn(message, first, second);
+        }
+    }
+
+    /**
+     * Logs a warning with a long and a lazily built parameter unless another
+     * warning was logged within the interval. The second parameter is only
+     * built if the warning is logged.
+     *
+     * @param message the message pattern with two {@code {}} placeholders
+     * @param first   the first parameter
+     * @param second  supplies the second parameter
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    void warn(String message, long first, Supplier<String> second) {
+        if (!logger.isWarnEnabled() || !tryAcquireSlot()) {
+            return;
+        }
+        long count = suppressed.sumThenReset();
+        if (count > 0) {
+            logger.warn(message + " ({} similar messages suppressed)", first, second.get(), count);
+        } else {
+            logger.warn(message, first, second.get());
+        }
+    }
+
+    /**
+     * Returns the number of warnings suppressed since the last logged one.
+     *
+     * @return the number of suppressed warnings
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    long getSuppressed() {
+        return suppressed.sum();
+    }
+
+    /**
+     * Claims the right to log for the current interval.
+     *
+     * @return {@code true} if the caller may log; {@code false} otherwise
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private boolean tryAcquireSlot() {
+        long now = System.nanoTime();
+        long next = nextLogNanos.get();
+        if (now - next < 0 || !nextLogNanos.compareAndSet(next, now + intervalNanos)) {
+            suppressed.increment();
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * Runs every API request on its own virtual thread and bounds only the
+ * CPU-heavy sections of the requests by a {@link CpuBudget}, instead of a
+ * request pool whose size has to be guessed.
+ *
+ * <p>A request that waits for I/O, e.g. a page fault of a mapped segment, a
+ * WAL fsync or a consensus round trip, parks its virtual thread and leaves the
+ * carrier thread to other requests, so waiting requests neither starve the
+ * pool nor need more threads. CPU-heavy work such as graph search or
+ * rescoring is wrapped in {@link #compute(int, int, IntFunction)}, which
+ * holds CPUs of the budget for the duration of the section, so the number of
+ * requests computing at once never exceeds the CPUs of the budget. Waiting
+ * for CPUs parks the virtual thread as well.</p>
+ *
+ * <p>Blocking inside a {@code synchronized} block pins the carrier thread in
+ * Java 21, so code running on request threads must guard I/O with
+ * {@link java.util.concurrent.locks.ReentrantLock}s, as the WAL does. Pinning
+ * that slips through is reported by a {@link PinningMonitor}.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ *     {@code CpuBudget search = node.newChild(CpuPriority.SEARCH, Default.defaultCpuShare(CpuPriority.SEARCH, cpus));}
+ *     {@code try (RequestExecutor requests = new RequestExecutor(search);}
+ *          {@code PinningMonitor pinning = new PinningMonitor()) {}
+ *         {@code pinning.start();}
+ *         {@code requests.submit(() -> {}
+ *             {@code float[] vector = vectors.get(id);} // May fault the page in
+ *             {@code return requests.compute(1, 1, cpus -> index.search(vector, limit));}
+ *         {@code });}
+ *     {@code }}
+ * </pre>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class RequestExecutor implements AutoCloseable {
+    private final CpuBudget budget;
+    private final Duration cpuWait;
+    private final ExecutorService executor;
+    private final ThreadLocal<Integer> heldCpus = new ThreadLocal<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * Initializes a {@code RequestExecutor} whose CPU sections wait up to
+     * {@link Default#REQUEST_CPU_WAIT} for CPUs.
+     *
+     * @param budget the budget of the CPU sections of requests
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public RequestExecutor(CpuBudget budget) {
+        this(budget, Default.REQUEST_CPU_WAIT);
+    }
+
+    /**
+     * Initializes a {@code RequestExecutor}.
+     *
+     * @param budget  the budget of the CPU sections of requests
+     * @param cpuWait the time a section waits for CPUs before it fails
+     * @throws IllegalArgumentException if the wait is negative
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public RequestExecutor(CpuBudget budget, Duration cpuWait) {
+        if (cpuWait.isNegative()) {
+            throw new IllegalArgumentException("Invalid CPU wait: " + cpuWait);
+        }
+        this.budget = budget;
+        this.cpuWait = cpuWait;
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("request-", 0).factory());
+    }
+
+    /**
+     * Runs a request on a new virtual thread.
+     *
+     * @param request the request
+     * @param <T>     the type of the response
+     * @return a future completed with the response of the request, or with the
+     * exception it threw
+     * @throws RejectedExecutionException if the executor is closed
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> request) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        inFlight.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(request.call());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.decrementAndGet();
+            throw e;
+        }
+        return future;
+    }
+
+    /**
+     * Runs a CPU-heavy section of a request while holding CPUs of the budget.
+     *
+     * <p>The section gets as many of the desired CPUs as are available, but
+     * at least the minimum, and is told how many it got, e.g. to split
+     * rescoring across them. If the minimum is not available at once, the
+     * caller waits in the queue of the budget, and the permit is grown
+     * towards the desired CPUs once granted. A section entered from within
+     * another section of the same thread runs on the CPUs of the outer one
+     * instead of acquiring more, which could deadlock on a full budget.</p>
+     *
+     * @param minCpus     the minimum number of CPUs the section can work with
+     * @param desiredCpus the number of CPUs the section would like to use
+     * @param section     the section, given the number of CPUs it holds
+     * @param <T>         the type of the result
+     * @return the result of the section
+     * @throws IllegalArgumentException if the minimum is not positive, exceeds
+     *                                  the desired CPUs or the budget
+     * @throws InterruptedException     if the calling thread was interrupted
+     *                                  while waiting for CPUs
+     * @throws TimeoutException         if the minimum was not available within
+     *                                  the CPU wait
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public <T> T compute(int minCpus, int desiredCpus, IntFunction<T> section)
+            throws InterruptedException, TimeoutException {
+        Integer held = heldCpus.get();
+        if (held != null) {
+            return section.apply(held);
+        }
+        if (minCpus <= 0 || minCpus > desiredCpus || minCpus > budget.getCpuBudget()) {
+            throw new IllegalArgumentException("Invalid CPUs of a section: min=" + minCpus + ", desired="
+                    + desiredCpus + ", budget=" + budget.getCpuBudget());
+        }
+        int numCpus = budget.tryAcquireCpus(minCpus, desiredCpus);
+        if (numCpus != 0) {
+            try {
+                return enter(numCpus, section);
+            } finally {
+                budget.releaseCpus(numCpus);
+            }
+        }
+        Optional<CpuPermit> acquired = budget.acquire(minCpus, cpuWait);
+        if (acquired.isEmpty()) {
+            throw new TimeoutException("No CPUs available within " + cpuWait + ": requested=" + minCpus
+                    + ", budget=" + budget.getName());
+        }
+        try (CpuPermit permit = acquired.get()) {
+            permit.grow(desiredCpus - minCpus);
+            return enter(permit.numCpus(), section);
+        }
+    }
+
+    /**
+     * Returns the number of requests submitted but not yet completed.
+     *
+     * @return the number of requests in flight
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Stops accepting requests and waits until the running ones complete.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public void close() {
+        executor.close();
+    }
+
+    /**
+     * Runs a section while recording the CPUs the thread holds.
+     *
+     * @param numCpus the number of CPUs held
+     * @param section the section
+     * @param <T>     the type of the result
+     * @return the result of the section
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private <T> T enter(int numCpus, IntFunction<T> section) {
+        heldCpus.set(numCpus);
+        try {
+            return section.apply(numCpus);
+        } finally {
+            heldCpus.remove();
+        }
+    }
+}
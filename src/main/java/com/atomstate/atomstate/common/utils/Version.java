@@ -10,6 +10,8 @@
 
 package com.atomstate.atomstate.common.utils;
 
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 /**
  * Represents a version number consisting of major, minor, and patch components.
  * This class implements the {@link Comparable} interface to allow natural ordering
@@ -23,11 +25,29 @@ package com.atomstate.atomstate.common.utils;
  * </ul>
  * </p>
  *
+ * <p>Versions are checked on every WAL segment, snapshot and cluster message
+ * header, so the three components are also packed into a single
+ * {@code long} of 21 bits for the major, 21 bits for the minor and 22 bits
+ * for the patch number, in that order. Comparing and hashing work on the
+ * packed value, {@link #parse(CharSequence)} parses without allocating and
+ * {@link #of(int, int, int)} returns cached instances, so a hot path that
+ * sees the same few versions over and over creates no garbage.</p>
+ *
  * @author Atomstate
  * @version 1.0.0
  * @since 1.0.0
  */
 public class Version implements Comparable<Version> {
+    private static final int MINOR_BITS = 21;
+    private static final int PATCH_BITS = 22;
+    private static final int MAJOR_SHIFT = MINOR_BITS + PATCH_BITS;
+    private static final int MAX_MAJOR = (1 << 21) - 1;
+    private static final int MAX_MINOR = (1 << MINOR_BITS) - 1;
+    private static final int MAX_PATCH = (1 << PATCH_BITS) - 1;
+    private static final int CACHE_SIZE = 256;
+    // Direct-mapped by the packed value; a collision replaces the cached instance
+    private static final AtomicReferenceArray<Version> CACHE = new AtomicReferenceArray<>(CACHE_SIZE);
+
     /**
      * The major version number.
      * Indicates significant changes or backward-incompatible changes.
@@ -52,24 +72,72 @@ public class Version implements Comparable<Version> {
      */
     protected final int patch;
 
+    /**
+     * The major, minor and patch numbers packed into 64 bits, which order
+     * like the version when compared unsigned.
+     *
+     * @since 1.0.0
+     */
+    protected final long packed;
+
     /**
      * Constructs a new Version object with the specified major, minor, and patch numbers.
      *
-     * @param major the major version number
-     * @param minor the minor version number
-     * @param patch the patch version number
+     * @param major the major version number, at most 2,097,151
+     * @param minor the minor version number, at most 2,097,151
+     * @param patch the patch version number, at most 4,194,303
+     * @throws IllegalArgumentException if a number is negative or too large to pack
      * @author Atomstate
      * @since 1.0.0
      */
     public Version(int major, int minor, int patch) {
+        this.packed = pack(major, minor, patch);
         this.major = major;
         this.minor = minor;
         this.patch = patch;
     }
 
+    /**
+     * Returns a version, reusing a cached instance if there is one.
+     *
+     * @param major the major version number
+     * @param minor the minor version number
+     * @param patch the patch version number
+     * @return the version
+     * @throws IllegalArgumentException if a number is negative or too large to pack
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static Version of(int major, int minor, int patch) {
+        return fromPacked(pack(major, minor, patch));
+    }
+
+    /**
+     * Returns the version of a packed value, see {@link #toPacked()}, reusing
+     * a cached instance if there is one.
+     *
+     * @param packed the packed version
+     * @return the version
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static Version fromPacked(long packed) {
+        int slot = (int) ((packed ^ (packed >>> MAJOR_SHIFT) ^ (packed >>> PATCH_BITS)) & (CACHE_SIZE - 1));
+        Version cached = CACHE.get(slot);
+        if (cached != null && cached.packed == packed) {
+            return cached;
+        }
+        Version version = new Version((int) (packed >>> MAJOR_SHIFT), (int) (packed >>> PATCH_BITS) & MAX_MINOR,
+                (int) packed & MAX_PATCH);
+        CACHE.set(slot, version);
+        return version;
+    }
+
     /**
      * Parses a version string and creates a Version object.
      * The version string must be in the format "major.minor.patch".
+     * The string is parsed in place and cached instances are reused, so
+     * parsing a known version allocates nothing.
      *
      * @param versionString the version string to parse
      * @return a Version object representing the parsed version
@@ -77,15 +145,110 @@ public class Version implements Comparable<Version> {
      * @author Atomstate
      * @since 1.0.0
      */
-    public static Version parse(String versionString) {
-        String[] parts = versionString.split("\\.");
-        if (parts.length != 3) {
-            throw new IllegalArgumentException("Invalid version string: " + versionString);
+    public static Version parse(CharSequence versionString) {
+        int length = versionString.length();
+        long packed = 0;
+        int part = 0;
+        long value = 0;
+        int digits = 0;
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? versionString.charAt(i) : '.';
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                digits++;
+                if (value > MAX_PATCH) {
+                    throw invalid(versionString);
+                }
+            } else if (c == '.' && digits > 0 && part < 3) {
+                long max = part == 2 ? MAX_PATCH : MAX_MINOR;
+                if (value > max) {
+                    throw invalid(versionString);
+                }
+                packed = (packed << (part == 2 ? PATCH_BITS : MINOR_BITS)) | value;
+                part++;
+                value = 0;
+                digits = 0;
+            } else {
+                throw invalid(versionString);
+            }
         }
-        int major = Integer.parseInt(parts[0]);
-        int minor = Integer.parseInt(parts[1]);
-        int patch = Integer.parseInt(parts[2]);
-        return new Version(major, minor, patch);
+        if (part != 3) {
+            throw invalid(versionString);
+        }
+        return fromPacked(packed);
+    }
+
+    /**
+     * Returns the major version number.
+     *
+     * @return the major version number
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int getMajor() {
+        return major;
+    }
+
+    /**
+     * Returns the minor version number.
+     *
+     * @return the minor version number
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int getMinor() {
+        return minor;
+    }
+
+    /**
+     * Returns the patch version number.
+     *
+     * @return the patch version number
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int getPatch() {
+        return patch;
+    }
+
+    /**
+     * Returns the version packed into 64 bits, for headers of on-disk formats
+     * and cluster messages. Packed versions order like the versions when
+     * compared with {@link Long#compareUnsigned(long, long)}.
+     *
+     * @return the packed version
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long toPacked() {
+        return packed;
+    }
+
+    /**
+     * Returns the oldest version whose on-disk data and messages this version
+     * reads, which is the first release of its major version.
+     *
+     * @return the oldest supported version
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public Version minSupported() {
+        return fromPacked(packed & (-1L << MAJOR_SHIFT));
+    }
+
+    /**
+     * Checks whether this version reads data written by another version,
+     * which holds for all versions of the same major version: older ones down
+     * to {@link #minSupported()}, and newer ones, which only add features
+     * this version ignores.
+     *
+     * @param other the version that wrote the data
+     * @return {@code true} if the data is compatible; {@code false} otherwise
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public boolean isCompatibleWith(Version other) {
+        return (packed >>> MAJOR_SHIFT) == (other.packed >>> MAJOR_SHIFT);
     }
 
     /**
@@ -111,13 +274,7 @@ public class Version implements Comparable<Version> {
      */
     @Override
     public int compareTo(Version other) {
-        if (this.major != other.major) {
-            return Integer.compare(this.major, other.major);
-        }
-        if (this.minor != other.minor) {
-            return Integer.compare(this.minor, other.minor);
-        }
-        return Integer.compare(this.patch, other.patch);
+        return Long.compareUnsigned(packed, other.packed);
     }
 
     /**
@@ -133,7 +290,7 @@ public class Version implements Comparable<Version> {
         if (this == obj) return true;
         if (!(obj instanceof Version other)) return false;
 
-        return this.major == other.major && this.minor == other.minor && this.patch == other.patch;
+        return this.packed == other.packed;
     }
 
     /**
@@ -145,9 +302,36 @@ public class Version implements Comparable<Version> {
      */
     @Override
     public int hashCode() {
-        int result = Integer.hashCode(major); // Hash code for major
-        result = 31 * result + Integer.hashCode(minor); // Hash code for minor
-        result = 31 * result + Integer.hashCode(patch); // Hash code for patch
-        return result; // Return combined hash code
+        return Long.hashCode(packed);
+    }
+
+    /**
+     * Packs the components of a version.
+     *
+     * @param major the major version number
+     * @param minor the minor version number
+     * @param patch the patch version number
+     * @return the packed version
+     * @throws IllegalArgumentException if a number is negative or too large to pack
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static long pack(int major, int minor, int patch) {
+        if (major < 0 || major > MAX_MAJOR || minor < 0 || minor > MAX_MINOR || patch < 0 || patch > MAX_PATCH) {
+            throw new IllegalArgumentException("Version out of range: " + major + "." + minor + "." + patch);
+        }
+        return ((long) major << MAJOR_SHIFT) | ((long) minor << PATCH_BITS) | patch;
+    }
+
+    /**
+     * Creates the error of an invalid version string.
+     *
+     * @param versionString the version string
+     * @return the error
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static IllegalArgumentException invalid(CharSequence versionString) {
+        return new IllegalArgumentException("Invalid version string: " + versionString);
     }
-}
\ No newline at end of file
+}
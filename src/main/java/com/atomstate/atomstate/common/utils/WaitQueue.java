@@ -0,0 +1,287 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+import java.util.function.LongPredicate;
+
+/**
+ * The FIFO queue of callers waiting for a share of a budget, shared by
+ * {@link CpuBudget} and {@link MemoryBudget}.
+ *
+ * <p>A waiter asks for an amount of the budget, CPUs or bytes, and is handed
+ * a permit for it through a future once the amount has been taken for it.
+ * The queue does not synchronize itself: its budget guards it with a lock and
+ * decides when and in which order queues are drained. Futures are completed
+ * after that lock is released, see {@link #complete(List)}, so that callbacks
+ * of the callers never run under it. A waiter whose future was cancelled
+ * meanwhile gets no permit; the amount taken for it is given back through the
+ * release function of the queue.</p>
+ *
+ * @param <P> the type of the permits
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class WaitQueue<P> {
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+    private final Consumer<? super P> release;
+
+    /**
+     * Initializes an empty {@code WaitQueue}.
+     *
+     * @param release gives the amount of a permit no caller took back to the budget
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    WaitQueue(Consumer<? super P> release) {
+        this.release = release;
+    }
+
+    /**
+     * Queues a caller at the tail.
+     *
+     * @param amount  the amount the caller asks for
+     * @param permits creates the permit of the caller once its amount is taken
+     * @return the waiter
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    Waiter add(long amount, LongFunction<P> permits) {
+        Waiter waiter = new Waiter(amount, System.nanoTime(), permits);
+        waiters.addLast(waiter);
+        return waiter;
+    }
+
+    /**
+     * Removes a waiter, e.g. after its future was cancelled.
+     *
+     * @param waiter the waiter
+     * @return {@code true} if the waiter was still queued; {@code false} otherwise
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    boolean remove(Waiter waiter) {
+        return waiters.remove(waiter);
+    }
+
+    /**
+     * Checks whether no caller is queued.
+     *
+     * @return {@code true} if the queue is empty; {@code false} otherwise
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    boolean isEmpty() {
+        return waiters.isEmpty();
+    }
+
+    /**
+     * Takes the amounts of the waiters at the head of the queue while they
+     * fit. Waiters whose future is already done are dropped without taking
+     * anything. The first waiter that does not fit stays at the head, so a
+     * large request is not overtaken by smaller ones queued after it.
+     *
+     * @param take    takes an amount from the budget, {@code false} if it does not fit
+     * @param granted collects the waiters whose amounts have been taken
+     * @return the number of waiters removed from the queue
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    int drain(LongPredicate take, List<Waiter> granted) {
+        int removed = 0;
+        Waiter head;
+        while ((head = waiters.peekFirst()) != null) {
+            boolean waiting = !head.future.isDone();
+            if (waiting && !take.test(head.amount)) {
+                break;
+            }
+            waiters.pollFirst();
+            removed++;
+            if (waiting) {
+                granted.add(head);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes the waiters whose amount the budget can no longer satisfy.
+     *
+     * @param unsatisfiable tests whether an amount can never be taken
+     * @param removed       collects the removed waiters
+     * @return the number of waiters removed from the queue
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    int removeIf(LongPredicate unsatisfiable, List<Waiter> removed) {
+        int count = 0;
+        for (Iterator<Waiter> it = waiters.iterator(); it.hasNext(); ) {
+            Waiter waiter = it.next();
+            if (unsatisfiable.test(waiter.amount)) {
+                it.remove();
+                removed.add(waiter);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Hands the granted waiters their permits. Must be called without the lock
+     * of the budget held.
+     *
+     * @param granted the waiters whose amounts have been taken
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    static void complete(List<? extends WaitQueue<?>.Waiter> granted) {
+        for (WaitQueue<?>.Waiter waiter : granted) {
+            waiter.grant();
+        }
+    }
+
+    /**
+     * Waits for a queued request, withdrawing it if the timeout elapses first.
+     *
+     * @param future  the future of the request
+     * @param timeout the maximum time to wait
+     * @param release gives back a permit granted while the caller gave up
+     * @param <P>     the type of the permit
+     * @return the permit, or {@code null} if the timeout elapsed first
+     * @throws InterruptedException if the current thread is interrupted while
+     *                              waiting; a permit granted meanwhile is released
+     * @throws ExecutionException   if the request failed
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    static <P> P await(CompletableFuture<P> future, Duration timeout, Consumer<? super P> release)
+            throws InterruptedException, ExecutionException {
+        try {
+            return future.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            if (future.cancel(false)) {
+                return null;
+            }
+            // Granted while timing out, hand the permit over instead of dropping it
+            return future.join();
+        } catch (InterruptedException e) {
+            if (!future.cancel(false)) {
+                release.accept(future.join());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * A caller waiting in the queue.
+     *
+     * @author Atomstate
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    final class Waiter {
+        private final long amount;
+        private final long queuedAt;
+        private final LongFunction<P> permits;
+        private final CompletableFuture<P> future = new CompletableFuture<>();
+
+        /**
+         * Initializes a {@code Waiter}.
+         *
+         * @param amount   the amount the caller asks for
+         * @param queuedAt the {@link System#nanoTime()} the caller was queued at
+         * @param permits  creates the permit once the amount is taken
+         * @author Atomstate
+         * @since 1.0.0
+         */
+        private Waiter(long amount, long queuedAt, LongFunction<P> permits) {
+            this.amount = amount;
+            this.queuedAt = queuedAt;
+            this.permits = permits;
+        }
+
+        /**
+         * Returns the amount the caller asks for.
+         *
+         * @return the amount
+         * @author Atomstate
+         * @since 1.0.0
+         */
+        long amount() {
+            return amount;
+        }
+
+        /**
+         * Returns the time the caller was queued at.
+         *
+         * @return the {@link System#nanoTime()} at queueing
+         * @author Atomstate
+         * @since 1.0.0
+         */
+        long queuedAt() {
+            return queuedAt;
+        }
+
+        /**
+         * Returns the future handed to the caller.
+         *
+         * @return the future completed with the permit
+         * @author Atomstate
+         * @since 1.0.0
+         */
+        CompletableFuture<P> future() {
+            return future;
+        }
+
+        /**
+         * Runs an action once the caller cancels the future, e.g. to remove
+         * the waiter from the queue.
+         *
+         * @param withdraw the action
+         * @return this waiter
+         * @author Atomstate
+         * @since 1.0.0
+         */
+        Waiter onCancel(Runnable withdraw) {
+            future.whenComplete((permit, error) -> {
+                if (future.isCancelled()) {
+                    withdraw.run();
+                }
+            });
+            return this;
+        }
+
+        /**
+         * Completes the future with a permit for the amount taken, or gives
+         * the amount back if the caller cancelled meanwhile.
+         *
+         * @author Atomstate
+         * @since 1.0.0
+         */
+        private void grant() {
+            P permit = permits.apply(amount);
+            if (!future.complete(permit)) {
+                release.accept(permit);
+            }
+        }
+    }
+}
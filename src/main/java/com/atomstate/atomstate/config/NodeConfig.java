@@ -0,0 +1,153 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.config;
+
+import com.atomstate.atomstate.common.utils.CpuBudget;
+import com.atomstate.atomstate.common.utils.Default;
+import com.atomstate.atomstate.consensus.ConsensusConfig;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * The tuning values of a node that override {@link Default}, read from a YAML
+ * file such as:
+ * <pre>
+ *     cpu-budget: -2
+ *     pool-keep-limit: 64
+ *     hnsw-threads: 8
+ *     consensus-confirm-retries: 5
+ *     consensus-meta-op-wait-ms: 20000
+ * </pre>
+ *
+ * <p>Every value is optional; a missing value keeps the default. The CPU
+ * budget takes the same parameter as {@link CpuBudget#getCpuBudget(int)}: a
+ * positive number of CPUs, a negative number of CPUs to leave unallocated,
+ * or {@code 0} for the default. Unknown keys are rejected, so a misspelled
+ * key does not silently keep the default.</p>
+ *
+ * @param cpuBudget               the CPU budget parameter of the node, or
+ *                                {@code null} for the default
+ * @param poolKeepLimit           the number of idle objects pools keep, or
+ *                                {@code null} for {@link Default#POOL_KEEP_LIMIT}
+ * @param hnswThreads             the number of threads of an HNSW build, or
+ *                                {@code null} for {@link Default#threadCountForHnsw()}
+ * @param consensusConfirmRetries the number of retransmissions of an
+ *                                unconfirmed meta operation, or {@code null}
+ *                                for {@link Default#CONSENSUS_CONFIRM_RETRIES}
+ * @param consensusMetaOpWaitMs   the milliseconds to wait for each
+ *                                confirmation of a meta operation, or
+ *                                {@code null} for {@link Default#CONSENSUS_META_OP_WAIT}
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public record NodeConfig(@JsonProperty("cpu-budget") Integer cpuBudget,
+                         @JsonProperty("pool-keep-limit") Integer poolKeepLimit,
+                         @JsonProperty("hnsw-threads") Integer hnswThreads,
+                         @JsonProperty("consensus-confirm-retries") Integer consensusConfirmRetries,
+                         @JsonProperty("consensus-meta-op-wait-ms") Long consensusMetaOpWaitMs) {
+    /**
+     * The configuration that overrides nothing.
+     *
+     * @since 1.0.0
+     */
+    public static final NodeConfig DEFAULT = new NodeConfig(null, null, null, null, null);
+
+    private static final YAMLMapper MAPPER = new YAMLMapper();
+
+    /**
+     * Validates the values that are set.
+     *
+     * @throws IllegalArgumentException if a limit, thread count or wait is not
+     *                                  positive or the retries are negative
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public NodeConfig {
+        if ((poolKeepLimit != null && poolKeepLimit <= 0) || (hnswThreads != null && hnswThreads <= 0)
+                || (consensusConfirmRetries != null && consensusConfirmRetries < 0)
+                || (consensusMetaOpWaitMs != null && consensusMetaOpWaitMs <= 0)) {
+            throw new IllegalArgumentException("Invalid node config: poolKeepLimit=" + poolKeepLimit
+                    + ", hnswThreads=" + hnswThreads + ", consensusConfirmRetries=" + consensusConfirmRetries
+                    + ", consensusMetaOpWaitMs=" + consensusMetaOpWaitMs);
+        }
+    }
+
+    /**
+     * Reads a configuration from a YAML file. An empty file overrides nothing;
+     * {@link NodeConfigWatcher#reload()} ignores empty files instead.
+     *
+     * @param path the YAML file
+     * @return the configuration
+     * @throws IOException if the file cannot be read, is not valid YAML, has
+     *                     unknown keys or invalid values
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static NodeConfig load(Path path) throws IOException {
+        if (Files.readString(path).isBlank()) {
+            return DEFAULT;
+        }
+        return MAPPER.readValue(path.toFile(), NodeConfig.class);
+    }
+
+    /**
+     * Returns the number of CPUs of the node budget.
+     *
+     * @return the configured or default CPU budget
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int resolveCpuBudget() {
+        return CpuBudget.getCpuBudget(cpuBudget == null ? 0 : cpuBudget);
+    }
+
+    /**
+     * Returns the number of idle objects pools keep.
+     *
+     * @return the configured or default keep limit
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int resolvePoolKeepLimit() {
+        return poolKeepLimit == null ? Default.POOL_KEEP_LIMIT : poolKeepLimit;
+    }
+
+    /**
+     * Returns the number of threads of an HNSW build.
+     *
+     * @return the configured or default number of threads
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int resolveHnswThreads() {
+        return hnswThreads == null ? Default.threadCountForHnsw() : hnswThreads;
+    }
+
+    /**
+     * Returns the replication parameters with the configured timeouts.
+     *
+     * @return the replication parameters
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public ConsensusConfig resolveConsensusConfig() {
+        ConsensusConfig defaults = ConsensusConfig.DEFAULT;
+        return new ConsensusConfig(defaults.maxBatch(), defaults.maxInFlight(),
+                consensusConfirmRetries == null ? defaults.confirmRetries() : consensusConfirmRetries,
+                consensusMetaOpWaitMs == null ? defaults.metaOpWait() : Duration.ofMillis(consensusMetaOpWaitMs));
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.config;
+
+import com.atomstate.atomstate.common.utils.CpuBudget;
+import com.atomstate.atomstate.common.utils.ObjectPool;
+import com.atomstate.atomstate.consensus.ConsensusConfig;
+import com.atomstate.atomstate.consensus.ConsensusNode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Keeps a {@link NodeConfig} in sync with its YAML file and applies every
+ * change to the running components, so retuning a node does not need a
+ * restart that drops its caches.
+ *
+ * <p>The directory of the file is watched with a {@link WatchService} on a
+ * daemon thread. When the file is written or replaced, it is read again and,
+ * if the configuration changed, the listeners are called in the order they
+ * were added: bound {@link CpuBudget}s are resized, bound {@link ObjectPool}s
+ * get their new keep limit and bound {@link ConsensusNode}s their new
+ * timeouts. A file that cannot be read or has invalid values is logged and
+ * the previous configuration stays in effect, so a half-saved edit does no
+ * harm. An empty file is ignored as well: editors that truncate a file before
+ * writing it trigger a change for the empty file, which must not reset the
+ * node to the defaults. Components created later, such as the executor of the next HNSW
+ * build, read {@link #current()}.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ *     {@code try (NodeConfigWatcher config = new NodeConfigWatcher(dataDir.resolve("node.yaml"))) {}
+ *         {@code CpuBudget node = new CpuBudget(config.current().resolveCpuBudget());}
+ *         {@code config.bind(node);}
+ *         {@code config.bind(visitedPool);}
+ *         {@code config.start();}
+ *         // Later, for every build
+ *         {@code new HnswBuildExecutor(permit, config.current().resolveHnswThreads());}
+ *     {@code }}
+ * </pre>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class NodeConfigWatcher implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(NodeConfigWatcher.class);
+    private final Path path;
+    private final List<Consumer<NodeConfig>> listeners = new CopyOnWriteArrayList<>();
+    private volatile NodeConfig current;
+    private WatchService watchService;
+    private Thread thread;
+    private boolean closed;
+
+    /**
+     * Reads the configuration. Changes are not picked up before
+     * {@link #start()}.
+     *
+     * @param path the YAML file
+     * @throws IOException if the file cannot be read or is invalid
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public NodeConfigWatcher(Path path) throws IOException {
+        this.path = path.toAbsolutePath();
+        this.current = NodeConfig.load(this.path);
+        logger.info("Node config loaded from {}: {}", this.path, current);
+    }
+
+    /**
+     * Returns the configuration in effect.
+     *
+     * @return the latest valid configuration
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public NodeConfig current() {
+        return current;
+    }
+
+    /**
+     * Adds a listener, calls it with the current configuration and then
+     * with every changed configuration. Listeners are called on the watcher
+     * thread, or on the thread calling {@link #reload()}, one at a time.
+     *
+     * @param listener receives the configuration
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public synchronized void addListener(Consumer<NodeConfig> listener) {
+        listener.accept(current);
+        listeners.add(listener);
+    }
+
+    /**
+     * Keeps the size of a root CPU budget at the configured budget, see
+     * {@link NodeConfig#resolveCpuBudget()}. Resizing is safe while permits
+     * are held.
+     *
+     * @param budget the root budget of the node
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void bind(CpuBudget budget) {
+        addListener(config -> {
+            int cpus = config.resolveCpuBudget();
+            if (budget.getCpuBudget() != cpus) {
+                budget.setCpuBudget(cpus);
+            }
+        });
+    }
+
+    /**
+     * Keeps the keep limit of a pool at the configured limit, see
+     * {@link NodeConfig#resolvePoolKeepLimit()}.
+     *
+     * @param pool the pool
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void bind(ObjectPool<?> pool) {
+        addListener(config -> {
+            int keepLimit = config.resolvePoolKeepLimit();
+            if (pool.getKeepLimit() != keepLimit) {
+                pool.setKeepLimit(keepLimit);
+            }
+        });
+    }
+
+    /**
+     * Keeps the timeouts of a consensus peer at the configured ones, see
+     * {@link NodeConfig#resolveConsensusConfig()}.
+     *
+     * @param node the consensus peer
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void bind(ConsensusNode node) {
+        addListener(config -> {
+            ConsensusConfig consensus = config.resolveConsensusConfig();
+            if (!node.getConfig().equals(consensus)) {
+                node.setConfig(consensus);
+            }
+        });
+    }
+
+    /**
+     * Starts watching the file for changes.
+     *
+     * @throws IOException           if the directory cannot be watched
+     * @throws IllegalStateException if the watcher is already started or closed
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public synchronized void start() throws IOException {
+        if (watchService != null || closed) {
+            throw new IllegalStateException("Node config watcher already started or closed: " + path);
+        }
+        watchService = path.getFileSystem().newWatchService();
+        path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        thread = Thread.ofPlatform().name("node-config-watcher").daemon().start(this::watch);
+    }
+
+    /**
+     * Reads the file again and applies the configuration if it changed. An
+     * empty file is treated as an edit in progress and ignored, unlike on
+     * the initial load where it means the defaults.
+     *
+     * @return {@code true} if a changed configuration was applied;
+     * {@code false} if it did not change, is empty or is invalid
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public synchronized boolean reload() {
+        NodeConfig loaded;
+        try {
+            if (Files.readString(path).isBlank()) {
+                logger.debug("Node config {} is empty, keeping {}", path, current);
+                return false;
+            }
+            loaded = NodeConfig.load(path);
+        } catch (IOException e) {
+            logger.error("Invalid node config in {}, keeping {}", path, current, e);
+            return false;
+        }
+        if (loaded.equals(current)) {
+            return false;
+        }
+        logger.info("Node config changed from {} to {}", current, loaded);
+        current = loaded;
+        for (Consumer<NodeConfig> listener : listeners) {
+            try {
+                listener.accept(loaded);
+            } catch (RuntimeException e) {
+                logger.error("Failed to apply node config {}", loaded, e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops watching the file. Subsequent calls have no effect.
+     *
+     * @throws IOException if the watch service cannot be closed
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        if (watchService != null) {
+            watchService.close();
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Reloads the file whenever an event for it arrives, until the watch
+     * service is closed.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void watch() {
+        Path name = path.getFileName();
+        try {
+            for (;;) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || name.equals(event.context());
+                }
+                if (changed) {
+                    reload();
+                }
+                if (!key.reset()) {
+                    logger.warn("Directory of node config {} is no longer watched", path);
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            logger.debug("Stopped watching node config {}", path);
+        }
+    }
+}
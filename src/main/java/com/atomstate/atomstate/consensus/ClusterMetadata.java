@@ -0,0 +1,185 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.consensus;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The cluster metadata of a peer: the collections, the peer of each of their
+ * shards and the state of the replicas.
+ *
+ * <p>The metadata only changes by applying the committed
+ * {@link MetaOperation}s of the consensus log in log order, so all peers
+ * reach the same metadata. An operation that does not fit the metadata, such
+ * as creating a collection twice, is rejected the same way on every peer and
+ * leaves the metadata unchanged.</p>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class ClusterMetadata {
+    private final Map<String, CollectionState> collections = new HashMap<>();
+    private long appliedIndex;
+
+    /**
+     * Applies a committed operation.
+     *
+     * @param index     the log index of the operation
+     * @param operation the operation, or {@code null} for a no-op
+     * @throws IllegalStateException if the operation does not fit the
+     *                               metadata; the log index is applied anyway
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    synchronized void apply(long index, MetaOperation operation) {
+        appliedIndex = index;
+        if (operation == null) {
+            return;
+        }
+        switch (operation) {
+            case MetaOperation.CreateCollection create -> {
+                if (collections.containsKey(create.collection())) {
+                    throw new IllegalStateException("Collection already exists: " + create.collection());
+                }
+                collections.put(create.collection(), new CollectionState(create.shardPeers()));
+            }
+            case MetaOperation.DropCollection drop -> {
+                if (collections.remove(drop.collection()) == null) {
+                    throw new IllegalStateException("Collection does not exist: " + drop.collection());
+                }
+            }
+            case MetaOperation.MoveShard move -> {
+                CollectionState collection = shard(move.collection(), move.shard());
+                Map<String, ReplicaState> replicas = collection.replicas().get(move.shard());
+                replicas.remove(collection.shardPeers().set(move.shard(), move.peer()));
+                replicas.put(move.peer(), ReplicaState.ACTIVE);
+            }
+            case MetaOperation.SetReplicaState set -> {
+                CollectionState collection = shard(set.collection(), set.shard());
+                collection.replicas().get(set.shard()).put(set.peer(), set.state());
+            }
+        }
+    }
+
+    /**
+     * Returns the names of the collections.
+     *
+     * @return the collection names, sorted
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public synchronized Set<String> getCollections() {
+        return new TreeSet<>(collections.keySet());
+    }
+
+    /**
+     * Returns the peer holding each shard of a collection.
+     *
+     * @param collection the name of the collection
+     * @return the peer of each shard by shard id, or empty if the collection
+     * does not exist
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public synchronized Optional<List<String>> getShardPeers(String collection) {
+        CollectionState state = collections.get(collection);
+        return state == null ? Optional.empty() : Optional.of(List.copyOf(state.shardPeers()));
+    }
+
+    /**
+     * Returns the state of the replica of a shard on a peer.
+     *
+     * @param collection the name of the collection
+     * @param shard      the shard id
+     * @param peer       the peer
+     * @return the replica state, or empty if the peer holds no replica of the
+     * shard
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public synchronized Optional<ReplicaState> getReplicaState(String collection, int shard, String peer) {
+        CollectionState state = collections.get(collection);
+        if (state == null || shard < 0 || shard >= state.replicas().size()) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(state.replicas().get(shard).get(peer));
+    }
+
+    /**
+     * Returns the log index of the last applied operation.
+     *
+     * @return the applied index, or {@code 0} if nothing was applied
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public synchronized long getAppliedIndex() {
+        return appliedIndex;
+    }
+
+    /**
+     * Looks up a collection and checks that it has a shard.
+     *
+     * @param collection the name of the collection
+     * @param shard      the shard id
+     * @return the collection
+     * @throws IllegalStateException if the collection or the shard does not
+     *                               exist
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private CollectionState shard(String collection, int shard) {
+        CollectionState state = collections.get(collection);
+        if (state == null) {
+            throw new IllegalStateException("Collection does not exist: " + collection);
+        }
+        if (shard < 0 || shard >= state.shardPeers().size()) {
+            throw new IllegalStateException("Collection " + collection + " has no shard " + shard);
+        }
+        return state;
+    }
+
+    /**
+     * The metadata of a collection.
+     *
+     * @param shardPeers the peer holding each shard, by shard id
+     * @param replicas   the state of the replicas of each shard by peer, by
+     *                   shard id
+     * @author Atomstate
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private record CollectionState(List<String> shardPeers, List<Map<String, ReplicaState>> replicas) {
+
+        /**
+         * Creates the metadata of a new collection, whose shards have a single
+         * active replica on their peer.
+         *
+         * @param shardPeers the peer holding each shard, by shard id
+         * @author Atomstate
+         * @since 1.0.0
+         */
+        CollectionState(List<String> shardPeers) {
+            this(new ArrayList<>(shardPeers), new ArrayList<>(shardPeers.size()));
+            for (String peer : shardPeers) {
+                Map<String, ReplicaState> shardReplicas = new HashMap<>();
+                shardReplicas.put(peer, ReplicaState.ACTIVE);
+                replicas.add(shardReplicas);
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.consensus;
+
+import com.atomstate.atomstate.common.utils.Default;
+
+import java.time.Duration;
+
+/**
+ * The parameters of a {@link ConsensusNode}.
+ *
+ * <p>{@code maxBatch} bounds the number of entries per replication message
+ * and {@code maxInFlight} the number of replication messages a leader sends
+ * to a follower before the first of them is acknowledged. Together they
+ * pipeline the log: entries proposed while the window is full are sent in
+ * one batch as soon as an acknowledgement frees a slot. {@code confirmRetries}
+ * and {@code metaOpWait} bound how long
+ * {@link ConsensusNode#proposeAndWait(MetaOperation)} waits for a commit.</p>
+ *
+ * @param maxBatch       the maximum number of entries per replication message
+ * @param maxInFlight    the maximum number of unacknowledged replication
+ *                       messages per follower
+ * @param confirmRetries the number of times an unconfirmed operation is
+ *                       retransmitted before giving up
+ * @param metaOpWait     the time to wait for each confirmation attempt
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public record ConsensusConfig(int maxBatch, int maxInFlight, int confirmRetries, Duration metaOpWait) {
+    /**
+     * The parameters used unless a cluster configures its own, honoring
+     * {@link Default#CONSENSUS_CONFIRM_RETRIES} and
+     * {@link Default#CONSENSUS_META_OP_WAIT}.
+     *
+     * @since 1.0.0
+     */
+    public static final ConsensusConfig DEFAULT = new ConsensusConfig(256, 4, Default.CONSENSUS_CONFIRM_RETRIES,
+            Default.CONSENSUS_META_OP_WAIT);
+
+    /**
+     * Validates the parameters.
+     *
+     * @throws IllegalArgumentException if a size is not positive, the retries
+     *                                  are negative or the wait is not positive
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public ConsensusConfig {
+        if (maxBatch <= 0 || maxInFlight <= 0 || confirmRetries < 0 || metaOpWait.isNegative()
+                || metaOpWait.isZero()) {
+            throw new IllegalArgumentException("Invalid consensus config: maxBatch=" + maxBatch + ", maxInFlight="
+                    + maxInFlight + ", confirmRetries=" + confirmRetries + ", metaOpWait=" + metaOpWait);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.consensus;
+
+import java.util.List;
+
+/**
+ * A message exchanged between the peers of a consensus group, see
+ * {@link ConsensusNode}.
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public sealed interface ConsensusMessage permits ConsensusMessage.AppendEntries, ConsensusMessage.AppendResponse,
+        ConsensusMessage.RequestVote, ConsensusMessage.VoteResponse {
+
+    /**
+     * Returns the term of the sender.
+     *
+     * @return the term
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    long term();
+
+    /**
+     * Returns the id of the sender.
+     *
+     * @return the peer id
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    String from();
+
+    /**
+     * Replicates a batch of log entries from the leader, or carries only its
+     * commit index if the batch is empty.
+     *
+     * @param term         the term of the leader
+     * @param from         the leader
+     * @param prevIndex    the index of the entry before the batch
+     * @param prevTerm     the term of the entry before the batch
+     * @param entries      the entries, in log order
+     * @param leaderCommit the commit index of the leader
+     * @author Atomstate
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    record AppendEntries(long term, String from, long prevIndex, long prevTerm, List<LogEntry> entries,
+                         long leaderCommit) implements ConsensusMessage {
+    }
+
+    /**
+     * Answers an {@link AppendEntries}.
+     *
+     * @param term       the term of the follower
+     * @param from       the follower
+     * @param success    whether the entries matched the log of the follower
+     * @param matchIndex the last index known to match the leader if
+     *                   successful, otherwise a hint where to retry from
+     * @author Atomstate
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    record AppendResponse(long term, String from, boolean success, long matchIndex) implements ConsensusMessage {
+    }
+
+    /**
+     * Asks for the vote of a peer in an election.
+     *
+     * @param term      the term of the election
+     * @param from      the candidate
+     * @param lastIndex the index of the last entry of the candidate
+     * @param lastTerm  the term of the last entry of the candidate
+     * @author Atomstate
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    record RequestVote(long term, String from, long lastIndex, long lastTerm) implements ConsensusMessage {
+    }
+
+    /**
+     * Answers a {@link RequestVote}.
+     *
+     * @param term    the term of the voter
+     * @param from    the voter
+     * @param granted whether the vote was granted
+     * @author Atomstate
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    record VoteResponse(long term, String from, boolean granted) implements ConsensusMessage {
+    }
+}
@@ -0,0 +1,804 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.consensus;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A peer of the Raft consensus group replicating the cluster metadata.
+ *
+ * <p>The leader appends proposed {@link MetaOperation}s to its log and
+ * replicates them to the followers without waiting for each operation to be
+ * confirmed: up to {@link ConsensusConfig#maxInFlight()} replication messages
+ * are outstanding per follower, and entries proposed while that window is
+ * full are sent as a single batch of up to {@link ConsensusConfig#maxBatch()}
+ * entries once an acknowledgement frees a slot. An operation is committed
+ * once a majority of peers stored it, and every peer then applies it to its
+ * {@link ClusterMetadata} in log order. Creating hundreds of collections
+ * therefore takes a handful of round trips instead of one per collection.</p>
+ *
+ * <p>The node has no timers of its own: the cluster service calls
+ * {@link #startElection()} when it has not heard from a leader in time and
+ * {@link #heartbeat()} periodically on the leader, which also retransmits
+ * entries whose messages were lost. The log is kept in memory; a restarted
+ * peer catches up from the leader.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ *     {@code ConsensusNode node = new ConsensusNode("a", List.of("a", "b", "c"), transport, ConsensusConfig.DEFAULT);}
+ *     {@code node.startElection();}
+ *     // Once elected
+ *     {@code node.proposeAndWait(new MetaOperation.CreateCollection("docs", List.of("a", "b")));}
+ * </pre>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class ConsensusNode {
+    private static final Logger logger = LogManager.getLogger(ConsensusNode.class);
+    private final String id;
+    private final List<String> peers;
+    private final List<String> others;
+    private final Transport transport;
+    private volatile ConsensusConfig config;
+    private final ClusterMetadata metadata = new ClusterMetadata();
+    private final ReentrantLock lock = new ReentrantLock();
+    // The entry with index i is at position i - 1
+    private final List<LogEntry> log = new ArrayList<>();
+    private final Map<String, Progress> progress = new HashMap<>();
+    private final Map<Long, Proposal> proposals = new HashMap<>();
+    private final Set<String> votes = new HashSet<>();
+    private final List<Runnable> completions = new ArrayList<>();
+    private Role role = Role.FOLLOWER;
+    private long currentTerm;
+    private String votedFor;
+    private String leader;
+    private long commitIndex;
+    private long lastApplied;
+
+    /**
+     * Creates a follower and registers it with the transport.
+     *
+     * @param id        the id of this peer
+     * @param peers     the ids of all peers of the group, including this one
+     * @param transport delivers the messages between the peers
+     * @param config    the replication parameters
+     * @throws IllegalArgumentException if the peers do not include this one
+     *                                  or contain duplicates
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public ConsensusNode(String id, List<String> peers, Transport transport, ConsensusConfig config) {
+        if (!peers.contains(id) || new HashSet<>(peers).size() != peers.size()) {
+            throw new IllegalArgumentException("Invalid consensus peers for " + id + ": " + peers);
+        }
+        this.id = id;
+        this.peers = List.copyOf(peers);
+        this.others = peers.stream().filter(peer -> !peer.equals(id)).toList();
+        this.transport = transport;
+        this.config = config;
+        transport.register(id, this::receive);
+    }
+
+    /**
+     * Starts an election for the next term. The peer becomes leader once a
+     * majority granted its vote, right away in a single-peer group.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void startElection() {
+        lock.lock();
+        try {
+            currentTerm++;
+            role = Role.CANDIDATE;
+            votedFor = id;
+            leader = null;
+            votes.clear();
+            votes.add(id);
+            logger.debug("Peer {} starts an election for term {}", id, currentTerm);
+            if (isQuorum(votes.size())) {
+                becomeLeader();
+                return;
+            }
+            for (String peer : others) {
+                transport.send(peer, new ConsensusMessage.RequestVote(currentTerm, id, lastIndex(), termAt(lastIndex())));
+            }
+        } finally {
+            lock.unlock();
+        }
+        runCompletions();
+    }
+
+    /**
+     * Proposes an operation without waiting for it to be committed.
+     *
+     * @param operation the operation
+     * @return a future completing with the log index of the operation once it
+     * is applied to the metadata of this peer, or failing with an
+     * {@link IllegalStateException} if the metadata rejected it or a new
+     * leader replaced it
+     * @throws IllegalStateException if this peer is not the leader
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public CompletableFuture<Long> propose(MetaOperation operation) {
+        return proposeAll(List.of(operation)).getFirst();
+    }
+
+    /**
+     * Proposes operations as one batch without waiting for them to be
+     * committed. The operations are appended to the log in the given order
+     * before any of them is replicated.
+     *
+     * @param operations the operations
+     * @return the futures of the operations, see {@link #propose(MetaOperation)}
+     * @throws IllegalStateException if this peer is not the leader
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public List<CompletableFuture<Long>> proposeAll(List<? extends MetaOperation> operations) {
+        List<CompletableFuture<Long>> futures = new ArrayList<>(operations.size());
+        lock.lock();
+        try {
+            if (role != Role.LEADER) {
+                throw new IllegalStateException("Peer " + id + " is not the leader"
+                        + (leader == null ? "" : ", the leader is " + leader));
+            }
+            for (MetaOperation operation : operations) {
+                CompletableFuture<Long> future = new CompletableFuture<>();
+                proposals.put(append(operation), new Proposal(currentTerm, future));
+                futures.add(future);
+            }
+            replicateAll();
+            advanceCommit();
+        } finally {
+            lock.unlock();
+        }
+        runCompletions();
+        return futures;
+    }
+
+    /**
+     * Proposes an operation and waits until it is applied. An operation not
+     * confirmed within {@link ConsensusConfig#metaOpWait()} is retransmitted,
+     * at most {@link ConsensusConfig#confirmRetries()} times.
+     *
+     * @param operation the operation
+     * @return the log index of the operation
+     * @throws IllegalStateException if this peer is not the leader, the
+     *                               metadata rejected the operation or a new
+     *                               leader replaced it
+     * @throws TimeoutException      if the operation was not confirmed after
+     *                               all retries
+     * @throws InterruptedException  if the calling thread is interrupted
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long proposeAndWait(MetaOperation operation) throws TimeoutException, InterruptedException {
+        CompletableFuture<Long> future = propose(operation);
+        ConsensusConfig config = this.config;
+        long waitNanos = config.metaOpWait().toNanos();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return future.get(waitNanos, TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                throw new IllegalStateException("Meta operation failed: " + operation, e.getCause());
+            } catch (TimeoutException e) {
+                if (attempt >= config.confirmRetries()) {
+                    throw new TimeoutException("Meta operation not confirmed after " + (attempt + 1)
+                            + " attempts of " + config.metaOpWait() + ": " + operation);
+                }
+                logger.warn("Meta operation not confirmed within {}, retransmitting: {}", config.metaOpWait(),
+                        operation);
+                heartbeat();
+            }
+        }
+    }
+
+    /**
+     * Asserts the leadership of this peer. Every follower is sent the
+     * entries it has not acknowledged yet, or the commit index if it has
+     * all of them, which recovers from lost messages. Does nothing unless
+     * this peer is the leader.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void heartbeat() {
+        lock.lock();
+        try {
+            if (role != Role.LEADER) {
+                return;
+            }
+            for (String peer : others) {
+                Progress follower = progress.get(peer);
+                follower.nextIndex = follower.matchIndex + 1;
+                follower.inFlight = 0;
+                follower.sentCommit = -1;
+                replicate(peer);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the id of this peer.
+     *
+     * @return the peer id
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Returns the role of this peer.
+     *
+     * @return the role
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public Role getRole() {
+        lock.lock();
+        try {
+            return role;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the current term of this peer.
+     *
+     * @return the term, {@code 0} before the first election
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long getTerm() {
+        lock.lock();
+        try {
+            return currentTerm;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the leader of the current term as far as this peer knows.
+     *
+     * @return the leader id, or empty if unknown
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public Optional<String> getLeader() {
+        lock.lock();
+        try {
+            return Optional.ofNullable(leader);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the index of the last entry of the log of this peer.
+     *
+     * @return the last index, or {@code 0} if the log is empty
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long getLastIndex() {
+        lock.lock();
+        try {
+            return lastIndex();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the index of the last entry known to be committed.
+     *
+     * @return the commit index
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long getCommitIndex() {
+        lock.lock();
+        try {
+            return commitIndex;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the cluster metadata the committed operations are applied to.
+     *
+     * @return the metadata of this peer
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public ClusterMetadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * Returns the replication parameters.
+     *
+     * @return the current parameters
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public ConsensusConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Changes the replication parameters at runtime, e.g. after the node
+     * configuration was edited. Replication messages and waits that already
+     * started keep the previous parameters.
+     *
+     * @param config the new parameters
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void setConfig(ConsensusConfig config) {
+        this.config = Objects.requireNonNull(config, "config");
+        logger.info("Consensus config of {} changed to {}", id, config);
+    }
+
+    /**
+     * Handles a message from another peer.
+     *
+     * @param message the message
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void receive(ConsensusMessage message) {
+        lock.lock();
+        try {
+            if (message.term() > currentTerm) {
+                stepDown(message.term());
+            }
+            switch (message) {
+                case ConsensusMessage.AppendEntries append -> onAppendEntries(append);
+                case ConsensusMessage.AppendResponse response -> onAppendResponse(response);
+                case ConsensusMessage.RequestVote request -> onRequestVote(request);
+                case ConsensusMessage.VoteResponse response -> onVoteResponse(response);
+            }
+        } finally {
+            lock.unlock();
+        }
+        runCompletions();
+    }
+
+    /**
+     * Stores the entries of the leader if they continue the log of this
+     * peer, replacing conflicting entries, and applies what the leader
+     * committed.
+     *
+     * @param append the message of the leader
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void onAppendEntries(ConsensusMessage.AppendEntries append) {
+        if (append.term() < currentTerm) {
+            transport.send(append.from(), new ConsensusMessage.AppendResponse(currentTerm, id, false, lastIndex()));
+            return;
+        }
+        if (role != Role.FOLLOWER || !append.from().equals(leader)) {
+            logger.debug("Peer {} follows {} in term {}", id, append.from(), currentTerm);
+        }
+        role = Role.FOLLOWER;
+        leader = append.from();
+        if (append.prevIndex() > lastIndex() || termAt(append.prevIndex()) != append.prevTerm()) {
+            long hint = Math.min(lastIndex(), append.prevIndex() - 1);
+            transport.send(append.from(), new ConsensusMessage.AppendResponse(currentTerm, id, false, hint));
+            return;
+        }
+        long index = append.prevIndex();
+        for (LogEntry entry : append.entries()) {
+            index++;
+            if (index <= lastIndex()) {
+                if (termAt(index) == entry.term()) {
+                    continue;
+                }
+                log.subList((int) index - 1, log.size()).clear();
+            }
+            log.add(entry);
+        }
+        long matchIndex = append.prevIndex() + append.entries().size();
+        long committed = Math.min(append.leaderCommit(), matchIndex);
+        if (committed > commitIndex) {
+            commitIndex = committed;
+            applyCommitted();
+        }
+        transport.send(append.from(), new ConsensusMessage.AppendResponse(currentTerm, id, true, matchIndex));
+    }
+
+    /**
+     * Records the progress of a follower, commits what a majority stored and
+     * sends the follower the entries that fit its window.
+     *
+     * @param response the answer of the follower
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void onAppendResponse(ConsensusMessage.AppendResponse response) {
+        Progress follower = progress.get(response.from());
+        if (role != Role.LEADER || response.term() != currentTerm || follower == null) {
+            return;
+        }
+        follower.inFlight = Math.max(0, follower.inFlight - 1);
+        if (response.success()) {
+            if (response.matchIndex() > follower.matchIndex) {
+                follower.matchIndex = response.matchIndex();
+                follower.nextIndex = Math.max(follower.nextIndex, follower.matchIndex + 1);
+                advanceCommit();
+            }
+        } else {
+            // Resend from where the logs match; messages sent past that point were rejected as well
+            follower.nextIndex = Math.max(follower.matchIndex + 1,
+                    Math.min(follower.nextIndex, response.matchIndex() + 1));
+            follower.inFlight = 0;
+        }
+        replicate(response.from());
+    }
+
+    /**
+     * Grants the vote of this peer to a candidate whose log is at least as
+     * up to date, once per term.
+     *
+     * @param request the request of the candidate
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void onRequestVote(ConsensusMessage.RequestVote request) {
+        long lastTerm = termAt(lastIndex());
+        boolean upToDate = request.lastTerm() > lastTerm
+                || (request.lastTerm() == lastTerm && request.lastIndex() >= lastIndex());
+        boolean granted = request.term() == currentTerm && upToDate
+                && (votedFor == null || votedFor.equals(request.from()));
+        if (granted) {
+            votedFor = request.from();
+        }
+        transport.send(request.from(), new ConsensusMessage.VoteResponse(currentTerm, id, granted));
+    }
+
+    /**
+     * Counts a vote and becomes leader once a majority granted it.
+     *
+     * @param response the answer of the voter
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void onVoteResponse(ConsensusMessage.VoteResponse response) {
+        if (role != Role.CANDIDATE || response.term() != currentTerm || !response.granted()) {
+            return;
+        }
+        votes.add(response.from());
+        if (isQuorum(votes.size())) {
+            becomeLeader();
+        }
+    }
+
+    /**
+     * Becomes leader of the current term and appends a no-op entry, which
+     * commits the entries of earlier terms once replicated.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void becomeLeader() {
+        role = Role.LEADER;
+        leader = id;
+        progress.clear();
+        for (String peer : others) {
+            progress.put(peer, new Progress(lastIndex() + 1));
+        }
+        append(null);
+        logger.info("Peer {} became leader for term {} at index {}", id, currentTerm, lastIndex());
+        replicateAll();
+        advanceCommit();
+    }
+
+    /**
+     * Follows a newer term.
+     *
+     * @param term the newer term
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void stepDown(long term) {
+        if (role == Role.LEADER) {
+            logger.info("Peer {} steps down as leader of term {} for term {}", id, currentTerm, term);
+        }
+        currentTerm = term;
+        role = Role.FOLLOWER;
+        votedFor = null;
+        leader = null;
+    }
+
+    /**
+     * Sends every follower the entries that fit its window.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void replicateAll() {
+        for (String peer : others) {
+            replicate(peer);
+        }
+    }
+
+    /**
+     * Sends a follower the entries it was not sent yet, in batches, until its
+     * window is full. A follower that was sent everything but not the latest
+     * commit index is sent an empty batch carrying it.
+     *
+     * @param peer the follower
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void replicate(String peer) {
+        Progress follower = progress.get(peer);
+        while (follower.inFlight < config.maxInFlight() && follower.nextIndex <= lastIndex()) {
+            long to = Math.min(lastIndex(), follower.nextIndex + config.maxBatch() - 1);
+            sendAppend(peer, follower, to);
+        }
+        if (follower.inFlight == 0 && follower.sentCommit < commitIndex) {
+            sendAppend(peer, follower, follower.nextIndex - 1);
+        }
+    }
+
+    /**
+     * Sends a follower the entries from its next index up to an index.
+     *
+     * @param peer     the follower
+     * @param follower the progress of the follower
+     * @param to       the index of the last entry to send
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void sendAppend(String peer, Progress follower, long to) {
+        long prevIndex = follower.nextIndex - 1;
+        List<LogEntry> entries = List.copyOf(log.subList((int) prevIndex, (int) to));
+        transport.send(peer, new ConsensusMessage.AppendEntries(currentTerm, id, prevIndex, termAt(prevIndex), entries,
+                commitIndex));
+        follower.nextIndex = to + 1;
+        follower.inFlight++;
+        follower.sentCommit = commitIndex;
+    }
+
+    /**
+     * Commits the entries a majority of peers stored, if they include an
+     * entry of the current term, and tells the followers.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void advanceCommit() {
+        long[] matchIndexes = new long[peers.size()];
+        matchIndexes[0] = lastIndex();
+        int i = 1;
+        for (Progress follower : progress.values()) {
+            matchIndexes[i++] = follower.matchIndex;
+        }
+        Arrays.sort(matchIndexes);
+        // The highest index stored by a majority
+        long quorumIndex = matchIndexes[(peers.size() - 1) / 2];
+        if (quorumIndex > commitIndex && termAt(quorumIndex) == currentTerm) {
+            commitIndex = quorumIndex;
+            applyCommitted();
+            replicateAll();
+        }
+    }
+
+    /**
+     * Applies the committed entries to the metadata and schedules the
+     * completion of their proposals.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void applyCommitted() {
+        while (lastApplied < commitIndex) {
+            LogEntry entry = log.get((int) lastApplied);
+            lastApplied++;
+            RuntimeException rejection = null;
+            try {
+                metadata.apply(entry.index(), entry.operation());
+            } catch (IllegalStateException e) {
+                logger.debug("Peer {} rejected meta operation at index {}: {}", id, entry.index(), e.getMessage());
+                rejection = e;
+            }
+            Proposal proposal = proposals.remove(entry.index());
+            if (proposal == null) {
+                continue;
+            }
+            CompletableFuture<Long> future = proposal.future();
+            if (proposal.term() != entry.term()) {
+                IllegalStateException replaced = new IllegalStateException("Meta operation at index "
+                        + entry.index() + " was replaced by a leader of term " + entry.term());
+                completions.add(() -> future.completeExceptionally(replaced));
+            } else if (rejection != null) {
+                RuntimeException error = rejection;
+                completions.add(() -> future.completeExceptionally(error));
+            } else {
+                long index = entry.index();
+                completions.add(() -> future.complete(index));
+            }
+        }
+    }
+
+    /**
+     * Completes the futures of applied proposals outside of the lock, so
+     * that their callbacks may call this peer.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void runCompletions() {
+        List<Runnable> ready;
+        lock.lock();
+        try {
+            if (completions.isEmpty()) {
+                return;
+            }
+            ready = new ArrayList<>(completions);
+            completions.clear();
+        } finally {
+            lock.unlock();
+        }
+        for (Runnable completion : ready) {
+            completion.run();
+        }
+    }
+
+    /**
+     * Appends an entry of the current term to the log.
+     *
+     * @param operation the operation, or {@code null} for a no-op
+     * @return the index of the entry
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private long append(MetaOperation operation) {
+        long index = lastIndex() + 1;
+        log.add(new LogEntry(currentTerm, index, operation));
+        return index;
+    }
+
+    /**
+     * Returns the index of the last entry of the log.
+     *
+     * @return the last index, or {@code 0} if the log is empty
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private long lastIndex() {
+        return log.size();
+    }
+
+    /**
+     * Returns the term of an entry of the log.
+     *
+     * @param index the index of the entry, at most the last index
+     * @return the term, or {@code 0} for index {@code 0}
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private long termAt(long index) {
+        return index == 0 ? 0 : log.get((int) index - 1).term();
+    }
+
+    /**
+     * Checks whether a number of peers is a majority of the group.
+     *
+     * @param count the number of peers
+     * @return {@code true} if they form a majority
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private boolean isQuorum(int count) {
+        return count > peers.size() / 2;
+    }
+
+    /**
+     * The role of a peer in its current term.
+     *
+     * @author Atomstate
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public enum Role {
+        /**
+         * The peer stores the entries of the leader.
+         *
+         * @since 1.0.0
+         */
+        FOLLOWER,
+
+        /**
+         * The peer asks the others to elect it.
+         *
+         * @since 1.0.0
+         */
+        CANDIDATE,
+
+        /**
+         * The peer accepts proposals and replicates them.
+         *
+         * @since 1.0.0
+         */
+        LEADER
+    }
+
+    /**
+     * The replication progress of a follower, as tracked by the leader.
+     *
+     * @author Atomstate
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static final class Progress {
+        private long nextIndex;
+        private long matchIndex;
+        private int inFlight;
+        private long sentCommit = -1;
+
+        /**
+         * Creates the progress of a follower whose log is not known yet.
+         *
+         * @param nextIndex the index of the next entry to send
+         * @author Atomstate
+         * @since 1.0.0
+         */
+        private Progress(long nextIndex) {
+            this.nextIndex = nextIndex;
+        }
+    }
+
+    /**
+     * An operation proposed on this peer and not applied yet.
+     *
+     * @param term   the term the operation was proposed in
+     * @param future completes once the operation is applied
+     * @author Atomstate
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private record Proposal(long term, CompletableFuture<Long> future) {
+    }
+}
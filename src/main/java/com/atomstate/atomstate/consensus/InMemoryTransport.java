@@ -0,0 +1,192 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.consensus;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Transport} between peers in the same process for deterministic
+ * multi-node tests.
+ *
+ * <p>Sent messages are kept in a single FIFO queue and only delivered when
+ * the test pumps them, see {@link #deliverAll()}, so the interleaving of
+ * messages is fully determined by the test. A peer can be disconnected to
+ * simulate a network partition: messages from and to it are dropped until
+ * it is reconnected.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ *     {@code InMemoryTransport transport = new InMemoryTransport();}
+ *     {@code ConsensusNode leader = new ConsensusNode("a", List.of("a", "b", "c"), transport, ConsensusConfig.DEFAULT);}
+ *     {@code leader.startElection();}
+ *     {@code transport.deliverAll();}
+ * </pre>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class InMemoryTransport implements Transport {
+    private final Map<String, Consumer<ConsensusMessage>> handlers = new HashMap<>();
+    private final ArrayDeque<Envelope> queue = new ArrayDeque<>();
+    private final Set<String> disconnected = new HashSet<>();
+    private long sent;
+    private long dropped;
+
+    /**
+     * Registers the handler receiving the messages addressed to a peer.
+     *
+     * @param peer    the peer id
+     * @param handler receives the messages
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public synchronized void register(String peer, Consumer<ConsensusMessage> handler) {
+        handlers.put(peer, handler);
+    }
+
+    /**
+     * Queues a message for delivery, or drops it if either peer is
+     * disconnected.
+     *
+     * @param to      the receiving peer
+     * @param message the message, naming its sender
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public synchronized void send(String to, ConsensusMessage message) {
+        sent++;
+        if (disconnected.contains(to) || disconnected.contains(message.from())) {
+            dropped++;
+            return;
+        }
+        queue.add(new Envelope(to, message));
+    }
+
+    /**
+     * Delivers the oldest queued message on the calling thread.
+     *
+     * @return {@code true} if a message was delivered or dropped; {@code false}
+     * if the queue was empty
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public boolean deliverOne() {
+        Envelope envelope;
+        Consumer<ConsensusMessage> handler;
+        synchronized (this) {
+            envelope = queue.poll();
+            if (envelope == null) {
+                return false;
+            }
+            handler = handlers.get(envelope.to());
+            if (handler == null || disconnected.contains(envelope.to())
+                    || disconnected.contains(envelope.message().from())) {
+                dropped++;
+                return true;
+            }
+        }
+        handler.accept(envelope.message());
+        return true;
+    }
+
+    /**
+     * Delivers queued messages, including those sent in response, until the
+     * queue is empty.
+     *
+     * @return the number of messages taken from the queue
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int deliverAll() {
+        int delivered = 0;
+        while (deliverOne()) {
+            delivered++;
+        }
+        return delivered;
+    }
+
+    /**
+     * Cuts a peer off the network. Queued and future messages from and to it
+     * are dropped.
+     *
+     * @param peer the peer id
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public synchronized void disconnect(String peer) {
+        disconnected.add(peer);
+    }
+
+    /**
+     * Connects a peer to the network again.
+     *
+     * @param peer the peer id
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public synchronized void reconnect(String peer) {
+        disconnected.remove(peer);
+    }
+
+    /**
+     * Returns the number of messages sent so far, including dropped ones.
+     *
+     * @return the number of sent messages
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public synchronized long getSentCount() {
+        return sent;
+    }
+
+    /**
+     * Returns the number of messages dropped so far because a peer was
+     * disconnected.
+     *
+     * @return the number of dropped messages
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    /**
+     * Returns the number of queued messages.
+     *
+     * @return the number of messages waiting for delivery
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public synchronized int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * A queued message.
+     *
+     * @param to      the receiving peer
+     * @param message the message
+     * @author Atomstate
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private record Envelope(String to, ConsensusMessage message) {
+    }
+}
@@ -0,0 +1,25 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.consensus;
+
+/**
+ * An entry of the consensus log.
+ *
+ * @param term      the term of the leader that created the entry
+ * @param index     the position of the entry in the log, starting at {@code 1}
+ * @param operation the operation, or {@code null} for the no-op a new leader
+ *                  appends to commit the entries of earlier terms
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public record LogEntry(long term, long index, MetaOperation operation) {
+}
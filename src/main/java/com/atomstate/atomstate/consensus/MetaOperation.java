@@ -0,0 +1,89 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.consensus;
+
+import java.util.List;
+
+/**
+ * A change of the cluster metadata, replicated through the consensus log
+ * and applied to the {@link ClusterMetadata} of every peer in log order.
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public sealed interface MetaOperation permits MetaOperation.CreateCollection, MetaOperation.DropCollection,
+        MetaOperation.MoveShard, MetaOperation.SetReplicaState {
+
+    /**
+     * Creates a collection with one shard per given peer.
+     *
+     * @param collection the name of the collection
+     * @param shardPeers the peer holding each shard, by shard id
+     * @author Atomstate
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    record CreateCollection(String collection, List<String> shardPeers) implements MetaOperation {
+
+        /**
+         * Validates the operation.
+         *
+         * @throws IllegalArgumentException if the collection has no shard
+         * @author Atomstate
+         * @since 1.0.0
+         */
+        public CreateCollection {
+            if (shardPeers.isEmpty()) {
+                throw new IllegalArgumentException("A collection needs at least one shard: " + collection);
+            }
+            shardPeers = List.copyOf(shardPeers);
+        }
+    }
+
+    /**
+     * Drops a collection.
+     *
+     * @param collection the name of the collection
+     * @author Atomstate
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    record DropCollection(String collection) implements MetaOperation {
+    }
+
+    /**
+     * Moves a shard of a collection to another peer.
+     *
+     * @param collection the name of the collection
+     * @param shard      the shard id
+     * @param peer       the new peer of the shard
+     * @author Atomstate
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    record MoveShard(String collection, int shard, String peer) implements MetaOperation {
+    }
+
+    /**
+     * Records the state of the replica of a shard on a peer.
+     *
+     * @param collection the name of the collection
+     * @param shard      the shard id
+     * @param peer       the peer holding the replica
+     * @param state      the new state of the replica
+     * @author Atomstate
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    record SetReplicaState(String collection, int shard, String peer, ReplicaState state) implements MetaOperation {
+    }
+}
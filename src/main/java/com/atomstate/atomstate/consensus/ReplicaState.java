@@ -0,0 +1,42 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.consensus;
+
+/**
+ * The state of a replica of a shard on a peer, as recorded in the cluster
+ * metadata.
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public enum ReplicaState {
+    /**
+     * The replica serves reads and writes.
+     *
+     * @since 1.0.0
+     */
+    ACTIVE,
+
+    /**
+     * The replica is receiving a transfer and only accepts writes.
+     *
+     * @since 1.0.0
+     */
+    PARTIAL,
+
+    /**
+     * The replica failed and must be recovered before it serves again.
+     *
+     * @since 1.0.0
+     */
+    DEAD
+}
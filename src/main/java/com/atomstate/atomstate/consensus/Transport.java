@@ -0,0 +1,48 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.consensus;
+
+import java.util.function.Consumer;
+
+/**
+ * Delivers {@link ConsensusMessage}s between the peers of a consensus group.
+ *
+ * <p>Sending must not block and must not call the receiving peer on the
+ * sending thread, since peers send while holding their own lock. Messages
+ * may be lost, duplicated or reordered; the consensus protocol tolerates
+ * all of it.</p>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public interface Transport {
+
+    /**
+     * Registers the handler receiving the messages addressed to a peer.
+     *
+     * @param peer    the peer id
+     * @param handler receives the messages
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    void register(String peer, Consumer<ConsensusMessage> handler);
+
+    /**
+     * Sends a message to a peer.
+     *
+     * @param to      the receiving peer
+     * @param message the message, naming its sender
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    void send(String to, ConsensusMessage message);
+}
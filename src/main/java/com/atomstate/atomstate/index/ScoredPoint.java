@@ -0,0 +1,23 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.index;
+
+/**
+ * A point found by a search together with its distance to the query.
+ *
+ * @param id       the point id
+ * @param distance the distance to the query, smaller meaning more similar
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public record ScoredPoint(int id, float distance) {
+}
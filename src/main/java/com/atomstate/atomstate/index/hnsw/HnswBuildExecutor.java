@@ -0,0 +1,357 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.index.hnsw;
+
+import com.atomstate.atomstate.common.utils.CpuPermit;
+import com.atomstate.atomstate.common.utils.Default;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs the insertions of a graph build in parallel on as many threads as a
+ * {@link CpuPermit} grants.
+ *
+ * <p>Point ids are handed out to the workers in batches from a shared cursor,
+ * so fast workers steal the remaining work of slow ones. The inserter is
+ * called once per id from several threads at once and must synchronize its
+ * updates of neighbor lists itself, see {@link NodeLocks}.</p>
+ *
+ * <p>The executor follows the permit while the build is running. Between two
+ * batches a worker gives CPUs back if the budget asked for them, see
+ * {@link CpuPermit#getReclaimRequest()}, and otherwise tries to grow the permit
+ * up to the configured number of threads. The pool parallelism is adjusted to
+ * the new size of the permit: surplus workers retire after their current batch
+ * and new ones are started when the permit grew. Closing the permit cancels the
+ * build. The permit remains owned by the caller and is not closed by the
+ * executor.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ *     {@code try (CpuPermit permit = indexing.acquire(1, Duration.ofSeconds(1)).orElseThrow();}
+ *          {@code HnswBuildExecutor executor = new HnswBuildExecutor(permit)) {}
+ *         {@code index.build(executor);}
+ *     {@code }}
+ * </pre>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class HnswBuildExecutor implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(HnswBuildExecutor.class);
+    private static final int DEFAULT_BATCH_SIZE = 64;
+    private static final long GROW_INTERVAL_NANOS = Duration.ofMillis(100).toNanos();
+    private static final AtomicInteger POOL_IDS = new AtomicInteger();
+    private final CpuPermit permit;
+    private final int maxThreads;
+    private final int batchSize;
+    private final ForkJoinPool pool;
+    private final AtomicLong nextGrowNanos = new AtomicLong(System.nanoTime());
+    private volatile int parallelism;
+
+    /**
+     * Initializes a {@code HnswBuildExecutor} that grows its permit up to the
+     * default number of HNSW threads, see {@link Default#threadCountForHnsw()}.
+     *
+     * @param permit the permit granting the CPUs of the build
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public HnswBuildExecutor(CpuPermit permit) {
+        this(permit, Default.threadCountForHnsw(), DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Initializes a {@code HnswBuildExecutor} that grows its permit up to the
+     * given number of threads, e.g. those of the node configuration.
+     *
+     * @param permit     the permit granting the CPUs of the build
+     * @param maxThreads the number of CPUs the executor tries to grow the permit to
+     * @throws IllegalArgumentException if the permit is released or the number
+     *                                  of threads is not positive
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public HnswBuildExecutor(CpuPermit permit, int maxThreads) {
+        this(permit, maxThreads, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Initializes a {@code HnswBuildExecutor}.
+     *
+     * @param permit     the permit granting the CPUs of the build
+     * @param maxThreads the number of CPUs the executor tries to grow the permit to
+     * @param batchSize  the number of consecutive ids a worker inserts before
+     *                   checking the permit again
+     * @throws IllegalArgumentException if the permit is released or a size is not positive
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public HnswBuildExecutor(CpuPermit permit, int maxThreads, int batchSize) {
+        if (permit.isReleased()) {
+            throw new IllegalArgumentException("CPU permit is already released");
+        }
+        if (maxThreads <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Invalid build executor size: maxThreads=" + maxThreads
+                    + ", batchSize=" + batchSize);
+        }
+        this.permit = permit;
+        this.maxThreads = maxThreads;
+        this.batchSize = batchSize;
+        this.parallelism = permit.numCpus();
+        String prefix = "hnsw-build-" + POOL_IDS.incrementAndGet() + "-";
+        this.pool = new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName(prefix + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Inserts the ids of a range in parallel and waits until all of them are
+     * inserted. Ids are not inserted in order.
+     *
+     * @param fromId   the first id to insert
+     * @param toId     the id after the last one to insert
+     * @param inserter inserts a single id into the graph
+     * @throws IllegalArgumentException if the range is invalid
+     * @throws CancellationException    if the permit was released during the build
+     * @throws InterruptedException     if the calling thread was interrupted; the
+     *                                  workers stop after their current batch
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void insertAll(int fromId, int toId, IntConsumer inserter) throws InterruptedException {
+        if (fromId < 0 || fromId > toId) {
+            throw new IllegalArgumentException("Invalid id range: from=" + fromId + ", to=" + toId);
+        }
+        if (fromId == toId) {
+            return;
+        }
+        Build build = new Build(fromId, toId, inserter);
+        build.spawn();
+        int phase = build.done.arrive();
+        try {
+            build.done.awaitAdvanceInterruptibly(phase);
+        } catch (InterruptedException e) {
+            build.failure.compareAndSet(null, new CancellationException("Build was interrupted"));
+            build.done.awaitAdvance(phase);
+            throw e;
+        }
+        Throwable failure = build.failure.get();
+        if (failure instanceof RuntimeException e) {
+            throw e;
+        } else if (failure instanceof Error e) {
+            throw e;
+        } else if (failure != null) {
+            throw new IllegalStateException("Graph build failed", failure);
+        }
+    }
+
+    /**
+     * Returns the number of threads currently used for the build, which follows
+     * the size of the permit.
+     *
+     * @return the current parallelism
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Returns the permit granting the CPUs of the build.
+     *
+     * @return the CPU permit
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public CpuPermit getPermit() {
+        return permit;
+    }
+
+    /**
+     * Shuts the worker threads down. The permit is left open.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Applies pending changes of the permit: gives CPUs back if the budget
+     * asked for them, otherwise tries to grow the permit at most once per
+     * interval, and resizes the pool to the resulting size.
+     *
+     * @return the number of threads to use, or {@code 0} if the permit was released
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private int adapt() {
+        int reclaim = permit.getReclaimRequest();
+        if (reclaim > 0) {
+            permit.shrink(reclaim);
+        } else if (permit.numCpus() < maxThreads) {
+            long now = System.nanoTime();
+            long next = nextGrowNanos.get();
+            if (now - next >= 0 && nextGrowNanos.compareAndSet(next, now + GROW_INTERVAL_NANOS)) {
+                permit.grow(maxThreads - permit.numCpus());
+            }
+        }
+        int target = permit.numCpus();
+        if (target > 0 && target != parallelism) {
+            resize(target);
+        }
+        return target;
+    }
+
+    /**
+     * Changes the parallelism of the pool.
+     *
+     * @param target the new number of threads
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private synchronized void resize(int target) {
+        int previous = parallelism;
+        if (target == previous) {
+            return;
+        }
+        pool.setParallelism(target);
+        parallelism = target;
+        logger.debug("Resized HNSW build from {} to {} threads", previous, target);
+    }
+
+    /**
+     * The state of a single {@link #insertAll} call.
+     *
+     * @author Atomstate
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private final class Build {
+        private final AtomicLong cursor;
+        private final int toId;
+        private final IntConsumer inserter;
+        private final AtomicInteger workers = new AtomicInteger();
+        private final Phaser done = new Phaser(1);
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        /**
+         * Initializes a {@code Build} for a range of ids.
+         *
+         * @param fromId   the first id to insert
+         * @param toId     the id after the last one to insert
+         * @param inserter inserts a single id into the graph
+         * @author Atomstate
+         * @since 1.0.0
+         */
+        private Build(int fromId, int toId, IntConsumer inserter) {
+            this.cursor = new AtomicLong(fromId);
+            this.toId = toId;
+            this.inserter = inserter;
+        }
+
+        /**
+         * Starts workers until their number matches the current parallelism.
+         *
+         * @author Atomstate
+         * @since 1.0.0
+         */
+        private void spawn() {
+            int current;
+            while ((current = workers.get()) < parallelism && cursor.get() < toId && failure.get() == null) {
+                if (!workers.compareAndSet(current, current + 1)) {
+                    continue;
+                }
+                done.register();
+                try {
+                    pool.execute(this::work);
+                } catch (RejectedExecutionException e) {
+                    workers.decrementAndGet();
+                    done.arriveAndDeregister();
+                    failure.compareAndSet(null, e);
+                }
+            }
+        }
+
+        /**
+         * Inserts batches of ids until the range is exhausted, the build failed
+         * or the worker is no longer needed.
+         *
+         * @author Atomstate
+         * @since 1.0.0
+         */
+        private void work() {
+            boolean retired = false;
+            try {
+                while (failure.get() == null) {
+                    if (retire()) {
+                        retired = true;
+                        break;
+                    }
+                    long start = cursor.getAndAdd(batchSize);
+                    if (start >= toId) {
+                        break;
+                    }
+                    int end = (int) Math.min(toId, start + batchSize);
+                    for (int id = (int) start; id < end; id++) {
+                        inserter.accept(id);
+                    }
+                    if (adapt() == 0) {
+                        failure.compareAndSet(null, new CancellationException("CPU permit was released"));
+                        break;
+                    }
+                    spawn();
+                }
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                if (!retired) {
+                    workers.decrementAndGet();
+                }
+                done.arriveAndDeregister();
+            }
+        }
+
+        /**
+         * Retires the calling worker if more workers run than the permit allows.
+         *
+         * @return {@code true} if the worker must stop; {@code false} otherwise
+         * @author Atomstate
+         * @since 1.0.0
+         */
+        private boolean retire() {
+            int current;
+            while ((current = workers.get()) > parallelism) {
+                if (workers.compareAndSet(current, current - 1)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
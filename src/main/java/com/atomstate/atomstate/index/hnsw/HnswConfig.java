@@ -0,0 +1,63 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.index.hnsw;
+
+/**
+ * The parameters of an HNSW graph.
+ *
+ * <p>{@code m} bounds the number of links per node on the upper layers; the
+ * dense bottom layer allows twice as many. {@code efConstruction} is the size
+ * of the candidate list while inserting and trades build time for graph
+ * quality; {@code efSearch} is the default candidate list size of a search and
+ * trades latency for recall.</p>
+ *
+ * @param m              the maximum number of links per node on the upper layers
+ * @param efConstruction the candidate list size while inserting
+ * @param efSearch       the default candidate list size while searching
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public record HnswConfig(int m, int efConstruction, int efSearch) {
+    /**
+     * The parameters used unless a collection configures its own.
+     *
+     * @since 1.0.0
+     */
+    public static final HnswConfig DEFAULT = new HnswConfig(16, 100, 64);
+
+    /**
+     * Validates the parameters.
+     *
+     * @throws IllegalArgumentException if {@code m} is out of range, or a
+     *                                  candidate list is smaller than required
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public HnswConfig {
+        if (m < 2 || m > 512 || efConstruction < m || efSearch <= 0) {
+            throw new IllegalArgumentException("Invalid HNSW config: m=" + m + ", efConstruction="
+                    + efConstruction + ", efSearch=" + efSearch);
+        }
+    }
+
+    /**
+     * Returns the maximum number of links per node on the given layer.
+     *
+     * @param level the layer, {@code 0} being the bottom layer
+     * @return the maximum number of links
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int maxLinks(int level) {
+        return level == 0 ? 2 * m : m;
+    }
+}
@@ -0,0 +1,1264 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.index.hnsw;
+
+import com.atomstate.atomstate.common.utils.CpuBudget;
+import com.atomstate.atomstate.common.utils.CpuPermit;
+import com.atomstate.atomstate.common.utils.Default;
+import com.atomstate.atomstate.common.utils.MemoryBudget;
+import com.atomstate.atomstate.common.utils.MemoryPermit;
+import com.atomstate.atomstate.common.utils.ObjectPool;
+import com.atomstate.atomstate.common.utils.ObjectPoolStats;
+import com.atomstate.atomstate.index.ScoredPoint;
+import com.atomstate.atomstate.vectors.QueryScorer;
+import com.atomstate.atomstate.vectors.Rescoring;
+import com.atomstate.atomstate.vectors.VectorScorer;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.longs.LongHeapPriorityQueue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+
+/**
+ * An in-memory Hierarchical Navigable Small World graph over the points of a
+ * {@link VectorScorer}.
+ *
+ * <p>The graph is stored in primitive arrays only. The bottom layer, which
+ * holds every point, is a single flat {@code int[]} with a fixed-size block of
+ * {@code 2 * m + 1} ints per point: the number of links followed by the links.
+ * The few points that also appear on upper layers get one extra {@code int[]}
+ * holding a block of {@code m + 1} ints per upper layer. Candidate queues are
+ * fastutil heaps of {@code long}s that pack the distance and the point id, so
+ * neither building nor searching boxes a single value. The visited set, the
+ * heaps and the link buffer of a search are borrowed from an
+ * {@link ObjectPool} and reused by later searches.</p>
+ *
+ * <p>Neighbors are chosen with the heuristic of the HNSW paper: a candidate is
+ * only linked if it is closer to the new point than to any neighbor selected
+ * before it, which keeps links spread in all directions instead of clustering
+ * around the nearest point. The same heuristic prunes the links of a point
+ * when a back link overflows its block.</p>
+ *
+ * <p>If the scorer only approximates distances, e.g. on quantized vectors, a
+ * search fetches more candidates than requested and rescores them with exact
+ * distances before cutting the result to the limit, see
+ * {@link VectorScorer#rescoring()}.</p>
+ *
+ * <p>Points can be inserted from several threads at once, see
+ * {@link #build(HnswBuildExecutor)}. Each neighbor list is guarded by
+ * {@link NodeLocks} and a thread never holds more than one of them. Searches
+ * may run concurrently with inserts. Large
+ * batches of queries are searched in parallel under a {@link CpuPermit}, see
+ * {@link #searchBatch(float[][], int, int, CpuPermit)}.</p>
+ *
+ * <p>An index created through
+ * {@link #create(VectorScorer, HnswConfig, int, MemoryBudget, Duration)}
+ * reserves the memory of its graph from a {@link MemoryBudget} up front and
+ * the memory of each search context when the context is created. Contexts
+ * the pool drops return their memory; closing the index returns the rest.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ *     {@code DenseVectors vectors = new DenseVectors(128, Distance.COSINE, points);}
+ *     {@code try (HnswIndex index = HnswIndex.create(vectors, HnswConfig.DEFAULT, points, memoryBudget,}
+ *             {@code Duration.ofMinutes(1)).orElseThrow()) {}
+ *         {@code index.build(executor);}
+ *         {@code List<ScoredPoint> nearest = index.search(query, 10);}
+ *     {@code }}
+ * </pre>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class HnswIndex implements AutoCloseable {
+    private static final int NO_NODE = -1;
+    private static final int MAX_LEVEL = 30;
+    private static final long DEFAULT_SEED = 0x5DEECE66DL;
+    private static final int BATCH_BLOCK = 16;
+    private static final AtomicInteger POOL_IDS = new AtomicInteger();
+    private final VectorScorer vectors;
+    private final HnswConfig config;
+    private final int capacity;
+    private final long seed;
+    private final double levelFactor;
+    private final int bottomStride;
+    private final int upperStride;
+    private final int[] bottomLinks;
+    private final int[][] upperLinks;
+    private final byte[] levels;
+    private final NodeLocks locks;
+    private final ObjectPool<SearchContext> contexts;
+    private final MemoryBudget memory;
+    private final MemoryPermit graphMemory;
+    private final Object entryLock = new Object();
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile long entry = packEntry(NO_NODE, NO_NODE);
+    private volatile boolean closed;
+    private volatile ForkJoinPool searchPool;
+
+    /**
+     * Initializes an empty {@code HnswIndex}.
+     *
+     * @param vectors  the vectors to index
+     * @param config   the graph parameters
+     * @param capacity the maximum number of points, which bounds the point ids
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public HnswIndex(VectorScorer vectors, HnswConfig config, int capacity) {
+        this(vectors, config, capacity, DEFAULT_SEED);
+    }
+
+    /**
+     * Initializes an empty {@code HnswIndex} with a seed for the layer
+     * assignment, which makes graphs reproducible.
+     *
+     * @param vectors  the vectors to index
+     * @param config   the graph parameters
+     * @param capacity the maximum number of points, which bounds the point ids
+     * @param seed     the seed for the random layer of each point
+     * @throws IllegalArgumentException if the capacity is negative or the bottom
+     *                                  layer would not fit into a single array
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public HnswIndex(VectorScorer vectors, HnswConfig config, int capacity, long seed) {
+        this(vectors, config, capacity, seed, null, null);
+    }
+
+    /**
+     * Initializes an empty {@code HnswIndex} whose memory is reserved from a
+     * budget.
+     *
+     * @param vectors     the vectors to index
+     * @param config      the graph parameters
+     * @param capacity    the maximum number of points, which bounds the point ids
+     * @param seed        the seed for the random layer of each point
+     * @param memory      the budget reserving the memory of search contexts,
+     *                    or {@code null} to allocate them without reservation
+     * @param graphMemory the reservation of the memory of the graph, or {@code null}
+     * @throws IllegalArgumentException if the capacity is negative or the bottom
+     *                                  layer would not fit into a single array
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private HnswIndex(VectorScorer vectors, HnswConfig config, int capacity, long seed, MemoryBudget memory,
+                      MemoryPermit graphMemory) {
+        this.bottomStride = config.maxLinks(0) + 1;
+        this.upperStride = config.maxLinks(1) + 1;
+        if (capacity < 0 || (long) capacity * bottomStride > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Invalid HNSW capacity: capacity=" + capacity + ", m=" + config.m());
+        }
+        this.vectors = vectors;
+        this.config = config;
+        this.capacity = capacity;
+        this.seed = seed;
+        this.levelFactor = 1 / Math.log(config.m());
+        this.bottomLinks = new int[capacity * bottomStride];
+        this.upperLinks = new int[capacity][];
+        this.levels = new byte[capacity];
+        Arrays.fill(levels, (byte) NO_NODE);
+        this.locks = NodeLocks.forThreads(Default.threadCountForHnsw());
+        this.memory = memory;
+        this.graphMemory = graphMemory;
+        this.contexts = new ObjectPool<>(contextFactory(config, capacity, memory), SearchContext::clear,
+                SearchContext::close, Default.POOL_KEEP_LIMIT);
+    }
+
+    /**
+     * Creates an empty {@code HnswIndex} after reserving the memory of its
+     * graph from a budget, waiting for it if necessary. The memory of each
+     * search context is reserved from the same budget when the context is
+     * created.
+     *
+     * @param vectors  the vectors to index
+     * @param config   the graph parameters
+     * @param capacity the maximum number of points, which bounds the point ids
+     * @param memory   the budget to reserve the memory from
+     * @param timeout  the maximum time to wait for the memory of the graph
+     * @return the index, or an empty {@code Optional} if the memory was not
+     * available within the timeout
+     * @throws IllegalArgumentException if the capacity is negative or the bottom
+     *                                  layer would not fit into a single array
+     * @throws InterruptedException     if the calling thread was interrupted while waiting
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static Optional<HnswIndex> create(VectorScorer vectors, HnswConfig config, int capacity,
+                                             MemoryBudget memory, Duration timeout) throws InterruptedException {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Invalid HNSW capacity: capacity=" + capacity + ", m=" + config.m());
+        }
+        Optional<MemoryPermit> permit = memory.acquire(Math.max(graphMemoryUsage(config, capacity), 1), timeout);
+        if (permit.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(new HnswIndex(vectors, config, capacity, DEFAULT_SEED, memory, permit.get()));
+        } catch (RuntimeException | Error e) {
+            permit.get().close();
+            throw e;
+        }
+    }
+
+    /**
+     * Estimates the number of bytes an index takes: its graph and the search
+     * scratch it pools, up to {@link Default#POOL_KEEP_LIMIT} contexts with a
+     * visited set each. An index created with a {@link MemoryBudget} reserves
+     * the graph up front and each context when it is created.
+     *
+     * @param config   the graph parameters
+     * @param capacity the maximum number of points
+     * @return the estimated memory usage in bytes
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static long memoryUsage(HnswConfig config, int capacity) {
+        long scratch = Default.POOL_KEEP_LIMIT * SearchContext.memoryUsage(config, capacity);
+        return graphMemoryUsage(config, capacity) + scratch;
+    }
+
+    /**
+     * Estimates the number of bytes the graph of an index takes. The bottom
+     * layer is allocated up front; the upper layers are estimated from the
+     * expected number of points on them.
+     *
+     * @param config   the graph parameters
+     * @param capacity the maximum number of points
+     * @return the estimated memory usage in bytes
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static long graphMemoryUsage(HnswConfig config, int capacity) {
+        long bottom = (long) capacity * (config.maxLinks(0) + 1) * Integer.BYTES;
+        // A point reaches each further layer with probability 1 / m
+        long upperPoints = capacity / (config.m() - 1);
+        long upper = upperPoints * ((config.maxLinks(1) + 1) * Integer.BYTES + 16L);
+        return bottom + upper + (long) capacity * (Long.BYTES + 1);
+    }
+
+    /**
+     * Returns the factory of the search contexts of an index, which reserves
+     * the memory of each context from the budget, waiting up to
+     * {@link Default#SEARCH_MEMORY_WAIT}.
+     *
+     * @param config   the graph parameters
+     * @param capacity the capacity of the graph
+     * @param memory   the memory budget, or {@code null} if there is none
+     * @return the context factory
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static Supplier<SearchContext> contextFactory(HnswConfig config, int capacity, MemoryBudget memory) {
+        if (memory == null) {
+            return () -> new SearchContext(capacity, config.maxLinks(0), null);
+        }
+        long bytes = SearchContext.memoryUsage(config, capacity);
+        return () -> {
+            try {
+                MemoryPermit permit = memory.acquire(bytes, Default.SEARCH_MEMORY_WAIT)
+                        .orElseThrow(() -> new IllegalStateException("No memory for an HNSW search context: bytes="
+                                + bytes + ", available=" + memory.getAvailableBytes()));
+                return new SearchContext(capacity, config.maxLinks(0), permit);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while reserving memory for an HNSW search context", e);
+            }
+        };
+    }
+
+    /**
+     * Inserts every stored point that is not indexed yet, in parallel on the
+     * threads of the executor.
+     *
+     * @param executor the executor running the insertions
+     * @throws InterruptedException if the calling thread was interrupted
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void build(HnswBuildExecutor executor) throws InterruptedException {
+        executor.insertAll(0, Math.min(vectors.size(), capacity), id -> {
+            if (!contains(id)) {
+                insert(id);
+            }
+        });
+    }
+
+    /**
+     * Inserts a stored point into the graph.
+     *
+     * @param id the point id
+     * @throws IllegalArgumentException if the id is out of range
+     * @throws IllegalStateException    if the point is already indexed
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void insert(int id) {
+        if (id < 0 || id >= capacity || id >= vectors.size()) {
+            throw new IllegalArgumentException("Point id out of range: id=" + id + ", capacity=" + capacity
+                    + ", stored=" + vectors.size());
+        }
+        int level = randomLevel(id);
+        locks.lock(id);
+        try {
+            if (levels[id] != NO_NODE) {
+                throw new IllegalStateException("Point is already indexed: " + id);
+            }
+            if (level > 0) {
+                upperLinks[id] = new int[level * upperStride];
+            }
+            levels[id] = (byte) level;
+        } finally {
+            locks.unlock(id);
+        }
+        size.incrementAndGet();
+
+        long snapshot = entry;
+        if (node(snapshot) == NO_NODE) {
+            synchronized (entryLock) {
+                if (node(entry) == NO_NODE) {
+                    entry = packEntry(level, id);
+                    return;
+                }
+                snapshot = entry;
+            }
+        }
+
+        QueryScorer toPoint = other -> vectors.distance(id, other);
+        int maxLevel = (int) (snapshot >> 32);
+        int current = node(snapshot);
+        long nearest = pack(toPoint.distance(current), current);
+        SearchContext context = contexts.borrow();
+        try {
+            for (int l = maxLevel; l > level; l--) {
+                nearest = searchLayer(context, toPoint, nearest, 1, l, id, null).firstLong();
+            }
+            int[] selected = new int[config.maxLinks(0)];
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                LongHeapPriorityQueue results =
+                        searchLayer(context, toPoint, nearest, config.efConstruction(), l, id, null);
+                long[] candidates = context.ordered(results.size());
+                int found = drainAscending(results, candidates);
+                nearest = candidates[0];
+                int count = selectNeighbors(candidates, found, config.maxLinks(l), selected);
+                setLinks(id, l, selected, count);
+                for (int i = 0; i < count; i++) {
+                    addLink(selected[i], id, l);
+                }
+            }
+        } finally {
+            release(context);
+        }
+
+        if (level > maxLevel) {
+            synchronized (entryLock) {
+                if (level > (int) (entry >> 32)) {
+                    entry = packEntry(level, id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the approximately nearest points to a query using the default
+     * candidate list size of the config.
+     *
+     * @param query the query vector
+     * @param limit the maximum number of points to return
+     * @return the nearest points, closest first
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public List<ScoredPoint> search(float[] query, int limit) {
+        return search(query, limit, config.efSearch());
+    }
+
+    /**
+     * Finds the approximately nearest points to a query.
+     *
+     * @param query the query vector
+     * @param limit the maximum number of points to return
+     * @param ef    the candidate list size, raised to the limit if smaller
+     * @return the nearest points, closest first
+     * @throws IllegalArgumentException if the query has the wrong dimension or
+     *                                  the limit is not positive
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public List<ScoredPoint> search(float[] query, int limit, int ef) {
+        return search(query, limit, ef, null);
+    }
+
+    /**
+     * Finds the approximately nearest points to a query among the points
+     * accepted by a filter.
+     *
+     * <p>The bottom layer is traversed through all points, accepted or not,
+     * but only accepted points enter the result list. The search therefore
+     * keeps the connectivity of the graph and fills the result without a
+     * larger candidate list, at the cost of walking further the fewer points
+     * the filter accepts; see
+     * {@link com.atomstate.atomstate.index.payload.FilteredSearch} for when
+     * to scan instead.</p>
+     *
+     * @param query  the query vector
+     * @param limit  the maximum number of points to return
+     * @param ef     the candidate list size, raised to the limit if smaller
+     * @param filter accepts the points that may be returned, or {@code null}
+     *               to accept all points
+     * @return the nearest accepted points, closest first
+     * @throws IllegalArgumentException if the query has the wrong dimension or
+     *                                  the limit is not positive
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public List<ScoredPoint> search(float[] query, int limit, int ef, IntPredicate filter) {
+        if (query.length != vectors.dimension() || limit <= 0) {
+            throw new IllegalArgumentException("Invalid search: dimension=" + query.length + ", expected="
+                    + vectors.dimension() + ", limit=" + limit);
+        }
+        long snapshot = entry;
+        if (node(snapshot) == NO_NODE) {
+            return List.of();
+        }
+        QueryScorer toQuery = vectors.scorer(query);
+        int current = node(snapshot);
+        long nearest = pack(toQuery.distance(current), current);
+        SearchContext context = contexts.borrow();
+        try {
+            for (int l = (int) (snapshot >> 32); l > 0; l--) {
+                nearest = searchLayer(context, toQuery, nearest, 1, l, NO_NODE, null).firstLong();
+            }
+            return searchBottom(context, query, toQuery, nearest, limit, ef, filter);
+        } finally {
+            release(context);
+        }
+    }
+
+    /**
+     * Finds the approximately nearest points to each query of a batch using
+     * the default candidate list size of the config.
+     *
+     * @param queries the query vectors
+     * @param limit   the maximum number of points to return per query
+     * @param permit  the permit granting the CPUs of the batch
+     * @return the nearest points of each query, closest first, in the order of the queries
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public List<List<ScoredPoint>> searchBatch(float[][] queries, int limit, CpuPermit permit) {
+        return searchBatch(queries, limit, config.efSearch(), permit);
+    }
+
+    /**
+     * Finds the approximately nearest points to each query of a batch, in
+     * parallel on as many threads as the permit grants. The calling thread
+     * is one of them, the others are workers of a pool the index keeps for
+     * its batches, see {@link #searchPool()}, so the batch never runs on
+     * threads shared with work outside of the budget and pays no thread
+     * start per call.
+     *
+     * <p>Queries are handed out to the threads in blocks of
+     * {@link #BATCH_BLOCK} from a shared cursor. The queries of a block
+     * descend the upper layers together: queries standing on the same point
+     * read its links once and score each neighbor one after another while
+     * its vector is in the cache. Every query starts at the same entry point,
+     * so this shares most of the work on the sparse top layers. The bottom
+     * layer is then searched per query. The results are the same as those of
+     * {@link #search(float[], int, int)} for each query.</p>
+     *
+     * <p>On an index with a memory budget, a helper thread only joins if the
+     * memory of its search context is available right away; the calling
+     * thread waits for its context as a single search does.</p>
+     *
+     * @param queries the query vectors
+     * @param limit   the maximum number of points to return per query
+     * @param ef      the candidate list size, raised to the limit if smaller
+     * @param permit  the permit granting the CPUs of the batch, which is not closed
+     * @return the nearest points of each query, closest first, in the order of the queries
+     * @throws IllegalArgumentException if a query has the wrong dimension, the
+     *                                  limit is not positive or the permit is released
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public List<List<ScoredPoint>> searchBatch(float[][] queries, int limit, int ef, CpuPermit permit) {
+        if (permit.isReleased()) {
+            throw new IllegalArgumentException("CPU permit is already released");
+        }
+        for (float[] query : queries) {
+            if (query.length != vectors.dimension() || limit <= 0) {
+                throw new IllegalArgumentException("Invalid search: dimension=" + query.length + ", expected="
+                        + vectors.dimension() + ", limit=" + limit);
+            }
+        }
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        List<ScoredPoint>[] results = new List[queries.length];
+        long snapshot = entry;
+        if (node(snapshot) == NO_NODE) {
+            Arrays.fill(results, List.of());
+            return Arrays.asList(results);
+        }
+        AtomicInteger cursor = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Consumer<SearchContext> worker = context -> {
+            try {
+                int from;
+                while (failure.get() == null && (from = cursor.getAndAdd(BATCH_BLOCK)) < queries.length) {
+                    searchBlock(context, snapshot, queries, from, Math.min(queries.length, from + BATCH_BLOCK),
+                            limit, ef, results);
+                }
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                release(context);
+            }
+        };
+        // The calling thread waits for its context, so the batch always makes progress
+        SearchContext own = contexts.borrow();
+        int blocks = (queries.length + BATCH_BLOCK - 1) / BATCH_BLOCK;
+        int helpers = Math.min(permit.numCpus(), blocks) - 1;
+        // Helpers that start after the calling thread finished find the phaser terminated and skip the batch
+        Phaser running = new Phaser(1);
+        Runnable helper = () -> {
+            if (running.register() < 0) {
+                return;
+            }
+            try {
+                // A helper without memory for its context leaves its share to the others
+                SearchContext context = tryBorrow();
+                if (context != null) {
+                    worker.accept(context);
+                }
+            } finally {
+                running.arriveAndDeregister();
+            }
+        };
+        if (helpers > 0) {
+            ForkJoinPool pool = searchPool();
+            try {
+                for (int i = 0; i < helpers; i++) {
+                    pool.execute(helper);
+                }
+            } catch (RejectedExecutionException e) {
+                // Closed concurrently, the calling thread searches the rest alone
+            }
+        }
+        worker.accept(own);
+        // The helpers write into the results, wait for them even if interrupted
+        running.awaitAdvance(running.arriveAndDeregister());
+        Throwable failed = failure.get();
+        if (failed instanceof RuntimeException e) {
+            throw e;
+        } else if (failed instanceof Error e) {
+            throw e;
+        } else if (failed != null) {
+            throw new IllegalStateException("Batch search failed", failed);
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Checks whether a point is indexed.
+     *
+     * @param id the point id
+     * @return {@code true} if the point is indexed; {@code false} otherwise
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public boolean contains(int id) {
+        if (id < 0 || id >= capacity) {
+            return false;
+        }
+        locks.lock(id);
+        try {
+            return levels[id] != NO_NODE;
+        } finally {
+            locks.unlock(id);
+        }
+    }
+
+    /**
+     * Returns the number of indexed points.
+     *
+     * @return the number of indexed points
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Returns the highest layer of the graph.
+     *
+     * @return the highest layer, or {@code -1} if the graph is empty
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int getMaxLevel() {
+        return (int) (entry >> 32);
+    }
+
+    /**
+     * Returns the graph parameters.
+     *
+     * @return the graph parameters
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public HnswConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Captures the usage of the pool of search scratch structures, whose hit
+     * rate shows how many searches ran without allocating them.
+     *
+     * @return the statistics of the scratch pool
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public ObjectPoolStats getSearchPoolStats() {
+        return contexts.getStats();
+    }
+
+    /**
+     * Returns the memory reserved for the index to its budget: the graph and
+     * the idle search contexts, and every context still in use once it is
+     * handed back. The index must not be used afterwards. An index without a
+     * memory budget only drops its idle contexts.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public void close() {
+        closed = true;
+        ForkJoinPool pool = searchPool;
+        if (pool != null) {
+            pool.shutdown();
+        }
+        contexts.clear();
+        if (graphMemory != null) {
+            graphMemory.close();
+        }
+    }
+
+    /**
+     * Returns the pool running the helpers of batch searches, started on the
+     * first batch that needs one. It has a worker per CPU of the container at
+     * most, see {@link CpuBudget#getNumCpus()}; each batch only hands it as
+     * many helpers as its permit grants, and idle workers exit after a while.
+     *
+     * @return the search pool
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private ForkJoinPool searchPool() {
+        ForkJoinPool pool = searchPool;
+        if (pool == null) {
+            synchronized (this) {
+                pool = searchPool;
+                if (pool == null) {
+                    String prefix = "hnsw-search-" + POOL_IDS.incrementAndGet() + "-";
+                    pool = new ForkJoinPool(Math.max(CpuBudget.getNumCpus(), 1), owner -> {
+                        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(owner);
+                        thread.setName(prefix + thread.getPoolIndex());
+                        return thread;
+                    }, null, false);
+                    if (closed) {
+                        pool.shutdown();
+                    }
+                    searchPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Takes an idle search context, or creates one if its memory is available
+     * without waiting.
+     *
+     * @return the context, or {@code null} if the memory is not available
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private SearchContext tryBorrow() {
+        SearchContext context = contexts.poll();
+        if (context != null) {
+            return context;
+        }
+        if (memory == null) {
+            return new SearchContext(capacity, config.maxLinks(0), null);
+        }
+        return memory.tryAcquire(SearchContext.memoryUsage(config, capacity))
+                .map(permit -> new SearchContext(capacity, config.maxLinks(0), permit))
+                .orElse(null);
+    }
+
+    /**
+     * Hands a search context back to the pool, or drops it along with its
+     * memory if the index is closed.
+     *
+     * @param context the context
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void release(SearchContext context) {
+        contexts.release(context);
+        if (closed) {
+            contexts.clear();
+        }
+    }
+
+    /**
+     * Returns a copy of the links of a point on a layer.
+     *
+     * @param id    the point id
+     * @param level the layer
+     * @return the linked point ids, empty if the point is not on the layer
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    IntArrayList links(int id, int level) {
+        int[] scratch = new int[config.maxLinks(level)];
+        return IntArrayList.wrap(scratch, readLinks(id, level, scratch));
+    }
+
+    /**
+     * Searches a block of queries of a batch, descending the upper layers
+     * with all queries of the block together.
+     *
+     * @param context  the scratch structures of the calling thread
+     * @param snapshot the packed entry of the graph
+     * @param queries  the query vectors of the batch
+     * @param from     the first query of the block
+     * @param to       the query after the last one of the block
+     * @param limit    the maximum number of points to return per query
+     * @param ef       the candidate list size
+     * @param results  receives the nearest points of each query
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void searchBlock(SearchContext context, long snapshot, float[][] queries, int from, int to, int limit,
+                             int ef, List<ScoredPoint>[] results) {
+        int count = to - from;
+        QueryScorer[] scorers = new QueryScorer[count];
+        long[] nearest = new long[count];
+        int start = node(snapshot);
+        for (int i = 0; i < count; i++) {
+            scorers[i] = vectors.scorer(queries[from + i]);
+            nearest[i] = pack(scorers[i].distance(start), start);
+        }
+        for (int l = (int) (snapshot >> 32); l > 0; l--) {
+            descendTogether(context, scorers, nearest, l);
+        }
+        for (int i = 0; i < count; i++) {
+            results[from + i] = searchBottom(context, queries[from + i], scorers[i], nearest[i], limit, ef, null);
+        }
+    }
+
+    /**
+     * Moves each query greedily to its closest point on an upper layer, the
+     * same walk as a layer search with a candidate list of one. Queries
+     * standing on the same point share the read of its links, and each
+     * neighbor is scored against all of them in a row. A query that did not
+     * move in a round has arrived and is left out of the following rounds.
+     *
+     * @param context the scratch structures of the calling thread
+     * @param scorers the distances to each query
+     * @param nearest the packed current point of each query, updated in place
+     * @param level   the layer
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void descendTogether(SearchContext context, QueryScorer[] scorers, long[] nearest, int level) {
+        int count = scorers.length;
+        int[] active = new int[count];
+        for (int i = 0; i < count; i++) {
+            active[i] = i;
+        }
+        long[] order = new long[count];
+        long[] moved = new long[count];
+        int remaining = count;
+        while (remaining > 0) {
+            // Group the queries by their current point
+            for (int a = 0; a < remaining; a++) {
+                int i = active[a];
+                order[a] = ((long) node(nearest[i]) << 32) | i;
+            }
+            Arrays.sort(order, 0, remaining);
+            int[] links = context.links;
+            for (int group = 0; group < remaining; ) {
+                int point = (int) (order[group] >> 32);
+                int end = group + 1;
+                while (end < remaining && (int) (order[end] >> 32) == point) {
+                    end++;
+                }
+                for (int g = group; g < end; g++) {
+                    int query = (int) order[g];
+                    moved[query] = nearest[query];
+                }
+                int linked = readLinks(point, level, links);
+                for (int j = 0; j < linked; j++) {
+                    int neighbor = links[j];
+                    for (int g = group; g < end; g++) {
+                        int query = (int) order[g];
+                        long scored = pack(scorers[query].distance(neighbor), neighbor);
+                        if (scored < moved[query]) {
+                            moved[query] = scored;
+                        }
+                    }
+                }
+                group = end;
+            }
+            int kept = 0;
+            for (int a = 0; a < remaining; a++) {
+                int i = active[a];
+                if (moved[i] != nearest[i]) {
+                    nearest[i] = moved[i];
+                    active[kept++] = i;
+                }
+            }
+            remaining = kept;
+        }
+    }
+
+    /**
+     * Searches the bottom layer from the entry point found on the upper
+     * layers, rescores the candidates if needed and cuts them to the limit.
+     *
+     * @param context the scratch structures of the calling thread
+     * @param query   the query vector
+     * @param toQuery the distance to the query
+     * @param nearest the packed entry point of the bottom layer
+     * @param limit   the maximum number of points to return
+     * @param ef      the candidate list size
+     * @param filter  accepts the points that may be returned, or {@code null} to accept all
+     * @return the nearest points, closest first
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private List<ScoredPoint> searchBottom(SearchContext context, float[] query, QueryScorer toQuery, long nearest,
+                                           int limit, int ef, IntPredicate filter) {
+        Optional<Rescoring> rescoring = vectors.rescoring();
+        int candidates = rescoring.map(r -> r.candidates(limit)).orElse(limit);
+        LongHeapPriorityQueue results = searchLayer(context, toQuery, nearest, Math.max(ef, candidates), 0, NO_NODE,
+                filter);
+        long[] found = context.ordered(results.size());
+        int size = drainAscending(results, found);
+        if (rescoring.isPresent()) {
+            size = Math.min(candidates, size);
+            found = rescore(query, found, size, rescoring.get().exact());
+        }
+        return toResult(found, Math.min(limit, size));
+    }
+
+    /**
+     * Scores the given points exhaustively and returns the nearest ones. Meant
+     * for small sets of points, such as those matching a selective filter,
+     * where a graph search would visit more points than the set holds. Points
+     * that are not indexed are skipped, even if stored, so a scan finds the
+     * same points a graph search can; distances are exact if the scorer only
+     * approximates them.
+     *
+     * @param query  the query vector
+     * @param limit  the maximum number of points to return
+     * @param points the point ids to score
+     * @return the nearest points, closest first
+     * @throws IllegalArgumentException if the query has the wrong dimension or
+     *                                  the limit is not positive
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public List<ScoredPoint> scan(float[] query, int limit, IntIterator points) {
+        if (query.length != vectors.dimension() || limit <= 0) {
+            throw new IllegalArgumentException("Invalid search: dimension=" + query.length + ", expected="
+                    + vectors.dimension() + ", limit=" + limit);
+        }
+        QueryScorer toQuery = vectors.rescoring()
+                .map(r -> r.exact().scorer(query))
+                .orElseGet(() -> vectors.scorer(query));
+        SearchContext context = contexts.borrow();
+        try {
+            context.clear();
+            LongHeapPriorityQueue results = context.results;
+            while (points.hasNext()) {
+                int point = points.nextInt();
+                // A racing insert is seen or not, as by a graph search
+                if (point < 0 || point >= capacity || levels[point] == NO_NODE) {
+                    continue;
+                }
+                long scored = pack(toQuery.distance(point), point);
+                if (results.size() < limit) {
+                    results.enqueue(scored);
+                } else if (scored < results.firstLong()) {
+                    results.dequeueLong();
+                    results.enqueue(scored);
+                }
+            }
+            long[] found = context.ordered(results.size());
+            return toResult(found, drainAscending(results, found));
+        } finally {
+            release(context);
+        }
+    }
+
+    /**
+     * Unpacks the closest points into a result list.
+     *
+     * @param found the packed points, closest first
+     * @param count the number of points to return
+     * @return the points, closest first
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static List<ScoredPoint> toResult(long[] found, int count) {
+        List<ScoredPoint> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(new ScoredPoint(node(found[i]), distance(found[i])));
+        }
+        return result;
+    }
+
+    /**
+     * Replaces the approximate distances of the closest candidates with exact
+     * ones and orders them again.
+     *
+     * @param query      the query vector
+     * @param candidates the packed candidates, closest first
+     * @param count      the number of candidates to rescore
+     * @param exact      the scorer computing exact distances
+     * @return the rescored candidates, closest first
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static long[] rescore(float[] query, long[] candidates, int count, VectorScorer exact) {
+        long[] rescored = new long[count];
+        for (int i = 0; i < count; i++) {
+            int point = node(candidates[i]);
+            rescored[i] = pack(exact.distance(query, point), point);
+        }
+        Arrays.sort(rescored);
+        return rescored;
+    }
+
+    /**
+     * Runs a best-first search on a single layer.
+     *
+     * @param context the scratch structures, cleared before the search
+     * @param target  the distance to the point or query being searched for
+     * @param start   the packed entry point of the layer
+     * @param ef      the candidate list size
+     * @param level   the layer to search
+     * @param skip    the point being inserted, which other threads may already
+     *                link to but which must not become its own neighbor, or
+     *                {@code -1} when searching for a query
+     * @param accept  accepts the points that may enter the result, or
+     *                {@code null} to accept all; rejected points are still
+     *                traversed
+     * @return the closest points found, as a heap with the farthest first that
+     * belongs to the context
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private LongHeapPriorityQueue searchLayer(SearchContext context, QueryScorer target, long start, int ef,
+                                              int level, int skip, IntPredicate accept) {
+        context.clear();
+        VisitedSet visited = context.visited;
+        LongHeapPriorityQueue candidates = context.candidates;
+        LongHeapPriorityQueue results = context.results;
+        int[] scratch = context.links;
+        if (skip != NO_NODE) {
+            visited.add(skip);
+        }
+        visited.add(node(start));
+        candidates.enqueue(start);
+        if (accept == null || accept.test(node(start))) {
+            results.enqueue(start);
+        }
+        while (!candidates.isEmpty()) {
+            long candidate = candidates.dequeueLong();
+            if (results.size() >= ef && candidate > results.firstLong()) {
+                break;
+            }
+            int count = readLinks(node(candidate), level, scratch);
+            for (int i = 0; i < count; i++) {
+                int neighbor = scratch[i];
+                if (!visited.add(neighbor)) {
+                    continue;
+                }
+                long scored = pack(target.distance(neighbor), neighbor);
+                if (results.size() < ef || scored < results.firstLong()) {
+                    candidates.enqueue(scored);
+                    if (accept == null || accept.test(neighbor)) {
+                        results.enqueue(scored);
+                        if (results.size() > ef) {
+                            results.dequeueLong();
+                        }
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Selects the neighbors of a point with the heuristic of the HNSW paper:
+     * a candidate is kept only if it is closer to the point than to every
+     * neighbor kept before it.
+     *
+     * @param candidates the packed candidates, closest first
+     * @param count      the number of candidates
+     * @param max        the maximum number of neighbors
+     * @param selected   receives the selected point ids
+     * @return the number of selected neighbors
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private int selectNeighbors(long[] candidates, int count, int max, int[] selected) {
+        int kept = 0;
+        for (int i = 0; i < count && kept < max; i++) {
+            int candidate = node(candidates[i]);
+            float distance = distance(candidates[i]);
+            boolean diverse = true;
+            for (int j = 0; j < kept; j++) {
+                if (vectors.distance(candidate, selected[j]) < distance) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[kept++] = candidate;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Replaces the links of a point on a layer.
+     *
+     * @param id        the point id
+     * @param level     the layer
+     * @param neighbors the new links
+     * @param count     the number of new links
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void setLinks(int id, int level, int[] neighbors, int count) {
+        locks.lock(id);
+        try {
+            int[] block = block(id, level);
+            int base = base(id, level);
+            System.arraycopy(neighbors, 0, block, base + 1, count);
+            block[base] = count;
+        } finally {
+            locks.unlock(id);
+        }
+    }
+
+    /**
+     * Adds a back link to a neighbor, pruning the links of the neighbor with
+     * the selection heuristic if its block is full.
+     *
+     * @param id       the point receiving the link
+     * @param neighbor the point to link to
+     * @param level    the layer
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void addLink(int id, int neighbor, int level) {
+        int max = config.maxLinks(level);
+        locks.lock(id);
+        try {
+            int[] block = block(id, level);
+            int base = base(id, level);
+            int count = block[base];
+            if (count < max) {
+                block[base + 1 + count] = neighbor;
+                block[base] = count + 1;
+                return;
+            }
+            long[] candidates = new long[count + 1];
+            for (int i = 0; i < count; i++) {
+                int linked = block[base + 1 + i];
+                candidates[i] = pack(vectors.distance(id, linked), linked);
+            }
+            candidates[count] = pack(vectors.distance(id, neighbor), neighbor);
+            Arrays.sort(candidates);
+            int[] selected = new int[max];
+            int kept = selectNeighbors(candidates, candidates.length, max, selected);
+            System.arraycopy(selected, 0, block, base + 1, kept);
+            block[base] = kept;
+        } finally {
+            locks.unlock(id);
+        }
+    }
+
+    /**
+     * Copies the links of a point on a layer.
+     *
+     * @param id     the point id
+     * @param level  the layer
+     * @param target receives the links
+     * @return the number of links
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private int readLinks(int id, int level, int[] target) {
+        locks.lock(id);
+        try {
+            if (levels[id] < level) {
+                return 0;
+            }
+            int[] block = block(id, level);
+            int base = base(id, level);
+            int count = block[base];
+            System.arraycopy(block, base + 1, target, 0, count);
+            return count;
+        } finally {
+            locks.unlock(id);
+        }
+    }
+
+    /**
+     * Returns the array holding the links of a point on a layer.
+     *
+     * @param id    the point id
+     * @param level the layer
+     * @return the array holding the link block
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private int[] block(int id, int level) {
+        return level == 0 ? bottomLinks : upperLinks[id];
+    }
+
+    /**
+     * Returns the index of the link count of a point on a layer within
+     * {@link #block(int, int)}.
+     *
+     * @param id    the point id
+     * @param level the layer
+     * @return the index of the link block
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private int base(int id, int level) {
+        return level == 0 ? id * bottomStride : (level - 1) * upperStride;
+    }
+
+    /**
+     * Draws the top layer of a point from an exponential distribution. The
+     * layer only depends on the seed and the id, so parallel builds assign the
+     * same layers as sequential ones.
+     *
+     * @param id the point id
+     * @return the top layer of the point
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private int randomLevel(int id) {
+        long hash = seed + id * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+        hash ^= hash >>> 31;
+        double uniform = ((hash >>> 11) + 1) * 0x1.0p-53;
+        return Math.min((int) (-Math.log(uniform) * levelFactor), MAX_LEVEL);
+    }
+
+    /**
+     * Drains a result heap into an array ordered by ascending distance.
+     *
+     * @param results the heap with the farthest point first
+     * @param sorted  receives the packed points, closest first
+     * @return the number of points
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static int drainAscending(LongHeapPriorityQueue results, long[] sorted) {
+        int count = results.size();
+        for (int i = count - 1; i >= 0; i--) {
+            sorted[i] = results.dequeueLong();
+        }
+        return count;
+    }
+
+    /**
+     * Packs a distance and a point id into a {@code long} that orders by
+     * distance first. The float bits are flipped for negative values so that
+     * the signed comparison of the bits matches the float order.
+     *
+     * @param distance the distance
+     * @param id       the point id
+     * @return the packed value
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static long pack(float distance, int id) {
+        int bits = Float.floatToIntBits(distance);
+        bits ^= (bits >> 31) & 0x7FFFFFFF;
+        return ((long) bits << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Packs the highest layer and the entry point of the graph.
+     *
+     * @param level the highest layer
+     * @param id    the entry point
+     * @return the packed value
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static long packEntry(int level, int id) {
+        return ((long) level << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Unpacks the point id.
+     *
+     * @param packed the packed value
+     * @return the point id
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static int node(long packed) {
+        return (int) packed;
+    }
+
+    /**
+     * Unpacks the distance of a packed point.
+     *
+     * @param packed the packed point
+     * @return the distance
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static float distance(long packed) {
+        int bits = (int) (packed >> 32);
+        return Float.intBitsToFloat(bits ^ ((bits >> 31) & 0x7FFFFFFF));
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.index.hnsw;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Guards the neighbor lists of graph nodes during parallel construction.
+ *
+ * <p>A dedicated lock object per node would cost more memory than the
+ * neighbor list it protects on graphs with tens of millions of points, so the
+ * nodes are spread over a fixed number of lock stripes instead. Two nodes
+ * sharing a stripe merely contend with each other. Callers must hold at most
+ * one node lock at a time, which is all that HNSW insertion needs: a neighbor
+ * list is locked, updated and unlocked before the next one is touched.</p>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class NodeLocks {
+    private static final int MIN_STRIPES = 16;
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    /**
+     * Initializes {@code NodeLocks} with at least the given number of stripes,
+     * rounded up to a power of two.
+     *
+     * @param minStripes the minimum number of lock stripes
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public NodeLocks(int minStripes) {
+        int size = Integer.highestOneBit(Math.max(minStripes, MIN_STRIPES) - 1) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Creates enough stripes for the given number of building threads to rarely
+     * contend with each other.
+     *
+     * @param threads the number of threads building the graph
+     * @return the node locks
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static NodeLocks forThreads(int threads) {
+        return new NodeLocks(threads * 64);
+    }
+
+    /**
+     * Acquires the lock guarding the neighbor lists of a node.
+     *
+     * @param node the node id
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void lock(int node) {
+        stripe(node).lock();
+    }
+
+    /**
+     * Releases the lock guarding the neighbor lists of a node.
+     *
+     * @param node the node id
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void unlock(int node) {
+        stripe(node).unlock();
+    }
+
+    /**
+     * Returns the number of lock stripes.
+     *
+     * @return the number of lock stripes
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * Maps a node to its stripe, mixing the id so that consecutive ids inserted
+     * by different threads do not collide.
+     *
+     * @param node the node id
+     * @return the lock of the stripe
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private ReentrantLock stripe(int node) {
+        int hash = node * 0x9E3779B9;
+        return stripes[(hash ^ (hash >>> 16)) & mask];
+    }
+}
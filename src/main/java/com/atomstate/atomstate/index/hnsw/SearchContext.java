@@ -0,0 +1,108 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.index.hnsw;
+
+import com.atomstate.atomstate.common.utils.MemoryPermit;
+import it.unimi.dsi.fastutil.longs.LongComparators;
+import it.unimi.dsi.fastutil.longs.LongHeapPriorityQueue;
+
+/**
+ * The scratch structures of one search or insert on an {@link HnswIndex},
+ * pooled by the index so that a search allocates nothing but its result.
+ * A context of an index with a memory budget holds the reservation of its
+ * memory until the pool drops it, see {@link #close()}.
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class SearchContext {
+    final VisitedSet visited;
+    final LongHeapPriorityQueue candidates = new LongHeapPriorityQueue();
+    final LongHeapPriorityQueue results = new LongHeapPriorityQueue(LongComparators.OPPOSITE_COMPARATOR);
+    final int[] links;
+    private final MemoryPermit memory;
+    private long[] ordered = new long[0];
+
+    /**
+     * Initializes a {@code SearchContext}.
+     *
+     * @param capacity the capacity of the graph
+     * @param maxLinks the maximum number of links of a point on any layer
+     * @param memory   the reservation of the memory of the context, or
+     *                 {@code null} if the index has no memory budget
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    SearchContext(int capacity, int maxLinks, MemoryPermit memory) {
+        this.visited = new VisitedSet(capacity);
+        this.links = new int[maxLinks];
+        this.memory = memory;
+    }
+
+    /**
+     * Estimates the number of bytes a context of a graph takes once its
+     * queues and result buffer have grown to the candidate list sizes of the
+     * config.
+     *
+     * @param config   the graph parameters
+     * @param capacity the capacity of the graph
+     * @return the estimated memory usage in bytes
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    static long memoryUsage(HnswConfig config, int capacity) {
+        int ef = Math.max(config.efConstruction(), config.efSearch());
+        // Both queues and the result buffer hold up to ef packed points
+        return VisitedSet.memoryUsage(capacity) + (long) config.maxLinks(0) * Integer.BYTES
+                + 3L * ef * Long.BYTES + 128;
+    }
+
+    /**
+     * Returns the buffer receiving the ordered results of a layer search,
+     * grown to hold at least the given number of points.
+     *
+     * @param size the number of points
+     * @return the result buffer
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    long[] ordered(int size) {
+        if (ordered.length < size) {
+            ordered = new long[Math.max(size, ordered.length * 2)];
+        }
+        return ordered;
+    }
+
+    /**
+     * Resets the structures for the next layer search.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    void clear() {
+        visited.clear();
+        candidates.clear();
+        results.clear();
+    }
+
+    /**
+     * Returns the memory of the context to its budget once the pool drops it.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    void close() {
+        if (memory != null) {
+            memory.close();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.index.hnsw;
+
+import java.util.Arrays;
+
+/**
+ * The set of points a layer search has already scored, sized to the capacity
+ * of the graph.
+ *
+ * <p>Every point has one bit, so a set takes an eighth of a byte per point of
+ * the graph, which matters because every pooled {@link SearchContext} holds
+ * one. The words a search touched are listed as they get their first bit, so
+ * clearing a pooled set zeroes only those words instead of the whole bitset.
+ * A search touching more than an eighth of the words stops listing them, and
+ * its clear wipes the bitset.</p>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class VisitedSet {
+    private static final int INITIAL_DIRTY = 64;
+    private final long[] words;
+    private final int capacity;
+    private final int maxDirty;
+    private int[] dirty;
+    private int dirtyCount;
+    private boolean overflowed;
+
+    /**
+     * Initializes an empty {@code VisitedSet}.
+     *
+     * @param capacity the number of point ids the set can hold
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    VisitedSet(int capacity) {
+        this.words = new long[wordCount(capacity)];
+        this.capacity = capacity;
+        this.maxDirty = Math.max(words.length >>> 3, 1);
+        this.dirty = new int[Math.min(INITIAL_DIRTY, maxDirty)];
+    }
+
+    /**
+     * Estimates the number of bytes a set takes, including the list of dirty
+     * words at its largest.
+     *
+     * @param capacity the number of point ids the set can hold
+     * @return the estimated memory usage in bytes
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    static long memoryUsage(int capacity) {
+        int words = wordCount(capacity);
+        return (long) words * Long.BYTES + (long) Math.max(words >>> 3, 1) * Integer.BYTES + 48;
+    }
+
+    /**
+     * Marks a point as visited.
+     *
+     * @param id the point id
+     * @return {@code true} if the point was not visited before; {@code false} otherwise
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    boolean add(int id) {
+        int word = id >>> 6;
+        long bit = 1L << id;
+        long current = words[word];
+        if ((current & bit) != 0) {
+            return false;
+        }
+        if (current == 0) {
+            markDirty(word);
+        }
+        words[word] = current | bit;
+        return true;
+    }
+
+    /**
+     * Checks whether a point has been visited.
+     *
+     * @param id the point id
+     * @return {@code true} if the point was visited; {@code false} otherwise
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    boolean contains(int id) {
+        return (words[id >>> 6] & (1L << id)) != 0;
+    }
+
+    /**
+     * Removes all points from the set.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    void clear() {
+        if (overflowed) {
+            Arrays.fill(words, 0);
+            overflowed = false;
+        } else {
+            for (int i = 0; i < dirtyCount; i++) {
+                words[dirty[i]] = 0;
+            }
+        }
+        dirtyCount = 0;
+    }
+
+    /**
+     * Returns the number of point ids the set can hold.
+     *
+     * @return the capacity
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Lists a word that got its first bit, or gives up listing once too many
+     * words are dirty for zeroing them one by one to pay off.
+     *
+     * @param word the index of the word
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void markDirty(int word) {
+        if (overflowed) {
+            return;
+        }
+        if (dirtyCount == dirty.length) {
+            if (dirtyCount >= maxDirty) {
+                overflowed = true;
+                return;
+            }
+            dirty = Arrays.copyOf(dirty, Math.min(dirty.length * 2, maxDirty));
+        }
+        dirty[dirtyCount++] = word;
+    }
+
+    /**
+     * Returns the number of words holding the bits of the given capacity.
+     *
+     * @param capacity the number of point ids
+     * @return the number of words
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static int wordCount(int capacity) {
+        return (capacity + 63) >>> 6;
+    }
+}
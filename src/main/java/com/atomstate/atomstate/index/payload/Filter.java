@@ -0,0 +1,93 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.index.payload;
+import java.util.List;
+
+/**
+ * A condition on the payload of points, resolved against a
+ * {@link PayloadIndex}.
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ *     {@code Filter filter = new Filter.And(List.of(}
+ *             {@code new Filter.Match("tenant_id", "acme"),}
+ *             {@code new Filter.Range("created_at", from, to)));}
+ * </pre>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public sealed interface Filter permits Filter.Match, Filter.MatchInteger, Filter.Range, Filter.And {
+
+    /**
+     * Matches the points holding a value of a keyword field.
+     *
+     * @param field the field
+     * @param value the value
+     * @author Atomstate
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    record Match(String field, String value) implements Filter {
+    }
+
+    /**
+     * Matches the points holding a value of an integer field.
+     *
+     * @param field the field
+     * @param value the value
+     * @author Atomstate
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    record MatchInteger(String field, long value) implements Filter {
+    }
+
+    /**
+     * Matches the points holding a value of a numeric field within a range.
+     *
+     * @param field the field
+     * @param from  the smallest value of the range, inclusive
+     * @param to    the largest value of the range, inclusive
+     * @author Atomstate
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    record Range(String field, double from, double to) implements Filter {
+    }
+
+    /**
+     * Matches the points matching all of several filters.
+     *
+     * @param filters the filters, at least one
+     * @author Atomstate
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    record And(List<Filter> filters) implements Filter {
+
+        /**
+         * Initializes an {@code And} filter.
+         *
+         * @param filters the filters, at least one
+         * @throws IllegalArgumentException if there is no filter
+         * @author Atomstate
+         * @since 1.0.0
+         */
+        public And {
+            if (filters.isEmpty()) {
+                throw new IllegalArgumentException("A conjunction needs at least one filter");
+            }
+            filters = List.copyOf(filters);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.index.payload;
+import com.atomstate.atomstate.common.utils.Default;
+import com.atomstate.atomstate.index.ScoredPoint;
+import com.atomstate.atomstate.index.hnsw.HnswIndex;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Searches an {@link HnswIndex} for the nearest points matching a payload
+ * {@link Filter}, choosing a {@link SearchPlan} per query from the number of
+ * matching points.
+ *
+ * <p>Filtering the results of a plain graph search loses recall once the
+ * filter drops most of them, and filtering within the graph gets slow once
+ * the filter matches so few points that most of the graph is walked to find
+ * them. The planner therefore scores filters matching at most
+ * {@link Default#FILTER_FULL_SCAN_POINTS} points, or no more than the
+ * candidate list size, exhaustively. Filters matching at least
+ * {@link Default#FILTER_UNFILTERED_SELECTIVITY} of the points run an
+ * unfiltered search and drop the few misses, falling back to the graph if too
+ * few points survive. All filters in between traverse the graph and only
+ * collect matching points.</p>
+ *
+ * <p>Every plan returns indexed points only, see
+ * {@link HnswIndex#scan(float[], int, it.unimi.dsi.fastutil.ints.IntIterator)},
+ * so which points a query can find does not depend on the plan it got.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ *     {@code FilteredSearch search = new FilteredSearch(index, payloads);}
+ *     {@code List<ScoredPoint> nearest = search.search(query, 10, new Filter.Match("tenant_id", "acme"));}
+ * </pre>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class FilteredSearch {
+    private static final Logger logger = LogManager.getLogger(FilteredSearch.class);
+    private final HnswIndex index;
+    private final PayloadIndex payloads;
+    private final int fullScanPoints;
+    private final LongAdder[] plans = new LongAdder[SearchPlan.values().length];
+
+    /**
+     * Initializes a {@code FilteredSearch} scanning filters that match up to
+     * {@link Default#FILTER_FULL_SCAN_POINTS} points.
+     *
+     * @param index    the graph to search
+     * @param payloads the payload indexes of the points of the graph
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public FilteredSearch(HnswIndex index, PayloadIndex payloads) {
+        this(index, payloads, Default.FILTER_FULL_SCAN_POINTS);
+    }
+
+    /**
+     * Initializes a {@code FilteredSearch}.
+     *
+     * @param index          the graph to search
+     * @param payloads       the payload indexes of the points of the graph
+     * @param fullScanPoints the number of matching points up to which all of
+     *                       them are scored instead of traversing the graph
+     * @throws IllegalArgumentException if the threshold is negative
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public FilteredSearch(HnswIndex index, PayloadIndex payloads, int fullScanPoints) {
+        if (fullScanPoints < 0) {
+            throw new IllegalArgumentException("Invalid full scan threshold: " + fullScanPoints);
+        }
+        this.index = index;
+        this.payloads = payloads;
+        this.fullScanPoints = fullScanPoints;
+        for (SearchPlan plan : SearchPlan.values()) {
+            plans[plan.ordinal()] = new LongAdder();
+        }
+    }
+
+    /**
+     * Finds the approximately nearest points matching a filter using the
+     * default candidate list size of the graph.
+     *
+     * @param query  the query vector
+     * @param limit  the maximum number of points to return
+     * @param filter the filter the points must match
+     * @return the nearest matching points, closest first
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public List<ScoredPoint> search(float[] query, int limit, Filter filter) {
+        return search(query, limit, index.getConfig().efSearch(), filter);
+    }
+
+    /**
+     * Finds the approximately nearest points matching a filter. The filter is
+     * resolved first and the plan is chosen from the exact number of matching
+     * points.
+     *
+     * @param query  the query vector
+     * @param limit  the maximum number of points to return
+     * @param ef     the candidate list size, raised to the limit if smaller
+     * @param filter the filter the points must match
+     * @return the nearest matching points, closest first
+     * @throws IllegalArgumentException if the query has the wrong dimension or
+     *                                  the limit is not positive
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public List<ScoredPoint> search(float[] query, int limit, int ef, Filter filter) {
+        PointIdSet matching = payloads.resolve(filter);
+        SearchPlan plan = plan(matching.size(), limit, ef);
+        plans[plan.ordinal()].increment();
+        logger.debug("Searching with plan {} for {} matching points", plan, matching.size());
+        return switch (plan) {
+            case BRUTE_FORCE -> index.scan(query, limit, matching.iterator());
+            case FILTERED_GRAPH -> index.search(query, limit, ef, matching);
+            case UNFILTERED -> searchUnfiltered(query, limit, ef, matching);
+        };
+    }
+
+    /**
+     * Chooses the plan for a filter from the estimated number of matching
+     * points, without resolving the filter.
+     *
+     * @param filter the filter
+     * @param limit  the maximum number of points to return
+     * @param ef     the candidate list size
+     * @return the plan a search would likely use
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public SearchPlan plan(Filter filter, int limit, int ef) {
+        return plan(payloads.estimate(filter), limit, ef);
+    }
+
+    /**
+     * Returns the number of searches that ran with a plan.
+     *
+     * @param plan the plan
+     * @return the number of searches
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long getPlanCount(SearchPlan plan) {
+        return plans[plan.ordinal()].sum();
+    }
+
+    /**
+     * Chooses the plan for a number of matching points.
+     *
+     * @param matching the number of matching points
+     * @param limit    the maximum number of points to return
+     * @param ef       the candidate list size
+     * @return the plan
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private SearchPlan plan(int matching, int limit, int ef) {
+        if (matching <= Math.max(fullScanPoints, Math.max(limit, ef))) {
+            return SearchPlan.BRUTE_FORCE;
+        }
+        if (matching >= Default.FILTER_UNFILTERED_SELECTIVITY * index.size()) {
+            return SearchPlan.UNFILTERED;
+        }
+        return SearchPlan.FILTERED_GRAPH;
+    }
+
+    /**
+     * Searches without the filter for enough points that the limit is
+     * expected to survive filtering, then drops the non-matching ones. Falls
+     * back to a filtered graph search if fewer than the limit survive.
+     *
+     * @param query    the query vector
+     * @param limit    the maximum number of points to return
+     * @param ef       the candidate list size
+     * @param matching the matching points
+     * @return the nearest matching points, closest first
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private List<ScoredPoint> searchUnfiltered(float[] query, int limit, int ef, PointIdSet matching) {
+        double selectivity = Math.min(1.0, (double) matching.size() / Math.max(1, index.size()));
+        int fetch = (int) Math.ceil(limit / selectivity) + 1;
+        List<ScoredPoint> result = new ArrayList<>(limit);
+        for (ScoredPoint point : index.search(query, fetch, Math.max(ef, fetch))) {
+            if (matching.contains(point.id())) {
+                result.add(point);
+                if (result.size() == limit) {
+                    return result;
+                }
+            }
+        }
+        return index.search(query, limit, ef, matching);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.index.payload;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+/**
+ * An index of an integer field, such as a numeric tenant id or a status code,
+ * mapping each value to the ascending ids of the points holding it. Ranges
+ * of values are served by a {@link RangeIndex}.
+ *
+ * <p>The index is safe for concurrent use; the postings of a value are copied
+ * into a {@link PointIdSet} when it is matched.</p>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class IntegerIndex {
+    private final int universe;
+    private final Long2ObjectOpenHashMap<Postings> postings = new Long2ObjectOpenHashMap<>();
+
+    /**
+     * Initializes an empty {@code IntegerIndex}.
+     *
+     * @param universe the number of possible point ids
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public IntegerIndex(int universe) {
+        this.universe = universe;
+    }
+
+    /**
+     * Adds a value of a point. A point may hold several values.
+     *
+     * @param id    the point id
+     * @param value the value
+     * @throws IllegalArgumentException if the id is outside of the universe
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public synchronized void add(int id, long value) {
+        if (id < 0 || id >= universe) {
+            throw new IllegalArgumentException("Point id out of range: id=" + id + ", universe=" + universe);
+        }
+        postings.computeIfAbsent(value, v -> new Postings()).add(id);
+    }
+
+    /**
+     * Removes a value of a point.
+     *
+     * @param id    the point id
+     * @param value the value
+     * @return {@code true} if the point held the value; {@code false} otherwise
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public synchronized boolean remove(int id, long value) {
+        Postings points = postings.get(value);
+        if (points == null || !points.remove(id)) {
+            return false;
+        }
+        if (points.size() == 0) {
+            postings.remove(value);
+        }
+        return true;
+    }
+
+    /**
+     * Finds the points holding a value.
+     *
+     * @param value the value
+     * @return the ids of the points holding the value
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public synchronized PointIdSet match(long value) {
+        Postings points = postings.get(value);
+        return points == null ? PointIdSet.empty() : points.toSet(universe);
+    }
+
+    /**
+     * Counts the points holding a value without collecting them.
+     *
+     * @param value the value
+     * @return the number of points holding the value
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public synchronized int count(long value) {
+        Postings points = postings.get(value);
+        return points == null ? 0 : points.size();
+    }
+
+    /**
+     * Returns the number of distinct values in the index.
+     *
+     * @return the number of distinct values
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public synchronized int distinctValues() {
+        return postings.size();
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.index.payload;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The payload indexes of a segment, one per field and kind, which resolve a
+ * {@link Filter} into the {@link PointIdSet} of matching points.
+ *
+ * <p>Keyword fields are indexed by a {@link KeywordIndex}. Integer fields are
+ * indexed by an {@link IntegerIndex} for exact matches and additionally by a
+ * {@link RangeIndex}, so they can be queried by ranges like numeric fields.
+ * Indexes are created on the first value of a field; a filter on a field
+ * without values matches nothing.</p>
+ *
+ * <p>Besides resolving a filter, the index estimates the number of points a
+ * filter matches without collecting them, see {@link #estimate(Filter)},
+ * which lets a {@link FilteredSearch} plan a search cheaply.</p>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class PayloadIndex {
+    private final int universe;
+    private final ConcurrentHashMap<String, KeywordIndex> keywords = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, IntegerIndex> integers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, RangeIndex> ranges = new ConcurrentHashMap<>();
+
+    /**
+     * Initializes an empty {@code PayloadIndex}.
+     *
+     * @param universe the number of possible point ids, usually the capacity of the segment
+     * @throws IllegalArgumentException if the universe is negative
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public PayloadIndex(int universe) {
+        if (universe < 0) {
+            throw new IllegalArgumentException("Invalid payload universe: " + universe);
+        }
+        this.universe = universe;
+    }
+
+    /**
+     * Adds a value of a keyword field of a point.
+     *
+     * @param id    the point id
+     * @param field the field
+     * @param value the value
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void addKeyword(int id, String field, String value) {
+        keywords.computeIfAbsent(field, f -> new KeywordIndex(universe)).add(id, value);
+    }
+
+    /**
+     * Adds a value of an integer field of a point.
+     *
+     * @param id    the point id
+     * @param field the field
+     * @param value the value
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void addInteger(int id, String field, long value) {
+        integers.computeIfAbsent(field, f -> new IntegerIndex(universe)).add(id, value);
+        ranges.computeIfAbsent(field, f -> new RangeIndex(universe)).add(id, value);
+    }
+
+    /**
+     * Adds a value of a numeric field of a point.
+     *
+     * @param id    the point id
+     * @param field the field
+     * @param value the value
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void addNumber(int id, String field, double value) {
+        ranges.computeIfAbsent(field, f -> new RangeIndex(universe)).add(id, value);
+    }
+
+    /**
+     * Removes a value of a keyword field of a point.
+     *
+     * @param id    the point id
+     * @param field the field
+     * @param value the value
+     * @return {@code true} if the point held the value; {@code false} otherwise
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public boolean removeKeyword(int id, String field, String value) {
+        KeywordIndex index = keywords.get(field);
+        return index != null && index.remove(id, value);
+    }
+
+    /**
+     * Removes a value of an integer field of a point.
+     *
+     * @param id    the point id
+     * @param field the field
+     * @param value the value
+     * @return {@code true} if the point held the value; {@code false} otherwise
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public boolean removeInteger(int id, String field, long value) {
+        IntegerIndex index = integers.get(field);
+        if (index == null || !index.remove(id, value)) {
+            return false;
+        }
+        ranges.get(field).remove(id, value);
+        return true;
+    }
+
+    /**
+     * Removes a value of a numeric field of a point.
+     *
+     * @param id    the point id
+     * @param field the field
+     * @param value the value
+     * @return {@code true} if the point held the value; {@code false} otherwise
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public boolean removeNumber(int id, String field, double value) {
+        RangeIndex index = ranges.get(field);
+        return index != null && index.remove(id, value);
+    }
+
+    /**
+     * Collects the points matching a filter. The filters of a conjunction are
+     * resolved from the most to the least selective estimate, and resolving
+     * stops as soon as the intersection is empty.
+     *
+     * @param filter the filter
+     * @return the ids of the matching points
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public PointIdSet resolve(Filter filter) {
+        return switch (filter) {
+            case Filter.Match match -> {
+                KeywordIndex index = keywords.get(match.field());
+                yield index == null ? PointIdSet.empty() : index.match(match.value());
+            }
+            case Filter.MatchInteger match -> {
+                IntegerIndex index = integers.get(match.field());
+                yield index == null ? PointIdSet.empty() : index.match(match.value());
+            }
+            case Filter.Range range -> {
+                RangeIndex index = ranges.get(range.field());
+                yield index == null ? PointIdSet.empty() : index.range(range.from(), range.to());
+            }
+            case Filter.And and -> {
+                List<Filter> ordered = new ArrayList<>(and.filters());
+                ordered.sort(Comparator.comparingInt(this::estimate));
+                PointIdSet result = resolve(ordered.getFirst());
+                for (int i = 1; i < ordered.size() && result.size() > 0; i++) {
+                    result = result.and(resolve(ordered.get(i)));
+                }
+                yield result;
+            }
+        };
+    }
+
+    /**
+     * Estimates the number of points matching a filter without collecting
+     * them. The estimate is exact for matches and an upper bound for ranges
+     * over multi-valued fields and for conjunctions.
+     *
+     * @param filter the filter
+     * @return the estimated number of matching points
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int estimate(Filter filter) {
+        return switch (filter) {
+            case Filter.Match match -> {
+                KeywordIndex index = keywords.get(match.field());
+                yield index == null ? 0 : index.count(match.value());
+            }
+            case Filter.MatchInteger match -> {
+                IntegerIndex index = integers.get(match.field());
+                yield index == null ? 0 : index.count(match.value());
+            }
+            case Filter.Range range -> {
+                RangeIndex index = ranges.get(range.field());
+                yield index == null ? 0 : Math.min(universe, index.count(range.from(), range.to()));
+            }
+            case Filter.And and -> {
+                int estimate = universe;
+                for (Filter child : and.filters()) {
+                    estimate = Math.min(estimate, estimate(child));
+                }
+                yield estimate;
+            }
+        };
+    }
+
+    /**
+     * Returns the number of possible point ids.
+     *
+     * @return the universe of the point ids
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int getUniverse() {
+        return universe;
+    }
+}
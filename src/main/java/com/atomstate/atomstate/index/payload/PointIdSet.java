@@ -0,0 +1,261 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.index.payload;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.function.IntPredicate;
+
+/**
+ * An immutable set of point ids matching a filter.
+ *
+ * <p>The set picks the smaller of two representations when it is created: a
+ * sorted {@code int[]} of the ids for sparse sets, or a bitmap of one bit per
+ * point id for dense ones. The bitmap wins once more than one in 32 ids of
+ * the universe is in the set. Both answer {@link #contains(int)} without
+ * boxing, so the set can be handed to a graph search as an
+ * {@link IntPredicate}.</p>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class PointIdSet implements IntPredicate {
+    private static final PointIdSet EMPTY = new PointIdSet(IntArrays.EMPTY_ARRAY, null, 0, 0);
+    private final int[] ids;
+    private final long[] bitmap;
+    private final int size;
+    private final int universe;
+
+    /**
+     * Initializes a {@code PointIdSet} with one of its representations.
+     *
+     * @param ids      the sorted ids, or {@code null} for a bitmap
+     * @param bitmap   the bitmap, or {@code null} for sorted ids
+     * @param size     the number of ids
+     * @param universe the number of possible ids
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private PointIdSet(int[] ids, long[] bitmap, int size, int universe) {
+        this.ids = ids;
+        this.bitmap = bitmap;
+        this.size = size;
+        this.universe = universe;
+    }
+
+    /**
+     * Returns the empty set.
+     *
+     * @return a set without ids
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static PointIdSet empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a set from ascending, distinct ids.
+     *
+     * @param sorted   the ids in ascending order without duplicates
+     * @param count    the number of ids to take from the array
+     * @param universe the number of possible ids, all ids being smaller
+     * @return the set in its smaller representation
+     * @throws IllegalArgumentException if an id is outside of the universe
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static PointIdSet of(int[] sorted, int count, int universe) {
+        if (count == 0) {
+            return EMPTY;
+        }
+        if (sorted[0] < 0 || sorted[count - 1] >= universe) {
+            throw new IllegalArgumentException("Point id out of range: first=" + sorted[0] + ", last="
+                    + sorted[count - 1] + ", universe=" + universe);
+        }
+        if ((long) count * Integer.SIZE <= universe) {
+            return new PointIdSet(Arrays.copyOf(sorted, count), null, count, universe);
+        }
+        long[] bitmap = new long[(universe + 63) >>> 6];
+        for (int i = 0; i < count; i++) {
+            bitmap[sorted[i] >>> 6] |= 1L << sorted[i];
+        }
+        return new PointIdSet(null, bitmap, count, universe);
+    }
+
+    /**
+     * Checks whether a point id is in the set.
+     *
+     * @param id the point id
+     * @return {@code true} if the id is in the set; {@code false} otherwise
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public boolean contains(int id) {
+        if (id < 0 || id >= universe) {
+            return false;
+        }
+        if (bitmap != null) {
+            return (bitmap[id >>> 6] & (1L << id)) != 0;
+        }
+        return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+    /**
+     * Checks whether a point id is in the set, see {@link #contains(int)}.
+     *
+     * @param id the point id
+     * @return {@code true} if the id is in the set; {@code false} otherwise
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public boolean test(int id) {
+        return contains(id);
+    }
+
+    /**
+     * Returns the number of ids in the set.
+     *
+     * @return the cardinality of the set
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the set is stored as a bitmap.
+     *
+     * @return {@code true} for a bitmap; {@code false} for sorted ids
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public boolean isBitmap() {
+        return bitmap != null;
+    }
+
+    /**
+     * Intersects this set with another one. The smaller set is walked and
+     * probed against the larger one.
+     *
+     * @param other the other set
+     * @return the ids in both sets
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public PointIdSet and(PointIdSet other) {
+        PointIdSet smaller = size <= other.size ? this : other;
+        PointIdSet larger = smaller == this ? other : this;
+        if (smaller.size == 0) {
+            return EMPTY;
+        }
+        IntArrayList common = new IntArrayList(smaller.size);
+        for (IntIterator iterator = smaller.iterator(); iterator.hasNext(); ) {
+            int id = iterator.nextInt();
+            if (larger.contains(id)) {
+                common.add(id);
+            }
+        }
+        return of(common.elements(), common.size(), Math.max(universe, other.universe));
+    }
+
+    /**
+     * Returns an iterator over the ids in ascending order.
+     *
+     * @return an iterator over the ids
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public IntIterator iterator() {
+        if (bitmap == null) {
+            return IntArrayList.wrap(ids, size).iterator();
+        }
+        return new IntIterator() {
+            private int next = nextSetBit(0);
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public int nextInt() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                int current = next;
+                next = nextSetBit(current + 1);
+                return current;
+            }
+        };
+    }
+
+    /**
+     * Copies the ids into an array.
+     *
+     * @return the ids in ascending order
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int[] toIntArray() {
+        if (bitmap == null) {
+            return Arrays.copyOf(ids, size);
+        }
+        int[] copy = new int[size];
+        IntIterator iterator = iterator();
+        for (int i = 0; i < size; i++) {
+            copy[i] = iterator.nextInt();
+        }
+        return copy;
+    }
+
+    /**
+     * Finds the smallest id in the bitmap that is not smaller than a start id.
+     *
+     * @param from the start id
+     * @return the next id, or {@code -1} if there is none
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private int nextSetBit(int from) {
+        int word = from >>> 6;
+        if (word >= bitmap.length) {
+            return -1;
+        }
+        long bits = bitmap[word] & (-1L << from);
+        while (bits == 0) {
+            if (++word == bitmap.length) {
+                return -1;
+            }
+            bits = bitmap[word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+     * Returns a string representation of this set.
+     *
+     * @return a string representation of this set
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public String toString() {
+        return "PointIdSet[size=" + size + ", universe=" + universe + ", bitmap=" + isBitmap() + "]";
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.index.payload;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.util.Arrays;
+
+/**
+ * The ascending ids of the points holding one value of a field.
+ *
+ * <p>Ids are usually added in ascending order and then simply appended; an
+ * id added out of order is inserted at its place.</p>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class Postings {
+    private final IntArrayList ids = new IntArrayList();
+
+    /**
+     * Adds a point id.
+     *
+     * @param id the point id
+     * @return {@code true} if the id was added; {@code false} if it was already present
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    boolean add(int id) {
+        int size = ids.size();
+        if (size == 0 || ids.getInt(size - 1) < id) {
+            ids.add(id);
+            return true;
+        }
+        int position = Arrays.binarySearch(ids.elements(), 0, size, id);
+        if (position >= 0) {
+            return false;
+        }
+        ids.add(-position - 1, id);
+        return true;
+    }
+
+    /**
+     * Removes a point id.
+     *
+     * @param id the point id
+     * @return {@code true} if the id was removed; {@code false} if it was not present
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    boolean remove(int id) {
+        int position = Arrays.binarySearch(ids.elements(), 0, ids.size(), id);
+        if (position < 0) {
+            return false;
+        }
+        ids.removeInt(position);
+        return true;
+    }
+
+    /**
+     * Returns the number of point ids.
+     *
+     * @return the number of point ids
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    int size() {
+        return ids.size();
+    }
+
+    /**
+     * Copies the point ids into a set.
+     *
+     * @param universe the number of possible ids
+     * @return the set of point ids
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    PointIdSet toSet(int universe) {
+        return PointIdSet.of(ids.elements(), ids.size(), universe);
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.index.payload;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+
+import java.util.Arrays;
+
+/**
+ * An index of a numeric field queried by ranges, such as a timestamp or a
+ * price, that keeps the values of all points sorted together with their ids.
+ *
+ * <p>Values are appended unsorted and the index is sorted by value on the next
+ * query, so bulk loads pay for a single sort. A range is then two binary
+ * searches: counting its points needs nothing else, and collecting them sorts
+ * the ids of the range into a {@link PointIdSet}.</p>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class RangeIndex {
+    private final int universe;
+    private double[] values = new double[16];
+    private int[] ids = new int[16];
+    private int size;
+    private boolean sorted = true;
+
+    /**
+     * Initializes an empty {@code RangeIndex}.
+     *
+     * @param universe the number of possible point ids
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public RangeIndex(int universe) {
+        this.universe = universe;
+    }
+
+    /**
+     * Adds a value of a point. A point may hold several values.
+     *
+     * @param id    the point id
+     * @param value the value
+     * @throws IllegalArgumentException if the id is outside of the universe or the value is NaN
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public synchronized void add(int id, double value) {
+        if (id < 0 || id >= universe || Double.isNaN(value)) {
+            throw new IllegalArgumentException("Invalid range value: id=" + id + ", value=" + value
+                    + ", universe=" + universe);
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        if (size > 0 && compare(value, id, values[size - 1], ids[size - 1]) < 0) {
+            sorted = false;
+        }
+        values[size] = value;
+        ids[size] = id;
+        size++;
+    }
+
+    /**
+     * Removes a value of a point.
+     *
+     * @param id    the point id
+     * @param value the value
+     * @return {@code true} if the point held the value; {@code false} otherwise
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public synchronized boolean remove(int id, double value) {
+        sort();
+        int position = lowerBound(value);
+        for (; position < size && values[position] == value; position++) {
+            if (ids[position] == id) {
+                System.arraycopy(values, position + 1, values, position, size - position - 1);
+                System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the points holding a value within a range.
+     *
+     * @param from the smallest value of the range, inclusive
+     * @param to   the largest value of the range, inclusive
+     * @return the ids of the points holding a value in the range
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public synchronized PointIdSet range(double from, double to) {
+        sort();
+        int start = lowerBound(from);
+        int end = upperBound(to);
+        if (start >= end) {
+            return PointIdSet.empty();
+        }
+        int[] matching = Arrays.copyOfRange(ids, start, end);
+        IntArrays.radixSort(matching);
+        // A point holding several values in the range appears once
+        int distinct = 0;
+        for (int i = 0; i < matching.length; i++) {
+            if (i == 0 || matching[i] != matching[distinct - 1]) {
+                matching[distinct++] = matching[i];
+            }
+        }
+        return PointIdSet.of(matching, distinct, universe);
+    }
+
+    /**
+     * Counts the values within a range without collecting their points.
+     *
+     * @param from the smallest value of the range, inclusive
+     * @param to   the largest value of the range, inclusive
+     * @return the number of values in the range, an upper bound of the number of points
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public synchronized int count(double from, double to) {
+        sort();
+        return Math.max(0, upperBound(to) - lowerBound(from));
+    }
+
+    /**
+     * Returns the number of values in the index.
+     *
+     * @return the number of values
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Sorts the values and their ids if values were added out of order.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void sort() {
+        if (sorted) {
+            return;
+        }
+        it.unimi.dsi.fastutil.Arrays.quickSort(0, size, (a, b) -> compare(values[a], ids[a], values[b], ids[b]), (a, b) -> {
+            double value = values[a];
+            values[a] = values[b];
+            values[b] = value;
+            int id = ids[a];
+            ids[a] = ids[b];
+            ids[b] = id;
+        });
+        sorted = true;
+    }
+
+    /**
+     * Finds the first position holding a value not smaller than the given one.
+     *
+     * @param value the value
+     * @return the position
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private int lowerBound(double value) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the first position holding a value larger than the given one.
+     *
+     * @param value the value
+     * @return the position
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private int upperBound(double value) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] <= value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Orders entries by value and then by point id.
+     *
+     * @param value   the value of the first entry
+     * @param id      the point id of the first entry
+     * @param other   the value of the second entry
+     * @param otherId the point id of the second entry
+     * @return a negative number, zero or a positive number if the first entry
+     * is smaller, equal or larger
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static int compare(double value, int id, double other, int otherId) {
+        int byValue = Double.compare(value, other);
+        return byValue != 0 ? byValue : Integer.compare(id, otherId);
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.index.payload;
+/**
+ * The strategies a {@link FilteredSearch} chooses from, depending on how many
+ * points a filter matches.
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public enum SearchPlan {
+    /**
+     * Scores every matching point exactly. Chosen for filters matching so few
+     * points that a graph search would visit more points than the filter
+     * matches.
+     *
+     * @since 1.0.0
+     */
+    BRUTE_FORCE,
+
+    /**
+     * Traverses the graph through all points but only collects matching ones,
+     * so the result is filled without raising the candidate list size.
+     *
+     * @since 1.0.0
+     */
+    FILTERED_GRAPH,
+
+    /**
+     * Searches the graph without the filter for a few more points than
+     * requested and drops the non-matching ones afterwards. Chosen for filters
+     * matching nearly all points.
+     *
+     * @since 1.0.0
+     */
+    UNFILTERED
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.optimizer;
+
+import com.atomstate.atomstate.common.utils.CpuPermit;
+
+/**
+ * The permit and checkpoint of a single run of an {@link OptimizerJob}, see
+ * {@link SegmentOptimizer#run(OptimizerJob, JobContext)}.
+ *
+ * <p>Every checkpoint is also where the job follows its budget: CPUs the
+ * budget asked for are given back, and if it asked for all of them, the job
+ * is paused and resumed from the checkpoint by a later run once CPUs are
+ * available again. Pausing the scheduler or cancelling the run stops the job
+ * at its next checkpoint as well.</p>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class JobContext {
+    private final OptimizerScheduler scheduler;
+    private final OptimizerJob job;
+    private final CpuPermit permit;
+    private volatile long checkpoint;
+    private volatile boolean cancelled;
+    private volatile Stop stop = Stop.NONE;
+
+    /**
+     * Initializes a {@code JobContext}.
+     *
+     * @param scheduler  the scheduler running the job
+     * @param job        the job
+     * @param permit     the CPUs granted to the job
+     * @param checkpoint the position to start from
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    JobContext(OptimizerScheduler scheduler, OptimizerJob job, CpuPermit permit, long checkpoint) {
+        this.scheduler = scheduler;
+        this.job = job;
+        this.permit = permit;
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Returns the job.
+     *
+     * @return the job of this run
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public OptimizerJob getJob() {
+        return job;
+    }
+
+    /**
+     * Returns the CPUs granted to the job. The permit is owned by the
+     * scheduler and must not be closed by the job.
+     *
+     * @return the CPU permit
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public CpuPermit getPermit() {
+        return permit;
+    }
+
+    /**
+     * Returns the position the job has durably reached.
+     *
+     * @return the last checkpoint, or {@code 0} if none
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * Records that the job has durably reached a position and checks whether
+     * it may go on.
+     *
+     * @param position the number of units of work done, e.g. points copied
+     * @return {@code true} if the job may go on; {@code false} if it must
+     * return because it was paused or cancelled
+     * @throws IllegalArgumentException if the position is before the last checkpoint
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public boolean checkpoint(long position) {
+        long previous = checkpoint;
+        if (position < previous) {
+            throw new IllegalArgumentException("Checkpoint moved backwards: previous=" + previous
+                    + ", position=" + position);
+        }
+        checkpoint = position;
+        scheduler.addProgress(position - previous);
+        return stop() == Stop.NONE;
+    }
+
+    /**
+     * Asks the job to stop at its next checkpoint.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Returns why the job was stopped.
+     *
+     * @return the reason, or {@link Stop#NONE} if the job was not stopped
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    Stop getStop() {
+        return stop;
+    }
+
+    /**
+     * Applies pending changes of the permit and decides whether the job must
+     * stop.
+     *
+     * @return the reason to stop, or {@link Stop#NONE} to go on
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private Stop stop() {
+        if (cancelled || permit.isReleased()) {
+            stop = Stop.CANCELLED;
+        } else if (scheduler.isPaused()) {
+            stop = Stop.PAUSED;
+        } else {
+            int reclaim = permit.getReclaimRequest();
+            // A permit keeps one CPU, any request left after shrinking is for that last one
+            if (reclaim > 0 && permit.shrink(reclaim) < reclaim && permit.getReclaimRequest() > 0) {
+                stop = Stop.PAUSED;
+            }
+        }
+        return stop;
+    }
+
+    /**
+     * Why a job stopped before it was done.
+     *
+     * @author Atomstate
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    enum Stop {
+        NONE, PAUSED, CANCELLED
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.optimizer;
+
+import com.atomstate.atomstate.common.utils.Default;
+
+/**
+ * The thresholds from which the {@link OptimizerScheduler} plans jobs.
+ *
+ * @param deletedThreshold  the share of deleted points above which a segment
+ *                          is vacuumed, between 0 and 1
+ * @param maxSegments       the number of segments above which the smallest
+ *                          ones are merged
+ * @param indexingThreshold the number of unindexed points from which the
+ *                          index of a segment is built
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public record OptimizerConfig(double deletedThreshold, int maxSegments, long indexingThreshold) {
+    /**
+     * The thresholds of {@link Default}.
+     *
+     * @since 1.0.0
+     */
+    public static final OptimizerConfig DEFAULT = new OptimizerConfig(Default.OPTIMIZER_DELETED_THRESHOLD,
+            Default.OPTIMIZER_MAX_SEGMENTS, Default.OPTIMIZER_INDEXING_THRESHOLD);
+
+    /**
+     * Validates the thresholds.
+     *
+     * @throws IllegalArgumentException if the deleted threshold is not between
+     *                                  0 and 1 or a count is not positive
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public OptimizerConfig {
+        if (!(deletedThreshold > 0 && deletedThreshold < 1) || maxSegments <= 0 || indexingThreshold <= 0) {
+            throw new IllegalArgumentException("Invalid optimizer config: deletedThreshold=" + deletedThreshold
+                    + ", maxSegments=" + maxSegments + ", indexingThreshold=" + indexingThreshold);
+        }
+    }
+}
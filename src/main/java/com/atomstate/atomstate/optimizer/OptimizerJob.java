@@ -0,0 +1,73 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.optimizer;
+
+import java.util.List;
+
+/**
+ * A background job planned by the {@link OptimizerScheduler} and run by a
+ * {@link SegmentOptimizer}. Jobs are compared by value, so a job planned
+ * again after a pause resumes from its checkpoint.
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public sealed interface OptimizerJob permits OptimizerJob.Merge, OptimizerJob.Vacuum, OptimizerJob.BuildIndex {
+
+    /**
+     * Merges small segments into one, which reduces the number of segments a
+     * search fans out to.
+     *
+     * @param segments the ids of the segments to merge, smallest first
+     * @author Atomstate
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    record Merge(List<String> segments) implements OptimizerJob {
+
+        /**
+         * Validates the job.
+         *
+         * @throws IllegalArgumentException if fewer than two segments are given
+         * @author Atomstate
+         * @since 1.0.0
+         */
+        public Merge {
+            if (segments.size() < 2) {
+                throw new IllegalArgumentException("A merge needs at least two segments: " + segments);
+            }
+            segments = List.copyOf(segments);
+        }
+    }
+
+    /**
+     * Rewrites a segment without its deleted points.
+     *
+     * @param segment the id of the segment
+     * @author Atomstate
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    record Vacuum(String segment) implements OptimizerJob {
+    }
+
+    /**
+     * Inserts the unindexed points of a segment into its index.
+     *
+     * @param segment the id of the segment
+     * @author Atomstate
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    record BuildIndex(String segment) implements OptimizerJob {
+    }
+}
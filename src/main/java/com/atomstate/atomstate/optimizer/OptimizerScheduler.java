@@ -0,0 +1,342 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.optimizer;
+
+import com.atomstate.atomstate.common.utils.CpuBudget;
+import com.atomstate.atomstate.common.utils.CpuPermit;
+import com.atomstate.atomstate.common.utils.Default;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the segments of a collection in shape in the background, so that
+ * small segments left by flushes do not pile up and make every search fan out
+ * to more of them.
+ *
+ * <p>Every run reads the {@link SegmentStats} of the collection and plans jobs
+ * from the {@link OptimizerConfig}: the smallest segments are merged while
+ * there are more than {@code maxSegments}, segments with more than
+ * {@code deletedThreshold} deleted points are vacuumed, and segments with at
+ * least {@code indexingThreshold} unindexed points get their index built.
+ * Merges come first, as they also drop the deleted points of the merged
+ * segments and make their other jobs moot.</p>
+ *
+ * <p>One job runs at a time, on a {@link CpuPermit} of the optimizer budget
+ * sized up to the HNSW build threads, see {@link Default#threadCountForHnsw()}.
+ * If the budget has no CPU to spare, the run is skipped instead of waiting.
+ * Jobs checkpoint their progress through their {@link JobContext}: when the
+ * budget takes all CPUs of a job back, e.g. because the
+ * {@code AdaptiveCpuController} cut the limit, or when the scheduler is
+ * paused, the job stops at its next checkpoint and a later run resumes it from
+ * there.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ *     {@code CpuBudget optimizer = node.newChild(CpuPriority.OPTIMIZER, Default.defaultCpuShare(CpuPriority.OPTIMIZER, cpus));}
+ *     {@code OptimizerScheduler scheduler = new OptimizerScheduler(optimizer, collection, OptimizerConfig.DEFAULT);}
+ *     {@code scheduler.start(optimizerExecutor, Default.OPTIMIZER_INTERVAL);}
+ *     {@code new AdaptiveCpuController(optimizer, CpuControllerConfig.of(1, 8), searchP99, scheduler::getProgress);}
+ * </pre>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class OptimizerScheduler {
+    private static final Logger logger = LogManager.getLogger(OptimizerScheduler.class);
+    private final CpuBudget budget;
+    private final SegmentOptimizer optimizer;
+    private final OptimizerConfig config;
+    private final int maxThreads;
+    private final Map<OptimizerJob, Long> checkpoints = new ConcurrentHashMap<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final LongAdder progress = new LongAdder();
+    private final LongAdder completedJobs = new LongAdder();
+    private volatile JobContext current;
+    private volatile boolean paused;
+
+    /**
+     * Initializes a {@code OptimizerScheduler} whose jobs use up to the
+     * default number of HNSW threads.
+     *
+     * @param budget    the budget of the optimizer
+     * @param optimizer the segments to optimize
+     * @param config    the thresholds to plan jobs from
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public OptimizerScheduler(CpuBudget budget, SegmentOptimizer optimizer, OptimizerConfig config) {
+        this(budget, optimizer, config, Default.threadCountForHnsw());
+    }
+
+    /**
+     * Initializes a {@code OptimizerScheduler}.
+     *
+     * @param budget     the budget of the optimizer
+     * @param optimizer  the segments to optimize
+     * @param config     the thresholds to plan jobs from
+     * @param maxThreads the number of CPUs a job asks for
+     * @throws IllegalArgumentException if the number of threads is not positive
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public OptimizerScheduler(CpuBudget budget, SegmentOptimizer optimizer, OptimizerConfig config, int maxThreads) {
+        if (maxThreads <= 0) {
+            throw new IllegalArgumentException("Invalid number of optimizer threads: " + maxThreads);
+        }
+        this.budget = budget;
+        this.optimizer = optimizer;
+        this.config = config;
+        this.maxThreads = maxThreads;
+    }
+
+    /**
+     * Plans the jobs for the given segments, most urgent first.
+     *
+     * @param segments the statistics of all segments
+     * @return the jobs to run, or an empty list if the segments are in shape
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public List<OptimizerJob> plan(List<SegmentStats> segments) {
+        List<OptimizerJob> jobs = new ArrayList<>();
+        Set<String> merged = new HashSet<>();
+        if (segments.size() > config.maxSegments()) {
+            List<String> smallest = segments.stream()
+                    .sorted(Comparator.comparingLong(SegmentStats::livePoints).thenComparing(SegmentStats::segment))
+                    .limit(segments.size() - config.maxSegments() + 1)
+                    .map(SegmentStats::segment)
+                    .toList();
+            jobs.add(new OptimizerJob.Merge(smallest));
+            merged.addAll(smallest);
+        }
+        for (SegmentStats segment : segments) {
+            if (!merged.contains(segment.segment()) && segment.deletedRatio() > config.deletedThreshold()) {
+                jobs.add(new OptimizerJob.Vacuum(segment.segment()));
+            }
+        }
+        for (SegmentStats segment : segments) {
+            if (!merged.contains(segment.segment()) && segment.unindexedPoints() >= config.indexingThreshold()) {
+                jobs.add(new OptimizerJob.BuildIndex(segment.segment()));
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * Plans the jobs for the current segments and runs the most urgent one on
+     * the calling thread, preferring a paused job over new ones. Returns at
+     * once if a job is already running, the scheduler is paused or the budget
+     * has no CPU to spare.
+     *
+     * @return {@code true} if a job was run, whether or not it was done;
+     * {@code false} otherwise
+     * @throws InterruptedException if the calling thread was interrupted
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public boolean runOnce() throws InterruptedException {
+        if (paused || !running.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            List<OptimizerJob> jobs = plan(optimizer.getSegmentStats());
+            // Checkpoints of jobs that are no longer planned cannot be resumed
+            checkpoints.keySet().retainAll(jobs);
+            if (jobs.isEmpty()) {
+                return false;
+            }
+            OptimizerJob job = jobs.stream().filter(checkpoints::containsKey).findFirst().orElse(jobs.get(0));
+            Optional<CpuPermit> acquired = budget.tryAcquire(1, maxThreads);
+            if (acquired.isEmpty()) {
+                logger.debug("No CPU available for optimizer job {}", job);
+                return false;
+            }
+            try (CpuPermit permit = acquired.get()) {
+                run(job, permit);
+            }
+            return true;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Periodically runs the most urgent job. The jobs run on the threads of
+     * the scheduler, which should therefore not be shared with short tasks.
+     *
+     * @param scheduler the scheduler to run the jobs on
+     * @param interval  the time between the end of a run and the next check
+     * @return the scheduled checks, which can be cancelled to stop planning
+     * new jobs
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public ScheduledFuture<?> start(ScheduledExecutorService scheduler, Duration interval) {
+        long millis = interval.toMillis();
+        return scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                runOnce();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                logger.error("Failed to run segment optimizer", e);
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the running job at its next checkpoint and runs no job until
+     * {@link #resume()} is called.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void pause() {
+        paused = true;
+    }
+
+    /**
+     * Lets the next run start or resume jobs again.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void resume() {
+        paused = false;
+    }
+
+    /**
+     * Checks whether the scheduler is paused.
+     *
+     * @return {@code true} if no job may run; {@code false} otherwise
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Stops the running job, if any, at its next checkpoint. Its checkpoint
+     * is kept, so the job resumes if it is planned again.
+     *
+     * @return {@code true} if a job was running; {@code false} otherwise
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public boolean cancel() {
+        JobContext context = current;
+        if (context == null) {
+            return false;
+        }
+        context.cancel();
+        return true;
+    }
+
+    /**
+     * Returns the position a stopped job will resume from.
+     *
+     * @param job the job
+     * @return the checkpoint of the job, or {@code 0} if it has none
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long getCheckpoint(OptimizerJob job) {
+        return checkpoints.getOrDefault(job, 0L);
+    }
+
+    /**
+     * Returns the units of work checkpointed by all jobs, which only grows and
+     * can be used as the progress of an {@code AdaptiveCpuController}.
+     *
+     * @return the total progress
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long getProgress() {
+        return progress.sum();
+    }
+
+    /**
+     * Returns the number of jobs that were done.
+     *
+     * @return the number of completed jobs
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long getCompletedJobs() {
+        return completedJobs.sum();
+    }
+
+    /**
+     * Adds the units of work of a checkpoint to the progress.
+     *
+     * @param units the units done since the previous checkpoint
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    void addProgress(long units) {
+        progress.add(units);
+    }
+
+    /**
+     * Runs a job from its checkpoint and records how far it got.
+     *
+     * @param job    the job
+     * @param permit the CPUs of the job
+     * @throws InterruptedException if the calling thread was interrupted
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void run(OptimizerJob job, CpuPermit permit) throws InterruptedException {
+        long from = getCheckpoint(job);
+        JobContext context = new JobContext(this, job, permit, from);
+        current = context;
+        logger.debug("Running optimizer job {} from {} on {} CPUs", job, from, permit.numCpus());
+        try {
+            optimizer.run(job, context);
+            if (context.getStop() == JobContext.Stop.NONE) {
+                checkpoints.remove(job);
+                completedJobs.increment();
+                logger.info("Optimizer job {} done", job);
+            } else {
+                checkpoints.put(job, context.getCheckpoint());
+                logger.info("Optimizer job {} {} at {}", job, context.getStop() == JobContext.Stop.PAUSED
+                        ? "paused" : "cancelled", context.getCheckpoint());
+            }
+        } catch (IOException | RuntimeException e) {
+            checkpoints.put(job, context.getCheckpoint());
+            logger.error("Optimizer job {} failed at {}", job, context.getCheckpoint(), e);
+        } catch (InterruptedException e) {
+            checkpoints.put(job, context.getCheckpoint());
+            throw e;
+        } finally {
+            current = null;
+        }
+    }
+}
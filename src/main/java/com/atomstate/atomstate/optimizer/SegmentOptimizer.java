@@ -0,0 +1,56 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.optimizer;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The segments of a collection as seen by the {@link OptimizerScheduler}: it
+ * reports their statistics and runs the jobs planned from them.
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public interface SegmentOptimizer {
+
+    /**
+     * Returns the current statistics of all segments.
+     *
+     * @return the statistics, one per segment
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    List<SegmentStats> getSegmentStats();
+
+    /**
+     * Runs a job until it is done or the context asks it to stop.
+     *
+     * <p>The job starts at {@link JobContext#getCheckpoint()}, which is
+     * {@code 0} unless an earlier run of the same job was paused, and calls
+     * {@link JobContext#checkpoint(long)} after every unit of work whose
+     * result is durable, e.g. every batch of points copied or inserted. When
+     * the checkpoint returns {@code false} the job must return at once; its
+     * partial result must stay invisible to searches and be reusable when the
+     * job is run again from the checkpoint. The CPUs of
+     * {@link JobContext#getPermit()} may be used by the job, e.g. through an
+     * {@code HnswBuildExecutor}.</p>
+     *
+     * @param job     the job to run
+     * @param context the permit and checkpoint of the job
+     * @throws IOException          if the segments cannot be read or written
+     * @throws InterruptedException if the calling thread was interrupted
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    void run(OptimizerJob job, JobContext context) throws IOException, InterruptedException;
+}
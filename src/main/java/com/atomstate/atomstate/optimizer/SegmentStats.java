@@ -0,0 +1,66 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.optimizer;
+
+/**
+ * The point counts of a segment the {@link OptimizerScheduler} plans its jobs
+ * from.
+ *
+ * @param segment         the id of the segment
+ * @param points          the number of points stored in the segment,
+ *                        including deleted ones
+ * @param deletedPoints   the number of points marked as deleted
+ * @param unindexedPoints the number of live points not yet in the index
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public record SegmentStats(String segment, long points, long deletedPoints, long unindexedPoints) {
+
+    /**
+     * Validates the counts.
+     *
+     * @throws IllegalArgumentException if a count is negative or the deleted or
+     *                                  unindexed points exceed the points
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public SegmentStats {
+        if (points < 0 || deletedPoints < 0 || unindexedPoints < 0 || deletedPoints > points
+                || unindexedPoints > points - deletedPoints) {
+            throw new IllegalArgumentException("Invalid segment stats of " + segment + ": points=" + points
+                    + ", deletedPoints=" + deletedPoints + ", unindexedPoints=" + unindexedPoints);
+        }
+    }
+
+    /**
+     * Returns the number of points that are not deleted.
+     *
+     * @return the number of live points
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long livePoints() {
+        return points - deletedPoints;
+    }
+
+    /**
+     * Returns the share of deleted points.
+     *
+     * @return the deleted points divided by the points, or {@code 0} for an
+     * empty segment
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public double deletedRatio() {
+        return points == 0 ? 0 : (double) deletedPoints / points;
+    }
+}
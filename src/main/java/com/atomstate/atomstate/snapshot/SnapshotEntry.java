@@ -0,0 +1,25 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.snapshot;
+
+/**
+ * An entry of a snapshot, typically one segment file.
+ *
+ * @param name   the name of the entry, unique within the snapshot
+ * @param size   the number of bytes of the entry
+ * @param offset the position of the first chunk of the entry in the snapshot
+ * @param chunks the number of chunks of the entry
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public record SnapshotEntry(String name, long size, long offset, int chunks) {
+}
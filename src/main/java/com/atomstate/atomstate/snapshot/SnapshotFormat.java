@@ -0,0 +1,229 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.snapshot;
+
+import com.atomstate.atomstate.common.utils.Default;
+import com.atomstate.atomstate.common.utils.Version;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * The binary format of a snapshot file.
+ *
+ * <p>All numbers are little-endian. The file starts with a header of
+ * {@link #HEADER_BYTES} bytes:</p>
+ * <pre>
+ *     offset  size  field
+ *          0     4  magic "ASSN"
+ *          4     4  format version
+ *          8    12  major, minor and patch of the version that wrote the file
+ *         20     4  chunk size
+ *         24     8  reserved, zero
+ * </pre>
+ *
+ * <p>The entries follow back to back, each split into chunks of at most the
+ * chunk size. A chunk is its length, the CRC32C of its data and the data.
+ * The table of contents comes after the last entry: for every entry the
+ * length and UTF-8 bytes of its name, its size, the offset of its first chunk
+ * and its number of chunks. The file ends with a trailer of
+ * {@link #TRAILER_BYTES} bytes holding the offset, length and CRC32C of the
+ * table of contents, the number of entries and the magic number again, so a
+ * snapshot cut off while being written is recognized.</p>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class SnapshotFormat {
+    static final int HEADER_BYTES = 32;
+    static final int CHUNK_HEADER_BYTES = 8;
+    static final int TRAILER_BYTES = 24;
+    static final int MAGIC = 0x4E535341;
+    static final int FORMAT_VERSION = 1;
+
+    /**
+     * Prevents instantiation of this utility class.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private SnapshotFormat() {
+    }
+
+    /**
+     * Encodes the header of a snapshot written by this version.
+     *
+     * @param chunkBytes the maximum number of bytes per chunk
+     * @return the header, ready to be written
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    static ByteBuffer header(int chunkBytes) {
+        Version version = Default.ATOMSTATE_VERSION;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(MAGIC).putInt(FORMAT_VERSION)
+                .putInt(version.getMajor()).putInt(version.getMinor()).putInt(version.getPatch())
+                .putInt(chunkBytes);
+        return header.clear();
+    }
+
+    /**
+     * Decodes the version of Atomstate that wrote a snapshot and checks that
+     * this version can read it: snapshots of older versions are read down
+     * to {@link Version#minSupported()}, snapshots of a newer major version
+     * are not.
+     *
+     * @param path   the snapshot, for error messages
+     * @param header the header of the snapshot
+     * @return the version that wrote the snapshot
+     * @throws IOException if the file is not a snapshot or cannot be read by
+     *                     this version
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    static Version readHeader(Path path, ByteBuffer header) throws IOException {
+        if (header.remaining() < HEADER_BYTES || header.getInt(0) != MAGIC) {
+            throw new IOException("Not a snapshot: " + path);
+        }
+        int format = header.getInt(4);
+        if (format != FORMAT_VERSION) {
+            throw new IOException("Unsupported snapshot format " + format + ": " + path);
+        }
+        Version writtenBy;
+        try {
+            writtenBy = Version.of(header.getInt(8), header.getInt(12), header.getInt(16));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupted snapshot header: " + path, e);
+        }
+        Version current = Default.ATOMSTATE_VERSION;
+        if (!current.isCompatibleWith(writtenBy)) {
+            if (writtenBy.compareTo(current) > 0) {
+                throw new IOException("Snapshot written by newer version " + writtenBy + ": " + path);
+            }
+            throw new IOException("Snapshot written by version " + writtenBy + ", older than "
+                    + current.minSupported() + ": " + path);
+        }
+        return writtenBy;
+    }
+
+    /**
+     * Encodes the table of contents followed by the trailer.
+     *
+     * @param entries   the entries in file order
+     * @param tocOffset the position the table of contents is written at
+     * @return the encoded table and trailer, ready to be written
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    static ByteBuffer tableOfContents(List<SnapshotEntry> entries, long tocOffset) {
+        List<byte[]> names = new ArrayList<>(entries.size());
+        int tocBytes = 0;
+        for (SnapshotEntry entry : entries) {
+            byte[] name = entry.name().getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            tocBytes += Integer.BYTES + name.length + 2 * Long.BYTES + Integer.BYTES;
+        }
+        ByteBuffer toc = ByteBuffer.allocate(tocBytes + TRAILER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < entries.size(); i++) {
+            SnapshotEntry entry = entries.get(i);
+            toc.putInt(names.get(i).length).put(names.get(i))
+                    .putLong(entry.size()).putLong(entry.offset()).putInt(entry.chunks());
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(toc.array(), 0, tocBytes);
+        toc.putLong(tocOffset).putInt(tocBytes).putInt((int) crc.getValue()).putInt(entries.size()).putInt(MAGIC);
+        return toc.flip();
+    }
+
+    /**
+     * Reads and verifies the table of contents of a snapshot.
+     *
+     * @param path    the snapshot, for error messages
+     * @param channel the open snapshot
+     * @return the entries in file order
+     * @throws IOException if the snapshot is incomplete or its table of
+     *                     contents is corrupted
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    static List<SnapshotEntry> readTableOfContents(Path path, FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < HEADER_BYTES + TRAILER_BYTES) {
+            throw new IOException("Incomplete snapshot: " + path);
+        }
+        ByteBuffer trailer = read(channel, size - TRAILER_BYTES, TRAILER_BYTES);
+        long tocOffset = trailer.getLong(0);
+        int tocBytes = trailer.getInt(8);
+        int checksum = trailer.getInt(12);
+        int count = trailer.getInt(16);
+        if (trailer.getInt(20) != MAGIC || tocOffset < HEADER_BYTES || tocBytes < 0
+                || tocOffset + tocBytes != size - TRAILER_BYTES) {
+            throw new IOException("Incomplete snapshot: " + path);
+        }
+        ByteBuffer toc = read(channel, tocOffset, tocBytes);
+        CRC32C crc = new CRC32C();
+        crc.update(toc.array(), 0, tocBytes);
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Corrupted snapshot table of contents: " + path);
+        }
+        List<SnapshotEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] name = new byte[toc.getInt()];
+            toc.get(name);
+            entries.add(new SnapshotEntry(new String(name, StandardCharsets.UTF_8), toc.getLong(), toc.getLong(),
+                    toc.getInt()));
+        }
+        return entries;
+    }
+
+    /**
+     * Computes the checksum of a chunk.
+     *
+     * @param data the data of the chunk, which is consumed
+     * @return the CRC32C of the data
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    static int checksum(ByteBuffer data) {
+        CRC32C crc = new CRC32C();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Reads a region of a file into a heap buffer.
+     *
+     * @param channel  the file
+     * @param position the position of the region
+     * @param length   the number of bytes
+     * @return the region, little-endian
+     * @throws IOException if the region cannot be read
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of snapshot at byte " + (position + buffer.position()));
+            }
+        }
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.snapshot;
+
+import com.atomstate.atomstate.common.utils.CpuPermit;
+import com.atomstate.atomstate.common.utils.Version;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a snapshot written by a {@link SnapshotWriter}, see
+ * {@link SnapshotFormat} for the format.
+ *
+ * <p>Opening a snapshot reads its header and table of contents and checks
+ * that this version of Atomstate can read it. Entries are verified on the
+ * mapped snapshot, chunk by chunk against their checksums, and restored with
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}
+ * from the pages the verification just faulted in, so the data is never
+ * copied through the heap. {@link #restoreAll(Path, CpuPermit)} restores the
+ * entries on as many threads as a {@link CpuPermit} grants.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ *     {@code try (SnapshotReader reader = SnapshotReader.open(snapshot)) {}
+ *         {@code reader.restoreAll(segmentDirectory, permit);}
+ *     {@code }}
+ * </pre>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class SnapshotReader implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(SnapshotReader.class);
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private final Path path;
+    private final FileChannel channel;
+    private final Version writtenBy;
+    private final Map<String, SnapshotEntry> entries = new LinkedHashMap<>();
+
+    /**
+     * Creates a reader of an opened snapshot.
+     *
+     * @param path      the snapshot file
+     * @param channel   the open snapshot
+     * @param writtenBy the version that wrote the snapshot
+     * @param entries   the entries in file order
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private SnapshotReader(Path path, FileChannel channel, Version writtenBy, List<SnapshotEntry> entries) {
+        this.path = path;
+        this.channel = channel;
+        this.writtenBy = writtenBy;
+        for (SnapshotEntry entry : entries) {
+            this.entries.put(entry.name(), entry);
+        }
+    }
+
+    /**
+     * Opens a snapshot.
+     *
+     * @param path the snapshot file
+     * @return the reader
+     * @throws IOException if the file cannot be read, is not a complete
+     *                     snapshot or was written by a version this one cannot
+     *                     read
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static SnapshotReader open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            Version writtenBy = SnapshotFormat.readHeader(path,
+                    SnapshotFormat.read(channel, 0, (int) Math.min(channel.size(), SnapshotFormat.HEADER_BYTES)));
+            List<SnapshotEntry> entries = SnapshotFormat.readTableOfContents(path, channel);
+            logger.info("Opened snapshot {} written by {} with {} entries", path, writtenBy, entries.size());
+            return new SnapshotReader(path, channel, writtenBy, entries);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the version of Atomstate that wrote the snapshot.
+     *
+     * @return the version
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public Version getWrittenBy() {
+        return writtenBy;
+    }
+
+    /**
+     * Returns the entries of the snapshot.
+     *
+     * @return the entries in file order
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public List<SnapshotEntry> getEntries() {
+        return List.copyOf(entries.values());
+    }
+
+    /**
+     * Looks up an entry by name.
+     *
+     * @param name the name of the entry
+     * @return the entry, or empty if the snapshot has none of that name
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public Optional<SnapshotEntry> getEntry(String name) {
+        return Optional.ofNullable(entries.get(name));
+    }
+
+    /**
+     * Reads and verifies a small entry, such as serialized metadata, into
+     * memory.
+     *
+     * @param name the name of the entry
+     * @return the content of the entry
+     * @throws IOException              if the entry cannot be read or is corrupted
+     * @throws IllegalArgumentException if the snapshot has no entry of that
+     *                                  name or it is too large for an array
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public byte[] readBytes(String name) throws IOException {
+        SnapshotEntry entry = entry(name);
+        if (entry.size() > Integer.MAX_VALUE - SnapshotFormat.CHUNK_HEADER_BYTES) {
+            throw new IllegalArgumentException("Snapshot entry too large to read into memory: " + name);
+        }
+        byte[] data = new byte[(int) entry.size()];
+        long position = entry.offset();
+        int filled = 0;
+        for (int chunk = 0; chunk < entry.chunks(); chunk++) {
+            ByteBuffer header = SnapshotFormat.read(channel, position, SnapshotFormat.CHUNK_HEADER_BYTES);
+            int length = chunkLength(entry, header.getInt(0), filled);
+            ByteBuffer content = SnapshotFormat.read(channel, position + SnapshotFormat.CHUNK_HEADER_BYTES, length);
+            if (SnapshotFormat.checksum(content.duplicate()) != header.getInt(4)) {
+                throw corrupted(entry, chunk);
+            }
+            content.get(data, filled, length);
+            filled += length;
+            position += SnapshotFormat.CHUNK_HEADER_BYTES + length;
+        }
+        return data;
+    }
+
+    /**
+     * Verifies an entry and restores it to a file, replacing an existing one.
+     * The file is written to a temporary file that is synced and moved into
+     * place, so a failed restore leaves no partial file behind.
+     *
+     * @param name   the name of the entry
+     * @param target the file to restore to
+     * @throws IOException              if the entry is corrupted or the file cannot
+     *                                  be written
+     * @throws IllegalArgumentException if the snapshot has no entry of that name
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void restore(String name, Path target) throws IOException {
+        SnapshotEntry entry = entry(name);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel output = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             Arena arena = Arena.ofConfined()) {
+            long regionBytes = entry.size() + (long) entry.chunks() * SnapshotFormat.CHUNK_HEADER_BYTES;
+            if (entry.offset() + regionBytes > channel.size()) {
+                throw new IOException("Truncated snapshot entry " + name + " in " + path);
+            }
+            MemorySegment region = regionBytes == 0 ? MemorySegment.NULL
+                    : channel.map(FileChannel.MapMode.READ_ONLY, entry.offset(), regionBytes, arena);
+            long position = 0;
+            long restored = 0;
+            for (int chunk = 0; chunk < entry.chunks(); chunk++) {
+                int length = chunkLength(entry, region.get(INT, position), restored);
+                int checksum = region.get(INT, position + 4);
+                long data = position + SnapshotFormat.CHUNK_HEADER_BYTES;
+                if (SnapshotFormat.checksum(region.asSlice(data, length).asByteBuffer()) != checksum) {
+                    throw corrupted(entry, chunk);
+                }
+                long transferred = 0;
+                while (transferred < length) {
+                    transferred += channel.transferTo(entry.offset() + data + transferred, length - transferred,
+                            output);
+                }
+                restored += length;
+                position = data + length;
+            }
+            output.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        logger.debug("Restored snapshot entry {} of {} bytes to {}", name, entry.size(), target);
+    }
+
+    /**
+     * Restores all entries to files of the same names in a directory. Entries
+     * are verified and restored in parallel, at most one per CPU of the
+     * permit. Indexes that are not part of the snapshot are rebuilt by the
+     * caller afterwards, under the same permit.
+     *
+     * @param directory the directory, created if needed
+     * @param permit    the permit granting the CPUs of the restore, which is not closed
+     * @return the number of restored bytes
+     * @throws IOException              if an entry is corrupted or cannot be
+     *                                  written; entries restored before stay in place
+     * @throws InterruptedException     if the calling thread is interrupted
+     * @throws IllegalArgumentException if the permit is released
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long restoreAll(Path directory, CpuPermit permit) throws IOException, InterruptedException {
+        if (permit.isReleased()) {
+            throw new IllegalArgumentException("CPU permit is already released");
+        }
+        Files.createDirectories(directory);
+        List<SnapshotEntry> pending = getEntries();
+        int threads = Math.max(1, Math.min(permit.numCpus(), pending.size()));
+        long bytes = 0;
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads,
+                Thread.ofPlatform().daemon().name("snapshot-restore-", 0).factory())) {
+            List<Future<Long>> futures = new ArrayList<>(pending.size());
+            for (SnapshotEntry entry : pending) {
+                Path target = directory.resolve(entry.name()).normalize();
+                if (!target.startsWith(directory.normalize())) {
+                    throw new IOException("Snapshot entry outside of the restore directory: " + entry.name());
+                }
+                futures.add(executor.submit(() -> {
+                    restore(entry.name(), target);
+                    return entry.size();
+                }));
+            }
+            for (Future<Long> future : futures) {
+                bytes += result(future);
+            }
+        }
+        logger.info("Restored {} entries, {} bytes, from snapshot {} on {} threads", pending.size(), bytes, path,
+                threads);
+        return bytes;
+    }
+
+    /**
+     * Closes the snapshot.
+     *
+     * @throws IOException if the file cannot be closed
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Looks up an entry by name.
+     *
+     * @param name the name of the entry
+     * @return the entry
+     * @throws IllegalArgumentException if the snapshot has no entry of that name
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private SnapshotEntry entry(String name) {
+        SnapshotEntry entry = entries.get(name);
+        if (entry == null) {
+            throw new IllegalArgumentException("No snapshot entry " + name + " in " + path);
+        }
+        return entry;
+    }
+
+    /**
+     * Checks the length of a chunk against the entry it belongs to.
+     *
+     * @param entry  the entry
+     * @param length the length read from the chunk header
+     * @param before the number of bytes of the entry in earlier chunks
+     * @return the length
+     * @throws IOException if the chunk does not fit the entry
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private int chunkLength(SnapshotEntry entry, int length, long before) throws IOException {
+        if (length < 0 || before + length > entry.size()) {
+            throw new IOException("Corrupted chunk header in snapshot entry " + entry.name() + " of " + path);
+        }
+        return length;
+    }
+
+    /**
+     * Creates the error of a chunk that fails its checksum.
+     *
+     * @param entry the entry
+     * @param chunk the index of the chunk within the entry
+     * @return the error
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private IOException corrupted(SnapshotEntry entry, int chunk) {
+        return new IOException("Checksum mismatch in chunk " + chunk + " of snapshot entry " + entry.name()
+                + " of " + path);
+    }
+
+    /**
+     * Waits for the restore of an entry.
+     *
+     * @param future the pending restore
+     * @return the number of restored bytes
+     * @throws IOException          if the entry could not be restored
+     * @throws InterruptedException if the calling thread is interrupted
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static long result(Future<Long> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            } else if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException("Snapshot restore failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.snapshot;
+
+import com.atomstate.atomstate.common.utils.Default;
+import com.atomstate.atomstate.common.utils.IoPermit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Streams segment files into a snapshot, see {@link SnapshotFormat} for the
+ * format.
+ *
+ * <p>Files are copied chunk by chunk without passing through the heap: each
+ * chunk of the source is mapped to compute its checksum and then transferred
+ * to the snapshot with {@link FileChannel#transferTo(long, long,
+ * java.nio.channels.WritableByteChannel)}, which the operating system can do
+ * without copying the data to user space. An optional {@link IoPermit} paces
+ * the transfer so that a snapshot does not starve flushes and searches of
+ * disk bandwidth.</p>
+ *
+ * <p>The snapshot is written to a temporary file that is synced and moved
+ * into place on {@link #close()}, so a reader never sees a partially written
+ * snapshot. If adding an entry fails, closing deletes the temporary file.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ *     {@code try (SnapshotWriter writer = new SnapshotWriter(snapshot)) {}
+ *         {@code writer.addFile("vectors.bin", segmentDirectory.resolve("vectors.bin"));}
+ *         {@code writer.addBytes("metadata.json", metadata);}
+ *     {@code }}
+ * </pre>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class SnapshotWriter implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(SnapshotWriter.class);
+    private final Path path;
+    private final Path temp;
+    private final int chunkBytes;
+    private final IoPermit permit;
+    private final FileChannel channel;
+    private final ByteBuffer chunkHeader = ByteBuffer.allocate(SnapshotFormat.CHUNK_HEADER_BYTES)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    private final List<SnapshotEntry> entries = new ArrayList<>();
+    private final Set<String> names = new HashSet<>();
+    private boolean failed;
+    private boolean closed;
+
+    /**
+     * Starts a snapshot with chunks of {@link Default#SNAPSHOT_CHUNK_BYTES}
+     * bytes, written at full speed.
+     *
+     * @param path the snapshot file, replaced on close if it exists
+     * @throws IOException if the temporary file cannot be created
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public SnapshotWriter(Path path) throws IOException {
+        this(path, Default.SNAPSHOT_CHUNK_BYTES, null);
+    }
+
+    /**
+     * Starts a snapshot.
+     *
+     * @param path       the snapshot file, replaced on close if it exists
+     * @param chunkBytes the maximum number of bytes per checksummed chunk
+     * @param permit     the permit pacing the writes, or {@code null} to write
+     *                   at full speed
+     * @throws IOException              if the temporary file cannot be created
+     * @throws IllegalArgumentException if the chunk size is not positive
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public SnapshotWriter(Path path, int chunkBytes, IoPermit permit) throws IOException {
+        if (chunkBytes <= 0) {
+            throw new IllegalArgumentException("Invalid snapshot chunk size: " + chunkBytes);
+        }
+        this.path = path;
+        this.temp = path.resolveSibling(path.getFileName() + ".tmp");
+        this.chunkBytes = chunkBytes;
+        this.permit = permit;
+        this.channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            write(SnapshotFormat.header(chunkBytes));
+        } catch (IOException e) {
+            channel.close();
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * Streams a file into the snapshot as an entry.
+     *
+     * @param name the name of the entry
+     * @param file the file; it must not change while it is added
+     * @throws IOException              if the file cannot be read or the snapshot
+     *                                  cannot be written
+     * @throws IllegalArgumentException if the snapshot already has an entry of
+     *                                  that name
+     * @throws IllegalStateException    if the writer is closed
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void addFile(String name, Path file) throws IOException {
+        startEntry(name);
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ);
+             Arena arena = Arena.ofConfined()) {
+            long size = source.size();
+            long offset = channel.position();
+            MemorySegment mapped = size == 0 ? MemorySegment.NULL
+                    : source.map(FileChannel.MapMode.READ_ONLY, 0, size, arena);
+            int chunks = 0;
+            for (long position = 0; position < size; position += chunkBytes) {
+                int length = (int) Math.min(chunkBytes, size - position);
+                int checksum = SnapshotFormat.checksum(mapped.asSlice(position, length).asByteBuffer());
+                writeChunkHeader(length, checksum);
+                pace(length);
+                long transferred = 0;
+                while (transferred < length) {
+                    long count = source.transferTo(position + transferred, length - transferred, channel);
+                    if (count <= 0) {
+                        throw new IOException("File shrank while adding it to a snapshot: " + file);
+                    }
+                    transferred += count;
+                }
+                chunks++;
+            }
+            entries.add(new SnapshotEntry(name, size, offset, chunks));
+            logger.debug("Added {} bytes of {} to snapshot {} as {}", size, file, path, name);
+        } catch (IOException | RuntimeException e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Adds an entry from memory, such as serialized metadata.
+     *
+     * @param name the name of the entry
+     * @param data the content of the entry
+     * @throws IOException              if the snapshot cannot be written
+     * @throws IllegalArgumentException if the snapshot already has an entry of
+     *                                  that name
+     * @throws IllegalStateException    if the writer is closed
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public void addBytes(String name, byte[] data) throws IOException {
+        startEntry(name);
+        try {
+            long offset = channel.position();
+            int chunks = 0;
+            for (int position = 0; position < data.length; position += chunkBytes) {
+                int length = Math.min(chunkBytes, data.length - position);
+                writeChunkHeader(length, SnapshotFormat.checksum(ByteBuffer.wrap(data, position, length)));
+                pace(length);
+                write(ByteBuffer.wrap(data, position, length));
+                chunks++;
+            }
+            entries.add(new SnapshotEntry(name, data.length, offset, chunks));
+        } catch (IOException | RuntimeException e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the entries added so far.
+     *
+     * @return the entries in file order
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public List<SnapshotEntry> getEntries() {
+        return List.copyOf(entries);
+    }
+
+    /**
+     * Writes the table of contents, syncs the snapshot and moves it into
+     * place. If adding an entry failed, the partial snapshot is deleted
+     * instead. Subsequent calls have no effect.
+     *
+     * @throws IOException if the snapshot cannot be completed
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try (channel) {
+            if (failed) {
+                logger.warn("Discarding incomplete snapshot {}", path);
+                return;
+            }
+            write(SnapshotFormat.tableOfContents(entries, channel.position()));
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            failed = true;
+            throw e;
+        } finally {
+            if (failed) {
+                Files.deleteIfExists(temp);
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        logger.info("Wrote snapshot {} with {} entries", path, entries.size());
+    }
+
+    /**
+     * Checks that an entry can be added.
+     *
+     * @param name the name of the entry
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void startEntry(String name) {
+        if (closed) {
+            throw new IllegalStateException("Snapshot writer is closed: " + path);
+        }
+        if (!names.add(name)) {
+            throw new IllegalArgumentException("Duplicate snapshot entry: " + name);
+        }
+    }
+
+    /**
+     * Writes the header of a chunk.
+     *
+     * @param length   the number of data bytes of the chunk
+     * @param checksum the CRC32C of the data
+     * @throws IOException if the snapshot cannot be written
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void writeChunkHeader(int length, int checksum) throws IOException {
+        chunkHeader.clear();
+        chunkHeader.putInt(length).putInt(checksum).flip();
+        write(chunkHeader);
+    }
+
+    /**
+     * Writes the remaining bytes of a buffer at the end of the snapshot.
+     *
+     * @param buffer the buffer to drain
+     * @throws IOException if the snapshot cannot be written
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Waits until the permit allows writing a chunk.
+     *
+     * @param bytes the number of bytes of the chunk
+     * @throws InterruptedIOException if the current thread is interrupted while
+     *                                waiting; the interrupt status is kept
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void pace(int bytes) throws InterruptedIOException {
+        if (permit == null) {
+            return;
+        }
+        try {
+            permit.pace(bytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while pacing a snapshot write");
+        }
+    }
+}
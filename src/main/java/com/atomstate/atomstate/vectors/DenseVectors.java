@@ -0,0 +1,184 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.vectors;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Stores float vectors of a fixed dimension back to back in a single array.
+ *
+ * <p>Keeping all components in one {@code float[]} avoids an object header and
+ * a pointer per vector and keeps neighboring vectors close in memory. Vectors
+ * are appended under a lock; once {@link #add(float[])} returned, the new
+ * vector can be read concurrently from any thread. Offsets are resolved before
+ * the array is read, so a reader never sees an array older than the size it
+ * checked against.</p>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class DenseVectors implements FloatVectors {
+    private static final int MIN_CAPACITY = 16;
+    private final int dimension;
+    private final Distance distance;
+    private volatile float[] data;
+    private volatile int size;
+
+    /**
+     * Initializes empty {@code DenseVectors}.
+     *
+     * @param dimension the number of dimensions of every vector
+     * @param distance  the distance function used to compare vectors
+     * @param capacity  the number of vectors to reserve space for
+     * @throws IllegalArgumentException if the dimension is not positive or the
+     *                                  capacity is negative or too large
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public DenseVectors(int dimension, Distance distance, int capacity) {
+        if (dimension <= 0 || capacity < 0 || (long) dimension * capacity > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Invalid vector storage size: dimension=" + dimension
+                    + ", capacity=" + capacity);
+        }
+        this.dimension = dimension;
+        this.distance = distance;
+        this.data = new float[dimension * Math.max(capacity, MIN_CAPACITY)];
+    }
+
+    /**
+     * Appends a vector.
+     *
+     * @param vector the vector to append
+     * @return the point id of the vector
+     * @throws IllegalArgumentException if the vector has the wrong dimension
+     * @throws IllegalStateException    if the storage cannot grow any further
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public synchronized int add(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Vector dimension mismatch: expected=" + dimension
+                    + ", actual=" + vector.length);
+        }
+        int id = size;
+        float[] current = data;
+        if ((long) (id + 1) * dimension > current.length) {
+            long grown = Math.min((long) current.length * 2, Integer.MAX_VALUE - 8);
+            if (grown < (long) (id + 1) * dimension) {
+                throw new IllegalStateException("Vector storage is full: size=" + id);
+            }
+            current = Arrays.copyOf(current, (int) grown);
+        }
+        System.arraycopy(vector, 0, current, id * dimension, dimension);
+        data = current;
+        size = id + 1;
+        return id;
+    }
+
+    /**
+     * Copies a stored vector into the given array.
+     *
+     * @param point  the point id
+     * @param target the array to copy the vector into
+     * @return the target array
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float[] get(int point, float[] target) {
+        int pointOffset = offset(point);
+        System.arraycopy(data, pointOffset, target, 0, dimension);
+        return target;
+    }
+
+    /**
+     * Returns the distance function used to compare vectors.
+     *
+     * @return the distance function
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public Distance getDistance() {
+        return distance;
+    }
+
+    /**
+     * Returns the number of stored vectors.
+     *
+     * @return the number of stored vectors
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of dimensions of every vector.
+     *
+     * @return the number of dimensions
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * Computes the distance between two stored vectors.
+     *
+     * @param first  the id of the first point
+     * @param second the id of the second point
+     * @return the distance, smaller meaning more similar
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float distance(int first, int second) {
+        int firstOffset = offset(first);
+        int secondOffset = offset(second);
+        float[] vectors = data;
+        return distance.distance(vectors, firstOffset, vectors, secondOffset, dimension);
+    }
+
+    /**
+     * Computes the distance between a query and a stored vector.
+     *
+     * @param query the query vector
+     * @param point the id of the stored point
+     * @return the distance, smaller meaning more similar
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float distance(float[] query, int point) {
+        int pointOffset = offset(point);
+        return distance.distance(query, 0, data, pointOffset, dimension);
+    }
+
+    /**
+     * Returns the index of the first component of a stored vector.
+     *
+     * @param point the point id
+     * @return the offset into the data array
+     * @throws IndexOutOfBoundsException if the point is not stored
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private int offset(int point) {
+        return Objects.checkIndex(point, size) * dimension;
+    }
+}
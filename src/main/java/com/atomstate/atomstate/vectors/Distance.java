@@ -0,0 +1,122 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.vectors;
+
+import java.lang.foreign.MemorySegment;
+
+/**
+ * The distance functions supported for comparing vectors.
+ *
+ * <p>Every function returns a distance where smaller means more similar, so
+ * that indexes can order candidates the same way regardless of the metric.
+ * Similarities are therefore negated or inverted: {@link #DOT} returns the
+ * negative dot product and {@link #COSINE} one minus the cosine similarity.
+ * {@link #EUCLID} returns the squared Euclidean distance, which orders points
+ * like the Euclidean distance without the square root.</p>
+ *
+ * <p>The arithmetic is delegated to the {@link DistanceKernel} selected at
+ * startup by {@link DistanceKernels}, which uses SIMD instructions where the
+ * CPU supports them.</p>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public enum Distance {
+    DOT,
+    COSINE,
+    EUCLID,
+    MANHATTAN;
+
+    private static final DistanceKernel KERNEL = DistanceKernels.get();
+
+    /**
+     * Computes the distance between two vectors stored in larger arrays.
+     *
+     * @param a       the array holding the first vector
+     * @param aOffset the index of the first component of the first vector
+     * @param b       the array holding the second vector
+     * @param bOffset the index of the first component of the second vector
+     * @param length  the number of dimensions
+     * @return the distance, smaller meaning more similar
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public float distance(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        return switch (this) {
+            case DOT -> -KERNEL.dot(a, aOffset, b, bOffset, length);
+            case COSINE -> 1 - KERNEL.cosine(a, aOffset, b, bOffset, length);
+            case EUCLID -> KERNEL.squaredEuclid(a, aOffset, b, bOffset, length);
+            case MANHATTAN -> KERNEL.manhattan(a, aOffset, b, bOffset, length);
+        };
+    }
+
+    /**
+     * Computes the distance between a vector in an array and a vector stored
+     * in memory, see {@link DistanceKernel#FLOAT} for the layout.
+     *
+     * @param a       the array holding the first vector
+     * @param aOffset the index of the first component of the first vector
+     * @param b       the memory holding the second vector
+     * @param bOffset the byte offset of the second vector
+     * @param length  the number of dimensions
+     * @return the distance, smaller meaning more similar
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public float distance(float[] a, int aOffset, MemorySegment b, long bOffset, int length) {
+        return switch (this) {
+            case DOT -> -KERNEL.dot(a, aOffset, b, bOffset, length);
+            case COSINE -> 1 - KERNEL.cosine(a, aOffset, b, bOffset, length);
+            case EUCLID -> KERNEL.squaredEuclid(a, aOffset, b, bOffset, length);
+            case MANHATTAN -> KERNEL.manhattan(a, aOffset, b, bOffset, length);
+        };
+    }
+
+    /**
+     * Computes the distance between two vectors stored in memory, see
+     * {@link DistanceKernel#FLOAT} for the layout.
+     *
+     * @param a       the memory holding the first vector
+     * @param aOffset the byte offset of the first vector
+     * @param b       the memory holding the second vector
+     * @param bOffset the byte offset of the second vector
+     * @param length  the number of dimensions
+     * @return the distance, smaller meaning more similar
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public float distance(MemorySegment a, long aOffset, MemorySegment b, long bOffset, int length) {
+        return switch (this) {
+            case DOT -> -KERNEL.dot(a, aOffset, b, bOffset, length);
+            case COSINE -> 1 - KERNEL.cosine(a, aOffset, b, bOffset, length);
+            case EUCLID -> KERNEL.squaredEuclid(a, aOffset, b, bOffset, length);
+            case MANHATTAN -> KERNEL.manhattan(a, aOffset, b, bOffset, length);
+        };
+    }
+
+    /**
+     * Computes the distance between two vectors of the same length.
+     *
+     * @param a the first vector
+     * @param b the second vector
+     * @return the distance, smaller meaning more similar
+     * @throws IllegalArgumentException if the vectors differ in length
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public float distance(float[] a, float[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Vector dimensions differ: " + a.length + " != " + b.length);
+        }
+        return distance(a, 0, b, 0, a.length);
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.vectors;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+
+/**
+ * The arithmetic behind {@link Distance}, implemented once with plain loops
+ * and once with the Vector API.
+ *
+ * <p>Every function is available for two heap arrays, for a heap array and a
+ * vector stored in memory, and for two vectors stored in memory, so that
+ * distances can be computed directly on memory-mapped segments without
+ * copying. Vectors in memory are dense little-endian floats, see
+ * {@link #FLOAT}.</p>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public interface DistanceKernel {
+    /**
+     * The layout of a vector component stored in memory.
+     *
+     * @since 1.0.0
+     */
+    ValueLayout.OfFloat FLOAT = ValueLayout.JAVA_FLOAT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * Computes the dot product of two vectors.
+     *
+     * @param a       the first vector
+     * @param aOffset the index of the first component of the first vector
+     * @param b       the second vector
+     * @param bOffset the index of the first component of the second vector
+     * @param length  the number of dimensions
+     * @return the dot product
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    /**
+     * Computes the dot product of two vectors, the second one stored in memory.
+     *
+     * @param a       the first vector
+     * @param aOffset the index of the first component of the first vector
+     * @param b       the memory holding the second vector
+     * @param bOffset the byte offset of the second vector
+     * @param length  the number of dimensions
+     * @return the dot product
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    float dot(float[] a, int aOffset, MemorySegment b, long bOffset, int length);
+
+    /**
+     * Computes the dot product of two vectors stored in memory.
+     *
+     * @param a       the memory holding the first vector
+     * @param aOffset the byte offset of the first vector
+     * @param b       the memory holding the second vector
+     * @param bOffset the byte offset of the second vector
+     * @param length  the number of dimensions
+     * @return the dot product
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    float dot(MemorySegment a, long aOffset, MemorySegment b, long bOffset, int length);
+
+    /**
+     * Computes the cosine similarity of two vectors.
+     *
+     * @param a       the first vector
+     * @param aOffset the index of the first component of the first vector
+     * @param b       the second vector
+     * @param bOffset the index of the first component of the second vector
+     * @param length  the number of dimensions
+     * @return the cosine similarity, or {@code 0} if either vector is zero
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    float cosine(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    /**
+     * Computes the cosine similarity of two vectors, the second one stored in memory.
+     *
+     * @param a       the first vector
+     * @param aOffset the index of the first component of the first vector
+     * @param b       the memory holding the second vector
+     * @param bOffset the byte offset of the second vector
+     * @param length  the number of dimensions
+     * @return the cosine similarity, or {@code 0} if either vector is zero
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    float cosine(float[] a, int aOffset, MemorySegment b, long bOffset, int length);
+
+    /**
+     * Computes the cosine similarity of two vectors stored in memory.
+     *
+     * @param a       the memory holding the first vector
+     * @param aOffset the byte offset of the first vector
+     * @param b       the memory holding the second vector
+     * @param bOffset the byte offset of the second vector
+     * @param length  the number of dimensions
+     * @return the cosine similarity, or {@code 0} if either vector is zero
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    float cosine(MemorySegment a, long aOffset, MemorySegment b, long bOffset, int length);
+
+    /**
+     * Computes the squared Euclidean distance between two vectors.
+     *
+     * @param a       the first vector
+     * @param aOffset the index of the first component of the first vector
+     * @param b       the second vector
+     * @param bOffset the index of the first component of the second vector
+     * @param length  the number of dimensions
+     * @return the squared Euclidean distance
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    float squaredEuclid(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    /**
+     * Computes the squared Euclidean distance between two vectors, the second one stored in memory.
+     *
+     * @param a       the first vector
+     * @param aOffset the index of the first component of the first vector
+     * @param b       the memory holding the second vector
+     * @param bOffset the byte offset of the second vector
+     * @param length  the number of dimensions
+     * @return the squared Euclidean distance
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    float squaredEuclid(float[] a, int aOffset, MemorySegment b, long bOffset, int length);
+
+    /**
+     * Computes the squared Euclidean distance between two vectors stored in memory.
+     *
+     * @param a       the memory holding the first vector
+     * @param aOffset the byte offset of the first vector
+     * @param b       the memory holding the second vector
+     * @param bOffset the byte offset of the second vector
+     * @param length  the number of dimensions
+     * @return the squared Euclidean distance
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    float squaredEuclid(MemorySegment a, long aOffset, MemorySegment b, long bOffset, int length);
+
+    /**
+     * Computes the Manhattan distance between two vectors.
+     *
+     * @param a       the first vector
+     * @param aOffset the index of the first component of the first vector
+     * @param b       the second vector
+     * @param bOffset the index of the first component of the second vector
+     * @param length  the number of dimensions
+     * @return the Manhattan distance
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    float manhattan(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    /**
+     * Computes the Manhattan distance between two vectors, the second one stored in memory.
+     *
+     * @param a       the first vector
+     * @param aOffset the index of the first component of the first vector
+     * @param b       the memory holding the second vector
+     * @param bOffset the byte offset of the second vector
+     * @param length  the number of dimensions
+     * @return the Manhattan distance
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    float manhattan(float[] a, int aOffset, MemorySegment b, long bOffset, int length);
+
+    /**
+     * Computes the Manhattan distance between two vectors stored in memory.
+     *
+     * @param a       the memory holding the first vector
+     * @param aOffset the byte offset of the first vector
+     * @param b       the memory holding the second vector
+     * @param bOffset the byte offset of the second vector
+     * @param length  the number of dimensions
+     * @return the Manhattan distance
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    float manhattan(MemorySegment a, long aOffset, MemorySegment b, long bOffset, int length);
+}
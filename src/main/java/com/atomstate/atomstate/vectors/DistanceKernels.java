@@ -0,0 +1,117 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.vectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Optional;
+
+/**
+ * Selects the distance kernel once at startup.
+ *
+ * <p>The vectorized kernel is used if the {@code jdk.incubator.vector} module
+ * is present and the preferred vector shape holds at least
+ * {@value #MIN_LANES} floats; otherwise the scalar kernel is used. The choice
+ * can be forced with the environment variable {@code ATOMSTATE_VECTOR_KERNEL}
+ * set to {@code scalar} or {@code simd}, which is mainly useful to compare both
+ * on the same host.</p>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class DistanceKernels {
+    private static final Logger logger = LogManager.getLogger(DistanceKernels.class);
+    private static final int MIN_LANES = 4;
+    private static final DistanceKernel KERNEL = select(System.getenv("ATOMSTATE_VECTOR_KERNEL"));
+
+    /**
+     * Prevents instantiation, all methods are static.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private DistanceKernels() {
+    }
+
+    /**
+     * Returns the kernel selected at startup.
+     *
+     * @return the distance kernel
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static DistanceKernel get() {
+        return KERNEL;
+    }
+
+    /**
+     * Returns the scalar kernel.
+     *
+     * @return the scalar kernel
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static DistanceKernel scalar() {
+        return ScalarKernel.INSTANCE;
+    }
+
+    /**
+     * Returns the vectorized kernel if the Vector API is available.
+     *
+     * @return an {@code Optional} containing the vectorized kernel, or an empty
+     * {@code Optional} if the {@code jdk.incubator.vector} module is missing
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static Optional<DistanceKernel> vectorized() {
+        try {
+            SimdKernel.lanes();
+            return Optional.of(SimdKernel.INSTANCE);
+        } catch (LinkageError e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Selects the kernel for this host.
+     *
+     * @param override the forced kernel, {@code scalar} or {@code simd}, or
+     *                 {@code null} to decide by lane width
+     * @return the selected kernel
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    static DistanceKernel select(String override) {
+        if (override != null && !"scalar".equalsIgnoreCase(override) && !"simd".equalsIgnoreCase(override)) {
+            logger.warn("Unknown distance kernel, selecting by lane width: {}", override);
+            override = null;
+        }
+        Optional<DistanceKernel> vectorized = vectorized();
+        if ("scalar".equalsIgnoreCase(override)) {
+            logger.info("Using scalar distance kernel as configured");
+            return ScalarKernel.INSTANCE;
+        }
+        if (vectorized.isEmpty()) {
+            logger.warn("Vector API is not available, using scalar distance kernel. "
+                    + "Start the JVM with --add-modules jdk.incubator.vector to enable SIMD.");
+            return ScalarKernel.INSTANCE;
+        }
+        int lanes = SimdKernel.lanes();
+        if ("simd".equalsIgnoreCase(override) || lanes >= MIN_LANES) {
+            logger.info("Using SIMD distance kernel with {} float lanes", lanes);
+            return vectorized.get();
+        }
+        logger.info("Using scalar distance kernel, the preferred vector shape has only {} float lanes", lanes);
+        return ScalarKernel.INSTANCE;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.vectors;
+
+/**
+ * Stored vectors whose float components can be read back, wherever they
+ * live: on the heap in {@link DenseVectors} or off-heap in
+ * {@link MappedVectors}.
+ *
+ * <p>Quantization reads the originals through this interface, so
+ * {@link QuantizedVectors} can be built from mapped vectors and rescore
+ * against them without copying them onto the heap.</p>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public interface FloatVectors extends VectorScorer {
+
+    /**
+     * Copies a stored vector into an array.
+     *
+     * @param point  the id of the stored point
+     * @param target the array receiving the vector, at least {@link #dimension()} long
+     * @return the target array
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    float[] get(int point, float[] target);
+
+    /**
+     * Returns the distance function used to compare the vectors.
+     *
+     * @return the distance function
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    Distance getDistance();
+}
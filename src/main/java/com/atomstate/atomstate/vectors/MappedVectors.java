@@ -0,0 +1,566 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.vectors;
+
+import com.atomstate.atomstate.common.utils.Default;
+import com.atomstate.atomstate.common.utils.IoPermit;
+import com.atomstate.atomstate.common.utils.Version;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Vectors stored off-heap in a memory-mapped file.
+ *
+ * <p>The file starts with a header of {@value #HEADER_BYTES} bytes followed by
+ * the vectors in id order, each taking the fixed stride of its
+ * {@link VectorEncoding}. All numbers are little-endian. The header holds:</p>
+ * <pre>
+ *     offset  size  field
+ *          0     4  magic "ASVS"
+ *          4     4  format version
+ *          8    12  major, minor and patch of the version that wrote the file
+ *         20     4  encoding ordinal
+ *         24     4  distance ordinal
+ *         28     4  dimension
+ *         32     8  number of vectors
+ *         40     8  lower and upper end of the quantization range, INT8 only
+ *         48    16  reserved, zero
+ * </pre>
+ *
+ * <p>The file is mapped read-only into a shared {@link Arena}. Distances are
+ * computed by the {@link Distance} kernels directly on the mapped memory, so
+ * neither the heap nor the garbage collector sees the vectors and a collection
+ * may be larger than the physical memory. Pages are read by the operating
+ * system on first access; opening with {@code populate} reads the whole file
+ * up front instead, which trades a slower open for predictable first
+ * searches.</p>
+ *
+ * <p>Files are immutable. {@link #write(Path, DenseVectors)} and
+ * {@link #write(Path, QuantizedVectors)} write a temporary file, sync it and
+ * move it into place, so a reader never maps a partially written file.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ *     {@code MappedVectors.write(path, vectors);}
+ *     {@code try (MappedVectors mapped = MappedVectors.open(path, false)) {}
+ *         {@code HnswIndex index = new HnswIndex(mapped, HnswConfig.DEFAULT, mapped.size());}
+ *         {@code ...}
+ *     {@code }}
+ *
+ *     // Search int8 codes on the heap and rescore against the mapped originals
+ *     {@code try (MappedVectors mapped = MappedVectors.open(path, false);}
+ *          {@code QuantizedVectors quantized = QuantizedVectors.quantize(mapped, permit, memoryBudget).orElseThrow()) {}
+ *         {@code HnswIndex index = new HnswIndex(quantized, HnswConfig.DEFAULT, quantized.size());}
+ *         {@code ...}
+ *     {@code }}
+ * </pre>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class MappedVectors implements FloatVectors, AutoCloseable {
+    /**
+     * The number of bytes before the first vector.
+     *
+     * @since 1.0.0
+     */
+    public static final int HEADER_BYTES = 64;
+    private static final Logger logger = LogManager.getLogger(MappedVectors.class);
+    private static final int MAGIC = 0x53565341;
+    private static final int FORMAT_VERSION = 1;
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfFloat FLOAT = DistanceKernel.FLOAT;
+    private final Arena arena;
+    private final MemorySegment segment;
+    private final Version writtenBy;
+    private final VectorEncoding encoding;
+    private final Distance distance;
+    private final int dimension;
+    private final int size;
+    private final long stride;
+    private final ScalarQuantizer quantizer;
+    private final Rescoring rescoring;
+
+    /**
+     * Initializes {@code MappedVectors} over a mapped file whose header was
+     * validated.
+     *
+     * @param arena     the arena owning the mapping
+     * @param segment   the mapped file
+     * @param rescoring the rescoring against exact vectors, or {@code null}
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private MappedVectors(Arena arena, MemorySegment segment, Rescoring rescoring) {
+        this.arena = arena;
+        this.segment = segment;
+        this.writtenBy = Version.of(segment.get(INT, 8), segment.get(INT, 12), segment.get(INT, 16));
+        this.encoding = VectorEncoding.values()[segment.get(INT, 20)];
+        this.distance = Distance.values()[segment.get(INT, 24)];
+        this.dimension = segment.get(INT, 28);
+        this.size = (int) segment.get(LONG, 32);
+        this.stride = encoding.stride(dimension);
+        this.quantizer = encoding == VectorEncoding.INT8
+                ? new ScalarQuantizer(distance, dimension, segment.get(FLOAT, 40), segment.get(FLOAT, 44))
+                : null;
+        this.rescoring = rescoring;
+    }
+
+    /**
+     * Writes float vectors to a file in the {@link VectorEncoding#FLOAT32}
+     * encoding, replacing an existing file.
+     *
+     * @param path    the file to write
+     * @param vectors the vectors to write; vectors added while writing are not included
+     * @throws IOException if the file cannot be written
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static void write(Path path, DenseVectors vectors) throws IOException {
+        write(path, vectors, null);
+    }
+
+    /**
+     * Writes float vectors to a file in the {@link VectorEncoding#FLOAT32}
+     * encoding, replacing an existing file, paced by the rate limit of an I/O
+     * permit.
+     *
+     * @param path    the file to write
+     * @param vectors the vectors to write; vectors added while writing are not included
+     * @param permit  the permit pacing the write, or {@code null} to write at full speed
+     * @throws IOException if the file cannot be written
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static void write(Path path, DenseVectors vectors, IoPermit permit) throws IOException {
+        float[] vector = new float[vectors.dimension()];
+        write(path, VectorEncoding.FLOAT32, vectors.getDistance(), vectors.dimension(), vectors.size(), 0, 0, permit,
+                (buffer, point) -> {
+                    buffer.asFloatBuffer().put(vectors.get(point, vector));
+                    buffer.position(buffer.position() + vector.length * Float.BYTES);
+                });
+    }
+
+    /**
+     * Writes quantized vectors to a file in the {@link VectorEncoding#INT8}
+     * encoding, replacing an existing file. The original vectors are not
+     * written; pass them to {@link #open(Path, boolean, Rescoring)} to rescore.
+     *
+     * @param path    the file to write
+     * @param vectors the vectors to write
+     * @throws IOException if the file cannot be written
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static void write(Path path, QuantizedVectors vectors) throws IOException {
+        write(path, vectors, null);
+    }
+
+    /**
+     * Writes quantized vectors to a file in the {@link VectorEncoding#INT8}
+     * encoding, replacing an existing file, paced by the rate limit of an I/O
+     * permit.
+     *
+     * @param path    the file to write
+     * @param vectors the vectors to write
+     * @param permit  the permit pacing the write, or {@code null} to write at full speed
+     * @throws IOException if the file cannot be written
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static void write(Path path, QuantizedVectors vectors, IoPermit permit) throws IOException {
+        ScalarQuantizer quantizer = vectors.getQuantizer();
+        int dimension = vectors.dimension();
+        // The codes fit into one array, so the offset of every point fits into an int
+        byte[] codes = vectors.codes();
+        write(path, VectorEncoding.INT8, quantizer.getDistance(), dimension, vectors.size(), quantizer.getLower(),
+                quantizer.getUpper(), permit, (buffer, point) -> buffer.putFloat(vectors.correction(point))
+                        .put(codes, point * dimension, dimension));
+    }
+
+    /**
+     * Maps a vector file without rescoring.
+     *
+     * @param path     the file to map
+     * @param populate {@code true} to read the whole file into memory before
+     *                 returning; {@code false} to read pages on first access
+     * @return the mapped vectors
+     * @throws IOException if the file cannot be read or is not a valid vector file
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static MappedVectors open(Path path, boolean populate) throws IOException {
+        return open(path, populate, null);
+    }
+
+    /**
+     * Maps a vector file. Indexes searching quantized vectors fetch more
+     * candidates than requested and rescore them with the given rescoring.
+     *
+     * @param path      the file to map
+     * @param populate  {@code true} to read the whole file into memory before
+     *                  returning; {@code false} to read pages on first access
+     * @param rescoring the rescoring against exact vectors, or {@code null} for none
+     * @return the mapped vectors
+     * @throws IOException              if the file cannot be read or is not a valid vector file
+     * @throws IllegalArgumentException if the exact vectors have a different dimension
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static MappedVectors open(Path path, boolean populate, Rescoring rescoring) throws IOException {
+        Arena arena = Arena.ofShared();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MemorySegment segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+            validate(path, segment);
+            if (rescoring != null && rescoring.exact().dimension() != segment.get(INT, 28)) {
+                throw new IllegalArgumentException("Rescoring vectors have dimension " + rescoring.exact().dimension()
+                        + ", expected " + segment.get(INT, 28));
+            }
+            if (populate) {
+                segment.load();
+            }
+            MappedVectors vectors = new MappedVectors(arena, segment, rescoring);
+            logger.info("Mapped {} {} vectors of dimension {} from {} (populate={})", vectors.size, vectors.encoding,
+                    vectors.dimension, path, populate);
+            return vectors;
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the encoding of the vectors.
+     *
+     * @return the encoding
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public VectorEncoding getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Returns the distance function used to compare the vectors.
+     *
+     * @return the distance function
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public Distance getDistance() {
+        return distance;
+    }
+
+    /**
+     * Returns the version of Atomstate that wrote the file.
+     *
+     * @return the writer version
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public Version getWrittenBy() {
+        return writtenBy;
+    }
+
+    /**
+     * Returns the quantizer of {@link VectorEncoding#INT8} vectors.
+     *
+     * @return an {@code Optional} containing the quantizer, or an empty
+     * {@code Optional} for float vectors
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public Optional<ScalarQuantizer> getQuantizer() {
+        return Optional.ofNullable(quantizer);
+    }
+
+    /**
+     * Tells whether the mapped file is likely resident in physical memory.
+     *
+     * @return {@code true} if all pages are likely loaded; {@code false} otherwise
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public boolean isLoaded() {
+        return segment.isLoaded();
+    }
+
+    /**
+     * Copies a stored {@link VectorEncoding#FLOAT32} vector into an array.
+     *
+     * @param point  the id of the stored point
+     * @param target the array receiving the vector, at least {@link #dimension()} long
+     * @return the target array
+     * @throws IllegalStateException     if the vectors are quantized
+     * @throws IndexOutOfBoundsException if the point is not stored
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float[] get(int point, float[] target) {
+        if (encoding != VectorEncoding.FLOAT32) {
+            throw new IllegalStateException("Cannot read " + encoding + " vectors as floats");
+        }
+        MemorySegment.copy(segment, FLOAT, offset(point), target, 0, dimension);
+        return target;
+    }
+
+    /**
+     * Returns the number of stored vectors.
+     *
+     * @return the number of stored vectors
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of dimensions of every vector.
+     *
+     * @return the number of dimensions
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * Computes the distance between two stored vectors on the mapped memory.
+     *
+     * @param first  the id of the first point
+     * @param second the id of the second point
+     * @return the distance, smaller meaning more similar; approximate for
+     * quantized vectors
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float distance(int first, int second) {
+        long firstOffset = offset(first);
+        long secondOffset = offset(second);
+        if (quantizer == null) {
+            return distance.distance(segment, firstOffset, segment, secondOffset, dimension);
+        }
+        return quantizer.distance(segment, firstOffset + Float.BYTES, segment.get(FLOAT, firstOffset),
+                segment, secondOffset + Float.BYTES, segment.get(FLOAT, secondOffset));
+    }
+
+    /**
+     * Computes the distance between a query and a stored vector on the mapped
+     * memory. For quantized vectors prefer {@link #scorer(float[])}, which
+     * encodes the query only once.
+     *
+     * @param query the query vector
+     * @param point the id of the stored point
+     * @return the distance, smaller meaning more similar; approximate for
+     * quantized vectors
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float distance(float[] query, int point) {
+        if (quantizer == null) {
+            return distance.distance(query, 0, segment, offset(point), dimension);
+        }
+        return scorer(query).distance(point);
+    }
+
+    /**
+     * Returns a scorer comparing a query with stored points. Quantized vectors
+     * encode the query once and compare its codes with the mapped codes.
+     *
+     * @param query the query vector
+     * @return the distance from the query to stored points
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public QueryScorer scorer(float[] query) {
+        if (quantizer == null) {
+            return point -> distance.distance(query, 0, segment, offset(point), dimension);
+        }
+        byte[] encoded = new byte[dimension];
+        float correction = quantizer.encode(query, 0, encoded, 0);
+        MemorySegment codes = MemorySegment.ofArray(encoded);
+        return point -> {
+            long pointOffset = offset(point);
+            return quantizer.distance(codes, 0, correction, segment, pointOffset + Float.BYTES,
+                    segment.get(FLOAT, pointOffset));
+        };
+    }
+
+    /**
+     * Returns the rescoring given when the file was opened.
+     *
+     * @return an {@code Optional} containing the rescoring, or an empty
+     * {@code Optional} if there is none
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public Optional<Rescoring> rescoring() {
+        return Optional.ofNullable(rescoring);
+    }
+
+    /**
+     * Unmaps the file. The vectors must no longer be used by any thread.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public void close() {
+        arena.close();
+    }
+
+    /**
+     * Returns the byte offset of a stored vector in the file.
+     *
+     * @param point the point id
+     * @return the offset of the first byte of the vector
+     * @throws IndexOutOfBoundsException if the point is not stored
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private long offset(int point) {
+        return HEADER_BYTES + Objects.checkIndex(point, size) * stride;
+    }
+
+    /**
+     * Checks the header of a mapped file and that the file holds all vectors
+     * the header announces.
+     *
+     * @param path    the file, for error messages
+     * @param segment the mapped file
+     * @throws IOException if the file is not a valid vector file
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static void validate(Path path, MemorySegment segment) throws IOException {
+        if (segment.byteSize() < HEADER_BYTES || segment.get(INT, 0) != MAGIC) {
+            throw new IOException("Not a vector file: " + path);
+        }
+        int format = segment.get(INT, 4);
+        if (format != FORMAT_VERSION) {
+            throw new IOException("Unsupported vector file format " + format + ": " + path);
+        }
+        int encoding = segment.get(INT, 20);
+        int distance = segment.get(INT, 24);
+        int dimension = segment.get(INT, 28);
+        long count = segment.get(LONG, 32);
+        if (encoding < 0 || encoding >= VectorEncoding.values().length || distance < 0
+                || distance >= Distance.values().length || dimension <= 0 || count < 0 || count > Integer.MAX_VALUE) {
+            throw new IOException("Corrupted vector file header: " + path);
+        }
+        long required = HEADER_BYTES + count * VectorEncoding.values()[encoding].stride(dimension);
+        if (segment.byteSize() < required) {
+            throw new IOException("Truncated vector file " + path + ": " + segment.byteSize()
+                    + " bytes, expected " + required);
+        }
+    }
+
+    /**
+     * Writes a vector file through a temporary file that is synced and then
+     * atomically moved into place.
+     *
+     * @param path      the file to write
+     * @param encoding  the encoding of the vectors
+     * @param distance  the distance function of the vectors
+     * @param dimension the number of dimensions
+     * @param size      the number of vectors
+     * @param lower     the lower end of the quantization range
+     * @param upper     the upper end of the quantization range
+     * @param permit    the permit pacing the write, or {@code null}
+     * @param record    writes the vector of a point at the position of the buffer
+     * @throws IOException if the file cannot be written
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static void write(Path path, VectorEncoding encoding, Distance distance, int dimension, int size,
+                              float lower, float upper, IoPermit permit, ObjIntConsumer<ByteBuffer> record)
+            throws IOException {
+        int stride = Math.toIntExact(encoding.stride(dimension));
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(WRITE_BUFFER_BYTES, HEADER_BYTES + stride))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        Version version = Default.ATOMSTATE_VERSION;
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION)
+                .putInt(version.getMajor()).putInt(version.getMinor()).putInt(version.getPatch())
+                .putInt(encoding.ordinal()).putInt(distance.ordinal()).putInt(dimension)
+                .putLong(size).putFloat(lower).putFloat(upper)
+                .position(HEADER_BYTES);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int point = 0; point < size; point++) {
+                if (buffer.remaining() < stride) {
+                    flush(channel, buffer, permit);
+                }
+                int end = buffer.position() + stride;
+                record.accept(buffer, point);
+                while (buffer.position() < end) {
+                    buffer.put((byte) 0);
+                }
+            }
+            flush(channel, buffer, permit);
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        logger.debug("Wrote {} {} vectors of dimension {} to {}", size, encoding, dimension, path);
+    }
+
+    /**
+     * Writes the content of a buffer to a channel and clears the buffer.
+     *
+     * @param channel the channel to write to
+     * @param buffer  the buffer to drain
+     * @param permit  the permit pacing the write, or {@code null}
+     * @throws IOException if the channel cannot be written
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer, IoPermit permit) throws IOException {
+        buffer.flip();
+        if (permit != null) {
+            permit.write(channel, buffer);
+        }
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
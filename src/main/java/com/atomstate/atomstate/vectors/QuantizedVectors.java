@@ -0,0 +1,327 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.vectors;
+
+import com.atomstate.atomstate.common.utils.CpuPermit;
+import com.atomstate.atomstate.common.utils.Default;
+import com.atomstate.atomstate.common.utils.MemoryBudget;
+import com.atomstate.atomstate.common.utils.MemoryPermit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * An int8 copy of float vectors that indexes search instead of the originals.
+ *
+ * <p>Every component takes one byte instead of four, so the quantized tier
+ * needs a quarter of the memory and moves a quarter of the bytes through the
+ * caches per distance. Distances are approximate; {@link #rescoring()} tells
+ * indexes to fetch more candidates than requested and to rescore them against
+ * the original vectors, which restores the ranking of the final result.</p>
+ *
+ * <p>The quantized vectors are a snapshot of the originals at the time of
+ * {@link #quantize}; vectors added later are not part of it. Their memory is
+ * reserved from a {@link MemoryBudget} and held until they are closed.</p>
+ *
+ * <p>The originals are read where they are stored and never copied. Quantizing
+ * {@link MappedVectors} is the intended deployment for large collections: the
+ * heap then holds the codes only, and rescoring reads the few candidates of
+ * each search from the mapped file. Quantizing {@link DenseVectors} keeps the
+ * originals on the heap next to the codes.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ *     {@code try (QuantizedVectors quantized = QuantizedVectors.quantize(vectors, permit, memoryBudget)}
+ *             {@code .orElseThrow()) {}
+ *         {@code HnswIndex index = new HnswIndex(quantized, HnswConfig.DEFAULT, quantized.size());}
+ *     {@code }}
+ * </pre>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class QuantizedVectors implements VectorScorer, AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(QuantizedVectors.class);
+    private static final int ENCODE_CHUNK = 1024;
+    private final FloatVectors original;
+    private final ScalarQuantizer quantizer;
+    private final Rescoring rescoring;
+    private final int dimension;
+    private final int size;
+    private final byte[] codes;
+    private final float[] corrections;
+    private final MemoryPermit memory;
+
+    /**
+     * Initializes empty {@code QuantizedVectors} to be filled by {@link #encode}.
+     *
+     * @param original     the original vectors
+     * @param quantizer    the trained quantizer
+     * @param oversampling the factor by which to enlarge the candidate list for rescoring
+     * @param memory       the reservation of the memory of the codes
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private QuantizedVectors(FloatVectors original, ScalarQuantizer quantizer, double oversampling,
+                             MemoryPermit memory) {
+        this.memory = memory;
+        this.original = original;
+        this.quantizer = quantizer;
+        this.rescoring = new Rescoring(original, oversampling);
+        this.dimension = original.dimension();
+        this.size = original.size();
+        this.codes = new byte[size * dimension];
+        this.corrections = new float[size];
+    }
+
+    /**
+     * Quantizes vectors with the default quantile and oversampling, see
+     * {@link Default#QUANTIZATION_QUANTILE} and
+     * {@link Default#QUANTIZATION_OVERSAMPLING}.
+     *
+     * @param original the vectors to quantize
+     * @param permit   the CPUs to encode the vectors with
+     * @param memory   the budget to reserve the memory of the codes from
+     * @return an {@code Optional} containing the quantized vectors, or an empty
+     * {@code Optional} if there are no vectors or their memory is not available
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static Optional<QuantizedVectors> quantize(FloatVectors original, CpuPermit permit, MemoryBudget memory) {
+        return quantize(original, Default.QUANTIZATION_QUANTILE, Default.QUANTIZATION_OVERSAMPLING, permit, memory);
+    }
+
+    /**
+     * Quantizes vectors, encoding them in parallel on the CPUs of the permit.
+     * The memory of the codes is reserved without waiting: quantization is an
+     * optimization, so the originals are searched instead if the budget has
+     * no room for it.
+     *
+     * @param original     the vectors to quantize
+     * @param quantile     the share of component values the code range must cover
+     * @param oversampling the factor by which to enlarge the candidate list for rescoring
+     * @param permit       the CPUs to encode the vectors with
+     * @param memory       the budget to reserve the memory of the codes from
+     * @return an {@code Optional} containing the quantized vectors, or an empty
+     * {@code Optional} if there are no vectors or their memory is not available
+     * @throws IllegalArgumentException if the quantile or oversampling is invalid,
+     *                                  or the codes would not fit into a single array
+     * @throws IllegalStateException    if the originals are mapped int8 vectors
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static Optional<QuantizedVectors> quantize(FloatVectors original, float quantile, double oversampling,
+                                                      CpuPermit permit, MemoryBudget memory) {
+        if (original.size() == 0) {
+            return Optional.empty();
+        }
+        if ((long) original.size() * original.dimension() > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many vectors to quantize: vectors=" + original.size()
+                    + ", dimension=" + original.dimension());
+        }
+        long required = memoryUsage(original.size(), original.dimension());
+        Optional<MemoryPermit> reserved = memory.tryAcquire(required);
+        if (reserved.isEmpty()) {
+            logger.warn("Not quantizing vectors: vectors={}, required={} bytes, available={} bytes",
+                    original.size(), required, memory.getAvailableBytes());
+            return Optional.empty();
+        }
+        QuantizedVectors quantized;
+        try {
+            ScalarQuantizer quantizer = ScalarQuantizer.train(original, quantile);
+            quantized = new QuantizedVectors(original, quantizer, oversampling, reserved.get());
+            quantized.encode(Math.max(permit.numCpus(), 1));
+        } catch (RuntimeException | Error e) {
+            reserved.get().close();
+            throw e;
+        }
+        logger.info("Quantized {} vectors to int8: lower={}, scale={}", quantized.size,
+                quantized.quantizer.getLower(), quantized.quantizer.getScale());
+        return Optional.of(quantized);
+    }
+
+    /**
+     * Returns the number of bytes quantized vectors take.
+     *
+     * @param vectors   the number of vectors
+     * @param dimension the number of dimensions
+     * @return the memory usage in bytes
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static long memoryUsage(int vectors, int dimension) {
+        return (long) vectors * (dimension + Float.BYTES);
+    }
+
+    /**
+     * Returns the quantizer the vectors were encoded with.
+     *
+     * @return the quantizer
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public ScalarQuantizer getQuantizer() {
+        return quantizer;
+    }
+
+    /**
+     * Returns the number of quantized vectors.
+     *
+     * @return the number of quantized vectors
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of dimensions of every vector.
+     *
+     * @return the number of dimensions
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * Computes the approximate distance between two quantized vectors.
+     *
+     * @param first  the id of the first point
+     * @param second the id of the second point
+     * @return the approximate distance, smaller meaning more similar
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float distance(int first, int second) {
+        return quantizer.distance(codes, offset(first), corrections[first], codes, offset(second), corrections[second]);
+    }
+
+    /**
+     * Computes the approximate distance between a query and a quantized vector.
+     * Prefer {@link #scorer(float[])}, which encodes the query only once.
+     *
+     * @param query the query vector
+     * @param point the id of the stored point
+     * @return the approximate distance, smaller meaning more similar
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float distance(float[] query, int point) {
+        return scorer(query).distance(point);
+    }
+
+    /**
+     * Encodes the query and returns a scorer comparing its codes with the
+     * codes of stored points.
+     *
+     * @param query the query vector
+     * @return the approximate distance from the query to stored points
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public QueryScorer scorer(float[] query) {
+        byte[] encoded = new byte[dimension];
+        float correction = quantizer.encode(query, 0, encoded, 0);
+        return point -> quantizer.distance(encoded, 0, correction, codes, offset(point), corrections[point]);
+    }
+
+    /**
+     * Returns the rescoring against the original vectors.
+     *
+     * @return an {@code Optional} containing the rescoring
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public Optional<Rescoring> rescoring() {
+        return Optional.of(rescoring);
+    }
+
+    /**
+     * Returns the memory of the codes to its budget. The vectors must not be
+     * used afterwards. Subsequent calls have no effect.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public void close() {
+        memory.close();
+    }
+
+    /**
+     * Returns the codes of all vectors, {@link #dimension()} bytes per vector
+     * in id order. The array is shared and must not be modified.
+     *
+     * @return the codes
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    byte[] codes() {
+        return codes;
+    }
+
+    /**
+     * Returns the correction of a vector.
+     *
+     * @param point the point id
+     * @return the correction computed when the vector was encoded
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    float correction(int point) {
+        return corrections[point];
+    }
+
+    /**
+     * Encodes all vectors, in chunks spread over the given number of threads.
+     *
+     * @param threads the number of threads
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void encode(int threads) {
+        int chunks = (size + ENCODE_CHUNK - 1) / ENCODE_CHUNK;
+        try (ForkJoinPool pool = new ForkJoinPool(threads)) {
+            pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(chunk -> {
+                float[] vector = new float[dimension];
+                int end = Math.min(size, (chunk + 1) * ENCODE_CHUNK);
+                for (int id = chunk * ENCODE_CHUNK; id < end; id++) {
+                    corrections[id] = quantizer.encode(original.get(id, vector), 0, codes, offset(id));
+                }
+            })).join();
+        }
+    }
+
+    /**
+     * Returns the index of the first code of a vector.
+     *
+     * @param point the point id
+     * @return the offset into the codes
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private int offset(int point) {
+        return point * dimension;
+    }
+}
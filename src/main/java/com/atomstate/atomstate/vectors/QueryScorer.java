@@ -0,0 +1,35 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.vectors;
+
+/**
+ * Computes the distance from a fixed query to stored points.
+ *
+ * <p>Scorers that need to prepare the query, e.g. quantize it, do so once
+ * when the {@code QueryScorer} is created instead of for every point.</p>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@FunctionalInterface
+public interface QueryScorer {
+
+    /**
+     * Computes the distance from the query to a stored point.
+     *
+     * @param point the id of the stored point
+     * @return the distance, smaller meaning more similar
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    float distance(int point);
+}
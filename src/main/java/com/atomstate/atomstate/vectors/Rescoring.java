@@ -0,0 +1,51 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.vectors;
+
+/**
+ * Describes how to correct the approximate distances of a scorer.
+ *
+ * <p>An index searching approximate vectors fetches
+ * {@link #candidates(int)} points instead of the requested limit, computes
+ * the exact distance of each with {@code exact} and keeps the closest ones.</p>
+ *
+ * @param exact        the scorer computing exact distances
+ * @param oversampling the factor by which to enlarge the candidate list
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public record Rescoring(VectorScorer exact, double oversampling) {
+    /**
+     * Validates the rescoring.
+     *
+     * @throws IllegalArgumentException if the oversampling is less than one
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public Rescoring {
+        if (!(oversampling >= 1)) {
+            throw new IllegalArgumentException("Invalid oversampling: " + oversampling);
+        }
+    }
+
+    /**
+     * Returns the number of approximate candidates to rescore for a limit.
+     *
+     * @param limit the number of points requested
+     * @return the number of candidates to fetch
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int candidates(int limit) {
+        return (int) Math.min(Integer.MAX_VALUE, Math.ceil(limit * oversampling));
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.vectors;
+
+import java.lang.foreign.MemorySegment;
+
+/**
+ * Computes distances with plain loops.
+ *
+ * <p>Used when the Vector API is not available or would not pay off, and as
+ * the reference the vectorized kernel is tested against.</p>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class ScalarKernel implements DistanceKernel {
+    /**
+     * The shared instance, the kernel holds no state.
+     *
+     * @since 1.0.0
+     */
+    static final ScalarKernel INSTANCE = new ScalarKernel();
+
+    /**
+     * Use {@link #INSTANCE}.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private ScalarKernel() {
+    }
+
+    /**
+     * Computes the dot product of two vectors.
+     *
+     * @param a       the first vector
+     * @param aOffset the index of the first component of the first vector
+     * @param b       the second vector
+     * @param bOffset the index of the first component of the second vector
+     * @param length  the number of dimensions
+     * @return the dot product
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float sum = 0;
+        for (int i = 0; i < length; i++) {
+            float x = a[aOffset + i];
+            float y = b[bOffset + i];
+            sum += x * y;
+        }
+        return sum;
+    }
+
+    /**
+     * Computes the dot product of two vectors, the second one stored in memory.
+     *
+     * @param a       the first vector
+     * @param aOffset the index of the first component of the first vector
+     * @param b       the memory holding the second vector
+     * @param bOffset the byte offset of the second vector
+     * @param length  the number of dimensions
+     * @return the dot product
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float dot(float[] a, int aOffset, MemorySegment b, long bOffset, int length) {
+        float sum = 0;
+        for (int i = 0; i < length; i++) {
+            float x = a[aOffset + i];
+            float y = b.get(FLOAT, bOffset + (long) i * Float.BYTES);
+            sum += x * y;
+        }
+        return sum;
+    }
+
+    /**
+     * Computes the dot product of two vectors stored in memory.
+     *
+     * @param a       the memory holding the first vector
+     * @param aOffset the byte offset of the first vector
+     * @param b       the memory holding the second vector
+     * @param bOffset the byte offset of the second vector
+     * @param length  the number of dimensions
+     * @return the dot product
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float dot(MemorySegment a, long aOffset, MemorySegment b, long bOffset, int length) {
+        float sum = 0;
+        for (int i = 0; i < length; i++) {
+            float x = a.get(FLOAT, aOffset + (long) i * Float.BYTES);
+            float y = b.get(FLOAT, bOffset + (long) i * Float.BYTES);
+            sum += x * y;
+        }
+        return sum;
+    }
+
+    /**
+     * Computes the cosine similarity of two vectors.
+     *
+     * @param a       the first vector
+     * @param aOffset the index of the first component of the first vector
+     * @param b       the second vector
+     * @param bOffset the index of the first component of the second vector
+     * @param length  the number of dimensions
+     * @return the cosine similarity, or {@code 0} if either vector is zero
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float cosine(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float dot = 0;
+        float normA = 0;
+        float normB = 0;
+        for (int i = 0; i < length; i++) {
+            float x = a[aOffset + i];
+            float y = b[bOffset + i];
+            dot += x * y;
+            normA += x * x;
+            normB += y * y;
+        }
+        return cosine(dot, normA, normB);
+    }
+
+    /**
+     * Computes the cosine similarity of two vectors, the second one stored in memory.
+     *
+     * @param a       the first vector
+     * @param aOffset the index of the first component of the first vector
+     * @param b       the memory holding the second vector
+     * @param bOffset the byte offset of the second vector
+     * @param length  the number of dimensions
+     * @return the cosine similarity, or {@code 0} if either vector is zero
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float cosine(float[] a, int aOffset, MemorySegment b, long bOffset, int length) {
+        float dot = 0;
+        float normA = 0;
+        float normB = 0;
+        for (int i = 0; i < length; i++) {
+            float x = a[aOffset + i];
+            float y = b.get(FLOAT, bOffset + (long) i * Float.BYTES);
+            dot += x * y;
+            normA += x * x;
+            normB += y * y;
+        }
+        return cosine(dot, normA, normB);
+    }
+
+    /**
+     * Computes the cosine similarity of two vectors stored in memory.
+     *
+     * @param a       the memory holding the first vector
+     * @param aOffset the byte offset of the first vector
+     * @param b       the memory holding the second vector
+     * @param bOffset the byte offset of the second vector
+     * @param length  the number of dimensions
+     * @return the cosine similarity, or {@code 0} if either vector is zero
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float cosine(MemorySegment a, long aOffset, MemorySegment b, long bOffset, int length) {
+        float dot = 0;
+        float normA = 0;
+        float normB = 0;
+        for (int i = 0; i < length; i++) {
+            float x = a.get(FLOAT, aOffset + (long) i * Float.BYTES);
+            float y = b.get(FLOAT, bOffset + (long) i * Float.BYTES);
+            dot += x * y;
+            normA += x * x;
+            normB += y * y;
+        }
+        return cosine(dot, normA, normB);
+    }
+
+    /**
+     * Computes the squared Euclidean distance between two vectors.
+     *
+     * @param a       the first vector
+     * @param aOffset the index of the first component of the first vector
+     * @param b       the second vector
+     * @param bOffset the index of the first component of the second vector
+     * @param length  the number of dimensions
+     * @return the squared Euclidean distance
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float squaredEuclid(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float sum = 0;
+        for (int i = 0; i < length; i++) {
+            float x = a[aOffset + i];
+            float y = b[bOffset + i];
+            sum += (x - y) * (x - y);
+        }
+        return sum;
+    }
+
+    /**
+     * Computes the squared Euclidean distance between two vectors, the second one stored in memory.
+     *
+     * @param a       the first vector
+     * @param aOffset the index of the first component of the first vector
+     * @param b       the memory holding the second vector
+     * @param bOffset the byte offset of the second vector
+     * @param length  the number of dimensions
+     * @return the squared Euclidean distance
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float squaredEuclid(float[] a, int aOffset, MemorySegment b, long bOffset, int length) {
+        float sum = 0;
+        for (int i = 0; i < length; i++) {
+            float x = a[aOffset + i];
+            float y = b.get(FLOAT, bOffset + (long) i * Float.BYTES);
+            sum += (x - y) * (x - y);
+        }
+        return sum;
+    }
+
+    /**
+     * Computes the squared Euclidean distance between two vectors stored in memory.
+     *
+     * @param a       the memory holding the first vector
+     * @param aOffset the byte offset of the first vector
+     * @param b       the memory holding the second vector
+     * @param bOffset the byte offset of the second vector
+     * @param length  the number of dimensions
+     * @return the squared Euclidean distance
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float squaredEuclid(MemorySegment a, long aOffset, MemorySegment b, long bOffset, int length) {
+        float sum = 0;
+        for (int i = 0; i < length; i++) {
+            float x = a.get(FLOAT, aOffset + (long) i * Float.BYTES);
+            float y = b.get(FLOAT, bOffset + (long) i * Float.BYTES);
+            sum += (x - y) * (x - y);
+        }
+        return sum;
+    }
+
+    /**
+     * Computes the Manhattan distance between two vectors.
+     *
+     * @param a       the first vector
+     * @param aOffset the index of the first component of the first vector
+     * @param b       the second vector
+     * @param bOffset the index of the first component of the second vector
+     * @param length  the number of dimensions
+     * @return the Manhattan distance
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float manhattan(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float sum = 0;
+        for (int i = 0; i < length; i++) {
+            float x = a[aOffset + i];
+            float y = b[bOffset + i];
+            sum += Math.abs(x - y);
+        }
+        return sum;
+    }
+
+    /**
+     * Computes the Manhattan distance between two vectors, the second one stored in memory.
+     *
+     * @param a       the first vector
+     * @param aOffset the index of the first component of the first vector
+     * @param b       the memory holding the second vector
+     * @param bOffset the byte offset of the second vector
+     * @param length  the number of dimensions
+     * @return the Manhattan distance
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float manhattan(float[] a, int aOffset, MemorySegment b, long bOffset, int length) {
+        float sum = 0;
+        for (int i = 0; i < length; i++) {
+            float x = a[aOffset + i];
+            float y = b.get(FLOAT, bOffset + (long) i * Float.BYTES);
+            sum += Math.abs(x - y);
+        }
+        return sum;
+    }
+
+    /**
+     * Computes the Manhattan distance between two vectors stored in memory.
+     *
+     * @param a       the memory holding the first vector
+     * @param aOffset the byte offset of the first vector
+     * @param b       the memory holding the second vector
+     * @param bOffset the byte offset of the second vector
+     * @param length  the number of dimensions
+     * @return the Manhattan distance
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float manhattan(MemorySegment a, long aOffset, MemorySegment b, long bOffset, int length) {
+        float sum = 0;
+        for (int i = 0; i < length; i++) {
+            float x = a.get(FLOAT, aOffset + (long) i * Float.BYTES);
+            float y = b.get(FLOAT, bOffset + (long) i * Float.BYTES);
+            sum += Math.abs(x - y);
+        }
+        return sum;
+    }
+
+    /**
+     * Combines the sums of a cosine computation into the similarity.
+     *
+     * @param dot   the dot product
+     * @param normA the squared norm of the first vector
+     * @param normB the squared norm of the second vector
+     * @return the cosine similarity, or {@code 0} if either vector is zero
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    static float cosine(float dot, float normA, float normB) {
+        if (normA == 0 || normB == 0) {
+            return 0;
+        }
+        return dot / (float) Math.sqrt((double) normA * normB);
+    }
+}
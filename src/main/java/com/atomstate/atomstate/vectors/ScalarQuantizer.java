@@ -0,0 +1,402 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.vectors;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.Arrays;
+
+/**
+ * Maps float components to 8-bit codes within a range learned from the
+ * vectors of a collection.
+ *
+ * <p>The range covers the central {@code quantile} of all component values, so
+ * a few outliers do not stretch it and waste most of the 256 levels. Values
+ * outside the range are clamped. A component {@code x} is stored as the
+ * unsigned code {@code round((x - lower) / scale)} and read back as
+ * {@code lower + scale * code}.</p>
+ *
+ * <p>Distances are computed on the codes directly with integer arithmetic.
+ * For {@link Distance#DOT} the products of the offset terms are folded into
+ * a per-vector correction, the sum of its codes, which is computed once when
+ * the vector is encoded. {@link Distance#COSINE} vectors are normalized before
+ * they are encoded and then compared like {@link Distance#DOT}.</p>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class ScalarQuantizer {
+    private static final int LEVELS = 255;
+    private static final int MAX_SAMPLE_COMPONENTS = 1_000_000;
+    private final Distance distance;
+    private final int dimension;
+    private final float lower;
+    private final float upper;
+    private final float scale;
+
+    /**
+     * Initializes a {@code ScalarQuantizer} for a known range.
+     *
+     * @param distance  the distance function of the vectors
+     * @param dimension the number of dimensions
+     * @param lower     the smallest value that can be represented
+     * @param upper     the largest value that can be represented
+     * @throws IllegalArgumentException if the range is empty or not finite
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    ScalarQuantizer(Distance distance, int dimension, float lower, float upper) {
+        if (!Float.isFinite(lower) || !Float.isFinite(upper) || lower > upper) {
+            throw new IllegalArgumentException("Invalid quantization range: lower=" + lower + ", upper=" + upper);
+        }
+        this.distance = distance;
+        this.dimension = dimension;
+        this.lower = lower;
+        this.upper = upper;
+        this.scale = upper > lower ? (upper - lower) / LEVELS : 1;
+    }
+
+    /**
+     * Learns the range of the codes from a sample of the stored vectors.
+     *
+     * @param vectors  the vectors to sample
+     * @param quantile the share of component values the range must cover, e.g.
+     *                 {@code 0.99} to ignore the most extreme percent
+     * @return the trained quantizer
+     * @throws IllegalArgumentException if the quantile is not within (0, 1] or
+     *                                  there are no vectors
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public static ScalarQuantizer train(FloatVectors vectors, float quantile) {
+        if (!(quantile > 0 && quantile <= 1) || vectors.size() == 0) {
+            throw new IllegalArgumentException("Cannot train quantizer: quantile=" + quantile
+                    + ", vectors=" + vectors.size());
+        }
+        int dimension = vectors.dimension();
+        int sampled = Math.max(1, Math.min(vectors.size(), MAX_SAMPLE_COMPONENTS / dimension));
+        float[] values = new float[sampled * dimension];
+        float[] vector = new float[dimension];
+        boolean normalize = vectors.getDistance() == Distance.COSINE;
+        for (int i = 0; i < sampled; i++) {
+            // Spread the sample evenly over the collection
+            vectors.get((int) ((long) i * vectors.size() / sampled), vector);
+            float factor = normalize ? inverseNorm(vector, 0, dimension) : 1;
+            for (int d = 0; d < dimension; d++) {
+                values[i * dimension + d] = vector[d] * factor;
+            }
+        }
+        Arrays.sort(values);
+        int cut = (int) ((values.length - 1) * (1 - quantile) / 2);
+        return new ScalarQuantizer(vectors.getDistance(), dimension, values[cut], values[values.length - 1 - cut]);
+    }
+
+    /**
+     * Encodes a vector.
+     *
+     * @param vector      the array holding the vector
+     * @param offset      the index of the first component of the vector
+     * @param codes       receives the codes
+     * @param codesOffset the index of the first code to write
+     * @return the correction of the vector, to be passed to
+     * {@link #distance(byte[], int, float, byte[], int, float)}
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public float encode(float[] vector, int offset, byte[] codes, int codesOffset) {
+        float factor = distance == Distance.COSINE ? inverseNorm(vector, offset, dimension) : 1;
+        int sum = 0;
+        for (int d = 0; d < dimension; d++) {
+            float value = Math.min(Math.max((vector[offset + d] * factor - lower) / scale, 0), LEVELS);
+            int code = Math.round(value);
+            codes[codesOffset + d] = (byte) code;
+            sum += code;
+        }
+        return sum;
+    }
+
+    /**
+     * Computes the approximate distance between two encoded vectors.
+     *
+     * @param a           the array holding the codes of the first vector
+     * @param aOffset     the index of the first code of the first vector
+     * @param aCorrection the correction of the first vector
+     * @param b           the array holding the codes of the second vector
+     * @param bOffset     the index of the first code of the second vector
+     * @param bCorrection the correction of the second vector
+     * @return the approximate distance, smaller meaning more similar
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public float distance(byte[] a, int aOffset, float aCorrection, byte[] b, int bOffset, float bCorrection) {
+        return switch (distance) {
+            case DOT -> -dot(a, aOffset, aCorrection, b, bOffset, bCorrection);
+            case COSINE -> 1 - dot(a, aOffset, aCorrection, b, bOffset, bCorrection);
+            case EUCLID -> scale * scale * squaredDifference(a, aOffset, b, bOffset, dimension);
+            case MANHATTAN -> scale * absoluteDifference(a, aOffset, b, bOffset, dimension);
+        };
+    }
+
+    /**
+     * Computes the approximate distance between two encoded vectors held in
+     * memory segments, e.g. a heap segment wrapping the codes of a query and a
+     * memory-mapped file.
+     *
+     * @param a           the segment holding the codes of the first vector
+     * @param aOffset     the byte offset of the first code of the first vector
+     * @param aCorrection the correction of the first vector
+     * @param b           the segment holding the codes of the second vector
+     * @param bOffset     the byte offset of the first code of the second vector
+     * @param bCorrection the correction of the second vector
+     * @return the approximate distance, smaller meaning more similar
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public float distance(MemorySegment a, long aOffset, float aCorrection,
+                          MemorySegment b, long bOffset, float bCorrection) {
+        return switch (distance) {
+            case DOT -> -dot(aCorrection, bCorrection, dotCodes(a, aOffset, b, bOffset, dimension));
+            case COSINE -> 1 - dot(aCorrection, bCorrection, dotCodes(a, aOffset, b, bOffset, dimension));
+            case EUCLID -> scale * scale * squaredDifference(a, aOffset, b, bOffset, dimension);
+            case MANHATTAN -> scale * absoluteDifference(a, aOffset, b, bOffset, dimension);
+        };
+    }
+
+    /**
+     * Returns the distance function of the encoded vectors.
+     *
+     * @return the distance function
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public Distance getDistance() {
+        return distance;
+    }
+
+    /**
+     * Returns the number of dimensions of the encoded vectors.
+     *
+     * @return the number of dimensions
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * Returns the smallest value that can be represented.
+     *
+     * @return the lower end of the range
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public float getLower() {
+        return lower;
+    }
+
+    /**
+     * Returns the largest value that can be represented.
+     *
+     * @return the upper end of the range
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public float getUpper() {
+        return upper;
+    }
+
+    /**
+     * Returns the difference between two adjacent codes.
+     *
+     * @return the step between codes
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public float getScale() {
+        return scale;
+    }
+
+    /**
+     * Approximates the dot product of two encoded vectors by expanding
+     * {@code sum((lower + scale * a) * (lower + scale * b))}.
+     *
+     * @param a           the array holding the codes of the first vector
+     * @param aOffset     the index of the first code of the first vector
+     * @param aCorrection the sum of the codes of the first vector
+     * @param b           the array holding the codes of the second vector
+     * @param bOffset     the index of the first code of the second vector
+     * @param bCorrection the sum of the codes of the second vector
+     * @return the approximate dot product
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private float dot(byte[] a, int aOffset, float aCorrection, byte[] b, int bOffset, float bCorrection) {
+        return dot(aCorrection, bCorrection, dotCodes(a, aOffset, b, bOffset, dimension));
+    }
+
+    /**
+     * Combines the dot product of two code vectors with their corrections.
+     *
+     * @param aCorrection the sum of the codes of the first vector
+     * @param bCorrection the sum of the codes of the second vector
+     * @param codes       the dot product of the unsigned codes
+     * @return the approximate dot product
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private float dot(float aCorrection, float bCorrection, int codes) {
+        return dimension * lower * lower
+                + lower * scale * (aCorrection + bCorrection)
+                + scale * scale * codes;
+    }
+
+    /**
+     * Computes the dot product of two code vectors. The loop only uses integer
+     * arithmetic, which the JIT compiler vectorizes on its own.
+     *
+     * @param a       the array holding the first codes
+     * @param aOffset the index of the first code of the first vector
+     * @param b       the array holding the second codes
+     * @param bOffset the index of the first code of the second vector
+     * @param length  the number of codes
+     * @return the dot product of the unsigned codes
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static int dotCodes(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += (a[aOffset + i] & 0xFF) * (b[bOffset + i] & 0xFF);
+        }
+        return sum;
+    }
+
+    /**
+     * Computes the sum of squared differences of two code vectors.
+     *
+     * @param a       the array holding the first codes
+     * @param aOffset the index of the first code of the first vector
+     * @param b       the array holding the second codes
+     * @param bOffset the index of the first code of the second vector
+     * @param length  the number of codes
+     * @return the sum of squared differences of the unsigned codes
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static int squaredDifference(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            int diff = (a[aOffset + i] & 0xFF) - (b[bOffset + i] & 0xFF);
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    /**
+     * Computes the sum of absolute differences of two code vectors.
+     *
+     * @param a       the array holding the first codes
+     * @param aOffset the index of the first code of the first vector
+     * @param b       the array holding the second codes
+     * @param bOffset the index of the first code of the second vector
+     * @param length  the number of codes
+     * @return the sum of absolute differences of the unsigned codes
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static int absoluteDifference(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += Math.abs((a[aOffset + i] & 0xFF) - (b[bOffset + i] & 0xFF));
+        }
+        return sum;
+    }
+
+    /**
+     * Computes the dot product of two code vectors held in memory segments.
+     *
+     * @param a       the segment holding the first codes
+     * @param aOffset the byte offset of the first code of the first vector
+     * @param b       the segment holding the second codes
+     * @param bOffset the byte offset of the first code of the second vector
+     * @param length  the number of codes
+     * @return the dot product of the unsigned codes
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static int dotCodes(MemorySegment a, long aOffset, MemorySegment b, long bOffset, int length) {
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += (a.get(ValueLayout.JAVA_BYTE, aOffset + i) & 0xFF) * (b.get(ValueLayout.JAVA_BYTE, bOffset + i) & 0xFF);
+        }
+        return sum;
+    }
+
+    /**
+     * Computes the sum of squared differences of two code vectors held in
+     * memory segments.
+     *
+     * @param a       the segment holding the first codes
+     * @param aOffset the byte offset of the first code of the first vector
+     * @param b       the segment holding the second codes
+     * @param bOffset the byte offset of the first code of the second vector
+     * @param length  the number of codes
+     * @return the sum of squared differences of the unsigned codes
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static int squaredDifference(MemorySegment a, long aOffset, MemorySegment b, long bOffset, int length) {
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            int diff = (a.get(ValueLayout.JAVA_BYTE, aOffset + i) & 0xFF) - (b.get(ValueLayout.JAVA_BYTE, bOffset + i) & 0xFF);
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    /**
+     * Computes the sum of absolute differences of two code vectors held in
+     * memory segments.
+     *
+     * @param a       the segment holding the first codes
+     * @param aOffset the byte offset of the first code of the first vector
+     * @param b       the segment holding the second codes
+     * @param bOffset the byte offset of the first code of the second vector
+     * @param length  the number of codes
+     * @return the sum of absolute differences of the unsigned codes
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static int absoluteDifference(MemorySegment a, long aOffset, MemorySegment b, long bOffset, int length) {
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += Math.abs((a.get(ValueLayout.JAVA_BYTE, aOffset + i) & 0xFF) - (b.get(ValueLayout.JAVA_BYTE, bOffset + i) & 0xFF));
+        }
+        return sum;
+    }
+
+    /**
+     * Computes the factor that normalizes a vector to unit length.
+     *
+     * @param vector the array holding the vector
+     * @param offset the index of the first component of the vector
+     * @param length the number of dimensions
+     * @return the inverse norm, or {@code 1} for a zero vector
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static float inverseNorm(float[] vector, int offset, int length) {
+        float norm = DistanceKernels.get().dot(vector, offset, vector, offset, length);
+        return norm > 0 ? (float) (1 / Math.sqrt(norm)) : 1;
+    }
+}
@@ -0,0 +1,454 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.vectors;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteOrder;
+
+/**
+ * Computes distances with the Vector API on the widest vector shape the CPU
+ * supports, e.g. 8 floats per operation with AVX2 and 16 with AVX-512.
+ *
+ * <p>Each loop keeps lane-wise partial sums and reduces them once at the end,
+ * then handles the remaining components with a scalar tail. Multiplication
+ * and addition are kept separate rather than fused, because a fused
+ * multiply-add is emulated and very slow on CPUs without FMA units.</p>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class SimdKernel implements DistanceKernel {
+    /**
+     * The vector shape used by all loops.
+     *
+     * @since 1.0.0
+     */
+    static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    /**
+     * The shared instance, the kernel holds no state.
+     *
+     * @since 1.0.0
+     */
+    static final SimdKernel INSTANCE = new SimdKernel();
+
+    /**
+     * Use {@link #INSTANCE}.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private SimdKernel() {
+    }
+
+    /**
+     * Returns the number of floats processed per vector operation.
+     *
+     * @return the number of lanes of the preferred species
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    static int lanes() {
+        return SPECIES.length();
+    }
+
+    /**
+     * Computes the dot product of two vectors.
+     *
+     * @param a       the first vector
+     * @param aOffset the index of the first component of the first vector
+     * @param b       the second vector
+     * @param bOffset the index of the first component of the second vector
+     * @param length  the number of dimensions
+     * @return the dot product
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector x = FloatVector.fromArray(SPECIES, a, aOffset + i);
+            FloatVector y = FloatVector.fromArray(SPECIES, b, bOffset + i);
+            sum = sum.add(x.mul(y));
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            float x = a[aOffset + i];
+            float y = b[bOffset + i];
+            result += x * y;
+        }
+        return result;
+    }
+
+    /**
+     * Computes the dot product of two vectors, the second one stored in memory.
+     *
+     * @param a       the first vector
+     * @param aOffset the index of the first component of the first vector
+     * @param b       the memory holding the second vector
+     * @param bOffset the byte offset of the second vector
+     * @param length  the number of dimensions
+     * @return the dot product
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float dot(float[] a, int aOffset, MemorySegment b, long bOffset, int length) {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector x = FloatVector.fromArray(SPECIES, a, aOffset + i);
+            FloatVector y = FloatVector.fromMemorySegment(SPECIES, b, bOffset + (long) i * Float.BYTES, ByteOrder.LITTLE_ENDIAN);
+            sum = sum.add(x.mul(y));
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            float x = a[aOffset + i];
+            float y = b.get(FLOAT, bOffset + (long) i * Float.BYTES);
+            result += x * y;
+        }
+        return result;
+    }
+
+    /**
+     * Computes the dot product of two vectors stored in memory.
+     *
+     * @param a       the memory holding the first vector
+     * @param aOffset the byte offset of the first vector
+     * @param b       the memory holding the second vector
+     * @param bOffset the byte offset of the second vector
+     * @param length  the number of dimensions
+     * @return the dot product
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float dot(MemorySegment a, long aOffset, MemorySegment b, long bOffset, int length) {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector x = FloatVector.fromMemorySegment(SPECIES, a, aOffset + (long) i * Float.BYTES, ByteOrder.LITTLE_ENDIAN);
+            FloatVector y = FloatVector.fromMemorySegment(SPECIES, b, bOffset + (long) i * Float.BYTES, ByteOrder.LITTLE_ENDIAN);
+            sum = sum.add(x.mul(y));
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            float x = a.get(FLOAT, aOffset + (long) i * Float.BYTES);
+            float y = b.get(FLOAT, bOffset + (long) i * Float.BYTES);
+            result += x * y;
+        }
+        return result;
+    }
+
+    /**
+     * Computes the cosine similarity of two vectors.
+     *
+     * @param a       the first vector
+     * @param aOffset the index of the first component of the first vector
+     * @param b       the second vector
+     * @param bOffset the index of the first component of the second vector
+     * @param length  the number of dimensions
+     * @return the cosine similarity, or {@code 0} if either vector is zero
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float cosine(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector dot = FloatVector.zero(SPECIES);
+        FloatVector normA = FloatVector.zero(SPECIES);
+        FloatVector normB = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector x = FloatVector.fromArray(SPECIES, a, aOffset + i);
+            FloatVector y = FloatVector.fromArray(SPECIES, b, bOffset + i);
+            dot = dot.add(x.mul(y));
+            normA = normA.add(x.mul(x));
+            normB = normB.add(y.mul(y));
+        }
+        float dotSum = dot.reduceLanes(VectorOperators.ADD);
+        float normASum = normA.reduceLanes(VectorOperators.ADD);
+        float normBSum = normB.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            float x = a[aOffset + i];
+            float y = b[bOffset + i];
+            dotSum += x * y;
+            normASum += x * x;
+            normBSum += y * y;
+        }
+        return ScalarKernel.cosine(dotSum, normASum, normBSum);
+    }
+
+    /**
+     * Computes the cosine similarity of two vectors, the second one stored in memory.
+     *
+     * @param a       the first vector
+     * @param aOffset the index of the first component of the first vector
+     * @param b       the memory holding the second vector
+     * @param bOffset the byte offset of the second vector
+     * @param length  the number of dimensions
+     * @return the cosine similarity, or {@code 0} if either vector is zero
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float cosine(float[] a, int aOffset, MemorySegment b, long bOffset, int length) {
+        FloatVector dot = FloatVector.zero(SPECIES);
+        FloatVector normA = FloatVector.zero(SPECIES);
+        FloatVector normB = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector x = FloatVector.fromArray(SPECIES, a, aOffset + i);
+            FloatVector y = FloatVector.fromMemorySegment(SPECIES, b, bOffset + (long) i * Float.BYTES, ByteOrder.LITTLE_ENDIAN);
+            dot = dot.add(x.mul(y));
+            normA = normA.add(x.mul(x));
+            normB = normB.add(y.mul(y));
+        }
+        float dotSum = dot.reduceLanes(VectorOperators.ADD);
+        float normASum = normA.reduceLanes(VectorOperators.ADD);
+        float normBSum = normB.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            float x = a[aOffset + i];
+            float y = b.get(FLOAT, bOffset + (long) i * Float.BYTES);
+            dotSum += x * y;
+            normASum += x * x;
+            normBSum += y * y;
+        }
+        return ScalarKernel.cosine(dotSum, normASum, normBSum);
+    }
+
+    /**
+     * Computes the cosine similarity of two vectors stored in memory.
+     *
+     * @param a       the memory holding the first vector
+     * @param aOffset the byte offset of the first vector
+     * @param b       the memory holding the second vector
+     * @param bOffset the byte offset of the second vector
+     * @param length  the number of dimensions
+     * @return the cosine similarity, or {@code 0} if either vector is zero
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float cosine(MemorySegment a, long aOffset, MemorySegment b, long bOffset, int length) {
+        FloatVector dot = FloatVector.zero(SPECIES);
+        FloatVector normA = FloatVector.zero(SPECIES);
+        FloatVector normB = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector x = FloatVector.fromMemorySegment(SPECIES, a, aOffset + (long) i * Float.BYTES, ByteOrder.LITTLE_ENDIAN);
+            FloatVector y = FloatVector.fromMemorySegment(SPECIES, b, bOffset + (long) i * Float.BYTES, ByteOrder.LITTLE_ENDIAN);
+            dot = dot.add(x.mul(y));
+            normA = normA.add(x.mul(x));
+            normB = normB.add(y.mul(y));
+        }
+        float dotSum = dot.reduceLanes(VectorOperators.ADD);
+        float normASum = normA.reduceLanes(VectorOperators.ADD);
+        float normBSum = normB.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            float x = a.get(FLOAT, aOffset + (long) i * Float.BYTES);
+            float y = b.get(FLOAT, bOffset + (long) i * Float.BYTES);
+            dotSum += x * y;
+            normASum += x * x;
+            normBSum += y * y;
+        }
+        return ScalarKernel.cosine(dotSum, normASum, normBSum);
+    }
+
+    /**
+     * Computes the squared Euclidean distance between two vectors.
+     *
+     * @param a       the first vector
+     * @param aOffset the index of the first component of the first vector
+     * @param b       the second vector
+     * @param bOffset the index of the first component of the second vector
+     * @param length  the number of dimensions
+     * @return the squared Euclidean distance
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float squaredEuclid(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector x = FloatVector.fromArray(SPECIES, a, aOffset + i);
+            FloatVector y = FloatVector.fromArray(SPECIES, b, bOffset + i);
+            FloatVector diff = x.sub(y);
+            sum = sum.add(diff.mul(diff));
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            float x = a[aOffset + i];
+            float y = b[bOffset + i];
+            result += (x - y) * (x - y);
+        }
+        return result;
+    }
+
+    /**
+     * Computes the squared Euclidean distance between two vectors, the second one stored in memory.
+     *
+     * @param a       the first vector
+     * @param aOffset the index of the first component of the first vector
+     * @param b       the memory holding the second vector
+     * @param bOffset the byte offset of the second vector
+     * @param length  the number of dimensions
+     * @return the squared Euclidean distance
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float squaredEuclid(float[] a, int aOffset, MemorySegment b, long bOffset, int length) {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector x = FloatVector.fromArray(SPECIES, a, aOffset + i);
+            FloatVector y = FloatVector.fromMemorySegment(SPECIES, b, bOffset + (long) i * Float.BYTES, ByteOrder.LITTLE_ENDIAN);
+            FloatVector diff = x.sub(y);
+            sum = sum.add(diff.mul(diff));
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            float x = a[aOffset + i];
+            float y = b.get(FLOAT, bOffset + (long) i * Float.BYTES);
+            result += (x - y) * (x - y);
+        }
+        return result;
+    }
+
+    /**
+     * Computes the squared Euclidean distance between two vectors stored in memory.
+     *
+     * @param a       the memory holding the first vector
+     * @param aOffset the byte offset of the first vector
+     * @param b       the memory holding the second vector
+     * @param bOffset the byte offset of the second vector
+     * @param length  the number of dimensions
+     * @return the squared Euclidean distance
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float squaredEuclid(MemorySegment a, long aOffset, MemorySegment b, long bOffset, int length) {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector x = FloatVector.fromMemorySegment(SPECIES, a, aOffset + (long) i * Float.BYTES, ByteOrder.LITTLE_ENDIAN);
+            FloatVector y = FloatVector.fromMemorySegment(SPECIES, b, bOffset + (long) i * Float.BYTES, ByteOrder.LITTLE_ENDIAN);
+            FloatVector diff = x.sub(y);
+            sum = sum.add(diff.mul(diff));
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            float x = a.get(FLOAT, aOffset + (long) i * Float.BYTES);
+            float y = b.get(FLOAT, bOffset + (long) i * Float.BYTES);
+            result += (x - y) * (x - y);
+        }
+        return result;
+    }
+
+    /**
+     * Computes the Manhattan distance between two vectors.
+     *
+     * @param a       the first vector
+     * @param aOffset the index of the first component of the first vector
+     * @param b       the second vector
+     * @param bOffset the index of the first component of the second vector
+     * @param length  the number of dimensions
+     * @return the Manhattan distance
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float manhattan(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector x = FloatVector.fromArray(SPECIES, a, aOffset + i);
+            FloatVector y = FloatVector.fromArray(SPECIES, b, bOffset + i);
+            sum = sum.add(x.sub(y).abs());
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            float x = a[aOffset + i];
+            float y = b[bOffset + i];
+            result += Math.abs(x - y);
+        }
+        return result;
+    }
+
+    /**
+     * Computes the Manhattan distance between two vectors, the second one stored in memory.
+     *
+     * @param a       the first vector
+     * @param aOffset the index of the first component of the first vector
+     * @param b       the memory holding the second vector
+     * @param bOffset the byte offset of the second vector
+     * @param length  the number of dimensions
+     * @return the Manhattan distance
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float manhattan(float[] a, int aOffset, MemorySegment b, long bOffset, int length) {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector x = FloatVector.fromArray(SPECIES, a, aOffset + i);
+            FloatVector y = FloatVector.fromMemorySegment(SPECIES, b, bOffset + (long) i * Float.BYTES, ByteOrder.LITTLE_ENDIAN);
+            sum = sum.add(x.sub(y).abs());
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            float x = a[aOffset + i];
+            float y = b.get(FLOAT, bOffset + (long) i * Float.BYTES);
+            result += Math.abs(x - y);
+        }
+        return result;
+    }
+
+    /**
+     * Computes the Manhattan distance between two vectors stored in memory.
+     *
+     * @param a       the memory holding the first vector
+     * @param aOffset the byte offset of the first vector
+     * @param b       the memory holding the second vector
+     * @param bOffset the byte offset of the second vector
+     * @param length  the number of dimensions
+     * @return the Manhattan distance
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public float manhattan(MemorySegment a, long aOffset, MemorySegment b, long bOffset, int length) {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector x = FloatVector.fromMemorySegment(SPECIES, a, aOffset + (long) i * Float.BYTES, ByteOrder.LITTLE_ENDIAN);
+            FloatVector y = FloatVector.fromMemorySegment(SPECIES, b, bOffset + (long) i * Float.BYTES, ByteOrder.LITTLE_ENDIAN);
+            sum = sum.add(x.sub(y).abs());
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            float x = a.get(FLOAT, aOffset + (long) i * Float.BYTES);
+            float y = b.get(FLOAT, bOffset + (long) i * Float.BYTES);
+            result += Math.abs(x - y);
+        }
+        return result;
+    }
+}
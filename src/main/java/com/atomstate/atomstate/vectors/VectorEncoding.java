@@ -0,0 +1,48 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.vectors;
+
+/**
+ * The encodings of vectors in a {@link MappedVectors} file.
+ *
+ * <p>Every vector of a file takes the same number of bytes, its stride, so the
+ * position of a vector follows from its id without an offset table.</p>
+ *
+ * <ul>
+ *     <li>{@link #FLOAT32} stores the components as little-endian floats.</li>
+ *     <li>{@link #INT8} stores the correction of a {@link ScalarQuantizer} as a
+ *     little-endian float followed by one unsigned code per component, padded
+ *     to a multiple of four bytes.</li>
+ * </ul>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public enum VectorEncoding {
+    FLOAT32,
+    INT8;
+
+    /**
+     * Returns the number of bytes a vector takes in this encoding.
+     *
+     * @param dimension the number of dimensions
+     * @return the stride of a vector in bytes
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long stride(int dimension) {
+        return switch (this) {
+            case FLOAT32 -> (long) dimension * Float.BYTES;
+            case INT8 -> Float.BYTES + ((dimension + Float.BYTES - 1L) & -Float.BYTES);
+        };
+    }
+}
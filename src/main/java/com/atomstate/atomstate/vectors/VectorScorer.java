@@ -0,0 +1,96 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.vectors;
+
+import java.util.Optional;
+
+/**
+ * Computes distances between the stored vectors of a segment, and between a
+ * query and the stored vectors, addressed by their point ids.
+ *
+ * <p>Indexes only see point ids and distances through this interface, so the
+ * same graph code runs on plain float vectors, quantized vectors or vectors
+ * that live outside the heap. Implementations must allow concurrent calls
+ * once the addressed points have been stored.</p>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public interface VectorScorer {
+
+    /**
+     * Returns the number of stored vectors. Point ids range from {@code 0} to
+     * {@code size() - 1}.
+     *
+     * @return the number of stored vectors
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    int size();
+
+    /**
+     * Returns the number of dimensions of the stored vectors.
+     *
+     * @return the number of dimensions
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    int dimension();
+
+    /**
+     * Computes the distance between two stored vectors.
+     *
+     * @param first  the id of the first point
+     * @param second the id of the second point
+     * @return the distance, smaller meaning more similar
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    float distance(int first, int second);
+
+    /**
+     * Computes the distance between a query and a stored vector.
+     *
+     * @param query the query vector
+     * @param point the id of the stored point
+     * @return the distance, smaller meaning more similar
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    float distance(float[] query, int point);
+
+    /**
+     * Prepares the distance computation for a query that is compared with many
+     * stored points.
+     *
+     * @param query the query vector
+     * @return the distance from the query to stored points
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    default QueryScorer scorer(float[] query) {
+        return point -> distance(query, point);
+    }
+
+    /**
+     * Returns how to correct the distances of this scorer if they are only
+     * approximate.
+     *
+     * @return an {@code Optional} containing the rescoring, or an empty
+     * {@code Optional} if the distances are exact
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    default Optional<Rescoring> rescoring() {
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,26 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.wal;
+
+import com.atomstate.atomstate.common.utils.Version;
+
+/**
+ * A record read back from a {@link WriteAheadLog}.
+ *
+ * @param sequence  the sequence number assigned when the record was appended
+ * @param writtenBy the version of Atomstate that wrote the record
+ * @param payload   the payload of the record
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public record WalRecord(long sequence, Version writtenBy, byte[] payload) {
+}
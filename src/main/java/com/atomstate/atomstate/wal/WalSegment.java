@@ -0,0 +1,229 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.wal;
+
+import com.atomstate.atomstate.common.utils.Default;
+import com.atomstate.atomstate.common.utils.Version;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.zip.CRC32C;
+
+/**
+ * The binary format of a segment file of a {@link WriteAheadLog}.
+ *
+ * <p>A segment starts with a header of {@link #HEADER_BYTES} little-endian
+ * bytes: a magic number, the format version, the major, minor and patch
+ * version of Atomstate that wrote it, see {@link Default#ATOMSTATE_VERSION},
+ * and the sequence number of its first record. Every record of the segment
+ * is tagged with that version. Records follow back to back, each made of the
+ * payload length, a CRC32C checksum, the sequence number and the payload. The
+ * checksum covers the sequence number and the payload, so a torn write at
+ * the end of a segment is detected and cut off on recovery.</p>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class WalSegment {
+    static final int HEADER_BYTES = 32;
+    static final int RECORD_HEADER_BYTES = 16;
+    private static final int MAGIC = 0x4C415741;
+    private static final int FORMAT_VERSION = 1;
+    private static final String PREFIX = "wal-";
+    private static final String SUFFIX = ".log";
+
+    /**
+     * Prevents instantiation of this utility class.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private WalSegment() {
+    }
+
+    /**
+     * Returns the file name of the segment starting with a sequence number.
+     * Names sort in the order of the segments.
+     *
+     * @param firstSequence the sequence number of the first record
+     * @return the file name
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    static String fileName(long firstSequence) {
+        return String.format("%s%020d%s", PREFIX, firstSequence, SUFFIX);
+    }
+
+    /**
+     * Parses the first sequence number of a segment from its file name.
+     *
+     * @param path the segment file
+     * @return the sequence number, or an empty {@code OptionalLong} if the
+     * file is not a segment
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    static OptionalLong firstSequence(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)) {
+            return OptionalLong.empty();
+        }
+        try {
+            return OptionalLong.of(Long.parseLong(name, PREFIX.length(), name.length() - SUFFIX.length(), 10));
+        } catch (NumberFormatException e) {
+            return OptionalLong.empty();
+        }
+    }
+
+    /**
+     * Writes the header of a new segment at the start of a channel.
+     *
+     * @param channel       the channel of the new segment
+     * @param firstSequence the sequence number of the first record
+     * @throws IOException if the header cannot be written
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    static void writeHeader(FileChannel channel, long firstSequence) throws IOException {
+        Version version = Default.ATOMSTATE_VERSION;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(MAGIC).putInt(FORMAT_VERSION)
+                .putInt(version.getMajor()).putInt(version.getMinor()).putInt(version.getPatch())
+                .putLong(firstSequence);
+        header.clear();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    /**
+     * Encodes a record at the position of a buffer.
+     *
+     * @param target   the buffer, with at least {@link #RECORD_HEADER_BYTES}
+     *                 plus the payload length remaining
+     * @param sequence the sequence number
+     * @param payload  the payload
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    static void encode(ByteBuffer target, long sequence, byte[] payload) {
+        target.putInt(payload.length).putInt(checksum(sequence, payload)).putLong(sequence).put(payload);
+    }
+
+    /**
+     * Reads a whole segment and decodes its records up to the first one that
+     * is incomplete or fails its checksum.
+     *
+     * @param path the segment file
+     * @return the decoded segment
+     * @throws IOException if the file cannot be read or its header is invalid
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    static Scan scan(Path path) throws IOException {
+        ByteBuffer content;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("WAL segment too large: " + path);
+            }
+            content = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+            while (content.hasRemaining() && channel.read(content) >= 0) {
+                // Read until the buffer is full
+            }
+            content.flip();
+        }
+        if (content.remaining() < HEADER_BYTES || content.getInt(0) != MAGIC) {
+            throw new IOException("Not a WAL segment: " + path);
+        }
+        int format = content.getInt(4);
+        if (format != FORMAT_VERSION) {
+            throw new IOException("Unsupported WAL segment format " + format + ": " + path);
+        }
+        Version writtenBy;
+        try {
+            writtenBy = Version.of(content.getInt(8), content.getInt(12), content.getInt(16));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupted WAL segment header: " + path, e);
+        }
+        long firstSequence = content.getLong(20);
+        List<WalRecord> records = new ArrayList<>();
+        int position = HEADER_BYTES;
+        while (content.limit() - position >= RECORD_HEADER_BYTES) {
+            int length = content.getInt(position);
+            if (length < 0 || length > content.limit() - position - RECORD_HEADER_BYTES) {
+                break;
+            }
+            int checksum = content.getInt(position + 4);
+            long sequence = content.getLong(position + 8);
+            byte[] payload = new byte[length];
+            content.get(position + RECORD_HEADER_BYTES, payload);
+            if (checksum(sequence, payload) != checksum) {
+                break;
+            }
+            records.add(new WalRecord(sequence, writtenBy, payload));
+            position += RECORD_HEADER_BYTES + length;
+        }
+        return new Scan(writtenBy, firstSequence, records, position, content.limit());
+    }
+
+    /**
+     * Computes the checksum of a record.
+     *
+     * @param sequence the sequence number
+     * @param payload  the payload
+     * @return the CRC32C of the sequence number and the payload
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static int checksum(long sequence, byte[] payload) {
+        CRC32C crc = new CRC32C();
+        for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+            crc.update((int) (sequence >>> shift));
+        }
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * The decoded content of a segment.
+     *
+     * @param writtenBy     the version of Atomstate that wrote the segment
+     * @param firstSequence the sequence number of the first record
+     * @param records       the valid records, in order
+     * @param validBytes    the number of bytes up to the end of the last valid record
+     * @param fileBytes     the size of the file
+     * @author Atomstate
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    record Scan(Version writtenBy, long firstSequence, List<WalRecord> records, long validBytes, long fileBytes) {
+
+        /**
+         * Checks whether the segment ends with bytes that are not a valid record.
+         *
+         * @return {@code true} if the segment has an invalid tail; {@code false} otherwise
+         * @author Atomstate
+         * @since 1.0.0
+         */
+        boolean isTorn() {
+            return validBytes < fileBytes;
+        }
+    }
+}
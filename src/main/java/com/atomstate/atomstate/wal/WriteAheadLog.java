@@ -0,0 +1,613 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.wal;
+
+import com.atomstate.atomstate.common.utils.CpuPermit;
+import com.atomstate.atomstate.common.utils.Default;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * A durable, segment-rolling write-ahead log with group commit.
+ *
+ * <p>Appends are queued and written by a single writer thread. The writer
+ * waits up to the commit window after the first queued append for more
+ * appends to arrive, writes all of them with one buffered write and makes
+ * them durable with a single {@code fsync}. The future of every append
+ * completes with its sequence number once the batch is synced. Under load,
+ * the appends queued during one sync form the next batch, so the number of
+ * syncs per second stays bounded while the number of appends grows.</p>
+ *
+ * <p>The log is a directory of segment files, see {@link WalSegment} for the
+ * format. The writer starts a new segment once the current one exceeds the
+ * configured size, or when the current one was written by another version
+ * of Atomstate. Opening a log recovers from a crash by cutting off a torn
+ * record at the end of the last segment. Segments whose records have all
+ * been persisted elsewhere are dropped with
+ * {@link #removeSegmentsBefore(long)}.</p>
+ *
+ * <p>On startup, {@link #replay(long, CpuPermit, Consumer)} reads and verifies
+ * the segments on as many threads as a {@link CpuPermit} grants, while the
+ * records are handed to the consumer on the calling thread in sequence
+ * order.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ *     {@code try (WriteAheadLog wal = new WriteAheadLog(directory)) {}
+ *         {@code wal.replay(checkpoint + 1, permit, record -> apply(record.payload()));}
+ *         {@code long sequence = wal.append(payload).join();}
+ *     {@code }}
+ * </pre>
+ *
+ * @author Atomstate
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class WriteAheadLog implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(WriteAheadLog.class);
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+    private static final AtomicInteger WRITER_IDS = new AtomicInteger();
+    private final Path directory;
+    private final long segmentBytes;
+    private final long commitWindowNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final ArrayDeque<PendingAppend> pending = new ArrayDeque<>();
+    private final LongAdder appends = new LongAdder();
+    private final LongAdder syncs = new LongAdder();
+    private final Thread writer;
+    private long nextSequence;
+    private boolean closed;
+    private IOException failure;
+    private volatile long durableSequence;
+    // Owned by the writer thread once it is started
+    private FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * Opens or creates a write-ahead log with segments of
+     * {@link Default#WAL_SEGMENT_BYTES} bytes and a commit window of
+     * {@link Default#WAL_COMMIT_WINDOW}.
+     *
+     * @param directory the directory of the segment files
+     * @throws IOException if the log cannot be opened or recovered
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public WriteAheadLog(Path directory) throws IOException {
+        this(directory, Default.WAL_SEGMENT_BYTES, Default.WAL_COMMIT_WINDOW);
+    }
+
+    /**
+     * Opens or creates a write-ahead log.
+     *
+     * @param directory    the directory of the segment files
+     * @param segmentBytes the size after which a new segment is started
+     * @param commitWindow the maximum time an append waits for others to
+     *                     share its sync, or zero to only batch the appends
+     *                     queued during the previous sync
+     * @throws IOException              if the log cannot be opened or recovered
+     * @throws IllegalArgumentException if the segment size is too small or the
+     *                                  window is negative
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public WriteAheadLog(Path directory, long segmentBytes, Duration commitWindow) throws IOException {
+        if (segmentBytes <= WalSegment.HEADER_BYTES || commitWindow.isNegative()) {
+            throw new IllegalArgumentException("Invalid WAL configuration: segmentBytes=" + segmentBytes
+                    + ", commitWindow=" + commitWindow);
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.commitWindowNanos = commitWindow.toNanos();
+        Files.createDirectories(directory);
+        List<Path> segments = segments(directory);
+        if (segments.isEmpty()) {
+            nextSequence = 1;
+            startSegment(nextSequence);
+        } else {
+            recover(segments.getLast());
+        }
+        durableSequence = nextSequence - 1;
+        writer = Thread.ofPlatform().daemon().name("wal-writer-" + WRITER_IDS.incrementAndGet()).start(this::writeLoop);
+        logger.info("Opened WAL in {} at sequence {}", directory, nextSequence);
+    }
+
+    /**
+     * Appends a record. The record is written by the writer thread together
+     * with other records appended within the commit window.
+     *
+     * @param payload the payload of the record, which must not be modified afterwards
+     * @return a future completing with the sequence number of the record once
+     * it is durable, or failing with an {@link IOException} if it could not
+     * be written
+     * @throws IllegalStateException if the log is closed
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public CompletableFuture<Long> append(byte[] payload) {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Write-ahead log is closed: " + directory);
+            }
+            if (failure != null) {
+                return CompletableFuture.failedFuture(failure);
+            }
+            PendingAppend append = new PendingAppend(nextSequence++, payload, System.nanoTime(),
+                    new CompletableFuture<>());
+            pending.add(append);
+            if (pending.size() == 1) {
+                appended.signal();
+            }
+            appends.increment();
+            return append.future();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replays the records of the log from a sequence number on. Segments are
+     * read and verified in parallel, at most one per CPU of the permit, and
+     * the records are passed to the consumer on the calling thread in
+     * sequence order. Meant to run on startup, before records are appended.
+     *
+     * @param fromSequence the sequence number of the first record to replay
+     * @param permit       the permit granting the CPUs of the replay, which is not closed
+     * @param consumer     applies a record
+     * @return the number of replayed records
+     * @throws IOException              if a segment cannot be read, is corrupted,
+     *                                  records are missing or a segment was written
+     *                                  by a newer major version
+     * @throws InterruptedException     if the calling thread is interrupted
+     * @throws IllegalArgumentException if the permit is released
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long replay(long fromSequence, CpuPermit permit, Consumer<WalRecord> consumer)
+            throws IOException, InterruptedException {
+        if (permit.isReleased()) {
+            throw new IllegalArgumentException("CPU permit is already released");
+        }
+        List<Path> segments = segments(directory);
+        int first = 0;
+        for (int i = 1; i < segments.size(); i++) {
+            if (WalSegment.firstSequence(segments.get(i)).orElseThrow() <= fromSequence) {
+                first = i;
+            }
+        }
+        int threads = Math.max(1, Math.min(permit.numCpus(), segments.size() - first));
+        long replayed = 0;
+        long expected = -1;
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads,
+                Thread.ofPlatform().daemon().name("wal-replay-", 0).factory())) {
+            ArrayDeque<Future<WalSegment.Scan>> window = new ArrayDeque<>();
+            int next = first;
+            while (next < segments.size() && window.size() < threads) {
+                Path segment = segments.get(next++);
+                window.add(executor.submit(() -> WalSegment.scan(segment)));
+            }
+            for (int index = first; index < segments.size(); index++) {
+                WalSegment.Scan scan = result(window.poll());
+                if (next < segments.size()) {
+                    Path segment = segments.get(next++);
+                    window.add(executor.submit(() -> WalSegment.scan(segment)));
+                }
+                Path path = segments.get(index);
+                if (!Default.ATOMSTATE_VERSION.isCompatibleWith(scan.writtenBy())) {
+                    throw new IOException("WAL segment written by incompatible version " + scan.writtenBy() + ": "
+                            + path);
+                }
+                if (scan.isTorn() && index < segments.size() - 1) {
+                    throw new IOException("Corrupted WAL segment " + path + " at byte " + scan.validBytes());
+                }
+                for (WalRecord record : scan.records()) {
+                    if (expected >= 0 && record.sequence() != expected) {
+                        throw new IOException("Missing WAL records before sequence " + record.sequence()
+                                + ", expected " + expected + ": " + path);
+                    }
+                    expected = record.sequence() + 1;
+                    if (record.sequence() >= fromSequence) {
+                        consumer.accept(record);
+                        replayed++;
+                    }
+                }
+            }
+        }
+        logger.info("Replayed {} WAL records from sequence {} on {} threads", replayed, fromSequence, threads);
+        return replayed;
+    }
+
+    /**
+     * Deletes the segments whose records all precede a sequence number,
+     * typically once they have been persisted by a flush. The segment being
+     * written is never deleted.
+     *
+     * @param sequence the first sequence number that must be kept
+     * @return the number of deleted segments
+     * @throws IOException if a segment cannot be deleted
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public int removeSegmentsBefore(long sequence) throws IOException {
+        List<Path> segments = segments(directory);
+        int removed = 0;
+        for (int i = 0; i < segments.size() - 1; i++) {
+            if (WalSegment.firstSequence(segments.get(i + 1)).orElseThrow() > sequence) {
+                break;
+            }
+            Files.delete(segments.get(i));
+            removed++;
+        }
+        if (removed > 0) {
+            logger.debug("Removed {} WAL segments before sequence {}", removed, sequence);
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the sequence number the next append will get.
+     *
+     * @return the next sequence number
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long getNextSequence() {
+        lock.lock();
+        try {
+            return nextSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the sequence number of the last durable record.
+     *
+     * @return the last synced sequence number, or {@code 0} if there is none
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long getDurableSequence() {
+        return durableSequence;
+    }
+
+    /**
+     * Returns the number of records appended since the log was opened.
+     *
+     * @return the number of appends
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long getAppendCount() {
+        return appends.sum();
+    }
+
+    /**
+     * Returns the number of syncs since the log was opened. The ratio of
+     * appends to syncs is the average size of a group commit.
+     *
+     * @return the number of syncs
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public long getSyncCount() {
+        return syncs.sum();
+    }
+
+    /**
+     * Returns the directory of the segment files.
+     *
+     * @return the directory
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Writes and syncs all queued records, stops the writer thread and closes
+     * the current segment.
+     *
+     * @throws IOException if the segment cannot be closed, or if the calling
+     *                     thread is interrupted while waiting for the writer
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            appended.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing the WAL");
+        }
+        channel.close();
+        logger.info("Closed WAL in {} at sequence {}", directory, durableSequence);
+    }
+
+    /**
+     * Takes batches of queued appends, writes and syncs them until the log is
+     * closed and drained or a write fails.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void writeLoop() {
+        List<PendingAppend> batch = new ArrayList<>();
+        while (true) {
+            lock.lock();
+            try {
+                while (pending.isEmpty() && !closed) {
+                    appended.awaitUninterruptibly();
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                long deadline = pending.getFirst().enqueuedNanos() + commitWindowNanos;
+                long remaining;
+                while (!closed && (remaining = deadline - System.nanoTime()) > 0) {
+                    appended.awaitNanos(remaining);
+                }
+                batch.addAll(pending);
+                pending.clear();
+            } catch (InterruptedException e) {
+                // The batch is written right away; the writer keeps running until closed
+                batch.addAll(pending);
+                pending.clear();
+            } finally {
+                lock.unlock();
+            }
+            try {
+                write(batch);
+            } catch (IOException | RuntimeException e) {
+                fail(e instanceof IOException io ? io : new IOException("WAL write failed", e), batch);
+                return;
+            }
+            durableSequence = batch.getLast().sequence();
+            for (PendingAppend append : batch) {
+                append.future().complete(append.sequence());
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Writes a batch of records to the current segment, starting new segments
+     * as they fill up, and syncs it.
+     *
+     * @param batch the records in sequence order
+     * @throws IOException if a segment cannot be written
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void write(List<PendingAppend> batch) throws IOException {
+        for (PendingAppend append : batch) {
+            int recordBytes = WalSegment.RECORD_HEADER_BYTES + append.payload().length;
+            long written = channel.position() + buffer.position();
+            if (written > WalSegment.HEADER_BYTES && written + recordBytes > segmentBytes) {
+                flushBuffer();
+                channel.force(false);
+                syncs.increment();
+                channel.close();
+                startSegment(append.sequence());
+            }
+            if (buffer.remaining() < recordBytes) {
+                flushBuffer();
+                if (buffer.capacity() < recordBytes) {
+                    buffer = ByteBuffer.allocateDirect(recordBytes).order(ByteOrder.LITTLE_ENDIAN);
+                }
+            }
+            WalSegment.encode(buffer, append.sequence(), append.payload());
+        }
+        flushBuffer();
+        channel.force(false);
+        syncs.increment();
+    }
+
+    /**
+     * Writes the content of the write buffer to the current segment.
+     *
+     * @throws IOException if the segment cannot be written
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Fails a batch and all queued appends after a write error. Later appends
+     * fail right away.
+     *
+     * @param error the write error
+     * @param batch the batch being written
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void fail(IOException error, List<PendingAppend> batch) {
+        logger.error("WAL write failed in {}, rejecting further appends", directory, error);
+        lock.lock();
+        try {
+            failure = error;
+            batch.addAll(pending);
+            pending.clear();
+        } finally {
+            lock.unlock();
+        }
+        for (PendingAppend append : batch) {
+            append.future().completeExceptionally(error);
+        }
+    }
+
+    /**
+     * Creates a new segment and makes it the current one.
+     *
+     * @param firstSequence the sequence number of its first record
+     * @throws IOException if the segment cannot be created
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void startSegment(long firstSequence) throws IOException {
+        Path path = directory.resolve(WalSegment.fileName(firstSequence));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        WalSegment.writeHeader(channel, firstSequence);
+        channel.position(WalSegment.HEADER_BYTES);
+        channel.force(true);
+        syncDirectory();
+        logger.debug("Started WAL segment {}", path);
+    }
+
+    /**
+     * Continues the last segment after a restart, cutting off a torn record
+     * at its end. A segment that lost its header, or that another version of
+     * Atomstate wrote, is replaced by a new segment instead.
+     *
+     * @param last the last segment
+     * @throws IOException if the segment cannot be read or repaired
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void recover(Path last) throws IOException {
+        long named = WalSegment.firstSequence(last).orElseThrow();
+        if (Files.size(last) < WalSegment.HEADER_BYTES) {
+            // The node stopped while creating the segment, before any record was written
+            Files.delete(last);
+            nextSequence = named;
+            startSegment(nextSequence);
+            return;
+        }
+        WalSegment.Scan scan = WalSegment.scan(last);
+        List<WalRecord> records = scan.records();
+        nextSequence = records.isEmpty() ? scan.firstSequence() : records.getLast().sequence() + 1;
+        channel = FileChannel.open(last, StandardOpenOption.WRITE);
+        if (scan.isTorn()) {
+            logger.warn("Truncating torn WAL segment {} from {} to {} bytes", last, scan.fileBytes(), scan.validBytes());
+            channel.truncate(scan.validBytes());
+            channel.force(true);
+        }
+        channel.position(scan.validBytes());
+        if (!scan.writtenBy().equals(Default.ATOMSTATE_VERSION) && !records.isEmpty()) {
+            channel.close();
+            startSegment(nextSequence);
+        }
+    }
+
+    /**
+     * Syncs the directory so that a newly created segment survives a crash.
+     * Platforms that cannot sync directories are ignored.
+     *
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private void syncDirectory() {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            logger.debug("Cannot sync WAL directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Lists the segment files of a directory in sequence order.
+     *
+     * @param directory the directory
+     * @return the segment files
+     * @throws IOException if the directory cannot be listed
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static List<Path> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> WalSegment.firstSequence(path).isPresent())
+                    .sorted(Comparator.comparingLong(path -> WalSegment.firstSequence(path).orElseThrow()))
+                    .toList();
+        }
+    }
+
+    /**
+     * Waits for the scan of a segment.
+     *
+     * @param future the pending scan
+     * @return the decoded segment
+     * @throws IOException          if the segment could not be read
+     * @throws InterruptedException if the calling thread is interrupted
+     * @author Atomstate
+     * @since 1.0.0
+     */
+    private static WalSegment.Scan result(Future<WalSegment.Scan> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            } else if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException("WAL segment scan failed", e.getCause());
+        }
+    }
+
+    /**
+     * An append waiting to be written.
+     *
+     * @param sequence      the sequence number of the record
+     * @param payload       the payload of the record
+     * @param enqueuedNanos the time the append was queued
+     * @param future        completes once the record is durable
+     * @author Atomstate
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private record PendingAppend(long sequence, byte[] payload, long enqueuedNanos, CompletableFuture<Long> future) {
+    }
+}
@@ -0,0 +1 @@
+package com.atomstate.atomstate.wal;
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AdaptiveCpuControllerTest {
+
+    private static final long TARGET_NANOS = Duration.ofMillis(50).toNanos();
+    private final AtomicLong searchP99 = new AtomicLong();
+    private final AtomicLong progress = new AtomicLong();
+    private CpuBudget node;
+    private CpuBudget background;
+    private AdaptiveCpuController controller;
+
+    @BeforeEach
+    void setUp() {
+        node = new CpuBudget(8);
+        background = node.newChild(CpuPriority.OPTIMIZER, new CpuShare(0, 8));
+        controller = new AdaptiveCpuController(background, CpuControllerConfig.of(1, 6), searchP99::get,
+                progress::get);
+    }
+
+    @Test
+    void testLimitIsClampedIntoBounds() {
+        assertThat(background.getCpuBudget(), is(6));
+    }
+
+    @Test
+    void testAdditiveIncreaseOnlyWhileSaturatedAndProgressing() {
+        background.setLimit(2);
+        CpuPermit permit = background.tryAcquire(2).orElseThrow();
+
+        // No progress since the last sample
+        assertThat(controller.adjust(), is(2));
+
+        progress.addAndGet(10);
+        assertThat(controller.adjust(), is(3));
+        progress.addAndGet(10);
+        // The extra CPU is not used yet
+        assertThat(controller.adjust(), is(3));
+
+        permit.grow(1);
+        progress.addAndGet(10);
+        searchP99.set(TARGET_NANOS * 9 / 10);
+        // Close to the target, hold
+        assertThat(controller.adjust(), is(3));
+        permit.close();
+    }
+
+    @Test
+    void testMultiplicativeDecreaseWhilePermitsAreHeld() {
+        CpuPermit permit = background.tryAcquire(6).orElseThrow();
+        searchP99.set(TARGET_NANOS * 2);
+        assertThat(controller.adjust(), is(3));
+        assertThat(permit.getReclaimRequest(), is(3));
+        assertThat(background.tryAcquireCpus(1, 1), is(0));
+
+        assertThat(controller.adjust(), is(1));
+        assertThat(controller.adjust(), is(1));
+
+        permit.shrink(5);
+        assertThat(background.getAvailableCpus(), is(0));
+        permit.close();
+        assertThat(background.getAvailableCpus(), is(1));
+        assertThat(node.getAvailableCpus(), is(8));
+    }
+
+    @Test
+    void testGrowingLimitServesQueuedCallers() {
+        background.setLimit(1);
+        CpuPermit permit = background.tryAcquire(1).orElseThrow();
+        CompletableFuture<CpuPermit> waiting = background.acquireAsync(1);
+        assertFalse(waiting.isDone());
+
+        background.setLimit(2);
+        assertThat(waiting.join().numCpus(), is(1));
+        permit.close();
+    }
+
+    @Test
+    void testShrinkingLimitFailsQueuedCallersThatNoLongerFit() {
+        CpuPermit permit = background.tryAcquire(4).orElseThrow();
+        CompletableFuture<CpuPermit> large = background.acquireAsync(4);
+        CompletableFuture<CpuPermit> small = background.acquireAsync(1);
+        assertFalse(large.isDone());
+
+        background.setLimit(2);
+        CompletionException e = assertThrows(CompletionException.class, large::join);
+        assertThat(e.getCause(), instanceOf(IllegalArgumentException.class));
+        // Still waiting for the excess of the held permit
+        assertFalse(small.isDone());
+
+        permit.close();
+        assertThat(small.join().numCpus(), is(1));
+        small.join().close();
+        assertThat(background.getAvailableCpus(), is(2));
+    }
+
+    @Test
+    void testShrinkingRootFailsQueuedCallersThatNoLongerFit() {
+        CpuPermit permit = node.tryAcquire(6).orElseThrow();
+        CompletableFuture<CpuPermit> large = node.acquireAsync(4);
+        CompletableFuture<CpuPermit> child = background.acquireAsync(4);
+
+        node.setCpuBudget(3);
+        assertThrows(CompletionException.class, large::join);
+        assertThrows(CompletionException.class, child::join);
+
+        permit.close();
+        assertThat(node.getAvailableCpus(), is(3));
+        assertThat(background.acquireAsync(4).isCompletedExceptionally(), is(true));
+    }
+
+    @Test
+    void testInvalidLimitsAndConfigs() {
+        CpuBudget reserved = node.newChild(CpuPriority.SEARCH, new CpuShare(2, 4));
+        assertThrows(IllegalArgumentException.class, () -> reserved.setLimit(1));
+        assertThrows(IllegalArgumentException.class, () -> reserved.setLimit(9));
+        assertThrows(IllegalArgumentException.class, () -> CpuControllerConfig.of(0, 4));
+        assertThrows(IllegalArgumentException.class, () -> CpuControllerConfig.of(4, 2));
+        assertThrows(IllegalArgumentException.class,
+                () -> new CpuControllerConfig(1, 4, Duration.ofMillis(10), 1, 1.0));
+
+        node.setLimit(4);
+        assertThat(node.getCpuBudget(), is(4));
+    }
+}
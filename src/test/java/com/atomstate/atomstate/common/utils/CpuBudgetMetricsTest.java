@@ -0,0 +1,93 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CpuBudgetMetricsTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testCountsPerCallerClass() {
+        CpuBudget node = new CpuBudget(4);
+        CpuBudget search = node.newChild(CpuPriority.SEARCH, new CpuShare(1, 4));
+        CpuBudget optimizer = node.newChild(CpuPriority.OPTIMIZER, new CpuShare(0, 4));
+        CpuPermit held = optimizer.tryAcquire(3).orElseThrow();
+        assertThat(search.tryAcquireCpus(2, 2), is(0));
+        CompletableFuture<CpuPermit> waiting = search.acquireAsync(2);
+
+        CpuBudgetMetrics metrics = new CpuBudgetMetrics(node);
+        assertThat(metrics.getQueueDepth(), is(1));
+        List<CpuClassStats> classes = metrics.getClasses();
+        assertThat(classes.get(CpuPriority.SEARCH.ordinal()), is(new CpuClassStats("SEARCH", 0, 1, 0, 1)));
+        assertThat(classes.get(CpuPriority.OPTIMIZER.ordinal()), is(new CpuClassStats("OPTIMIZER", 3, 0, 1, 0)));
+
+        held.close();
+        waiting.join().close();
+        CpuBudgetStats stats = search.getStats();
+        assertThat(stats.granted(), is(1L));
+        assertThat(search.getWaitTimes().getTotalCount(), is(1L));
+        assertThat(stats.waitMaxNanos(), is(greaterThan(0L)));
+        assertThat(metrics.getQueueDepth(), is(0));
+        assertThat(metrics.getCpusInUse(), is(0));
+    }
+
+    @Test
+    void testJsonExport() throws Exception {
+        CpuBudget node = new CpuBudget(2);
+        node.newChild(CpuPriority.SNAPSHOT, new CpuShare(0, 2)).tryAcquire(1).orElseThrow();
+        CpuBudgetMetrics metrics = new CpuBudgetMetrics(node);
+        Path file = directory.resolve("cpu-budget.json");
+        metrics.write(file);
+
+        JsonNode json = new ObjectMapper().readTree(file.toFile());
+        assertThat(json.get("cpuBudget").asInt(), is(2));
+        assertThat(json.get("cpusInUse").asInt(), is(1));
+        assertThat(json.get("budgets").size(), is(2));
+        assertThat(json.get("budgets").get(1).get("priority").asText(), is("SNAPSHOT"));
+        assertThat(json.get("classes").get(CpuPriority.SNAPSHOT.ordinal()).get("used").asInt(), is(1));
+    }
+
+    @Test
+    void testJmxRegistration() throws Exception {
+        CpuBudget node = new CpuBudget(2);
+        node.tryAcquireCpus(1, 1);
+        CpuBudgetMetrics metrics = new CpuBudgetMetrics(node);
+        ObjectName name = metrics.register();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertThat(server.getAttribute(name, "CpusInUse"), is(1));
+            CompositeData[] budgets = (CompositeData[]) server.getAttribute(name, "Budgets");
+            assertThat(budgets[0].get("granted"), is(1L));
+            assertThrows(IllegalStateException.class, metrics::register);
+        } finally {
+            metrics.unregister();
+        }
+        assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(name), is(false));
+    }
+}
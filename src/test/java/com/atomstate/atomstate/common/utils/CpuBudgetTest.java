@@ -13,7 +13,13 @@ package com.atomstate.atomstate.common.utils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
@@ -74,6 +80,186 @@ class CpuBudgetTest {
         assertFalse(cpuBudget.hasBudget(1)); // Should be false now
     }
 
+    @Test
+    void testClosingPermitReturnsCpusToBudget() {
+        CpuPermit permit = cpuBudget.tryAcquire(INITIAL_CPU_BUDGET).orElseThrow();
+        assertThat(cpuBudget.getAvailableCpus(), is(0));
+
+        permit.close();
+        assertTrue(permit.isReleased());
+        assertThat(cpuBudget.getAvailableCpus(), is(INITIAL_CPU_BUDGET));
+
+        permit.close(); // closing twice must not release the CPUs twice
+        assertThat(cpuBudget.getAvailableCpus(), is(INITIAL_CPU_BUDGET));
+    }
+
+    @Test
+    void testAcquireWithTimeoutWaitsForRelease() throws InterruptedException {
+        CpuPermit held = cpuBudget.tryAcquire(8).orElseThrow();
+        Thread releaser = Thread.ofVirtual().start(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            held.close();
+        });
+
+        Optional<CpuPermit> permit = cpuBudget.acquire(6, Duration.ofSeconds(10));
+        assertTrue(permit.isPresent());
+        assertThat(permit.get().numCpus(), is(6));
+        releaser.join();
+    }
+
+    @Test
+    void testAcquireWithTimeoutExpires() throws InterruptedException {
+        cpuBudget.tryAcquire(8).orElseThrow();
+
+        assertFalse(cpuBudget.acquire(6, Duration.ofMillis(20)).isPresent());
+        // The expired request must not keep blocking the queue
+        assertTrue(cpuBudget.tryAcquire(2).isPresent());
+    }
+
+    @Test
+    void testAcquireWithUnsatisfiableCpus() throws InterruptedException {
+        assertFalse(cpuBudget.acquire(INITIAL_CPU_BUDGET + 1, Duration.ofSeconds(10)).isPresent());
+        assertFalse(cpuBudget.acquire(0, Duration.ofSeconds(10)).isPresent());
+        assertTrue(cpuBudget.acquireAsync(INITIAL_CPU_BUDGET + 1).isCompletedExceptionally());
+    }
+
+    @Test
+    void testAcquireAsyncServesWaitersInFifoOrder() {
+        CpuPermit held = cpuBudget.tryAcquire(INITIAL_CPU_BUDGET).orElseThrow();
+        CompletableFuture<CpuPermit> large = cpuBudget.acquireAsync(8);
+        CompletableFuture<CpuPermit> small = cpuBudget.acquireAsync(1);
+        assertFalse(large.isDone());
+        assertFalse(small.isDone());
+
+        // Queued callers are not overtaken by callers that never wait
+        assertFalse(cpuBudget.tryAcquire(1).isPresent());
+
+        held.close();
+        assertThat(large.join().numCpus(), is(8));
+        assertThat(small.join().numCpus(), is(1));
+        assertThat(cpuBudget.getAvailableCpus(), is(1));
+    }
+
+    @Test
+    void testCancelledAsyncAcquireUnblocksQueue() {
+        CpuPermit held = cpuBudget.tryAcquire(5).orElseThrow();
+        CompletableFuture<CpuPermit> large = cpuBudget.acquireAsync(8);
+        CompletableFuture<CpuPermit> small = cpuBudget.acquireAsync(2);
+        assertFalse(small.isDone());
+
+        large.cancel(false);
+        assertThat(small.join().numCpus(), is(2));
+
+        held.close();
+        assertThat(cpuBudget.getAvailableCpus(), is(8));
+    }
+
+    @Test
+    void testTryAcquireRangeGrantsLargestAvailableAmount() {
+        cpuBudget.tryAcquire(6).orElseThrow();
+
+        Optional<CpuPermit> permit = cpuBudget.tryAcquire(2, 8);
+        assertTrue(permit.isPresent());
+        assertThat(permit.get().numCpus(), is(4));
+        assertFalse(cpuBudget.tryAcquire(1, 1).isPresent());
+    }
+
+    @Test
+    void testTryAcquireRangeFailsBelowMinimum() {
+        cpuBudget.tryAcquire(8).orElseThrow();
+
+        assertFalse(cpuBudget.tryAcquire(3, 6).isPresent());
+        assertFalse(cpuBudget.tryAcquire(4, 2).isPresent());
+        assertThat(cpuBudget.getAvailableCpus(), is(2));
+    }
+
+    @Test
+    void testPermitGrowsAndShrinks() {
+        CpuPermit permit = cpuBudget.tryAcquire(4).orElseThrow();
+        CpuPermit other = cpuBudget.tryAcquire(4).orElseThrow();
+
+        assertThat(permit.grow(5), is(2));
+        assertThat(permit.numCpus(), is(6));
+        assertThat(cpuBudget.getAvailableCpus(), is(0));
+
+        other.close();
+        assertThat(permit.shrink(2), is(2));
+        assertThat(permit.shrink(10), is(3)); // keeps one CPU
+        assertThat(permit.numCpus(), is(1));
+        assertThat(cpuBudget.getAvailableCpus(), is(9));
+
+        permit.close();
+        assertThat(permit.grow(1), is(0));
+        assertThat(permit.shrink(1), is(0));
+        assertThat(cpuBudget.getAvailableCpus(), is(INITIAL_CPU_BUDGET));
+    }
+
+    @Test
+    void testShrinkHandsCpusToQueuedCallers() {
+        CpuPermit permit = cpuBudget.tryAcquire(INITIAL_CPU_BUDGET).orElseThrow();
+        CompletableFuture<CpuPermit> waiting = cpuBudget.acquireAsync(3);
+
+        assertThat(permit.grow(1), is(0));
+        permit.shrink(3);
+        assertThat(waiting.join().numCpus(), is(3));
+    }
+
+    @Test
+    void testTryAcquireCpusReturnsPrimitiveGrant() {
+        assertThat(cpuBudget.tryAcquireCpus(2, 4), is(4));
+        assertThat(cpuBudget.tryAcquireCpus(1, 8), is(6));
+        assertThat(cpuBudget.tryAcquireCpus(1, 1), is(0));
+        assertThat(cpuBudget.tryAcquireCpus(0, 1), is(0));
+
+        cpuBudget.releaseCpus(4);
+        assertThat(cpuBudget.getAvailableCpus(), is(4));
+        cpuBudget.releaseCpus(6);
+        assertThat(cpuBudget.getAvailableCpus(), is(INITIAL_CPU_BUDGET));
+    }
+
+    @Test
+    void testReleaseCpusHandsCpusToQueuedCallers() {
+        int held = cpuBudget.tryAcquireCpus(INITIAL_CPU_BUDGET, INITIAL_CPU_BUDGET);
+        CompletableFuture<CpuPermit> waiting = cpuBudget.acquireAsync(2);
+        assertThat(cpuBudget.getQueuedCount(), is(1));
+        assertThat(cpuBudget.tryAcquireCpus(1, 1), is(0));
+
+        cpuBudget.releaseCpus(held);
+        assertThat(waiting.join().numCpus(), is(2));
+        assertThat(cpuBudget.getQueuedCount(), is(0));
+    }
+
+    @Test
+    void testConcurrentAcquireAndReleaseKeepsBudgetConsistent() throws InterruptedException {
+        int threads = 16;
+        CountDownLatch done = new CountDownLatch(threads);
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            for (int t = 0; t < threads; t++) {
+                boolean queueing = t % 4 == 0;
+                executor.execute(() -> {
+                    for (int i = 0; i < 2_000; i++) {
+                        if (queueing) {
+                            cpuBudget.acquireAsync(3).join().close();
+                        } else {
+                            int granted = cpuBudget.tryAcquireCpus(1, 2);
+                            if (granted > 0) {
+                                cpuBudget.releaseCpus(granted);
+                            }
+                        }
+                    }
+                    done.countDown();
+                });
+            }
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+        }
+        assertThat(cpuBudget.getAvailableCpus(), is(INITIAL_CPU_BUDGET));
+        assertThat(cpuBudget.getQueuedCount(), is(0));
+    }
+
     @Test
     void testGetNumCpusReturnsCorrectValue() {
         // Assuming the environment variable is not set, this should return the available processors
@@ -81,6 +267,42 @@ class CpuBudgetTest {
         assertThat(numCpus, is(greaterThan(0)));
     }
 
+    @Test
+    void testEnvironmentVariableOverridesDetectedCpus() {
+        assertThat(CpuBudget.resolveNumCpus(null, 8), is(8));
+        assertThat(CpuBudget.resolveNumCpus("2", 8), is(2));
+        assertThat(CpuBudget.resolveNumCpus("16", 8), is(16));
+        assertThat(CpuBudget.resolveNumCpus("0", 8), is(8));
+        assertThat(CpuBudget.resolveNumCpus("many", 8), is(8));
+    }
+
+    @Test
+    void testShrinkingBudgetWhilePermitsAreHeld() {
+        CpuPermit permit = cpuBudget.tryAcquire(8).orElseThrow();
+
+        cpuBudget.setCpuBudget(6);
+        assertThat(cpuBudget.getCpuBudget(), is(6));
+        assertThat(cpuBudget.getAvailableCpus(), is(0));
+        assertThat(permit.getReclaimRequest(), is(2));
+        assertFalse(cpuBudget.tryAcquire(1).isPresent());
+
+        permit.close();
+        assertThat(cpuBudget.getAvailableCpus(), is(6));
+    }
+
+    @Test
+    void testGrowingBudgetServesQueuedCallers() {
+        cpuBudget.tryAcquire(INITIAL_CPU_BUDGET).orElseThrow();
+        CompletableFuture<CpuPermit> waiting = cpuBudget.acquireAsync(2);
+        assertFalse(waiting.isDone());
+
+        cpuBudget.setCpuBudget(INITIAL_CPU_BUDGET + 2);
+        assertThat(waiting.join().numCpus(), is(2));
+        assertThrows(IllegalArgumentException.class, () -> cpuBudget.setCpuBudget(0));
+        CpuBudget child = cpuBudget.newChild("child", new CpuShare(0, 1));
+        assertThrows(IllegalStateException.class, () -> child.setCpuBudget(1));
+    }
+
     @Test
     void testGetCpuBudgetWithPositiveParam() {
         int budget = CpuBudget.getCpuBudget(5);
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CpuBudgetTreeTest {
+
+    private static final int NODE_CPU_BUDGET = 6;
+    private CpuBudget node;
+    private CpuBudget heavy;
+    private CpuBudget light;
+
+    @BeforeEach
+    void setUp() {
+        node = new CpuBudget(NODE_CPU_BUDGET);
+        heavy = node.newChild("heavy", new CpuShare(0, 6, 2));
+        light = node.newChild("light", new CpuShare(0, 6, 1));
+    }
+
+    @Test
+    void testChildNeverExceedsItsLimit() {
+        CpuBudget capped = node.newChild("capped", new CpuShare(0, 2));
+        assertThat(capped.tryAcquireCpus(1, 6), is(2));
+        assertThat(capped.tryAcquireCpus(1, 1), is(0));
+        assertThat(node.getAvailableCpus(), is(4));
+    }
+
+    @Test
+    void testShrinkingRootReclaimsFromChildPermits() {
+        CpuPermit search = heavy.tryAcquire(3).orElseThrow();
+        CpuPermit background = light.tryAcquire(3).orElseThrow();
+
+        node.setCpuBudget(4);
+        // The lower weighted child is ranked last and gives back first
+        assertThat(background.getReclaimRequest(), is(2));
+        assertThat(search.getReclaimRequest(), is(0));
+
+        background.shrink(background.getReclaimRequest());
+        assertThat(node.getAvailableCpus(), is(0));
+        background.close();
+        search.close();
+        assertThat(node.getAvailableCpus(), is(4));
+    }
+
+    @Test
+    void testIdleShareIsRedistributed() {
+        // Nobody else is waiting, so a light child may use the whole node
+        assertThat(light.tryAcquireCpus(1, 6), is(6));
+        assertThat(heavy.getAvailableCpus(), is(0));
+    }
+
+    @Test
+    void testChildAboveFairShareYieldsToQueuedSibling() {
+        assertThat(light.tryAcquireCpus(5, 5), is(5));
+        CompletableFuture<CpuPermit> waiting = heavy.acquireAsync(3);
+        assertFalse(waiting.isDone());
+
+        // One CPU is idle, but the light child already holds more than its share
+        assertThat(light.tryAcquireCpus(1, 1), is(0));
+
+        light.releaseCpus(2);
+        assertThat(waiting.join().numCpus(), is(3));
+    }
+
+    @Test
+    void testQueuedSiblingWithLowestWeightedUsageIsServedFirst() {
+        CpuPermit heavyPermit = heavy.tryAcquire(2).orElseThrow();
+        CpuPermit lightPermit = light.tryAcquire(4).orElseThrow();
+        CompletableFuture<CpuPermit> lightWaiting = light.acquireAsync(1);
+        CompletableFuture<CpuPermit> heavyWaiting = heavy.acquireAsync(1);
+
+        // light uses 3 CPUs per weight and heavy 1, so heavy goes first although it queued last
+        lightPermit.shrink(1);
+        assertTrue(heavyWaiting.isDone());
+        assertFalse(lightWaiting.isDone());
+
+        heavyPermit.close();
+        assertTrue(lightWaiting.isDone());
+    }
+
+    @Test
+    void testNestedBudgetsRespectReservationsAlongThePath() {
+        CpuBudget root = new CpuBudget(8);
+        CpuBudget search = root.newChild(CpuPriority.SEARCH, new CpuShare(2, 8));
+        CpuBudget indexing = root.newChild(CpuPriority.INDEXING, new CpuShare(0, 8));
+        CpuBudget tenant = indexing.newChild("tenant", new CpuShare(0, 4));
+
+        assertThat(tenant.getPriority(), is(CpuPriority.INDEXING));
+        assertThat(tenant.tryAcquireCpus(1, 8), is(4));
+        assertThat(indexing.tryAcquireCpus(1, 8), is(2));
+        assertThat(search.tryAcquireCpus(1, 8), is(2));
+    }
+
+    @Test
+    void testTreeStatsListEveryBudget() {
+        CpuPermit permit = heavy.tryAcquire(3).orElseThrow();
+
+        List<CpuBudgetStats> stats = node.getTreeStats();
+        assertThat(stats.stream().map(CpuBudgetStats::name).toList(), contains("node", "heavy", "light"));
+        assertThat(stats.get(0).used(), is(3));
+        assertThat(stats.get(1).used(), is(3));
+        assertThat(stats.get(1).weight(), is(2));
+        assertThat(stats.get(1).granted(), is(1L));
+        assertThat(stats.get(2).used(), is(0));
+        permit.close();
+    }
+
+    @Test
+    void testRemoveChildReleasesItsReservation() {
+        CpuBudget reserved = node.newChild("reserved", new CpuShare(2, 4));
+        assertThat(node.getAvailableCpus(), is(4));
+
+        int held = reserved.tryAcquireCpus(1, 1);
+        assertThrows(IllegalStateException.class, () -> node.removeChild(reserved));
+        reserved.releaseCpus(held);
+
+        node.removeChild(reserved);
+        assertThat(node.getAvailableCpus(), is(NODE_CPU_BUDGET));
+        assertThat(node.getChildren(), contains(heavy, light));
+        assertThrows(IllegalArgumentException.class, () -> light.removeChild(heavy));
+    }
+
+    @Test
+    void testRemovedChildRejectsAcquisitions() throws InterruptedException {
+        CpuBudget removed = node.newChild("removed", new CpuShare(1, 4));
+        CpuBudget grandchild = removed.newChild("grandchild", new CpuShare(0, 2));
+        node.removeChild(removed);
+
+        assertThrows(IllegalStateException.class, () -> removed.tryAcquireCpus(1, 1));
+        assertThrows(IllegalStateException.class, () -> removed.tryAcquire(1));
+        assertThrows(IllegalStateException.class, () -> grandchild.tryAcquireCpus(1, 1));
+        assertThrows(IllegalStateException.class, () -> removed.acquire(1, Duration.ofMillis(10)));
+        CompletableFuture<CpuPermit> queued = grandchild.acquireAsync(1);
+        CompletionException e = assertThrows(CompletionException.class, queued::join);
+        assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+        assertThrows(IllegalStateException.class, () -> removed.releaseCpus(1));
+
+        assertThat(node.getAvailableCpus(), is(NODE_CPU_BUDGET));
+        assertThat(removed.getAvailableCpus(), is(4));
+    }
+
+    @Test
+    void testRemoveChildWithQueuedGrandchildFails() {
+        CpuBudget child = node.newChild("child", new CpuShare(0, 4));
+        CpuBudget grandchild = child.newChild("grandchild", new CpuShare(0, 2));
+        CpuPermit permit = node.tryAcquire(NODE_CPU_BUDGET).orElseThrow();
+        CompletableFuture<CpuPermit> queued = grandchild.acquireAsync(1);
+
+        assertThrows(IllegalStateException.class, () -> node.removeChild(child));
+        permit.close();
+        queued.join().close();
+        node.removeChild(child);
+        assertThat(node.getChildren(), contains(heavy, light));
+    }
+
+    @Test
+    void testForNodeUsesCpuBudgetParameter() {
+        assertThat(CpuBudget.forNode(3).getCpuBudget(), is(3));
+        assertThat(CpuBudget.forNode(0).getName(), is("node"));
+    }
+}
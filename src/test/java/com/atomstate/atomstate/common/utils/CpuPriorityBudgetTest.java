@@ -0,0 +1,161 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CpuPriorityBudgetTest {
+
+    private static final int NODE_CPU_BUDGET = 8;
+    private CpuBudget node;
+    private CpuBudget search;
+    private CpuBudget optimizer;
+
+    @BeforeEach
+    void setUp() {
+        node = new CpuBudget(NODE_CPU_BUDGET);
+        search = node.newChild(CpuPriority.SEARCH, new CpuShare(2, 8));
+        optimizer = node.newChild(CpuPriority.OPTIMIZER, new CpuShare(0, 6));
+    }
+
+    @Test
+    void testReservationIsKeptFreeForItsClass() {
+        assertThat(node.getAvailableCpus(), is(6));
+        assertThat(optimizer.tryAcquireCpus(1, 8), is(6));
+
+        // The node itself cannot dip into the search reservation either
+        assertThat(node.tryAcquireCpus(1, 1), is(0));
+        assertThat(search.tryAcquireCpus(2, 2), is(2));
+        assertThat(node.getAvailableCpus(), is(0));
+    }
+
+    @Test
+    void testClassBorrowsIdleCapacityUpToItsLimit() {
+        assertThat(search.tryAcquireCpus(1, 8), is(8));
+        assertThat(optimizer.tryAcquireCpus(1, 1), is(0));
+
+        search.releaseCpus(8);
+        assertThat(optimizer.tryAcquireCpus(1, 8), is(6));
+        assertThat(optimizer.getAvailableCpus(), is(0));
+    }
+
+    @Test
+    void testReservationsMustFitTheBudget() {
+        assertThrows(IllegalArgumentException.class, () -> node.newChild(CpuPriority.INDEXING, new CpuShare(7, 8)));
+        assertThrows(IllegalArgumentException.class, () -> node.newChild(CpuPriority.SNAPSHOT, new CpuShare(0, 9)));
+        assertThrows(IllegalArgumentException.class, () -> new CpuShare(3, 2));
+    }
+
+    @Test
+    void testHigherClassAsksBorrowersToGiveBack() {
+        CpuPermit background = optimizer.tryAcquire(6).orElseThrow();
+        CpuPermit searching = search.tryAcquire(2).orElseThrow();
+        assertThat(background.getReclaimRequest(), is(0));
+
+        CompletableFuture<CpuPermit> more = search.acquireAsync(3);
+        assertFalse(more.isDone());
+        assertThat(background.getReclaimRequest(), is(3));
+        assertThat(background.grow(1), is(0));
+
+        background.shrink(background.getReclaimRequest());
+        assertThat(background.getReclaimRequest(), is(0));
+        assertThat(more.join().numCpus(), is(3));
+
+        searching.close();
+        background.close();
+        more.join().close();
+        assertThat(node.getAvailableCpus(), is(6));
+    }
+
+    @Test
+    void testQueuedHigherClassIsServedFirst() {
+        CpuPermit all = search.tryAcquire(8).orElseThrow();
+        CompletableFuture<CpuPermit> background = optimizer.acquireAsync(2);
+        CompletableFuture<CpuPermit> searching = search.acquireAsync(2);
+
+        // Lower classes do not barge past queued search requests
+        assertThat(optimizer.tryAcquireCpus(1, 1), is(0));
+
+        all.shrink(2);
+        assertThat(searching.join().numCpus(), is(2));
+        assertFalse(background.isDone());
+
+        all.shrink(2);
+        assertThat(background.join().numCpus(), is(2));
+    }
+
+    @Test
+    void testSearchIsNotBlockedByQueuedBackgroundWork() {
+        CpuPermit background = optimizer.tryAcquire(6).orElseThrow();
+        CompletableFuture<CpuPermit> queued = optimizer.acquireAsync(4);
+        assertFalse(queued.isDone());
+
+        assertThat(search.tryAcquireCpus(1, 2), is(2));
+        search.releaseCpus(2);
+
+        background.close();
+        assertThat(queued.join().numCpus(), is(4));
+    }
+
+    @Test
+    void testLargeHigherClassRequestIsNotStarvedBySmallerLowerClassRequests() {
+        CpuPermit searching = search.tryAcquire(2).orElseThrow();
+        List<CpuPermit> background = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            background.add(optimizer.tryAcquire(1).orElseThrow());
+        }
+        CompletableFuture<CpuPermit> large = search.acquireAsync(4);
+
+        List<CompletableFuture<CpuPermit>> small = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            small.add(optimizer.acquireAsync(1));
+            background.remove(0).close();
+            assertFalse(large.isDone());
+        }
+        // Released CPUs are kept for the queued search request
+        for (CompletableFuture<CpuPermit> future : small) {
+            assertFalse(future.isDone());
+        }
+
+        background.remove(0).close();
+        assertThat(large.join().numCpus(), is(4));
+        assertFalse(small.get(0).isDone());
+
+        background.remove(0).close();
+        assertThat(small.get(0).join().numCpus(), is(1));
+        assertFalse(small.get(1).isDone());
+        searching.close();
+    }
+
+    @Test
+    void testLowerClassIsServedOutOfItsReservationWhileHigherClassWaits() {
+        CpuBudget node = new CpuBudget(4);
+        CpuBudget search = node.newChild(CpuPriority.SEARCH, new CpuShare(0, 3));
+        CpuBudget optimizer = node.newChild(CpuPriority.OPTIMIZER, new CpuShare(1, 4));
+        CpuPermit searching = search.tryAcquire(3).orElseThrow();
+        CompletableFuture<CpuPermit> blocked = search.acquireAsync(1);
+
+        assertThat(optimizer.acquireAsync(1).join().numCpus(), is(1));
+        assertFalse(optimizer.acquireAsync(1).isDone());
+        assertFalse(blocked.isDone());
+        searching.close();
+        assertThat(blocked.join().numCpus(), is(1));
+    }
+}
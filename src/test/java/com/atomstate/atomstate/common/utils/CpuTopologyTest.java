@@ -0,0 +1,159 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CpuTopologyTest {
+    private static final int PROCESSORS = 8;
+    private static final String PROC_CGROUP = "proc-self-cgroup";
+
+    @TempDir
+    Path cgroupRoot;
+
+    @Test
+    public void testCgroupV2FractionalQuotaIsRoundedDown() throws IOException {
+        write("cgroup.controllers", "cpuset cpu io memory");
+        write("cpu.max", "250000 100000");
+
+        CpuTopology.CpuLimits limits = topology().detect();
+        assertEquals(2.5, limits.quotaCpus());
+        assertEquals(2, limits.effectiveCpus());
+    }
+
+    @Test
+    public void testCgroupV2UnlimitedQuotaWithCpuset() throws IOException {
+        write("cgroup.controllers", "cpuset cpu");
+        write("cpu.max", "max 100000");
+        write("cpuset.cpus.effective", "0-3,6");
+
+        CpuTopology.CpuLimits limits = topology().detect();
+        assertEquals(0, limits.quotaCpus());
+        assertEquals(5, limits.cpusetCpus());
+        assertEquals(5, limits.effectiveCpus());
+    }
+
+    @Test
+    public void testCgroupV1Quota() throws IOException {
+        write("cpu,cpuacct/cpu.cfs_quota_us", "400000");
+        write("cpu,cpuacct/cpu.cfs_period_us", "100000");
+        write("cpuset/cpuset.cpus", "0-5");
+
+        assertEquals(4, topology().detect().effectiveCpus());
+    }
+
+    @Test
+    public void testCgroupV1UnlimitedQuota() throws IOException {
+        write("cpu/cpu.cfs_quota_us", "-1");
+        write("cpu/cpu.cfs_period_us", "100000");
+
+        CpuTopology.CpuLimits limits = topology().detect();
+        assertEquals(0, limits.quotaCpus());
+        assertEquals(PROCESSORS, limits.effectiveCpus());
+    }
+
+    @Test
+    public void testMissingFilesFallBackToAvailableProcessors() {
+        assertEquals(PROCESSORS, new CpuTopology(cgroupRoot.resolve("missing"), () -> PROCESSORS).getEffectiveCpus());
+    }
+
+    @Test
+    public void testQuotaBelowOneCpuStillYieldsOneCpu() throws IOException {
+        write("cgroup.controllers", "cpu");
+        write("cpu.max", "50000 100000");
+
+        assertEquals(1, topology().detect().effectiveCpus());
+    }
+
+    @Test
+    public void testParseCpuList() {
+        assertEquals(5, CpuTopology.parseCpuList("0-3,6", cgroupRoot));
+        assertEquals(3, CpuTopology.parseCpuList("1,1-3", cgroupRoot));
+        assertEquals(0, CpuTopology.parseCpuList("a-b", cgroupRoot));
+    }
+
+    @Test
+    public void testMonitorReportsResizedQuota() throws Exception {
+        write("cgroup.controllers", "cpu");
+        write("cpu.max", "max 100000");
+        CpuTopology topology = topology();
+        assertEquals(PROCESSORS, topology.getEffectiveCpus());
+        assertFalse(topology.refresh());
+
+        LinkedBlockingQueue<Integer> changes = new LinkedBlockingQueue<>();
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            topology.monitor(scheduler, Duration.ofMillis(10), changes::add);
+            write("cpu.max", "300000 100000");
+            assertEquals(3, changes.poll(10, TimeUnit.SECONDS));
+            assertEquals(3, topology.getEffectiveCpus());
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCgroupV2ResolvesProcessCgroupAndAncestors() throws IOException {
+        write("cgroup.controllers", "cpuset cpu");
+        write("cpu.max", "max 100000");
+        write("kubepods/cpu.max", "300000 100000");
+        write("kubepods/pod1/cpu.max", "600000 100000");
+        write("kubepods/pod1/cpuset.cpus.effective", "0-1");
+        write(PROC_CGROUP, "0::/kubepods/pod1");
+
+        CpuTopology.CpuLimits limits = topology().detect();
+        assertEquals(3.0, limits.quotaCpus(), 1e-9);
+        assertEquals(2, limits.cpusetCpus());
+        assertEquals(2, limits.effectiveCpus());
+    }
+
+    @Test
+    public void testCgroupV1ResolvesProcessCgroup() throws IOException {
+        write("cpu,cpuacct/cpu.cfs_quota_us", "-1");
+        write("cpu,cpuacct/cpu.cfs_period_us", "100000");
+        write("cpu,cpuacct/docker/abc/cpu.cfs_quota_us", "200000");
+        write("cpu,cpuacct/docker/abc/cpu.cfs_period_us", "100000");
+        write(PROC_CGROUP, "4:cpuset:/missing\n3:cpu,cpuacct:/docker/abc\n1:name=systemd:/docker/abc");
+
+        assertEquals(2, topology().getEffectiveCpus());
+    }
+
+    @Test
+    public void testInvisibleProcessCgroupFallsBackToRoot() throws IOException {
+        write("cgroup.controllers", "cpu");
+        write("cpu.max", "400000 100000");
+        write(PROC_CGROUP, "0::/not/mounted/here");
+
+        assertEquals(4, topology().getEffectiveCpus());
+    }
+
+    private CpuTopology topology() {
+        return new CpuTopology(cgroupRoot, cgroupRoot.resolve(PROC_CGROUP), () -> PROCESSORS);
+    }
+
+    private void write(String file, String content) throws IOException {
+        Path path = cgroupRoot.resolve(file);
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, content + "\n");
+    }
+}
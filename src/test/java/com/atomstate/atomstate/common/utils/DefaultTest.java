@@ -43,5 +43,23 @@ public class DefaultTest {
         assertEquals(16, Default.threadCountForHnsw(65));
         assertEquals(16, Default.threadCountForHnsw(80));
         assertEquals(16, Default.threadCountForHnsw(100));
+        assertEquals(Default.threadCountForHnsw(CpuBudget.getNumCpus()), Default.threadCountForHnsw());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testDefaultCpuShare() {
+        assertEquals(new CpuShare(4, 16), Default.defaultCpuShare(CpuPriority.SEARCH, 16));
+        assertEquals(new CpuShare(0, 16), Default.defaultCpuShare(CpuPriority.INDEXING, 16));
+        assertEquals(new CpuShare(0, 8), Default.defaultCpuShare(CpuPriority.OPTIMIZER, 16));
+        assertEquals(new CpuShare(0, 4), Default.defaultCpuShare(CpuPriority.SNAPSHOT, 16));
+        assertEquals(new CpuShare(0, 1), Default.defaultCpuShare(CpuPriority.SNAPSHOT, 1));
+    }
+
+    @Test
+    public void testDefaultMemoryBudget() {
+        assertEquals(3072, Default.defaultMemoryBudget(2048, 2048));
+        assertEquals(768, Default.defaultMemoryBudget(1024, 0));
+        assertEquals(Long.MAX_VALUE - Long.MAX_VALUE / 4, Default.defaultMemoryBudget(Long.MAX_VALUE, 1024));
+        assertEquals(1, Default.defaultMemoryBudget(1, 0));
+    }
+}
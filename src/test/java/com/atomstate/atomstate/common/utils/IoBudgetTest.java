@@ -0,0 +1,126 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class IoBudgetTest {
+
+    private static final int CHUNK = 64 << 10;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testWriteIsPacedByRate() throws IOException {
+        // 1 MiB at 2 MiB per second takes half a second minus the burst of one chunk
+        IoBudget ioBudget = new IoBudget(2, 2 << 20, CHUNK);
+        Path path = directory.resolve("paced.bin");
+        long start = System.nanoTime();
+        try (IoPermit permit = ioBudget.tryAcquire(IoClass.FLUSH).orElseThrow();
+             FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+            assertThat(permit.write(channel, buffer), is((long) (1 << 20)));
+            assertThat(buffer.hasRemaining(), is(false));
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertThat(elapsedMillis, is(greaterThanOrEqualTo(400L)));
+        assertThat(Files.size(path), is((long) (1 << 20)));
+
+        IoBudgetStats stats = ioBudget.getStats(IoClass.FLUSH);
+        assertThat(stats.operations(), is(1L));
+        assertThat(stats.active(), is(0));
+        assertThat(stats.bytes(), is((long) (1 << 20)));
+        assertThat(stats.pacedNanos(), is(greaterThan(TimeUnit.MILLISECONDS.toNanos(400))));
+        assertThat(ioBudget.getStats(IoClass.MERGE).bytes(), is(0L));
+    }
+
+    @Test
+    void testUnlimitedRateDoesNotWait() throws IOException {
+        IoBudget ioBudget = new IoBudget(1, 0, CHUNK);
+        Path path = directory.resolve("unlimited.bin");
+        try (IoPermit permit = ioBudget.tryAcquire(IoClass.SNAPSHOT).orElseThrow();
+             FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(4 << 20);
+            buffer.position(1000);
+            assertThat(permit.write(channel, buffer), is((long) (4 << 20) - 1000));
+        }
+        assertThat(Files.size(path), is((long) (4 << 20) - 1000));
+        assertThat(ioBudget.getStats(IoClass.SNAPSHOT).pacedNanos(), is(0L));
+    }
+
+    @Test
+    void testConcurrentOperationsAreBounded() throws InterruptedException {
+        IoBudget ioBudget = new IoBudget(1, 0, CHUNK);
+        IoPermit permit = ioBudget.tryAcquire(IoClass.MERGE).orElseThrow();
+        assertFalse(ioBudget.tryAcquire(IoClass.FLUSH).isPresent());
+        assertFalse(ioBudget.acquire(IoClass.SNAPSHOT, Duration.ofMillis(20)).isPresent());
+        assertThat(ioBudget.getStats(IoClass.MERGE).active(), is(1));
+        assertThat(ioBudget.getStats(IoClass.FLUSH).denied(), is(1L));
+        assertThat(ioBudget.getStats(IoClass.SNAPSHOT).denied(), is(1L));
+
+        permit.close();
+        permit.close();
+        assertThrows(IllegalStateException.class, () -> permit.pace(1));
+        Optional<IoPermit> next = ioBudget.acquire(IoClass.FLUSH, Duration.ofSeconds(1));
+        assertTrue(next.isPresent());
+        next.get().close();
+        assertThat(ioBudget.getStats(), hasSize(IoClass.values().length));
+    }
+
+    @Test
+    void testRateCanBeChangedWhileWriting() throws Exception {
+        IoBudget ioBudget = new IoBudget(1, 1024, CHUNK);
+        try (IoPermit permit = ioBudget.tryAcquire(IoClass.FLUSH).orElseThrow()) {
+            // The first chunk is the burst, the second one would take a minute
+            permit.pace(CHUNK);
+            ioBudget.setBytesPerSecond(0);
+            long start = System.nanoTime();
+            permit.pace(CHUNK);
+            assertThat(System.nanoTime() - start, is(lessThan(TimeUnit.SECONDS.toNanos(1))));
+        }
+        assertThat(ioBudget.getBytesPerSecond(), is(0L));
+        assertThrows(IllegalArgumentException.class, () -> ioBudget.setBytesPerSecond(-1));
+        assertThrows(IllegalArgumentException.class, () -> new IoBudget(0, 0));
+    }
+
+    @Test
+    void testInterruptedWriteKeepsInterruptStatus() throws IOException, InterruptedException {
+        IoBudget ioBudget = new IoBudget(1, 1024, 1024);
+        Path path = directory.resolve("interrupted.bin");
+        try (IoPermit permit = ioBudget.tryAcquire(IoClass.FLUSH).orElseThrow();
+             FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // Use up the burst so that the first chunk has to wait
+            permit.pace(1024);
+            Thread.currentThread().interrupt();
+            ByteBuffer buffer = ByteBuffer.allocate(10 << 10);
+            assertThrows(InterruptedIOException.class, () -> permit.write(channel, buffer));
+            assertThat(Thread.interrupted(), is(true));
+            assertThat(buffer.limit(), is(10 << 10));
+        }
+    }
+}
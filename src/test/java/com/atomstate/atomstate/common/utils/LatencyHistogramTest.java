@@ -0,0 +1,71 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LatencyHistogramTest {
+
+    @Test
+    void testEmptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.getTotalCount(), is(0L));
+        assertThat(histogram.getValueAtPercentile(99), is(0L));
+        assertThat(histogram.getMaxValue(), is(0L));
+    }
+
+    @Test
+    void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+        assertThat(histogram.getTotalCount(), is(100L));
+        assertThat(histogram.getValueAtPercentile(50), is(50L));
+        assertThat(histogram.getValueAtPercentile(99), is(99L));
+        assertThat(histogram.getValueAtPercentile(100), is(100L));
+    }
+
+    @Test
+    void testLargeValuesWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 990; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(200));
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        long p50 = histogram.getValueAtPercentile(50);
+        long p999 = histogram.getValueAtPercentile(99.9);
+        assertThat(p50, allOf(greaterThanOrEqualTo(200_000L), lessThan(203_200L)));
+        assertThat(p999, is(50_000_000L));
+        assertThat(histogram.getMaxValue(), is(50_000_000L));
+    }
+
+    @Test
+    void testOutOfRangeValuesAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertThat(histogram.getValueAtPercentile(50), is(0L));
+        assertThat(histogram.getMaxValue(), is(greaterThan(TimeUnit.HOURS.toNanos(2))));
+        assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(101));
+
+        histogram.reset();
+        assertThat(histogram.getTotalCount(), is(0L));
+    }
+}
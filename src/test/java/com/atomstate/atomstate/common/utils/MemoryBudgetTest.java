@@ -0,0 +1,170 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryBudgetTest {
+
+    private static final long INITIAL_MEMORY_BUDGET = 1000;
+    private MemoryBudget memoryBudget;
+
+    @BeforeEach
+    void setUp() {
+        memoryBudget = new MemoryBudget(INITIAL_MEMORY_BUDGET);
+    }
+
+    @Test
+    void testTryAcquireReservesAndReleasesBytes() {
+        Optional<MemoryPermit> permit = memoryBudget.tryAcquire(600);
+        assertTrue(permit.isPresent());
+        assertThat(permit.get().bytes(), is(600L));
+        assertThat(memoryBudget.getAvailableBytes(), is(400L));
+        assertThat(memoryBudget.getUsedBytes(), is(600L));
+        assertFalse(memoryBudget.tryAcquire(401).isPresent());
+
+        permit.get().close();
+        permit.get().close();
+        assertThat(permit.get().isReleased(), is(true));
+        assertThat(memoryBudget.getAvailableBytes(), is(INITIAL_MEMORY_BUDGET));
+        assertThat(memoryBudget.getGrantedCount(), is(1L));
+        assertThat(memoryBudget.getDeniedCount(), is(1L));
+    }
+
+    @Test
+    void testTryAcquireRejectsInvalidBytes() {
+        assertFalse(memoryBudget.tryAcquire(0).isPresent());
+        assertFalse(memoryBudget.tryAcquire(-1).isPresent());
+        assertThrows(IllegalArgumentException.class, () -> new MemoryBudget(0));
+    }
+
+    @Test
+    void testGrowAndShrink() {
+        try (MemoryPermit permit = memoryBudget.tryAcquire(100).orElseThrow()) {
+            assertThat(permit.grow(800), is(true));
+            assertThat(permit.bytes(), is(900L));
+            assertThat(permit.grow(101), is(false));
+            assertThat(permit.bytes(), is(900L));
+
+            assertThat(permit.shrink(500), is(500L));
+            assertThat(permit.shrink(1000), is(399L));
+            assertThat(permit.bytes(), is(1L));
+            assertThat(memoryBudget.getAvailableBytes(), is(999L));
+        }
+        assertThat(memoryBudget.getAvailableBytes(), is(INITIAL_MEMORY_BUDGET));
+    }
+
+    @Test
+    void testAcquireWaitsForRelease() throws Exception {
+        MemoryPermit held = memoryBudget.tryAcquire(800).orElseThrow();
+        CompletableFuture<MemoryPermit> large = memoryBudget.acquireAsync(500);
+        assertThat(large.isDone(), is(false));
+        assertThat(memoryBudget.getQueuedCount(), is(1));
+        // Queued callers are not overtaken, even by requests that would fit
+        assertFalse(memoryBudget.tryAcquire(100).isPresent());
+
+        held.close();
+        MemoryPermit granted = large.get(1, TimeUnit.SECONDS);
+        assertThat(granted.bytes(), is(500L));
+        assertThat(memoryBudget.getQueuedCount(), is(0));
+        assertThat(memoryBudget.getAvailableBytes(), is(500L));
+        granted.close();
+    }
+
+    @Test
+    void testAcquireTimesOutAndWithdraws() throws InterruptedException {
+        MemoryPermit held = memoryBudget.tryAcquire(900).orElseThrow();
+        assertFalse(memoryBudget.acquire(200, Duration.ofMillis(50)).isPresent());
+        assertThat(memoryBudget.getQueuedCount(), is(0));
+        assertFalse(memoryBudget.acquire(INITIAL_MEMORY_BUDGET + 1, Duration.ofSeconds(10)).isPresent());
+
+        held.close();
+        Optional<MemoryPermit> permit = memoryBudget.acquire(200, Duration.ofSeconds(1));
+        assertTrue(permit.isPresent());
+        permit.get().close();
+    }
+
+    @Test
+    void testAcquireAsyncRejectsUnsatisfiableRequest() {
+        CompletableFuture<MemoryPermit> future = memoryBudget.acquireAsync(INITIAL_MEMORY_BUDGET + 1);
+        ExecutionException e = assertThrows(ExecutionException.class, future::get);
+        assertThat(e.getCause(), is(instanceOf(IllegalArgumentException.class)));
+    }
+
+    @Test
+    void testCancelledRequestUnblocksQueue() throws Exception {
+        MemoryPermit held = memoryBudget.tryAcquire(600).orElseThrow();
+        CompletableFuture<MemoryPermit> large = memoryBudget.acquireAsync(900);
+        CompletableFuture<MemoryPermit> small = memoryBudget.acquireAsync(300);
+        assertThat(small.isDone(), is(false));
+
+        large.cancel(false);
+        MemoryPermit granted = small.get(1, TimeUnit.SECONDS);
+        assertThat(memoryBudget.getAvailableBytes(), is(100L));
+        granted.close();
+        held.close();
+        assertThat(memoryBudget.getAvailableBytes(), is(INITIAL_MEMORY_BUDGET));
+    }
+
+    @Test
+    void testSetMemoryBudgetWhilePermitsAreHeld() throws Exception {
+        MemoryPermit held = memoryBudget.tryAcquire(800).orElseThrow();
+        memoryBudget.setMemoryBudget(500);
+        assertThat(memoryBudget.getMemoryBudget(), is(500L));
+        assertThat(memoryBudget.getAvailableBytes(), is(0L));
+        assertFalse(memoryBudget.tryAcquire(1).isPresent());
+
+        CompletableFuture<MemoryPermit> queued = memoryBudget.acquireAsync(400);
+        memoryBudget.setMemoryBudget(1500);
+        MemoryPermit granted = queued.get(1, TimeUnit.SECONDS);
+        held.close();
+        granted.close();
+        assertThat(memoryBudget.getAvailableBytes(), is(1500L));
+        assertThrows(IllegalArgumentException.class, () -> memoryBudget.setMemoryBudget(0));
+    }
+
+    @Test
+    void testShrinkingBudgetFailsQueuedRequestsThatNoLongerFit() throws Exception {
+        MemoryPermit held = memoryBudget.tryAcquire(INITIAL_MEMORY_BUDGET).orElseThrow();
+        CompletableFuture<MemoryPermit> large = memoryBudget.acquireAsync(800);
+        CompletableFuture<MemoryPermit> small = memoryBudget.acquireAsync(300);
+        memoryBudget.setMemoryBudget(500);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> large.get(1, TimeUnit.SECONDS));
+        assertThat(e.getCause(), instanceOf(IllegalArgumentException.class));
+        assertThat(memoryBudget.getQueuedCount(), is(1));
+        held.close();
+        small.get(1, TimeUnit.SECONDS).close();
+        assertThat(memoryBudget.getAvailableBytes(), is(500L));
+    }
+
+    @Test
+    void testGetMemoryBudget() {
+        long maxHeap = Runtime.getRuntime().maxMemory();
+        long maxDirect = MemoryBudget.getMaxDirectMemory();
+        assertThat(maxDirect, is(greaterThan(0L)));
+        assertThat(MemoryBudget.getMemoryBudget(4096), is(4096L));
+        assertThat(MemoryBudget.getMemoryBudget(0), is(Default.defaultMemoryBudget(maxHeap, maxDirect)));
+        assertThat(MemoryBudget.getMemoryBudget(-1024), is(maxHeap + maxDirect - 1024));
+        assertThat(MemoryBudget.forNode(2048).getMemoryBudget(), is(2048L));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+import it.unimi.dsi.fastutil.longs.LongHeapPriorityQueue;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ObjectPoolTest {
+
+    @Test
+    void testReturnedObjectIsReusedAndReset() {
+        ObjectPool<LongHeapPriorityQueue> pool = new ObjectPool<>(LongHeapPriorityQueue::new, LongHeapPriorityQueue::clear, 4);
+        LongHeapPriorityQueue heap = pool.borrow();
+        heap.enqueue(42);
+        pool.release(heap);
+
+        LongHeapPriorityQueue again = pool.borrow();
+        assertThat(again, is(sameInstance(heap)));
+        assertThat(again.isEmpty(), is(true));
+        ObjectPoolStats stats = pool.getStats();
+        assertThat(stats.hits(), is(1L));
+        assertThat(stats.misses(), is(1L));
+        assertThat(stats.idle(), is(0));
+        assertThat(stats.keepLimit(), is(4));
+    }
+
+    @Test
+    void testIdleObjectsAreTrimmedToKeepLimit() {
+        AtomicInteger created = new AtomicInteger();
+        ObjectPool<int[]> pool = new ObjectPool<>(() -> new int[created.incrementAndGet()], array -> {}, 2);
+        List<int[]> borrowed = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            borrowed.add(pool.borrow());
+        }
+        borrowed.forEach(pool::release);
+        ObjectPoolStats stats = pool.getStats();
+        assertThat(created.get(), is(5));
+        assertThat(stats.idle(), is(2));
+        assertThat(stats.discarded(), is(3L));
+
+        pool.setKeepLimit(1);
+        assertThat(pool.getKeepLimit(), is(1));
+        assertThat(pool.getStats().idle(), is(1));
+        pool.borrow();
+        assertThat(pool.getStats().idle(), is(0));
+        assertThrows(IllegalArgumentException.class, () -> pool.setKeepLimit(0));
+        assertThrows(IllegalArgumentException.class, () -> new ObjectPool<>(Object::new, object -> {}, -1));
+    }
+
+    @Test
+    void testDroppedObjectsAreDiscarded() {
+        List<int[]> discarded = new ArrayList<>();
+        ObjectPool<int[]> pool = new ObjectPool<>(() -> new int[1], array -> {}, discarded::add, 2);
+        assertThat(pool.poll(), is(nullValue()));
+        List<int[]> borrowed = List.of(pool.borrow(), pool.borrow(), pool.borrow());
+        borrowed.forEach(pool::release);
+        assertThat(discarded, contains(sameInstance(borrowed.get(2))));
+
+        int[] idle = pool.poll();
+        assertThat(idle, is(notNullValue()));
+        pool.release(idle);
+        pool.setKeepLimit(1);
+        assertThat(discarded, hasSize(2));
+        pool.clear();
+        assertThat(discarded, hasSize(3));
+        assertThat(pool.getStats().idle(), is(0));
+        assertThat(pool.getStats().discarded(), is(3L));
+    }
+
+    @Test
+    void testConcurrentBorrowersNeverShareAnObject() throws Exception {
+        ObjectPool<AtomicInteger> pool = new ObjectPool<>(AtomicInteger::new, counter -> {});
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int task = 0; task < 8; task++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        AtomicInteger owner = pool.borrow();
+                        if (owner.getAndIncrement() != 0) {
+                            return false;
+                        }
+                        owner.decrementAndGet();
+                        pool.release(owner);
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                assertThat(future.get(), is(true));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        ObjectPoolStats stats = pool.getStats();
+        assertThat(stats.hits() + stats.misses(), is(80_000L));
+        assertThat(stats.idle(), is(lessThanOrEqualTo(Default.POOL_KEEP_LIMIT)));
+        assertThat(stats.hits(), is(greaterThan(stats.misses())));
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class PinningMonitorTest {
+
+    @Test
+    void testReportsPinnedCarrier() throws InterruptedException {
+        Object monitor = new Object();
+        try (PinningMonitor pinning = new PinningMonitor(Duration.ofMillis(10))) {
+            pinning.start();
+            Thread.ofVirtual().start(() -> {
+                synchronized (monitor) {
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }).join();
+
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (pinning.getPinnedCount() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            assertThat(pinning.getPinnedCount(), is(1L));
+            assertThat(pinning.getPinnedTimes().getMaxValue(), greaterThanOrEqualTo(Duration.ofMillis(40).toNanos()));
+        }
+    }
+
+    @Test
+    void testIgnoresUnpinnedBlocking() throws InterruptedException {
+        try (PinningMonitor pinning = new PinningMonitor(Duration.ofMillis(10))) {
+            pinning.start();
+            Thread.ofVirtual().start(() -> {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }).join();
+
+            Thread.sleep(1500);
+            assertThat(pinning.getPinnedCount(), is(0L));
+        }
+    }
+}
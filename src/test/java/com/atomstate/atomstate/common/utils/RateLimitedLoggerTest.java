@@ -0,0 +1,52 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class RateLimitedLoggerTest {
+    @Test
+    public void testSuppressesWarningsWithinInterval() {
+        Logger logger = mock(Logger.class);
+        when(logger.isWarnEnabled()).thenReturn(true);
+        RateLimitedLogger limited = new RateLimitedLogger(logger, Duration.ofHours(1));
+
+        for (int i = 0; i < 5; i++) {
+            limited.warn("Failed: {} {}", i, i);
+        }
+
+        verify(logger, times(1)).warn("Failed: {} {}", 0, 0);
+        assertEquals(4, limited.getSuppressed());
+    }
+
+    @Test
+    public void testReportsSuppressedCountWithNextWarning() throws InterruptedException {
+        Logger logger = mock(Logger.class);
+        when(logger.isWarnEnabled()).thenReturn(true);
+        RateLimitedLogger limited = new RateLimitedLogger(logger, Duration.ofMillis(20));
+
+        limited.warn("Failed: {} {}", 1, 1);
+        limited.warn("Failed: {} {}", 2, 2);
+        Thread.sleep(40);
+        limited.warn("Failed: {} {}", 3, 3);
+
+        verify(logger).warn(anyString(), any(), any(), any());
+        assertEquals(0, limited.getSuppressed());
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.common.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestExecutorTest {
+
+    private CpuBudget budget;
+    private RequestExecutor requests;
+
+    @BeforeEach
+    void setUp() {
+        budget = new CpuBudget(2);
+        requests = new RequestExecutor(budget, Duration.ofMillis(100));
+    }
+
+    @AfterEach
+    void tearDown() {
+        requests.close();
+    }
+
+    @Test
+    void testRunsRequestsOnVirtualThreads() throws Exception {
+        CompletableFuture<Boolean> virtual = requests.submit(() -> Thread.currentThread().isVirtual());
+        CompletableFuture<Object> failed = requests.submit(() -> {
+            throw new IllegalStateException("Request failed");
+        });
+
+        assertTrue(virtual.get());
+        ExecutionException e = assertThrows(ExecutionException.class, failed::get);
+        assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+        assertThat(requests.getInFlight(), is(0));
+    }
+
+    @Test
+    void testCpuSectionsAreBoundedByBudget() throws Exception {
+        AtomicInteger computing = new AtomicInteger();
+        AtomicInteger maxComputing = new AtomicInteger();
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(requests.submit(() -> {
+                // Waiting for I/O holds no CPU
+                Thread.sleep(5);
+                return requests.compute(1, 1, cpus -> {
+                    maxComputing.accumulateAndGet(computing.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    computing.decrementAndGet();
+                    return cpus;
+                });
+            }));
+        }
+        for (CompletableFuture<Integer> future : futures) {
+            try {
+                assertThat(future.get(), is(1));
+            } catch (ExecutionException e) {
+                // A section may time out under this much contention
+                assertThat(e.getCause(), instanceOf(TimeoutException.class));
+            }
+        }
+
+        assertThat(maxComputing.get(), allOf(greaterThanOrEqualTo(1), lessThanOrEqualTo(2)));
+        assertThat(budget.getAvailableCpus(), is(2));
+    }
+
+    @Test
+    void testSectionGetsAvailableCpus() throws Exception {
+        assertThat(requests.compute(1, 4, cpus -> cpus), is(2));
+
+        CpuPermit held = budget.tryAcquire(1).orElseThrow();
+        try {
+            assertThat(requests.compute(1, 2, cpus -> cpus), is(1));
+        } finally {
+            held.close();
+        }
+        assertThat(budget.getAvailableCpus(), is(2));
+    }
+
+    @Test
+    void testNestedSectionReusesCpus() throws Exception {
+        int inner = requests.compute(2, 2, outer -> {
+            try {
+                return requests.compute(1, 1, cpus -> cpus);
+            } catch (InterruptedException | TimeoutException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertThat(inner, is(2));
+        assertThat(budget.getAvailableCpus(), is(2));
+    }
+
+    @Test
+    void testSectionTimesOutWithoutCpus() {
+        CpuPermit held = budget.tryAcquire(2).orElseThrow();
+        try {
+            assertThrows(TimeoutException.class, () -> requests.compute(1, 1, cpus -> cpus));
+        } finally {
+            held.close();
+        }
+        assertThrows(IllegalArgumentException.class, () -> requests.compute(3, 3, cpus -> cpus));
+        assertThrows(IllegalArgumentException.class, () -> requests.compute(2, 1, cpus -> cpus));
+        assertThat(budget.getAvailableCpus(), is(2));
+    }
+}
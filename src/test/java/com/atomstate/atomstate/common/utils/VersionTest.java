@@ -41,6 +41,57 @@ public class VersionTest {
         assertThrows(IllegalArgumentException.class, () -> Version.parse("1.0"));
         assertThrows(IllegalArgumentException.class, () -> Version.parse("1.0.0.0"));
         assertThrows(IllegalArgumentException.class, () -> Version.parse("invalid.version"));
+        assertThrows(IllegalArgumentException.class, () -> Version.parse(""));
+        assertThrows(IllegalArgumentException.class, () -> Version.parse("1..0"));
+        assertThrows(IllegalArgumentException.class, () -> Version.parse("1.0."));
+        assertThrows(IllegalArgumentException.class, () -> Version.parse("-1.0.0"));
+        assertThrows(IllegalArgumentException.class, () -> Version.parse("1.0.99999999999"));
+        assertThrows(IllegalArgumentException.class, () -> Version.parse("2097152.0.0"));
+    }
+
+    @Test
+    public void testParseCharSequence() {
+        StringBuilder header = new StringBuilder("3.14.15");
+        assertEquals(new Version(3, 14, 15), Version.parse(header));
+        assertEquals(new Version(2097151, 2097151, 4194303), Version.parse("2097151.2097151.4194303"));
+    }
+
+    @Test
+    public void testOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new Version(-1, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new Version(1 << 21, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> Version.of(0, 1 << 21, 0));
+        assertThrows(IllegalArgumentException.class, () -> Version.of(0, 0, 1 << 22));
+    }
+
+    @Test
+    public void testPacked() {
+        Version version = new Version(7, 2097151, 4194303);
+        assertEquals(version, Version.fromPacked(version.toPacked()));
+        assertEquals(7, Version.fromPacked(version.toPacked()).major);
+        assertTrue(version.toPacked() < new Version(8, 0, 0).toPacked());
+
+        Version max = new Version(2097151, 0, 0);
+        assertTrue(max.toPacked() < 0); // Uses the sign bit, still ordered unsigned
+        assertTrue(max.compareTo(new Version(1, 2097151, 4194303)) > 0);
+    }
+
+    @Test
+    public void testCachedInstances() {
+        Version version = Version.of(4, 5, 6);
+        assertSame(version, Version.parse("4.5.6"));
+        assertSame(version, Version.fromPacked(version.toPacked()));
+        assertNotSame(version, new Version(4, 5, 6));
+    }
+
+    @Test
+    public void testCompatibility() {
+        Version current = new Version(2, 3, 4);
+        assertEquals(new Version(2, 0, 0), current.minSupported());
+        assertTrue(current.isCompatibleWith(new Version(2, 0, 0)));
+        assertTrue(current.isCompatibleWith(new Version(2, 9, 0)));
+        assertFalse(current.isCompatibleWith(new Version(1, 9, 9)));
+        assertFalse(current.isCompatibleWith(new Version(3, 0, 0)));
     }
 
     @Test
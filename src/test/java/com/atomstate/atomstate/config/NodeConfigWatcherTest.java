@@ -0,0 +1,121 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.config;
+
+import com.atomstate.atomstate.common.utils.CpuBudget;
+import com.atomstate.atomstate.common.utils.CpuPermit;
+import com.atomstate.atomstate.common.utils.Default;
+import com.atomstate.atomstate.common.utils.ObjectPool;
+import com.atomstate.atomstate.consensus.ConsensusConfig;
+import com.atomstate.atomstate.consensus.ConsensusNode;
+import com.atomstate.atomstate.consensus.InMemoryTransport;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class NodeConfigWatcherTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testLoadOverridesDefaults() throws IOException {
+        Path file = write("""
+                cpu-budget: 3
+                pool-keep-limit: 7
+                consensus-meta-op-wait-ms: 250
+                """);
+        NodeConfig config = NodeConfig.load(file);
+        assertThat(config.resolveCpuBudget(), is(3));
+        assertThat(config.resolvePoolKeepLimit(), is(7));
+        assertThat(config.resolveHnswThreads(), is(Default.threadCountForHnsw()));
+        assertThat(config.resolveConsensusConfig().metaOpWait(), is(Duration.ofMillis(250)));
+        assertThat(config.resolveConsensusConfig().confirmRetries(), is(Default.CONSENSUS_CONFIRM_RETRIES));
+
+        assertThat(NodeConfig.load(write("")), is(NodeConfig.DEFAULT));
+        assertThrows(IOException.class, () -> NodeConfig.load(write("pool-keep-limt: 7\n")));
+        assertThrows(IOException.class, () -> NodeConfig.load(write("hnsw-threads: 0\n")));
+    }
+
+    @Test
+    void testReloadAppliesChangesToBoundComponents() throws IOException {
+        Path file = write("cpu-budget: 4\npool-keep-limit: 8\n");
+        CpuBudget budget = new CpuBudget(2);
+        ObjectPool<List<Integer>> pool = new ObjectPool<>(ArrayList::new, List::clear, 2);
+        ConsensusNode node = new ConsensusNode("a", List.of("a"), new InMemoryTransport(), ConsensusConfig.DEFAULT);
+        try (NodeConfigWatcher watcher = new NodeConfigWatcher(file)) {
+            watcher.bind(budget);
+            watcher.bind(pool);
+            watcher.bind(node);
+            assertThat(budget.getCpuBudget(), is(4));
+            assertThat(pool.getKeepLimit(), is(8));
+            assertThat(node.getConfig(), is(ConsensusConfig.DEFAULT));
+
+            CpuPermit held = budget.tryAcquire(4).orElseThrow();
+            write("cpu-budget: 1\npool-keep-limit: 16\nconsensus-confirm-retries: 9\n");
+            assertThat(watcher.reload(), is(true));
+            assertThat(watcher.reload(), is(false));
+            assertThat(budget.getCpuBudget(), is(1));
+            assertThat(budget.getAvailableCpus(), is(0));
+            assertThat(pool.getKeepLimit(), is(16));
+            assertThat(node.getConfig().confirmRetries(), is(9));
+            held.close();
+            assertThat(budget.getAvailableCpus(), is(1));
+
+            // An invalid edit keeps the previous configuration
+            write("pool-keep-limit: -1\n");
+            assertThat(watcher.reload(), is(false));
+            assertThat(watcher.current().poolKeepLimit(), is(16));
+
+            // An editor truncating the file before writing it does not reset to the defaults
+            write("");
+            assertThat(watcher.reload(), is(false));
+            assertThat(watcher.current().poolKeepLimit(), is(16));
+            assertThat(pool.getKeepLimit(), is(16));
+            assertThat(budget.getCpuBudget(), is(1));
+        }
+    }
+
+    @Test
+    void testWatchServicePicksUpReplacedFile() throws Exception {
+        Path file = write("cpu-budget: 2\n");
+        CpuBudget budget = new CpuBudget(1);
+        try (NodeConfigWatcher watcher = new NodeConfigWatcher(file)) {
+            watcher.bind(budget);
+            watcher.start();
+            assertThrows(IllegalStateException.class, watcher::start);
+
+            Path temp = directory.resolve("node.yaml.tmp");
+            Files.writeString(temp, "cpu-budget: 3\n");
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+            while (budget.getCpuBudget() != 3 && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertThat(budget.getCpuBudget(), is(3));
+        }
+    }
+
+    private Path write(String yaml) throws IOException {
+        return Files.writeString(directory.resolve("node.yaml"), yaml);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.consensus;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConsensusNodeTest {
+    private static final List<String> PEERS = List.of("a", "b", "c");
+
+    @Test
+    void testBootstrapIsPipelinedAndBatched() {
+        InMemoryTransport transport = new InMemoryTransport();
+        List<ConsensusNode> nodes = nodes(transport, ConsensusConfig.DEFAULT);
+        ConsensusNode leader = elect(nodes.getFirst(), transport);
+        assertThat(nodes.get(1).getLeader().orElseThrow(), is("a"));
+
+        long sentBefore = transport.getSentCount();
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            futures.add(leader.propose(new MetaOperation.CreateCollection("collection-" + i, PEERS)));
+        }
+        transport.deliverAll();
+
+        for (CompletableFuture<Long> future : futures) {
+            assertThat(future.isDone(), is(true));
+        }
+        assertThat(futures.getLast().join(), is(leader.getLastIndex()));
+        for (ConsensusNode node : nodes) {
+            assertThat(node.getCommitIndex(), is(leader.getLastIndex()));
+            assertThat(node.getMetadata().getCollections(), hasSize(500));
+            assertThat(node.getMetadata().getShardPeers("collection-7").orElseThrow(), is(PEERS));
+        }
+        // Confirming one by one would take two messages per follower and operation
+        assertThat(transport.getSentCount() - sentBefore, is(lessThan(100L)));
+    }
+
+    @Test
+    void testOperationsApplyInLogOrder() {
+        InMemoryTransport transport = new InMemoryTransport();
+        List<ConsensusNode> nodes = nodes(transport, ConsensusConfig.DEFAULT);
+        ConsensusNode leader = elect(nodes.getFirst(), transport);
+
+        List<CompletableFuture<Long>> futures = leader.proposeAll(List.of(
+                new MetaOperation.CreateCollection("docs", List.of("a", "b")),
+                new MetaOperation.MoveShard("docs", 1, "c"),
+                new MetaOperation.SetReplicaState("docs", 0, "a", ReplicaState.PARTIAL),
+                new MetaOperation.CreateCollection("docs", List.of("a"))));
+        transport.deliverAll();
+
+        assertThat(futures.get(2).join(), is(futures.get(1).join() + 1));
+        CompletionException rejected = assertThrows(CompletionException.class, () -> futures.get(3).join());
+        assertThat(rejected.getCause(), is(instanceOf(IllegalStateException.class)));
+        for (ConsensusNode node : nodes) {
+            ClusterMetadata metadata = node.getMetadata();
+            assertThat(metadata.getShardPeers("docs").orElseThrow(), is(List.of("a", "c")));
+            assertThat(metadata.getReplicaState("docs", 0, "a").orElseThrow(), is(ReplicaState.PARTIAL));
+            assertThat(metadata.getReplicaState("docs", 1, "b").isPresent(), is(false));
+            assertThat(metadata.getAppliedIndex(), is(5L));
+        }
+        assertThrows(IllegalStateException.class, () -> nodes.get(1).propose(new MetaOperation.DropCollection("docs")));
+    }
+
+    @Test
+    void testDisconnectedFollowerCatchesUp() {
+        InMemoryTransport transport = new InMemoryTransport();
+        List<ConsensusNode> nodes = nodes(transport, new ConsensusConfig(16, 2, 3, Duration.ofSeconds(10)));
+        ConsensusNode leader = elect(nodes.getFirst(), transport);
+        ConsensusNode lagging = nodes.get(2);
+
+        transport.disconnect("c");
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(leader.propose(new MetaOperation.CreateCollection("collection-" + i, List.of("a"))));
+        }
+        transport.deliverAll();
+        assertThat(futures.getLast().isDone(), is(true));
+        assertThat(lagging.getMetadata().getCollections(), is(empty()));
+
+        transport.reconnect("c");
+        leader.heartbeat();
+        transport.deliverAll();
+        assertThat(lagging.getLastIndex(), is(leader.getLastIndex()));
+        assertThat(lagging.getMetadata().getCollections(), hasSize(100));
+    }
+
+    @Test
+    void testNewLeaderReplacesUncommittedEntries() {
+        InMemoryTransport transport = new InMemoryTransport();
+        List<ConsensusNode> nodes = nodes(transport, ConsensusConfig.DEFAULT);
+        ConsensusNode oldLeader = elect(nodes.getFirst(), transport);
+
+        transport.disconnect("a");
+        CompletableFuture<Long> lost = oldLeader.propose(new MetaOperation.CreateCollection("lost", List.of("a")));
+        ConsensusNode newLeader = elect(nodes.get(1), transport);
+        assertThat(newLeader.getTerm(), is(2L));
+        CompletableFuture<Long> kept = newLeader.propose(new MetaOperation.CreateCollection("kept", List.of("b")));
+        transport.deliverAll();
+        assertThat(kept.isDone(), is(true));
+
+        transport.reconnect("a");
+        newLeader.heartbeat();
+        transport.deliverAll();
+        assertThat(oldLeader.getRole(), is(ConsensusNode.Role.FOLLOWER));
+        assertThat(oldLeader.getLeader().orElseThrow(), is("b"));
+        CompletionException replaced = assertThrows(CompletionException.class, lost::join);
+        assertThat(replaced.getCause(), is(instanceOf(IllegalStateException.class)));
+        for (ConsensusNode node : nodes) {
+            assertThat(node.getMetadata().getCollections(), contains("kept"));
+        }
+    }
+
+    @Test
+    void testProposeAndWaitRetriesThenTimesOut() {
+        InMemoryTransport transport = new InMemoryTransport();
+        List<ConsensusNode> nodes = nodes(transport, new ConsensusConfig(256, 4, 2, Duration.ofMillis(20)));
+        ConsensusNode leader = elect(nodes.getFirst(), transport);
+
+        transport.disconnect("b");
+        transport.disconnect("c");
+        long sentBefore = transport.getSentCount();
+        assertThrows(TimeoutException.class,
+                () -> leader.proposeAndWait(new MetaOperation.CreateCollection("docs", List.of("a"))));
+        // The first attempt and two retransmissions to each follower
+        assertThat(transport.getSentCount() - sentBefore, is(6L));
+        assertThat(transport.getDroppedCount(), is(greaterThanOrEqualTo(6L)));
+    }
+
+    @Test
+    void testSinglePeerCommitsAlone() throws Exception {
+        InMemoryTransport transport = new InMemoryTransport();
+        ConsensusNode node = new ConsensusNode("a", List.of("a"), transport, ConsensusConfig.DEFAULT);
+        node.startElection();
+        assertThat(node.getRole(), is(ConsensusNode.Role.LEADER));
+        assertThat(node.proposeAndWait(new MetaOperation.CreateCollection("docs", List.of("a"))), is(2L));
+        assertThat(transport.getSentCount(), is(0L));
+    }
+
+    private static List<ConsensusNode> nodes(InMemoryTransport transport, ConsensusConfig config) {
+        List<ConsensusNode> nodes = new ArrayList<>();
+        for (String peer : PEERS) {
+            nodes.add(new ConsensusNode(peer, PEERS, transport, config));
+        }
+        return nodes;
+    }
+
+    private static ConsensusNode elect(ConsensusNode candidate, InMemoryTransport transport) {
+        candidate.startElection();
+        transport.deliverAll();
+        assertThat(candidate.getRole(), is(ConsensusNode.Role.LEADER));
+        return candidate;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.index.hnsw;
+
+import com.atomstate.atomstate.common.utils.CpuBudget;
+import com.atomstate.atomstate.common.utils.CpuPermit;
+import com.atomstate.atomstate.common.utils.CpuPriority;
+import com.atomstate.atomstate.common.utils.CpuShare;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class HnswBuildExecutorTest {
+
+    private static final int POINTS = 20_000;
+
+    @Test
+    void testInsertsEveryIdExactlyOnce() throws InterruptedException {
+        CpuBudget budget = new CpuBudget(4);
+        AtomicIntegerArray inserted = new AtomicIntegerArray(POINTS);
+        try (CpuPermit permit = budget.tryAcquire(4).orElseThrow();
+             HnswBuildExecutor executor = new HnswBuildExecutor(permit, 4, 16)) {
+            executor.insertAll(0, POINTS, inserted::incrementAndGet);
+            assertThat(executor.getParallelism(), is(4));
+        }
+        for (int id = 0; id < POINTS; id++) {
+            assertThat(inserted.get(id), is(1));
+        }
+        assertThat(budget.getAvailableCpus(), is(4));
+    }
+
+    @Test
+    void testConcurrencyIsBoundedByThePermit() throws InterruptedException {
+        CpuBudget budget = new CpuBudget(4);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        try (CpuPermit permit = budget.tryAcquire(2).orElseThrow();
+             HnswBuildExecutor executor = new HnswBuildExecutor(permit, 2, 1)) {
+            executor.insertAll(0, 200, id -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(1);
+                running.decrementAndGet();
+            });
+            assertThat(permit.numCpus(), is(2));
+        }
+        assertThat(maxRunning.get(), is(lessThanOrEqualTo(2)));
+    }
+
+    @Test
+    void testGrowsThePermitWhenCpusAreIdle() throws InterruptedException {
+        CpuBudget budget = new CpuBudget(4);
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger running = new AtomicInteger();
+        try (CpuPermit permit = budget.tryAcquire(1).orElseThrow();
+             HnswBuildExecutor executor = new HnswBuildExecutor(permit, 4, 1)) {
+            executor.insertAll(0, 500, id -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(1);
+                running.decrementAndGet();
+            });
+            assertThat(permit.numCpus(), is(4));
+            assertThat(executor.getParallelism(), is(4));
+        }
+        assertThat(maxRunning.get(), is(greaterThan(1)));
+        assertThat(budget.getAvailableCpus(), is(4));
+    }
+
+    @Test
+    void testGivesCpusBackToHigherPriorityClass() throws InterruptedException {
+        CpuBudget node = new CpuBudget(4);
+        CpuBudget search = node.newChild(CpuPriority.SEARCH, new CpuShare(0, 4));
+        CpuBudget indexing = node.newChild(CpuPriority.INDEXING, new CpuShare(0, 4));
+        CompletableFuture<CpuPermit> searching = new CompletableFuture<>();
+        AtomicInteger inserted = new AtomicInteger();
+        try (CpuPermit permit = indexing.tryAcquire(4).orElseThrow();
+             HnswBuildExecutor executor = new HnswBuildExecutor(permit, 4, 1)) {
+            executor.insertAll(0, 400, id -> {
+                if (inserted.incrementAndGet() == 100) {
+                    search.acquireAsync(3).whenComplete((granted, error) -> searching.complete(granted));
+                }
+                sleep(1);
+            });
+            assertThat(searching.join().numCpus(), is(3));
+            assertThat(permit.numCpus(), is(1));
+            assertThat(executor.getParallelism(), is(1));
+        }
+        assertThat(inserted.get(), is(400));
+        searching.join().close();
+        assertThat(node.getAvailableCpus(), is(4));
+    }
+
+    @Test
+    void testFailureStopsTheBuild() {
+        CpuBudget budget = new CpuBudget(2);
+        AtomicInteger inserted = new AtomicInteger();
+        try (CpuPermit permit = budget.tryAcquire(2).orElseThrow();
+             HnswBuildExecutor executor = new HnswBuildExecutor(permit, 2, 8)) {
+            IllegalStateException error = assertThrows(IllegalStateException.class,
+                    () -> executor.insertAll(0, POINTS, id -> {
+                        inserted.incrementAndGet();
+                        if (id == 100) {
+                            throw new IllegalStateException("broken vector " + id);
+                        }
+                    }));
+            assertThat(error.getMessage(), is("broken vector 100"));
+        }
+        assertThat(inserted.get(), is(lessThan(POINTS)));
+    }
+
+    @Test
+    void testReleasedPermitCancelsTheBuild() {
+        CpuBudget budget = new CpuBudget(2);
+        CpuPermit permit = budget.tryAcquire(1).orElseThrow();
+        try (HnswBuildExecutor executor = new HnswBuildExecutor(permit, 1, 1)) {
+            assertThrows(CancellationException.class, () -> executor.insertAll(0, POINTS, id -> {
+                if (id == 10) {
+                    permit.close();
+                }
+            }));
+        }
+        assertThat(budget.getAvailableCpus(), is(2));
+    }
+
+    @Test
+    void testRejectsInvalidArguments() {
+        CpuBudget budget = new CpuBudget(2);
+        CpuPermit permit = budget.tryAcquire(1).orElseThrow();
+        assertThrows(IllegalArgumentException.class, () -> new HnswBuildExecutor(permit, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new HnswBuildExecutor(permit, 1, 0));
+        try (HnswBuildExecutor executor = new HnswBuildExecutor(permit, 1, 1)) {
+            assertThrows(IllegalArgumentException.class, () -> executor.insertAll(5, 4, id -> {
+            }));
+            assertThrows(IllegalArgumentException.class, () -> executor.insertAll(-1, 4, id -> {
+            }));
+        }
+        permit.close();
+        assertThrows(IllegalArgumentException.class, () -> new HnswBuildExecutor(permit));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.index.hnsw;
+
+import com.atomstate.atomstate.common.utils.CpuBudget;
+import com.atomstate.atomstate.common.utils.CpuPermit;
+import com.atomstate.atomstate.common.utils.Default;
+import com.atomstate.atomstate.common.utils.MemoryBudget;
+import com.atomstate.atomstate.index.ScoredPoint;
+import com.atomstate.atomstate.vectors.DenseVectors;
+import com.atomstate.atomstate.vectors.Distance;
+import com.atomstate.atomstate.vectors.QuantizedVectors;
+import com.atomstate.atomstate.vectors.QueryScorer;
+import com.atomstate.atomstate.vectors.VectorScorer;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HnswIndexTest {
+
+    private static final int POINTS = 2_000;
+    private static final int DIMENSION = 16;
+    private static final int QUERIES = 50;
+    private static final int LIMIT = 10;
+    private static final HnswConfig CONFIG = new HnswConfig(8, 64, 64);
+
+    @Test
+    void testSequentialBuildHasHighRecall() {
+        DenseVectors vectors = randomVectors(POINTS, Distance.EUCLID, 1);
+        HnswIndex index = new HnswIndex(vectors, CONFIG, POINTS);
+        for (int id = 0; id < POINTS; id++) {
+            index.insert(id);
+        }
+        assertThat(index.size(), is(POINTS));
+        assertThat(recall(index, vectors), is(greaterThan(0.9)));
+    }
+
+    @Test
+    void testParallelBuildHasHighRecall() throws InterruptedException {
+        DenseVectors vectors = randomVectors(POINTS, Distance.COSINE, 2);
+        HnswIndex index = new HnswIndex(vectors, CONFIG, POINTS);
+        CpuBudget budget = new CpuBudget(4);
+        try (CpuPermit permit = budget.tryAcquire(4).orElseThrow();
+             HnswBuildExecutor executor = new HnswBuildExecutor(permit, 4, 16)) {
+            index.build(executor);
+        }
+        assertThat(index.size(), is(POINTS));
+        assertThat(recall(index, vectors), is(greaterThan(0.9)));
+    }
+
+    @Test
+    void testQuantizedSearchIsRescored() {
+        DenseVectors vectors = randomVectors(POINTS, Distance.DOT, 5);
+        CpuBudget budget = new CpuBudget(2);
+        try (CpuPermit permit = budget.tryAcquire(2).orElseThrow()) {
+            QuantizedVectors quantized = QuantizedVectors.quantize(vectors, permit, new MemoryBudget(Long.MAX_VALUE)).orElseThrow();
+            HnswIndex index = new HnswIndex(quantized, CONFIG, POINTS);
+            for (int id = 0; id < POINTS; id++) {
+                index.insert(id);
+            }
+            assertThat(recall(index, vectors), is(greaterThan(0.9)));
+
+            float[] query = vectors.get(7, new float[DIMENSION]);
+            for (ScoredPoint point : index.search(query, LIMIT)) {
+                assertThat(point.distance(), is(vectors.distance(query, point.id())));
+            }
+        }
+    }
+
+    @Test
+    void testLinksRespectLayerLimits() {
+        DenseVectors vectors = randomVectors(POINTS, Distance.DOT, 3);
+        HnswIndex index = new HnswIndex(vectors, CONFIG, POINTS);
+        for (int id = 0; id < POINTS; id++) {
+            index.insert(id);
+        }
+        assertThat(index.getMaxLevel(), is(greaterThan(0)));
+        for (int id = 0; id < POINTS; id++) {
+            IntArrayList bottom = index.links(id, 0);
+            assertThat(bottom.size(), is(both(greaterThan(0)).and(lessThanOrEqualTo(CONFIG.maxLinks(0)))));
+            assertThat(bottom.contains(id), is(false));
+            assertThat(new IntOpenHashSet(bottom).size(), is(bottom.size()));
+            for (int level = 1; level <= index.getMaxLevel(); level++) {
+                assertThat(index.links(id, level).size(), is(lessThanOrEqualTo(CONFIG.maxLinks(level))));
+            }
+        }
+    }
+
+    @Test
+    void testSearchEdgeCases() {
+        DenseVectors vectors = randomVectors(10, Distance.EUCLID, 4);
+        HnswIndex index = new HnswIndex(vectors, CONFIG, 10);
+        assertThat(index.search(new float[DIMENSION], 5), is(empty()));
+        assertThat(index.getMaxLevel(), is(-1));
+
+        index.insert(3);
+        float[] query = vectors.get(3, new float[DIMENSION]);
+        assertThat(index.search(query, 5), contains(new ScoredPoint(3, 0f)));
+        assertThat(index.contains(3), is(true));
+        assertThat(index.contains(4), is(false));
+
+        assertThrows(IllegalStateException.class, () -> index.insert(3));
+        assertThrows(IllegalArgumentException.class, () -> index.insert(10));
+        assertThrows(IllegalArgumentException.class, () -> index.search(new float[2], 5));
+        assertThrows(IllegalArgumentException.class, () -> index.search(query, 0));
+    }
+
+    @Test
+    void testBatchSearchMatchesSingleSearches() {
+        DenseVectors vectors = randomVectors(POINTS, Distance.COSINE, 7);
+        HnswIndex index = new HnswIndex(vectors, CONFIG, POINTS);
+        for (int id = 0; id < POINTS; id++) {
+            index.insert(id);
+        }
+        Random random = new Random(8);
+        float[][] queries = new float[101][DIMENSION];
+        for (float[] query : queries) {
+            for (int d = 0; d < DIMENSION; d++) {
+                query[d] = random.nextFloat() * 2 - 1;
+            }
+        }
+        CpuBudget budget = new CpuBudget(4);
+        try (CpuPermit permit = budget.tryAcquire(4).orElseThrow()) {
+            List<List<ScoredPoint>> batch = index.searchBatch(queries, LIMIT, permit);
+            assertThat(batch, hasSize(queries.length));
+            for (int i = 0; i < queries.length; i++) {
+                assertThat(batch.get(i), is(index.search(queries[i], LIMIT)));
+            }
+            assertThat(index.searchBatch(new float[0][], LIMIT, permit), is(empty()));
+            assertThrows(IllegalArgumentException.class,
+                    () -> index.searchBatch(new float[][]{new float[2]}, LIMIT, permit));
+        }
+        HnswIndex empty = new HnswIndex(vectors, CONFIG, POINTS);
+        CpuPermit released = budget.tryAcquire(1).orElseThrow();
+        assertThat(empty.searchBatch(queries, LIMIT, released).getFirst(), is(empty()));
+        released.close();
+        assertThrows(IllegalArgumentException.class, () -> index.searchBatch(queries, LIMIT, released));
+    }
+
+    @Test
+    void testBatchSearchesReuseHelperThreads() {
+        DenseVectors vectors = randomVectors(POINTS, Distance.EUCLID, 12);
+        Set<Thread> searching = ConcurrentHashMap.newKeySet();
+        VectorScorer recording = new VectorScorer() {
+            @Override
+            public int size() {
+                return vectors.size();
+            }
+
+            @Override
+            public int dimension() {
+                return vectors.dimension();
+            }
+
+            @Override
+            public float distance(int first, int second) {
+                return vectors.distance(first, second);
+            }
+
+            @Override
+            public float distance(float[] query, int point) {
+                return vectors.distance(query, point);
+            }
+
+            @Override
+            public QueryScorer scorer(float[] query) {
+                searching.add(Thread.currentThread());
+                return vectors.scorer(query);
+            }
+        };
+        float[][] queries = new float[256][];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = vectors.get(i, new float[DIMENSION]);
+        }
+        CpuBudget budget = new CpuBudget(4);
+        try (HnswIndex index = new HnswIndex(recording, CONFIG, POINTS);
+             CpuPermit permit = budget.tryAcquire(4).orElseThrow()) {
+            for (int id = 0; id < POINTS; id++) {
+                index.insert(id);
+            }
+            searching.clear();
+            for (int batch = 0; batch < 20; batch++) {
+                assertThat(index.searchBatch(queries, LIMIT, permit), hasSize(queries.length));
+            }
+        }
+        searching.remove(Thread.currentThread());
+        // Helpers come from the pool of the index instead of a new thread per batch
+        assertThat(searching.size(), is(lessThanOrEqualTo(Math.max(CpuBudget.getNumCpus(), 1))));
+        for (Thread thread : searching) {
+            assertThat(thread.getName(), startsWith("hnsw-search-"));
+        }
+    }
+
+    @Test
+    void testFilteredSearchOnlyReturnsAcceptedPoints() {
+        DenseVectors vectors = randomVectors(POINTS, Distance.EUCLID, 9);
+        HnswIndex index = new HnswIndex(vectors, CONFIG, POINTS);
+        for (int id = 0; id < POINTS; id++) {
+            index.insert(id);
+        }
+        IntArrayList accepted = IntArrayList.toList(IntStream.range(0, POINTS).filter(id -> id % 5 == 0));
+        Random random = new Random(10);
+        int hits = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            float[] query = vectors.get(random.nextInt(POINTS), new float[DIMENSION]);
+            List<ScoredPoint> found = index.search(query, LIMIT, CONFIG.efSearch(), id -> id % 5 == 0);
+            assertThat(found, hasSize(LIMIT));
+            List<ScoredPoint> exact = index.scan(query, LIMIT, accepted.iterator());
+            assertThat(exact, hasSize(LIMIT));
+            for (ScoredPoint point : found) {
+                assertThat(point.id() % 5, is(0));
+                if (exact.contains(point)) {
+                    hits++;
+                }
+            }
+        }
+        assertThat((double) hits / (QUERIES * LIMIT), is(greaterThan(0.9)));
+    }
+
+    @Test
+    void testRepeatedSearchesReuseScratch() {
+        DenseVectors vectors = randomVectors(200, Distance.EUCLID, 6);
+        HnswIndex index = new HnswIndex(vectors, CONFIG, 200);
+        for (int id = 0; id < 200; id++) {
+            index.insert(id);
+        }
+        long misses = index.getSearchPoolStats().misses();
+        float[] query = vectors.get(42, new float[DIMENSION]);
+        List<ScoredPoint> first = index.search(query, LIMIT);
+        for (int i = 0; i < 20; i++) {
+            assertThat(index.search(query, LIMIT), is(first));
+        }
+        assertThat(first.getFirst(), is(new ScoredPoint(42, 0f)));
+        assertThat(index.getSearchPoolStats().misses(), is(misses));
+        assertThat(index.getSearchPoolStats().hits(), is(greaterThanOrEqualTo(20L)));
+        assertThat(index.getSearchPoolStats().idle(), is(greaterThan(0)));
+    }
+
+    @Test
+    void testMemoryUsageCoversAllLayers() {
+        long bottom = 1000L * (2 * 16 + 1) * Integer.BYTES;
+        long scratch = Default.POOL_KEEP_LIMIT * SearchContext.memoryUsage(HnswConfig.DEFAULT, 1000);
+        long usage = HnswIndex.memoryUsage(HnswConfig.DEFAULT, 1000);
+        assertThat(usage - scratch, is(both(greaterThan(bottom)).and(lessThan(bottom * 2))));
+        assertThat(scratch, is(greaterThan(Default.POOL_KEEP_LIMIT * 1000L / 8)));
+        assertThat(HnswIndex.memoryUsage(HnswConfig.DEFAULT, 0),
+                is(Default.POOL_KEEP_LIMIT * SearchContext.memoryUsage(HnswConfig.DEFAULT, 0)));
+    }
+
+    @Test
+    void testCreateReservesMemoryUntilClosed() throws InterruptedException {
+        DenseVectors vectors = randomVectors(200, Distance.EUCLID, 11);
+        long scratch = SearchContext.memoryUsage(CONFIG, 200);
+        long graph = HnswIndex.memoryUsage(CONFIG, 200) - Default.POOL_KEEP_LIMIT * scratch;
+        MemoryBudget memory = new MemoryBudget(graph + scratch);
+        HnswIndex index = HnswIndex.create(vectors, CONFIG, 200, memory, Duration.ofMillis(10)).orElseThrow();
+        assertThat(memory.getAvailableBytes(), is(scratch));
+        for (int id = 0; id < 200; id++) {
+            index.insert(id);
+        }
+        assertThat(memory.getAvailableBytes(), is(0L));
+
+        // Helpers find no memory for their contexts, the calling thread searches the whole batch
+        float[][] queries = new float[64][];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = vectors.get(i, new float[DIMENSION]);
+        }
+        CpuBudget budget = new CpuBudget(4);
+        try (CpuPermit permit = budget.tryAcquire(4).orElseThrow()) {
+            List<List<ScoredPoint>> batch = index.searchBatch(queries, LIMIT, permit);
+            for (int i = 0; i < queries.length; i++) {
+                assertThat(batch.get(i), is(index.search(queries[i], LIMIT)));
+            }
+        }
+        assertThat(memory.getAvailableBytes(), is(0L));
+        assertThat(HnswIndex.create(vectors, CONFIG, 200, memory, Duration.ofMillis(10)).isPresent(), is(false));
+
+        index.close();
+        assertThat(memory.getAvailableBytes(), is(graph + scratch));
+    }
+
+    @Test
+    void testRejectsInvalidConfig() {
+        assertThrows(IllegalArgumentException.class, () -> new HnswConfig(1, 100, 10));
+        assertThrows(IllegalArgumentException.class, () -> new HnswConfig(16, 8, 10));
+        assertThrows(IllegalArgumentException.class, () -> new HnswConfig(16, 100, 0));
+        assertThat(HnswConfig.DEFAULT.maxLinks(0), is(32));
+        assertThat(HnswConfig.DEFAULT.maxLinks(3), is(16));
+    }
+
+    private static DenseVectors randomVectors(int count, Distance distance, long seed) {
+        Random random = new Random(seed);
+        DenseVectors vectors = new DenseVectors(DIMENSION, distance, count);
+        for (int i = 0; i < count; i++) {
+            float[] vector = new float[DIMENSION];
+            for (int d = 0; d < DIMENSION; d++) {
+                vector[d] = random.nextFloat() * 2 - 1;
+            }
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+
+    private static double recall(HnswIndex index, DenseVectors vectors) {
+        Random random = new Random(42);
+        int hits = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            float[] query = new float[DIMENSION];
+            for (int d = 0; d < DIMENSION; d++) {
+                query[d] = random.nextFloat() * 2 - 1;
+            }
+            int[] exact = IntStream.range(0, vectors.size()).boxed()
+                    .sorted(Comparator.comparingDouble(id -> vectors.distance(query, id)))
+                    .limit(LIMIT).mapToInt(Integer::intValue).toArray();
+            List<ScoredPoint> found = index.search(query, LIMIT);
+            assertThat(found, hasSize(LIMIT));
+            for (ScoredPoint point : found) {
+                if (Arrays.stream(exact).anyMatch(id -> id == point.id())) {
+                    hits++;
+                }
+            }
+        }
+        return (double) hits / (QUERIES * LIMIT);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.index.hnsw;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class NodeLocksTest {
+
+    @Test
+    void testStripeCountIsPowerOfTwo() {
+        assertThat(new NodeLocks(1).getStripeCount(), is(16));
+        assertThat(new NodeLocks(100).getStripeCount(), is(128));
+        assertThat(new NodeLocks(128).getStripeCount(), is(128));
+        assertThat(NodeLocks.forThreads(8).getStripeCount(), is(512));
+    }
+
+    @Test
+    void testLockExcludesConcurrentUpdates() throws Exception {
+        NodeLocks locks = new NodeLocks(16);
+        int[] neighbors = new int[4];
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        int node = i % neighbors.length;
+                        locks.lock(node);
+                        try {
+                            neighbors[node]++;
+                        } finally {
+                            locks.unlock(node);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        for (int count : neighbors) {
+            assertThat(count, is(10_000));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.index.hnsw;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+class VisitedSetTest {
+
+    @Test
+    void testAddAndClear() {
+        VisitedSet visited = new VisitedSet(10);
+        assertThat(visited.add(3), is(true));
+        assertThat(visited.add(3), is(false));
+        assertThat(visited.contains(3), is(true));
+        assertThat(visited.contains(4), is(false));
+        visited.clear();
+        assertThat(visited.contains(3), is(false));
+        assertThat(visited.add(3), is(true));
+        assertThat(visited.capacity(), is(10));
+    }
+
+    @Test
+    void testClearForgetsMarksOfEveryWord() {
+        VisitedSet visited = new VisitedSet(1000);
+        for (int round = 0; round < 3; round++) {
+            // Few marks are cleared word by word, many by wiping the bitset
+            int step = round == 1 ? 1 : 97;
+            for (int id = round; id < 1000; id += step) {
+                assertThat(visited.add(id), is(true));
+            }
+            visited.clear();
+            for (int id = 0; id < 1000; id++) {
+                assertThat(visited.contains(id), is(false));
+            }
+        }
+        assertThat(visited.add(999), is(true));
+        assertThat(visited.contains(998), is(false));
+    }
+
+    @Test
+    void testRepeatedClearsForgetOldMarks() {
+        VisitedSet visited = new VisitedSet(4);
+        for (int round = 0; round < 600; round++) {
+            // Point 0 is marked in every round, point 1 only in the first one
+            assertThat(visited.add(0), is(true));
+            if (round == 0) {
+                visited.add(1);
+            }
+            assertThat(visited.contains(1), is(round == 0));
+            visited.clear();
+        }
+    }
+
+    @Test
+    void testTakesABitPerPoint() {
+        assertThat(VisitedSet.memoryUsage(10_000_000), is(lessThan(1_500_000L)));
+        assertThat(VisitedSet.memoryUsage(0), is(lessThan(64L)));
+    }
+}
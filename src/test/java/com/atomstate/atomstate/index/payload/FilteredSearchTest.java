@@ -0,0 +1,106 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.index.payload;
+import com.atomstate.atomstate.index.ScoredPoint;
+import com.atomstate.atomstate.index.hnsw.HnswConfig;
+import com.atomstate.atomstate.index.hnsw.HnswIndex;
+import com.atomstate.atomstate.vectors.DenseVectors;
+import com.atomstate.atomstate.vectors.Distance;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class FilteredSearchTest {
+
+    private static final int POINTS = 1000;
+    private static final int DIMENSION = 8;
+    private static final int LIMIT = 10;
+    private static DenseVectors vectors;
+    private static HnswIndex index;
+
+    @BeforeAll
+    static void buildIndex() {
+        Random random = new Random(11);
+        vectors = new DenseVectors(DIMENSION, Distance.EUCLID, POINTS);
+        for (int i = 0; i < POINTS; i++) {
+            float[] vector = new float[DIMENSION];
+            for (int d = 0; d < DIMENSION; d++) {
+                vector[d] = random.nextFloat();
+            }
+            vectors.add(vector);
+        }
+        index = new HnswIndex(vectors, new HnswConfig(8, 64, 32), POINTS);
+        for (int id = 0; id < POINTS; id++) {
+            index.insert(id);
+        }
+    }
+
+    @Test
+    void testPlanFollowsSelectivity() {
+        FilteredSearch search = new FilteredSearch(index, PayloadIndexTest.payloads(), 50);
+        assertThat(search.plan(new Filter.Range("time", 0, 39), LIMIT, 32), is(SearchPlan.BRUTE_FORCE));
+        assertThat(search.plan(new Filter.Match("tenant", "t3"), LIMIT, 32), is(SearchPlan.FILTERED_GRAPH));
+        assertThat(search.plan(new Filter.Range("time", 50, 2000), LIMIT, 32), is(SearchPlan.UNFILTERED));
+        // The candidate list size raises the scan threshold
+        assertThat(search.plan(new Filter.Match("tenant", "t3"), LIMIT, 200), is(SearchPlan.BRUTE_FORCE));
+    }
+
+    @Test
+    void testEveryPlanReturnsTheExactFilteredNeighbors() {
+        FilteredSearch search = new FilteredSearch(index, PayloadIndexTest.payloads(), 50);
+        float[] query = vectors.get(123, new float[DIMENSION]);
+        List<Filter> filters = List.of(new Filter.Range("time", 0, 39), new Filter.Match("tenant", "t3"),
+                new Filter.Range("time", 50, 2000));
+        for (Filter filter : filters) {
+            PointIdSet matching = PayloadIndexTest.payloads().resolve(filter);
+            List<Integer> expected = IntStream.range(0, POINTS).filter(matching::contains).boxed()
+                    .sorted(Comparator.comparingDouble(id -> vectors.distance(query, id)))
+                    .limit(LIMIT).toList();
+            List<Integer> found = search.search(query, LIMIT, filter).stream().map(ScoredPoint::id).toList();
+            assertThat(found, is(expected));
+        }
+        assertThat(search.getPlanCount(SearchPlan.BRUTE_FORCE), is(1L));
+        assertThat(search.getPlanCount(SearchPlan.FILTERED_GRAPH), is(1L));
+        assertThat(search.getPlanCount(SearchPlan.UNFILTERED), is(1L));
+        assertThat(search.search(query, LIMIT, new Filter.Match("tenant", "none")), is(empty()));
+    }
+
+    @Test
+    void testEveryPlanSkipsStoredButUnindexedPoints() {
+        HnswIndex partial = new HnswIndex(vectors, new HnswConfig(8, 64, 32), POINTS);
+        for (int id = 0; id < POINTS; id++) {
+            if (id % 3 != 2) {
+                partial.insert(id);
+            }
+        }
+        FilteredSearch search = new FilteredSearch(partial, PayloadIndexTest.payloads(), 50);
+        float[] query = vectors.get(123, new float[DIMENSION]);
+        List<Filter> filters = List.of(new Filter.Range("time", 0, 39), new Filter.Match("tenant", "t3"),
+                new Filter.Range("time", 50, 2000));
+        for (Filter filter : filters) {
+            List<ScoredPoint> found = search.search(query, LIMIT, filter);
+            assertThat(found, is(not(empty())));
+            for (ScoredPoint point : found) {
+                assertThat(partial.contains(point.id()), is(true));
+            }
+        }
+        assertThat(search.getPlanCount(SearchPlan.BRUTE_FORCE), is(1L));
+        assertThat(search.getPlanCount(SearchPlan.FILTERED_GRAPH), is(1L));
+        assertThat(search.getPlanCount(SearchPlan.UNFILTERED), is(1L));
+    }
+}
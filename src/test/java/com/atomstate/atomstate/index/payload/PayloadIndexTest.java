@@ -0,0 +1,77 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.index.payload;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PayloadIndexTest {
+
+    private static final int POINTS = 1000;
+
+    @Test
+    void testResolvesEachKindOfFilter() {
+        PayloadIndex payloads = payloads();
+        assertThat(payloads.resolve(new Filter.Match("tenant", "t3")).size(), is(100));
+        assertThat(payloads.resolve(new Filter.MatchInteger("category", 2)).size(), is(250));
+        assertThat(payloads.resolve(new Filter.Range("category", 1, 2)).size(), is(500));
+        assertThat(payloads.resolve(new Filter.Range("time", 0, 99.5)).size(), is(100));
+        assertThat(payloads.resolve(new Filter.Match("missing", "t3")).size(), is(0));
+        assertThat(payloads.resolve(new Filter.Match("tenant", "missing")).size(), is(0));
+    }
+
+    @Test
+    void testConjunctionsIntersectAndEstimate() {
+        PayloadIndex payloads = payloads();
+        Filter filter = new Filter.And(List.of(new Filter.Match("tenant", "t3"),
+                new Filter.MatchInteger("category", 1), new Filter.Range("time", 0, 499)));
+        PointIdSet matching = payloads.resolve(filter);
+        IntArrayList expected = new IntArrayList();
+        for (int id = 0; id < 500; id++) {
+            if (id % 10 == 3 && id % 4 == 1) {
+                expected.add(id);
+            }
+        }
+        assertThat(matching.toIntArray(), is(expected.toIntArray()));
+        assertThat(payloads.estimate(filter), is(100));
+        assertThat(payloads.estimate(new Filter.Range("time", 0, 499)), is(500));
+        assertThrows(IllegalArgumentException.class, () -> new Filter.And(List.of()));
+    }
+
+    @Test
+    void testRemovedValuesNoLongerMatch() {
+        PayloadIndex payloads = payloads();
+        assertThat(payloads.removeKeyword(3, "tenant", "t3"), is(true));
+        assertThat(payloads.removeKeyword(3, "tenant", "t3"), is(false));
+        assertThat(payloads.removeInteger(2, "category", 2), is(true));
+        assertThat(payloads.removeNumber(5, "time", 5), is(true));
+        assertThat(payloads.resolve(new Filter.Match("tenant", "t3")).contains(3), is(false));
+        assertThat(payloads.resolve(new Filter.MatchInteger("category", 2)).contains(2), is(false));
+        assertThat(payloads.resolve(new Filter.Range("category", 2, 2)).contains(2), is(false));
+        assertThat(payloads.resolve(new Filter.Range("time", 0, 10)).size(), is(10));
+        assertThat(payloads.getUniverse(), is(POINTS));
+    }
+
+    static PayloadIndex payloads() {
+        PayloadIndex payloads = new PayloadIndex(POINTS);
+        for (int id = 0; id < POINTS; id++) {
+            payloads.addKeyword(id, "tenant", "t" + id % 10);
+            payloads.addInteger(id, "category", id % 4);
+            payloads.addNumber(id, "time", id);
+        }
+        return payloads;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.index.payload;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PointIdSetTest {
+
+    @Test
+    void testSparseSetsAreSortedArrays() {
+        PointIdSet set = PointIdSet.of(new int[]{3, 70, 900, -1}, 3, 1000);
+        assertThat(set.isBitmap(), is(false));
+        assertThat(set.size(), is(3));
+        assertThat(set.contains(70), is(true));
+        assertThat(set.contains(71), is(false));
+        assertThat(set.contains(-1), is(false));
+        assertThat(set.contains(5000), is(false));
+        assertThat(set.toIntArray(), is(new int[]{3, 70, 900}));
+    }
+
+    @Test
+    void testDenseSetsAreBitmaps() {
+        int[] even = new int[100];
+        for (int i = 0; i < even.length; i++) {
+            even[i] = i * 2;
+        }
+        PointIdSet set = PointIdSet.of(even, even.length, 200);
+        assertThat(set.isBitmap(), is(true));
+        assertThat(set.size(), is(100));
+        assertThat(set.test(198), is(true));
+        assertThat(set.test(199), is(false));
+        assertThat(set.toIntArray(), is(even));
+    }
+
+    @Test
+    void testIntersectionOfMixedRepresentations() {
+        int[] multiplesOfThree = new int[67];
+        for (int i = 0; i < multiplesOfThree.length; i++) {
+            multiplesOfThree[i] = i * 3;
+        }
+        PointIdSet dense = PointIdSet.of(multiplesOfThree, multiplesOfThree.length, 200);
+        PointIdSet sparse = PointIdSet.of(new int[]{1, 6, 7, 99, 150}, 5, 200);
+        PointIdSet both = dense.and(sparse);
+        assertThat(both.toIntArray(), is(new int[]{6, 99, 150}));
+        assertThat(sparse.and(PointIdSet.empty()).size(), is(0));
+        assertThat(PointIdSet.empty().iterator().hasNext(), is(false));
+        assertThrows(IllegalArgumentException.class, () -> PointIdSet.of(new int[]{5}, 1, 5));
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.index.payload;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RangeIndexTest {
+
+    @Test
+    void testRangesAreInclusive() {
+        RangeIndex index = new RangeIndex(100);
+        // Added out of order, so the first query sorts the index
+        for (int id = 99; id >= 0; id--) {
+            index.add(id, id * 0.5);
+        }
+        assertThat(index.count(10, 20), is(21));
+        assertThat(index.range(10, 12).toIntArray(), is(new int[]{20, 21, 22, 23, 24}));
+        assertThat(index.range(60, 70).size(), is(0));
+        assertThat(index.count(20, 10), is(0));
+        assertThat(index.size(), is(100));
+    }
+
+    @Test
+    void testMultiValuedPointsAppearOnce() {
+        RangeIndex index = new RangeIndex(10);
+        index.add(4, 1.0);
+        index.add(4, 2.0);
+        index.add(2, 1.5);
+        assertThat(index.count(0, 5), is(3));
+        assertThat(index.range(0, 5).toIntArray(), is(new int[]{2, 4}));
+
+        assertThat(index.remove(4, 1.0), is(true));
+        assertThat(index.remove(4, 1.0), is(false));
+        assertThat(index.range(0, 1.9).toIntArray(), is(new int[]{2}));
+        assertThrows(IllegalArgumentException.class, () -> index.add(10, 1.0));
+        assertThrows(IllegalArgumentException.class, () -> index.add(1, Double.NaN));
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.optimizer;
+
+import com.atomstate.atomstate.common.utils.CpuBudget;
+import com.atomstate.atomstate.common.utils.CpuPermit;
+import com.atomstate.atomstate.common.utils.CpuPriority;
+import com.atomstate.atomstate.common.utils.CpuShare;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OptimizerSchedulerTest {
+
+    private static final int UNITS = 10;
+    private final List<SegmentStats> segments = new ArrayList<>();
+    private final List<Long> started = new ArrayList<>();
+    private LongConsumer onUnit = unit -> {
+    };
+    private CpuBudget search;
+    private CpuBudget optimizer;
+    private OptimizerScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        CpuBudget node = new CpuBudget(2);
+        search = node.newChild(CpuPriority.SEARCH, new CpuShare(0, 2));
+        optimizer = node.newChild(CpuPriority.OPTIMIZER, new CpuShare(0, 2));
+        scheduler = new OptimizerScheduler(optimizer, new SegmentOptimizer() {
+            @Override
+            public List<SegmentStats> getSegmentStats() {
+                return segments;
+            }
+
+            @Override
+            public void run(OptimizerJob job, JobContext context) {
+                started.add(context.getCheckpoint());
+                for (long unit = context.getCheckpoint(); unit < UNITS; unit++) {
+                    onUnit.accept(unit);
+                    if (!context.checkpoint(unit + 1)) {
+                        return;
+                    }
+                }
+            }
+        }, new OptimizerConfig(0.2, 3, 100), 2);
+    }
+
+    @Test
+    void testPlan() {
+        List<OptimizerJob> jobs = scheduler.plan(List.of(
+                new SegmentStats("a", 1000, 400, 0),
+                new SegmentStats("b", 1000, 0, 200),
+                new SegmentStats("c", 10, 0, 10),
+                new SegmentStats("d", 20, 10, 0),
+                new SegmentStats("e", 600, 100, 50)));
+
+        assertThat(jobs, contains(
+                new OptimizerJob.Merge(List.of("c", "d", "e")),
+                new OptimizerJob.Vacuum("a"),
+                new OptimizerJob.BuildIndex("b")));
+        assertThat(scheduler.plan(List.of(new SegmentStats("a", 1000, 200, 99))), is(empty()));
+    }
+
+    @Test
+    void testInvalidStats() {
+        assertThrows(IllegalArgumentException.class, () -> new SegmentStats("a", 10, 11, 0));
+        assertThrows(IllegalArgumentException.class, () -> new SegmentStats("a", 10, 5, 6));
+        assertThrows(IllegalArgumentException.class, () -> new OptimizerJob.Merge(List.of("a")));
+        assertThrows(IllegalArgumentException.class, () -> new OptimizerConfig(1, 3, 100));
+    }
+
+    @Test
+    void testRunsJobToCompletion() throws InterruptedException {
+        segments.add(new SegmentStats("a", 1000, 500, 0));
+
+        assertTrue(scheduler.runOnce());
+
+        assertThat(started, contains(0L));
+        assertThat(scheduler.getCompletedJobs(), is(1L));
+        assertThat(scheduler.getProgress(), is((long) UNITS));
+        assertThat(scheduler.getCheckpoint(new OptimizerJob.Vacuum("a")), is(0L));
+        assertThat(optimizer.getStats().used(), is(0));
+    }
+
+    @Test
+    void testPausesWhenBudgetTakesAllCpusAndResumesFromCheckpoint() throws InterruptedException {
+        segments.add(new SegmentStats("a", 1000, 500, 0));
+        onUnit = unit -> {
+            if (unit == 3) {
+                // Search is short of CPUs and asks the optimizer for both of them
+                assertFalse(search.tryAcquire(2).isPresent());
+            }
+        };
+
+        assertTrue(scheduler.runOnce());
+
+        OptimizerJob job = new OptimizerJob.Vacuum("a");
+        assertThat(scheduler.getCompletedJobs(), is(0L));
+        assertThat(scheduler.getCheckpoint(job), is(4L));
+        assertThat(optimizer.getStats().used(), is(0));
+
+        onUnit = unit -> {
+        };
+        assertTrue(scheduler.runOnce());
+
+        assertThat(started, contains(0L, 4L));
+        assertThat(scheduler.getCompletedJobs(), is(1L));
+        assertThat(scheduler.getProgress(), is((long) UNITS));
+    }
+
+    @Test
+    void testGivesBackPartOfPermit() throws InterruptedException {
+        segments.add(new SegmentStats("a", 1000, 500, 0));
+        List<Integer> cpus = new ArrayList<>();
+        onUnit = unit -> {
+            if (unit == 3) {
+                optimizer.setLimit(1);
+            }
+            cpus.add(optimizer.getStats().used());
+        };
+
+        assertTrue(scheduler.runOnce());
+
+        assertThat(scheduler.getCompletedJobs(), is(1L));
+        assertThat(cpus.get(0), is(2));
+        assertThat(cpus.get(UNITS - 1), is(1));
+    }
+
+    @Test
+    void testPauseAndCancel() throws InterruptedException {
+        segments.add(new SegmentStats("a", 1000, 500, 0));
+        onUnit = unit -> {
+            if (unit == 2) {
+                assertTrue(scheduler.cancel());
+            }
+        };
+
+        assertTrue(scheduler.runOnce());
+        assertThat(scheduler.getCheckpoint(new OptimizerJob.Vacuum("a")), is(3L));
+        assertFalse(scheduler.cancel());
+
+        scheduler.pause();
+        assertFalse(scheduler.runOnce());
+        scheduler.resume();
+
+        onUnit = unit -> {
+        };
+        assertTrue(scheduler.runOnce());
+        assertThat(started, contains(0L, 3L));
+        assertThat(scheduler.getCompletedJobs(), is(1L));
+    }
+
+    @Test
+    void testSkipsWithoutCpus() throws InterruptedException {
+        segments.add(new SegmentStats("a", 1000, 500, 0));
+        CpuPermit held = search.tryAcquire(2).orElseThrow();
+        try {
+            assertFalse(scheduler.runOnce());
+        } finally {
+            held.close();
+        }
+        assertThat(started, is(empty()));
+    }
+
+    @Test
+    void testDropsCheckpointOfJobNoLongerPlanned() throws InterruptedException {
+        segments.add(new SegmentStats("a", 1000, 500, 0));
+        onUnit = unit -> {
+            if (unit == 2) {
+                scheduler.cancel();
+            }
+        };
+        scheduler.runOnce();
+        assertThat(scheduler.getCheckpoint(new OptimizerJob.Vacuum("a")), is(3L));
+
+        segments.set(0, new SegmentStats("a", 500, 0, 0));
+        assertFalse(scheduler.runOnce());
+        assertThat(scheduler.getCheckpoint(new OptimizerJob.Vacuum("a")), is(0L));
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.snapshot;
+
+import com.atomstate.atomstate.common.utils.CpuBudget;
+import com.atomstate.atomstate.common.utils.CpuPermit;
+import com.atomstate.atomstate.common.utils.Default;
+import com.atomstate.atomstate.vectors.DenseVectors;
+import com.atomstate.atomstate.vectors.Distance;
+import com.atomstate.atomstate.vectors.MappedVectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRestoreAllInParallel() throws Exception {
+        Path segments = Files.createDirectories(directory.resolve("segments"));
+        DenseVectors vectors = new DenseVectors(16, Distance.COSINE, 500);
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            float[] vector = new float[16];
+            for (int d = 0; d < vector.length; d++) {
+                vector[d] = random.nextFloat();
+            }
+            vectors.add(vector);
+        }
+        MappedVectors.write(segments.resolve("vectors.bin"), vectors);
+        Files.write(segments.resolve("payload.bin"), randomBytes(random, 10_000));
+        Files.write(segments.resolve("empty.bin"), new byte[0]);
+
+        Path snapshot = directory.resolve("snapshot.bin");
+        try (SnapshotWriter writer = new SnapshotWriter(snapshot, 4096, null)) {
+            writer.addFile("vectors.bin", segments.resolve("vectors.bin"));
+            writer.addFile("payload.bin", segments.resolve("payload.bin"));
+            writer.addFile("empty.bin", segments.resolve("empty.bin"));
+            writer.addBytes("metadata.json", "{\"collection\":\"docs\"}".getBytes(StandardCharsets.UTF_8));
+            assertThrows(IllegalArgumentException.class, () -> writer.addBytes("empty.bin", new byte[1]));
+        }
+
+        Path restored = directory.resolve("restored");
+        try (SnapshotReader reader = SnapshotReader.open(snapshot); CpuPermit permit = permit(4)) {
+            assertThat(reader.getWrittenBy(), is(Default.ATOMSTATE_VERSION));
+            assertThat(reader.getEntries(), hasSize(4));
+            assertThat(reader.getEntry("payload.bin").orElseThrow().chunks(), is(3));
+            assertThat(new String(reader.readBytes("metadata.json"), StandardCharsets.UTF_8),
+                    is("{\"collection\":\"docs\"}"));
+            long bytes = reader.restoreAll(restored, permit);
+            assertThat(bytes, is(Files.size(segments.resolve("vectors.bin")) + 10_000 + 21));
+        }
+        for (String name : new String[]{"vectors.bin", "payload.bin", "empty.bin"}) {
+            assertThat(Files.readAllBytes(restored.resolve(name)), is(Files.readAllBytes(segments.resolve(name))));
+        }
+        try (MappedVectors mapped = MappedVectors.open(restored.resolve("vectors.bin"), false)) {
+            assertThat(mapped.size(), is(500));
+            assertThat(mapped.get(7, new float[16]), is(vectors.get(7, new float[16])));
+        }
+    }
+
+    @Test
+    void testCorruptedChunkFailsRestore() throws Exception {
+        Path source = directory.resolve("segment.bin");
+        Files.write(source, randomBytes(new Random(7), 20_000));
+        Path snapshot = directory.resolve("snapshot.bin");
+        try (SnapshotWriter writer = new SnapshotWriter(snapshot, 8192, null)) {
+            writer.addFile("segment.bin", source);
+        }
+        try (RandomAccessFile file = new RandomAccessFile(snapshot.toFile(), "rw")) {
+            // Flip a byte in the data of the second chunk
+            long position = SnapshotFormat.HEADER_BYTES + SnapshotFormat.CHUNK_HEADER_BYTES + 8192
+                    + SnapshotFormat.CHUNK_HEADER_BYTES + 100;
+            file.seek(position);
+            int value = file.read();
+            file.seek(position);
+            file.write(value ^ 0xFF);
+        }
+        Path target = directory.resolve("restored.bin");
+        try (SnapshotReader reader = SnapshotReader.open(snapshot)) {
+            IOException error = assertThrows(IOException.class, () -> reader.restore("segment.bin", target));
+            assertThat(error.getMessage(), containsString("chunk 1"));
+            assertThrows(IOException.class, () -> reader.readBytes("segment.bin"));
+        }
+        assertThat(Files.exists(target), is(false));
+    }
+
+    @Test
+    void testIncompatibleOrIncompleteSnapshotIsRejected() throws Exception {
+        Path snapshot = directory.resolve("snapshot.bin");
+        try (SnapshotWriter writer = new SnapshotWriter(snapshot)) {
+            writer.addBytes("metadata.json", new byte[]{1, 2, 3});
+        }
+        byte[] content = Files.readAllBytes(snapshot);
+
+        // A newer major version
+        try (RandomAccessFile file = new RandomAccessFile(snapshot.toFile(), "rw")) {
+            file.seek(8);
+            file.write(Default.ATOMSTATE_VERSION.getMajor() + 1);
+        }
+        IOException newer = assertThrows(IOException.class, () -> SnapshotReader.open(snapshot));
+        assertThat(newer.getMessage(), containsString("newer version"));
+
+        // Cut off while being written
+        Files.write(snapshot, Arrays.copyOf(content, content.length - 4));
+        assertThrows(IOException.class, () -> SnapshotReader.open(snapshot));
+    }
+
+    @Test
+    void testFailedWriteLeavesNoSnapshot() throws IOException {
+        Path snapshot = directory.resolve("snapshot.bin");
+        SnapshotWriter writer = new SnapshotWriter(snapshot);
+        assertThrows(IOException.class, () -> writer.addFile("missing.bin", directory.resolve("missing.bin")));
+        writer.close();
+        writer.close();
+        assertThat(Files.exists(snapshot), is(false));
+        assertThat(Files.exists(directory.resolve("snapshot.bin.tmp")), is(false));
+        assertThrows(IllegalStateException.class, () -> writer.addBytes("late.bin", new byte[1]));
+    }
+
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static CpuPermit permit(int cpus) {
+        return new CpuBudget(cpus).tryAcquire(cpus).orElseThrow();
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.vectors;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DenseVectorsTest {
+
+    @Test
+    void testAddGrowsAndKeepsVectors() {
+        DenseVectors vectors = new DenseVectors(2, Distance.EUCLID, 0);
+        for (int i = 0; i < 100; i++) {
+            assertThat(vectors.add(new float[]{i, -i}), is(i));
+        }
+        assertThat(vectors.size(), is(100));
+        assertThat(vectors.dimension(), is(2));
+        assertArrayEquals(new float[]{42, -42}, vectors.get(42, new float[2]));
+        assertThat(vectors.distance(1, 3), is(8f));
+        assertThat(vectors.distance(new float[]{0, 0}, 2), is(8f));
+    }
+
+    @Test
+    void testRejectsInvalidAccess() {
+        DenseVectors vectors = new DenseVectors(2, Distance.DOT, 4);
+        vectors.add(new float[]{1, 1});
+        assertThrows(IllegalArgumentException.class, () -> vectors.add(new float[]{1}));
+        assertThrows(IndexOutOfBoundsException.class, () -> vectors.distance(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new DenseVectors(0, Distance.DOT, 4));
+    }
+}
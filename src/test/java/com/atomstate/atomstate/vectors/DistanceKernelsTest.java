@@ -0,0 +1,94 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.vectors;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+class DistanceKernelsTest {
+
+    private static final DistanceKernel SCALAR = DistanceKernels.scalar();
+    private static final DistanceKernel SIMD = DistanceKernels.vectorized().orElseThrow();
+
+    @Test
+    void testVectorizedMatchesScalarOnArrays() {
+        Random random = new Random(7);
+        for (int length = 1; length <= 100; length++) {
+            float[] a = randomVector(random, length + 3);
+            float[] b = randomVector(random, length + 5);
+            assertClose(SIMD.dot(a, 3, b, 5, length), SCALAR.dot(a, 3, b, 5, length));
+            assertClose(SIMD.cosine(a, 3, b, 5, length), SCALAR.cosine(a, 3, b, 5, length));
+            assertClose(SIMD.squaredEuclid(a, 3, b, 5, length), SCALAR.squaredEuclid(a, 3, b, 5, length));
+            assertClose(SIMD.manhattan(a, 3, b, 5, length), SCALAR.manhattan(a, 3, b, 5, length));
+        }
+    }
+
+    @Test
+    void testVectorizedMatchesScalarOnMemory() {
+        Random random = new Random(11);
+        try (Arena arena = Arena.ofConfined()) {
+            for (int length = 1; length <= 100; length += 7) {
+                float[] a = randomVector(random, length);
+                float[] b = randomVector(random, length);
+                // Odd byte offsets check that unaligned vectors are read correctly
+                MemorySegment aSegment = copy(arena, a, 3);
+                MemorySegment bSegment = copy(arena, b, 1);
+                for (DistanceKernel kernel : new DistanceKernel[]{SCALAR, SIMD}) {
+                    assertClose(kernel.dot(a, 0, bSegment, 1, length), SCALAR.dot(a, 0, b, 0, length));
+                    assertClose(kernel.dot(aSegment, 3, bSegment, 1, length), SCALAR.dot(a, 0, b, 0, length));
+                    assertClose(kernel.cosine(a, 0, bSegment, 1, length), SCALAR.cosine(a, 0, b, 0, length));
+                    assertClose(kernel.cosine(aSegment, 3, bSegment, 1, length), SCALAR.cosine(a, 0, b, 0, length));
+                    assertClose(kernel.squaredEuclid(a, 0, bSegment, 1, length), SCALAR.squaredEuclid(a, 0, b, 0, length));
+                    assertClose(kernel.squaredEuclid(aSegment, 3, bSegment, 1, length), SCALAR.squaredEuclid(a, 0, b, 0, length));
+                    assertClose(kernel.manhattan(a, 0, bSegment, 1, length), SCALAR.manhattan(a, 0, b, 0, length));
+                    assertClose(kernel.manhattan(aSegment, 3, bSegment, 1, length), SCALAR.manhattan(a, 0, b, 0, length));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testSelection() {
+        assertThat(DistanceKernels.select("scalar"), is(sameInstance(SCALAR)));
+        assertThat(DistanceKernels.select("SIMD"), is(sameInstance(SIMD)));
+        DistanceKernel detected = SimdKernel.lanes() >= 4 ? SIMD : SCALAR;
+        assertThat(DistanceKernels.select(null), is(sameInstance(detected)));
+        assertThat(DistanceKernels.select("avx9000"), is(sameInstance(detected)));
+    }
+
+    private static float[] randomVector(Random random, int length) {
+        float[] vector = new float[length];
+        for (int i = 0; i < length; i++) {
+            vector[i] = random.nextFloat() * 2 - 1;
+        }
+        return vector;
+    }
+
+    private static MemorySegment copy(Arena arena, float[] vector, long offset) {
+        MemorySegment segment = arena.allocate(offset + (long) vector.length * Float.BYTES);
+        for (int i = 0; i < vector.length; i++) {
+            segment.set(DistanceKernel.FLOAT, offset + (long) i * Float.BYTES, vector[i]);
+        }
+        return segment;
+    }
+
+    private static void assertClose(float actual, float expected) {
+        assertThat((double) actual, is(closeTo(expected, 1e-4 * Math.max(1, Math.abs(expected)))));
+    }
+}
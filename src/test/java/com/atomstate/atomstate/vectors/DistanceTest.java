@@ -0,0 +1,68 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.vectors;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DistanceTest {
+
+    private static final float[] A = {1, 2, 3};
+    private static final float[] B = {4, -5, 6};
+
+    @Test
+    void testDistances() {
+        assertThat(Distance.DOT.distance(A, B), is(-12f));
+        assertThat(Distance.EUCLID.distance(A, B), is(9f + 49f + 9f));
+        assertThat(Distance.MANHATTAN.distance(A, B), is(3f + 7f + 3f));
+        assertThat((double) Distance.COSINE.distance(A, B), closeTo(1 - 12 / Math.sqrt(14 * 77), 1e-6));
+    }
+
+    @Test
+    void testSmallerMeansMoreSimilar() {
+        float[] near = {1, 2, 3.5f};
+        for (Distance distance : Distance.values()) {
+            assertThat(distance.name(), distance.distance(A, near) < distance.distance(A, B), is(true));
+        }
+    }
+
+    @Test
+    void testOffsetsAndEdgeCases() {
+        float[] packed = {0, 0, 1, 2, 3, 4, -5, 6};
+        assertThat(Distance.EUCLID.distance(packed, 2, packed, 5, 3), is(Distance.EUCLID.distance(A, B)));
+        assertThat(Distance.COSINE.distance(new float[]{0, 0}, new float[]{1, 1}), is(1f));
+        assertThrows(IllegalArgumentException.class, () -> Distance.DOT.distance(A, new float[]{1}));
+    }
+
+    @Test
+    void testMemorySegmentsMatchArrays() {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment a = arena.allocate((long) A.length * Float.BYTES);
+            MemorySegment b = arena.allocate((long) B.length * Float.BYTES);
+            for (int i = 0; i < A.length; i++) {
+                a.setAtIndex(DistanceKernel.FLOAT, i, A[i]);
+                b.setAtIndex(DistanceKernel.FLOAT, i, B[i]);
+            }
+            for (Distance distance : Distance.values()) {
+                float expected = distance.distance(A, B);
+                assertThat(distance.distance(A, 0, b, 0, B.length), is(expected));
+                assertThat(distance.distance(a, 0, b, 0, B.length), is(expected));
+            }
+        }
+    }
+}
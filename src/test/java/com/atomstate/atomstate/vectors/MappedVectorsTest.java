@@ -0,0 +1,184 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.vectors;
+
+import com.atomstate.atomstate.common.utils.CpuBudget;
+import com.atomstate.atomstate.common.utils.CpuPermit;
+import com.atomstate.atomstate.common.utils.Default;
+import com.atomstate.atomstate.common.utils.IoBudget;
+import com.atomstate.atomstate.common.utils.IoClass;
+import com.atomstate.atomstate.common.utils.IoPermit;
+import com.atomstate.atomstate.common.utils.MemoryBudget;
+import com.atomstate.atomstate.index.ScoredPoint;
+import com.atomstate.atomstate.index.hnsw.HnswConfig;
+import com.atomstate.atomstate.index.hnsw.HnswIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MappedVectorsTest {
+
+    private static final int POINTS = 500;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testFloatVectorsMatchOriginals() throws IOException {
+        DenseVectors vectors = ScalarQuantizerTest.randomVectors(Distance.COSINE, POINTS);
+        Path path = directory.resolve("vectors.bin");
+        MappedVectors.write(path, vectors);
+        assertThat(Files.size(path), is(MappedVectors.HEADER_BYTES + POINTS * vectors.dimension() * 4L));
+        assertThat(Files.exists(directory.resolve("vectors.bin.tmp")), is(false));
+
+        try (MappedVectors mapped = MappedVectors.open(path, false)) {
+            assertThat(mapped.size(), is(POINTS));
+            assertThat(mapped.dimension(), is(vectors.dimension()));
+            assertThat(mapped.getEncoding(), is(VectorEncoding.FLOAT32));
+            assertThat(mapped.getDistance(), is(Distance.COSINE));
+            assertThat(mapped.getWrittenBy(), is(Default.ATOMSTATE_VERSION));
+            assertThat(mapped.getQuantizer().isPresent(), is(false));
+            assertThat(mapped.rescoring().isPresent(), is(false));
+
+            float[] query = vectors.get(7, new float[vectors.dimension()]);
+            QueryScorer scorer = mapped.scorer(query);
+            for (int id = 0; id < POINTS; id += 13) {
+                float[] vector = vectors.get(id, new float[vectors.dimension()]);
+                assertThat(Arrays.equals(mapped.get(id, new float[vectors.dimension()]), vector), is(true));
+                assertThat((double) mapped.distance(3, id), is(closeTo(vectors.distance(3, id), 1e-5)));
+                assertThat((double) scorer.distance(id), is(closeTo(vectors.distance(query, id), 1e-5)));
+            }
+            assertThrows(IndexOutOfBoundsException.class, () -> mapped.distance(query, POINTS));
+        }
+    }
+
+    @Test
+    void testQuantizedVectorsRescoreAgainstMappedOriginals() throws IOException {
+        DenseVectors vectors = ScalarQuantizerTest.randomVectors(Distance.EUCLID, POINTS);
+        Path path = directory.resolve("vectors.bin");
+        MappedVectors.write(path, vectors);
+        MemoryBudget memory = new MemoryBudget(Long.MAX_VALUE);
+        CpuBudget budget = new CpuBudget(2);
+
+        try (MappedVectors mapped = MappedVectors.open(path, false);
+             CpuPermit permit = budget.tryAcquire(2).orElseThrow();
+             QuantizedVectors quantized = QuantizedVectors.quantize(mapped, permit, memory).orElseThrow()) {
+            // Only the codes are reserved, the originals stay in the mapped file
+            assertThat(memory.getUsedBytes(), is(QuantizedVectors.memoryUsage(POINTS, vectors.dimension())));
+            assertThat(quantized.rescoring().orElseThrow().exact(), is(sameInstance(mapped)));
+
+            HnswIndex index = new HnswIndex(quantized, new HnswConfig(8, 64, 32), POINTS);
+            for (int id = 0; id < POINTS; id++) {
+                index.insert(id);
+            }
+            float[] query = vectors.get(19, new float[vectors.dimension()]);
+            List<ScoredPoint> found = index.search(query, 10);
+            assertThat(found.getFirst(), is(new ScoredPoint(19, 0f)));
+            for (ScoredPoint point : found) {
+                assertThat(point.distance(), is(mapped.distance(query, point.id())));
+            }
+        }
+        assertThat(memory.getUsedBytes(), is(0L));
+
+        Path codes = directory.resolve("vectors.i8");
+        try (CpuPermit permit = budget.tryAcquire(1).orElseThrow();
+             QuantizedVectors quantized = QuantizedVectors.quantize(vectors, permit, memory).orElseThrow()) {
+            MappedVectors.write(codes, quantized);
+        }
+        try (MappedVectors mapped = MappedVectors.open(codes, false);
+             CpuPermit permit = budget.tryAcquire(1).orElseThrow()) {
+            assertThrows(IllegalStateException.class, () -> QuantizedVectors.quantize(mapped, permit, memory));
+        }
+        assertThat(memory.getUsedBytes(), is(0L));
+    }
+
+    @Test
+    void testQuantizedVectorsMatchInMemoryCodes() throws IOException {
+        DenseVectors vectors = ScalarQuantizerTest.randomVectors(Distance.DOT, POINTS);
+        CpuBudget budget = new CpuBudget(2);
+        QuantizedVectors quantized;
+        try (CpuPermit permit = budget.tryAcquire(2).orElseThrow()) {
+            quantized = QuantizedVectors.quantize(vectors, permit, new MemoryBudget(Long.MAX_VALUE)).orElseThrow();
+        }
+        Path path = directory.resolve("vectors.i8");
+        MappedVectors.write(path, quantized);
+
+        Rescoring rescoring = new Rescoring(vectors, 2);
+        try (MappedVectors mapped = MappedVectors.open(path, true, rescoring)) {
+            assertThat(mapped.getEncoding(), is(VectorEncoding.INT8));
+            assertThat(mapped.getQuantizer().orElseThrow().getScale(), is(quantized.getQuantizer().getScale()));
+            assertThat(mapped.rescoring().orElseThrow(), is(sameInstance(rescoring)));
+            assertThrows(IllegalStateException.class, () -> mapped.get(0, new float[vectors.dimension()]));
+
+            float[] query = vectors.get(11, new float[vectors.dimension()]);
+            QueryScorer expected = quantized.scorer(query);
+            QueryScorer actual = mapped.scorer(query);
+            for (int id = 0; id < POINTS; id += 17) {
+                assertThat(mapped.distance(5, id), is(quantized.distance(5, id)));
+                assertThat(actual.distance(id), is(expected.distance(id)));
+            }
+        }
+    }
+
+    @Test
+    void testOddDimensionsArePaddedAndReadBack() throws IOException {
+        DenseVectors vectors = new DenseVectors(3, Distance.EUCLID, 4);
+        for (int i = 0; i < 4; i++) {
+            vectors.add(new float[]{i, i + 0.5f, -i});
+        }
+        assertThat(VectorEncoding.INT8.stride(3), is(8L));
+        Path path = directory.resolve("small.bin");
+        MappedVectors.write(path, vectors);
+        try (MappedVectors mapped = MappedVectors.open(path, true)) {
+            assertThat(mapped.get(3, new float[3]), is(new float[]{3, 3.5f, -3}));
+            assertThat(mapped.distance(0, 1), is(vectors.distance(0, 1)));
+        }
+    }
+
+    @Test
+    void testPacedWriteIsAccountedToIoClass() throws IOException {
+        DenseVectors vectors = ScalarQuantizerTest.randomVectors(Distance.EUCLID, POINTS);
+        IoBudget ioBudget = new IoBudget(1, 0, 4096);
+        Path path = directory.resolve("paced.bin");
+        try (IoPermit permit = ioBudget.tryAcquire(IoClass.FLUSH).orElseThrow()) {
+            MappedVectors.write(path, vectors, permit);
+        }
+        assertThat(ioBudget.getStats(IoClass.FLUSH).bytes(), is(Files.size(path)));
+        try (MappedVectors mapped = MappedVectors.open(path, false)) {
+            assertThat(mapped.distance(1, 2), is(vectors.distance(1, 2)));
+        }
+    }
+
+    @Test
+    void testRejectsInvalidFiles() throws IOException {
+        Path garbage = directory.resolve("garbage.bin");
+        Files.write(garbage, new byte[100]);
+        assertThrows(IOException.class, () -> MappedVectors.open(garbage, false));
+
+        Path truncated = directory.resolve("truncated.bin");
+        MappedVectors.write(truncated, ScalarQuantizerTest.randomVectors(Distance.DOT, 10));
+        byte[] content = Files.readAllBytes(truncated);
+        Files.write(truncated, Arrays.copyOf(content, content.length - 1));
+        assertThrows(IOException.class, () -> MappedVectors.open(truncated, false));
+
+        Path missing = directory.resolve("missing.bin");
+        assertThrows(IOException.class, () -> MappedVectors.open(missing, false));
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.vectors;
+
+import com.atomstate.atomstate.common.utils.CpuBudget;
+import com.atomstate.atomstate.common.utils.CpuPermit;
+import com.atomstate.atomstate.common.utils.MemoryBudget;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class QuantizedVectorsTest {
+
+    private static final int POINTS = 3000;
+
+    @Test
+    void testParallelEncodingMatchesQuantizer() {
+        DenseVectors vectors = ScalarQuantizerTest.randomVectors(Distance.DOT, POINTS);
+        CpuBudget budget = new CpuBudget(4);
+        try (CpuPermit permit = budget.tryAcquire(4).orElseThrow()) {
+            QuantizedVectors quantized = QuantizedVectors.quantize(vectors, 0.99f, 3, permit, new MemoryBudget(Long.MAX_VALUE))
+                    .orElseThrow();
+            assertThat(quantized.size(), is(POINTS));
+            assertThat(quantized.rescoring().orElseThrow().candidates(10), is(30));
+            assertThat(quantized.rescoring().orElseThrow().exact(), is(sameInstance(vectors)));
+
+            ScalarQuantizer quantizer = quantized.getQuantizer();
+            int dimension = vectors.dimension();
+            byte[] codes = new byte[2 * dimension];
+            for (int id = 1; id < POINTS; id += 97) {
+                float first = quantizer.encode(vectors.get(0, new float[dimension]), 0, codes, 0);
+                float second = quantizer.encode(vectors.get(id, new float[dimension]), 0, codes, dimension);
+                float expected = quantizer.distance(codes, 0, first, codes, dimension, second);
+                assertThat(quantized.distance(0, id), is(expected));
+                assertThat(quantized.distance(vectors.get(0, new float[dimension]), id), is(expected));
+            }
+        }
+    }
+
+    @Test
+    void testQuantizedOrderMostlyMatchesExactOrder() {
+        DenseVectors vectors = ScalarQuantizerTest.randomVectors(Distance.EUCLID, POINTS);
+        CpuBudget budget = new CpuBudget(2);
+        try (CpuPermit permit = budget.tryAcquire(2).orElseThrow()) {
+            QuantizedVectors quantized = QuantizedVectors.quantize(vectors, permit, new MemoryBudget(Long.MAX_VALUE)).orElseThrow();
+            float[] query = vectors.get(0, new float[vectors.dimension()]);
+            QueryScorer scorer = quantized.scorer(query);
+            int agreeing = 0;
+            for (int id = 1; id + 1 < POINTS; id += 2) {
+                boolean exact = vectors.distance(query, id) < vectors.distance(query, id + 1);
+                boolean approximate = scorer.distance(id) < scorer.distance(id + 1);
+                agreeing += exact == approximate ? 1 : 0;
+            }
+            assertThat(agreeing, is(greaterThan(POINTS / 2 * 9 / 10)));
+        }
+    }
+
+    @Test
+    void testReservesMemoryUntilClosed() {
+        DenseVectors vectors = ScalarQuantizerTest.randomVectors(Distance.DOT, 100);
+        CpuBudget budget = new CpuBudget(1);
+        try (CpuPermit permit = budget.tryAcquire(1).orElseThrow()) {
+            long required = QuantizedVectors.memoryUsage(100, vectors.dimension());
+            assertThat(required, is(100L * (64 + 4)));
+            MemoryBudget small = new MemoryBudget(required - 1);
+            assertThat(QuantizedVectors.quantize(vectors, 0.99f, 2, permit, small).isPresent(), is(false));
+            assertThat(small.getAvailableBytes(), is(required - 1));
+
+            MemoryBudget memory = new MemoryBudget(required);
+            QuantizedVectors quantized = QuantizedVectors.quantize(vectors, 0.99f, 2, permit, memory).orElseThrow();
+            assertThat(memory.getAvailableBytes(), is(0L));
+            assertThat(QuantizedVectors.quantize(vectors, 0.99f, 2, permit, memory).isPresent(), is(false));
+            quantized.close();
+            assertThat(memory.getAvailableBytes(), is(required));
+        }
+    }
+
+    @Test
+    void testRejectsCodesBeyondASingleArray() {
+        MemoryBudget memory = new MemoryBudget(Long.MAX_VALUE);
+        CpuBudget budget = new CpuBudget(1);
+        try (CpuPermit permit = budget.tryAcquire(1).orElseThrow()) {
+            for (int size : new int[]{3_000_000, 5_000_000}) {
+                // Neither vectors nor codes are ever allocated
+                FloatVectors huge = new FloatVectors() {
+                    @Override
+                    public float[] get(int point, float[] target) {
+                        throw new UnsupportedOperationException();
+                    }
+
+                    @Override
+                    public Distance getDistance() {
+                        return Distance.DOT;
+                    }
+
+                    @Override
+                    public int size() {
+                        return size;
+                    }
+
+                    @Override
+                    public int dimension() {
+                        return 1024;
+                    }
+
+                    @Override
+                    public float distance(int first, int second) {
+                        throw new UnsupportedOperationException();
+                    }
+
+                    @Override
+                    public float distance(float[] query, int point) {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+                assertThrows(IllegalArgumentException.class, () -> QuantizedVectors.quantize(huge, permit, memory));
+            }
+            assertThat(memory.getUsedBytes(), is(0L));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.vectors;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ScalarQuantizerTest {
+
+    private static final int DIMENSION = 64;
+
+    @Test
+    void testQuantileIgnoresOutliers() {
+        DenseVectors vectors = new DenseVectors(1, Distance.EUCLID, 1000);
+        for (int i = 0; i < 1000; i++) {
+            vectors.add(new float[]{i == 500 ? 1_000_000 : i % 100});
+        }
+        ScalarQuantizer quantizer = ScalarQuantizer.train(vectors, 0.99f);
+        assertThat((double) quantizer.getLower(), is(closeTo(0, 1)));
+        assertThat((double) (quantizer.getLower() + 255 * quantizer.getScale()), is(closeTo(99, 1)));
+
+        byte[] codes = new byte[2];
+        quantizer.encode(new float[]{-5}, 0, codes, 0);
+        quantizer.encode(new float[]{1_000_000}, 0, codes, 1);
+        assertThat(codes[0] & 0xFF, is(0));
+        assertThat(codes[1] & 0xFF, is(255));
+    }
+
+    @Test
+    void testDistancesApproximateOriginals() {
+        for (Distance distance : Distance.values()) {
+            DenseVectors vectors = randomVectors(distance, 200);
+            ScalarQuantizer quantizer = ScalarQuantizer.train(vectors, 1f);
+            byte[] codes = new byte[2 * DIMENSION];
+            float[] a = vectors.get(0, new float[DIMENSION]);
+            float[] b = vectors.get(1, new float[DIMENSION]);
+            float aCorrection = quantizer.encode(a, 0, codes, 0);
+            float bCorrection = quantizer.encode(b, 0, codes, DIMENSION);
+            float exact = distance.distance(a, b);
+            float approximate = quantizer.distance(codes, 0, aCorrection, codes, DIMENSION, bCorrection);
+            assertThat(distance.name(), (double) approximate, is(closeTo(exact, 0.02 * Math.max(1, Math.abs(exact)))));
+        }
+    }
+
+    @Test
+    void testRejectsInvalidTraining() {
+        DenseVectors empty = new DenseVectors(DIMENSION, Distance.DOT, 0);
+        assertThrows(IllegalArgumentException.class, () -> ScalarQuantizer.train(empty, 0.99f));
+        DenseVectors vectors = randomVectors(Distance.DOT, 10);
+        assertThrows(IllegalArgumentException.class, () -> ScalarQuantizer.train(vectors, 0f));
+        assertThrows(IllegalArgumentException.class, () -> ScalarQuantizer.train(vectors, 1.5f));
+    }
+
+    static DenseVectors randomVectors(Distance distance, int count) {
+        Random random = new Random(count);
+        DenseVectors vectors = new DenseVectors(DIMENSION, distance, count);
+        for (int i = 0; i < count; i++) {
+            float[] vector = new float[DIMENSION];
+            for (int d = 0; d < DIMENSION; d++) {
+                vector[d] = random.nextFloat() * 2 - 1;
+            }
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2024- Atomstate Technologies Private Limited.
+ *
+ * Licensed as a Atomstate Enterprise file under the Atomstate Enterprise
+ * License (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://github.com/atomstatehq/atomstate/blob/main/license/ael.md
+ */
+
+package com.atomstate.atomstate.wal;
+
+import com.atomstate.atomstate.common.utils.CpuBudget;
+import com.atomstate.atomstate.common.utils.CpuPermit;
+import com.atomstate.atomstate.common.utils.Default;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testConcurrentAppendsShareSyncs() throws Exception {
+        int threads = 8;
+        int perThread = 200;
+        try (WriteAheadLog wal = new WriteAheadLog(directory, Default.WAL_SEGMENT_BYTES, Duration.ofMillis(5))) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<CompletableFuture<Long>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    int thread = t;
+                    futures.add(CompletableFuture.supplyAsync(() -> {
+                        long last = 0;
+                        for (int i = 0; i < perThread; i++) {
+                            last = wal.append(payload(thread * perThread + i)).join();
+                        }
+                        return last;
+                    }, executor));
+                }
+                for (CompletableFuture<Long> future : futures) {
+                    assertThat(future.get(), is(greaterThan(0L)));
+                }
+            } finally {
+                executor.shutdown();
+            }
+            assertThat(wal.getAppendCount(), is((long) threads * perThread));
+            assertThat(wal.getDurableSequence(), is((long) threads * perThread));
+            assertThat(wal.getSyncCount(), is(lessThan(wal.getAppendCount())));
+        }
+
+        try (WriteAheadLog wal = new WriteAheadLog(directory); CpuPermit permit = permit(2)) {
+            List<WalRecord> records = new ArrayList<>();
+            assertThat(wal.replay(1, permit, records::add), is((long) threads * perThread));
+            for (int i = 0; i < records.size(); i++) {
+                assertThat(records.get(i).sequence(), is(i + 1L));
+                assertThat(records.get(i).writtenBy(), is(Default.ATOMSTATE_VERSION));
+            }
+        }
+    }
+
+    @Test
+    void testSegmentsRollAndReplayInParallel() throws Exception {
+        try (WriteAheadLog wal = new WriteAheadLog(directory, 256, Duration.ZERO)) {
+            for (int i = 1; i <= 100; i++) {
+                assertThat(wal.append(payload(i)).join(), is((long) i));
+            }
+        }
+        assertThat(segmentCount(), is(greaterThan(10L)));
+
+        try (WriteAheadLog wal = new WriteAheadLog(directory, 256, Duration.ZERO); CpuPermit permit = permit(4)) {
+            assertThat(wal.getNextSequence(), is(101L));
+            List<WalRecord> records = new ArrayList<>();
+            assertThat(wal.replay(50, permit, records::add), is(51L));
+            assertThat(records.getFirst().sequence(), is(50L));
+            assertThat(new String(records.getLast().payload(), StandardCharsets.UTF_8), is("record-100"));
+
+            long before = segmentCount();
+            assertThat(wal.removeSegmentsBefore(50), is(greaterThan(0)));
+            assertThat(segmentCount(), is(lessThan(before)));
+            records.clear();
+            assertThat(wal.replay(50, permit, records::add), is(51L));
+            assertThat(wal.append(payload(101)).join(), is(101L));
+        }
+    }
+
+    @Test
+    void testTornTailIsCutOffOnOpen() throws Exception {
+        try (WriteAheadLog wal = new WriteAheadLog(directory)) {
+            for (int i = 1; i <= 10; i++) {
+                wal.append(payload(i));
+            }
+        }
+        Path segment = onlySegment();
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            // Lose the last 3 bytes of record 10, as if the node crashed mid-write
+            file.setLength(file.length() - 3);
+        }
+        try (WriteAheadLog wal = new WriteAheadLog(directory)) {
+            assertThat(wal.getNextSequence(), is(10L));
+            assertThat(wal.getDurableSequence(), is(9L));
+            assertThat(wal.append(payload(10)).join(), is(10L));
+        }
+        try (WriteAheadLog wal = new WriteAheadLog(directory); CpuPermit permit = permit(1)) {
+            List<WalRecord> records = new ArrayList<>();
+            assertThat(wal.replay(1, permit, records::add), is(10L));
+            assertThat(new String(records.getLast().payload(), StandardCharsets.UTF_8), is("record-10"));
+        }
+    }
+
+    @Test
+    void testCorruptedRecordFailsReplay() throws Exception {
+        try (WriteAheadLog wal = new WriteAheadLog(directory, 256, Duration.ZERO)) {
+            for (int i = 1; i <= 30; i++) {
+                wal.append(payload(i)).join();
+            }
+        }
+        Path first;
+        try (Stream<Path> files = Files.list(directory)) {
+            first = files.sorted().findFirst().orElseThrow();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(first.toFile(), "rw")) {
+            file.seek(WalSegment.HEADER_BYTES + WalSegment.RECORD_HEADER_BYTES);
+            file.write('X');
+        }
+        try (WriteAheadLog wal = new WriteAheadLog(directory, 256, Duration.ZERO); CpuPermit permit = permit(2)) {
+            assertThrows(IOException.class, () -> wal.replay(1, permit, record -> { }));
+        }
+    }
+
+    @Test
+    void testClosedLogRejectsAppends() throws IOException {
+        WriteAheadLog wal = new WriteAheadLog(directory);
+        wal.close();
+        wal.close();
+        assertThrows(IllegalStateException.class, () -> wal.append(payload(1)));
+        assertThrows(IllegalArgumentException.class, () -> new WriteAheadLog(directory, 16, Duration.ZERO));
+        assertThrows(IllegalArgumentException.class,
+                () -> new WriteAheadLog(directory, 1024, Duration.ofMillis(-1)));
+    }
+
+    private static byte[] payload(int i) {
+        return ("record-" + i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static CpuPermit permit(int cpus) {
+        return new CpuBudget(cpus).tryAcquire(cpus).orElseThrow();
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = files.toList();
+            assertThat(segments, hasSize(1));
+            return segments.getFirst();
+        }
+    }
+}